@@ -0,0 +1,71 @@
+package eu.arrowhead.core.qos.monitor;
+
+import eu.arrowhead.common.model.ArrowheadSystem;
+import eu.arrowhead.common.model.messages.AddMonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.codec.MonitorLogCodec;
+import eu.arrowhead.core.qos.monitor.event.LogWindow;
+import eu.arrowhead.core.qos.monitor.protocol.FTTSE;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The in-memory work done for every ingested log: parameter filtering, window
+ * update and BSON encoding. Run with the GC profiler, gc.alloc.rate.norm is
+ * the number of bytes allocated per ingested log.
+ *
+ * @author Renato Ayres
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestBenchmark {
+
+    private final FTTSE protocol = new FTTSE();
+    private final MonitorLogCodec codec = new MonitorLogCodec();
+    private final EncoderContext context = EncoderContext.builder().build();
+    private AddMonitorLog message;
+    private LogWindow window;
+
+    @Setup
+    public void setUp() {
+        QoSMonitorService.SHOW_GRAPHS = false;
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("bandwidth", "97");
+        parameters.put("delay", "3");
+        message = new AddMonitorLog();
+        message.setProtocol("FTTSE");
+        message.setProvider(new ArrowheadSystem("providerGroup", "providerName", "localhost", "8080", "authInfo"));
+        message.setConsumer(new ArrowheadSystem("consumerGroup", "consumerName", "localhost", "8080", "authInfo"));
+        message.setParameters(parameters);
+        message.setTimestamp(1475079675L);
+        window = new LogWindow(100, protocol.getSchema().getNames());
+    }
+
+    @Benchmark
+    public byte[] ingest() {
+        MonitorLog log = protocol.filterLogMessage(message);
+        window.add(log);
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), log, context);
+        return buffer.toByteArray();
+    }
+
+}
@@ -0,0 +1,101 @@
+package eu.arrowhead.core.qos.monitor.database.codec;
+
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the BSON encoding and decoding of rules and logs, as done by
+ * the MongoDB driver on every read and write.
+ *
+ * @author Renato Ayres
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private final MonitorLogCodec logCodec = new MonitorLogCodec();
+    private final MonitorRuleCodec ruleCodec = new MonitorRuleCodec();
+    private MonitorLog log;
+    private MonitorRule rule;
+    private byte[] encodedLog;
+    private byte[] encodedRule;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> logParameters = new HashMap<>();
+        logParameters.put("bandwidth", "97");
+        logParameters.put("delay", "3");
+        log = new MonitorLog("FTTSE", 1475079675L, logParameters);
+        log.setPairId("providerGroupproviderNameconsumerGroupconsumerName");
+        log.setRuleVersion(1L);
+
+        Map<String, String> ruleParameters = new HashMap<>();
+        ruleParameters.put("stream_id", "1");
+        ruleParameters.put("bandwidth", "100");
+        ruleParameters.put("delay", "5");
+        rule = new MonitorRule("FTTSE", "providerName", "providerGroup", "consumerName", "consumerGroup",
+                ruleParameters, false);
+        rule.setVersion(1);
+
+        encodedLog = encode(logCodec, log);
+        encodedRule = encode(ruleCodec, rule);
+    }
+
+    @Benchmark
+    public byte[] encodeLog() {
+        return encode(logCodec, log);
+    }
+
+    @Benchmark
+    public MonitorLog decodeLog() {
+        return decode(logCodec, encodedLog);
+    }
+
+    @Benchmark
+    public byte[] encodeRule() {
+        return encode(ruleCodec, rule);
+    }
+
+    @Benchmark
+    public MonitorRule decodeRule() {
+        return decode(ruleCodec, encodedRule);
+    }
+
+    private static <T> byte[] encode(Codec<T> codec, T value) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), value, ENCODER_CONTEXT);
+        return buffer.toByteArray();
+    }
+
+    private static <T> T decode(Codec<T> codec, byte[] bytes) {
+        return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DECODER_CONTEXT);
+    }
+
+}
@@ -0,0 +1,144 @@
+package eu.arrowhead.core.qos.monitor.protocol;
+
+import eu.arrowhead.common.model.ArrowheadSystem;
+import eu.arrowhead.common.model.messages.AddMonitorLog;
+import eu.arrowhead.common.model.messages.AddMonitorRule;
+import eu.arrowhead.core.qos.monitor.QoSMonitorService;
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.event.LogWindow;
+import eu.arrowhead.core.qos.monitor.event.SLAVerificationResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the FT-TSE SLA verification and parameter filtering.
+ *
+ * Real-time verification checks a single log. Soft real-time verification is
+ * measured both on the incremental {@link LogWindow} used by the verification
+ * engine and on the array of the last logs, as read from MongoDB with
+ * getLastNLogs, for window sizes from 1 to 10k logs.
+ *
+ * @author Renato Ayres
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FTTSEBenchmark {
+
+    private static final ArrowheadSystem PROVIDER = new ArrowheadSystem("providerGroup", "providerName",
+            "localhost", "8080", "authInfo");
+    private static final ArrowheadSystem CONSUMER = new ArrowheadSystem("consumerGroup", "consumerName",
+            "localhost", "8080", "authInfo");
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int windowSize;
+
+    private FTTSE protocol;
+    private MonitorRule realTimeRule;
+    private MonitorRule softRealTimeRule;
+    private MonitorLog[] logs;
+    private LogWindow window;
+    private AddMonitorLog message;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        QoSMonitorService.SHOW_GRAPHS = false;
+        protocol = new FTTSE();
+        realTimeRule = protocol.filterRuleMessage(createRuleMessage(false));
+        softRealTimeRule = protocol.filterRuleMessage(createRuleMessage(true));
+
+        Random random = new Random(42);
+        logs = new MonitorLog[windowSize];
+        window = new LogWindow(windowSize, protocol.getSchema().getNames());
+        for (int i = 0; i < windowSize; i++) {
+            logs[i] = protocol.filterLogMessage(createLogMessage(random, i));
+            window.add(logs[i]);
+        }
+        message = createLogMessage(random, windowSize);
+    }
+
+    /**
+     * Real-time verification of one log.
+     */
+    @Benchmark
+    public SLAVerificationResponse verifyRealTime() {
+        MonitorLog log = logs[next];
+        next = (next + 1) % logs.length;
+        return protocol.verifyQoS(realTimeRule, log);
+    }
+
+    /**
+     * Soft real-time verification of a new log on the incremental window.
+     */
+    @Benchmark
+    public SLAVerificationResponse verifySoftRealTimeWindow() {
+        window.add(logs[next]);
+        next = (next + 1) % logs.length;
+        return protocol.verifyQoS(softRealTimeRule, window);
+    }
+
+    /**
+     * Soft real-time verification of the array of the last logs.
+     */
+    @Benchmark
+    public SLAVerificationResponse verifySoftRealTimeLogs() {
+        return protocol.verifyQoS(softRealTimeRule, logs);
+    }
+
+    /**
+     * Filtering of the parameters of a log message into a log.
+     */
+    @Benchmark
+    public MonitorLog filterLogMessage() {
+        return protocol.filterLogMessage(message);
+    }
+
+    private AddMonitorRule createRuleMessage(boolean softRealTime) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("stream_id", "1");
+        parameters.put("bandwidth", "100");
+        parameters.put("delay", "5");
+        if (softRealTime) {
+            parameters.put(IProtocol.NLOGS, String.valueOf(windowSize));
+        }
+        AddMonitorRule rule = new AddMonitorRule();
+        rule.setProtocol("FTTSE");
+        rule.setProvider(PROVIDER);
+        rule.setConsumer(CONSUMER);
+        rule.setParameters(parameters);
+        rule.setSoftRealTime(softRealTime);
+        return rule;
+    }
+
+    private AddMonitorLog createLogMessage(Random random, long timestamp) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("bandwidth", String.valueOf(80 + random.nextInt(40)));
+        parameters.put("delay", String.valueOf(random.nextInt(10)));
+        AddMonitorLog log = new AddMonitorLog();
+        log.setProtocol("FTTSE");
+        log.setProvider(PROVIDER);
+        log.setConsumer(CONSUMER);
+        log.setParameters(parameters);
+        log.setTimestamp(timestamp);
+        return log;
+    }
+
+}
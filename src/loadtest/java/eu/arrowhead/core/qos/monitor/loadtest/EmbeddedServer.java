@@ -0,0 +1,56 @@
+package eu.arrowhead.core.qos.monitor.loadtest;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+/**
+ * Runs the QoSMonitor WAR in an embedded Jetty, with the same web.xml and
+ * servlet context listener as a standalone deployment.
+ *
+ * @author Renato Ayres
+ */
+final class EmbeddedServer {
+
+    private final Server server;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param war the WAR file
+     * @param port the HTTP port
+     * @throws FileNotFoundException if the WAR file does not exist
+     */
+    EmbeddedServer(String war, int port) throws FileNotFoundException {
+        File file = new File(war);
+        if (!file.isFile()) {
+            throw new FileNotFoundException("WAR file " + file.getAbsolutePath()
+                    + " not found. Run 'mvn package' first.");
+        }
+        server = new Server(port);
+        WebAppContext context = new WebAppContext();
+        context.setContextPath("/");
+        context.setWar(file.getAbsolutePath());
+        server.setHandler(context);
+    }
+
+    /**
+     * Starts the server and deploys the WAR.
+     *
+     * @throws Exception if the server fails to start
+     */
+    void start() throws Exception {
+        server.start();
+    }
+
+    /**
+     * Stops the server, undeploying the WAR.
+     *
+     * @throws Exception if the server fails to stop
+     */
+    void stop() throws Exception {
+        server.stop();
+    }
+
+}
@@ -0,0 +1,67 @@
+package eu.arrowhead.core.qos.monitor.loadtest;
+
+import eu.arrowhead.core.qos.monitor.metrics.LatencyHistogram;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The requests, failures and response times of one endpoint during the
+ * measured part of a run.
+ *
+ * @author Renato Ayres
+ */
+final class EndpointStatistics {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name the endpoint name
+     */
+    EndpointStatistics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param nanos the response time, in nanoseconds
+     * @param success true if the response was successful
+     */
+    void record(long nanos, boolean success) {
+        latency.record(nanos);
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Gets the endpoint name.
+     *
+     * @return the endpoint name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the response time histogram.
+     *
+     * @return the response times
+     */
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the number of failed requests.
+     *
+     * @return the failures
+     */
+    long getErrors() {
+        return errors.sum();
+    }
+
+}
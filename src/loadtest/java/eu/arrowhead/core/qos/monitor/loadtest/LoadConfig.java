@@ -0,0 +1,78 @@
+package eu.arrowhead.core.qos.monitor.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * The load generator configuration, read from the 'loadtest.properties' file.
+ * System properties with the same names take precedence.
+ *
+ * @author Renato Ayres
+ */
+final class LoadConfig {
+
+    private final Properties props = new Properties();
+
+    /**
+     * Loads the configuration.
+     *
+     * @throws IOException if the properties file cannot be read
+     */
+    LoadConfig() throws IOException {
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream("loadtest.properties");
+        if (inputStream != null) {
+            try {
+                props.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Gets a text value.
+     *
+     * @param key the property name
+     * @param defaultValue the value used when the property is not set
+     * @return the value
+     */
+    String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, props.getProperty(key, defaultValue));
+        return value == null ? defaultValue : value.trim();
+    }
+
+    /**
+     * Gets an integer value.
+     *
+     * @param key the property name
+     * @param defaultValue the value used when the property is not set
+     * @return the value
+     */
+    int getInt(String key, int defaultValue) {
+        return Integer.parseInt(getString(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Gets a decimal value.
+     *
+     * @param key the property name
+     * @param defaultValue the value used when the property is not set
+     * @return the value
+     */
+    double getDouble(String key, double defaultValue) {
+        return Double.parseDouble(getString(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Gets a boolean value.
+     *
+     * @param key the property name
+     * @param defaultValue the value used when the property is not set
+     * @return the value
+     */
+    boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+    }
+
+}
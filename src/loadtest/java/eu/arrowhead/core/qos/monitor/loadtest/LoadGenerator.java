@@ -0,0 +1,432 @@
+package eu.arrowhead.core.qos.monitor.loadtest;
+
+import com.google.gson.GsonBuilder;
+import eu.arrowhead.common.model.ArrowheadSystem;
+import eu.arrowhead.common.model.messages.AddMonitorLog;
+import eu.arrowhead.common.model.messages.AddMonitorRule;
+import eu.arrowhead.common.model.messages.EventMessage;
+import eu.arrowhead.common.model.messages.RemoveMonitorRule;
+import eu.arrowhead.core.qos.monitor.metrics.LatencyHistogram;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.JerseyInvocation;
+
+/**
+ * Closed-loop load generator for the QoSMonitor.
+ *
+ * Simulates a number of FTT-SE streams, each one a provider and consumer pair
+ * with its own rule. Every pair sends samples to /Monitor/QoSLog at a fixed
+ * rate, a configurable fraction of them breaking the SLA of the rule, and now
+ * and then an event to /Monitor/QoSEvent. The pairs are shared by a fixed
+ * number of client threads that wait for each response before sending the
+ * next request, so a slow server lowers the achieved throughput instead of
+ * piling up requests; samples that could not be sent on time are reported as
+ * missed.
+ *
+ * The target is either a running QoSMonitor or the WAR started in an embedded
+ * Jetty. The report holds the achieved throughput and the response time
+ * percentiles of each endpoint. The configuration is read from the
+ * 'loadtest.properties' file.
+ *
+ * @author Renato Ayres
+ */
+public final class LoadGenerator {
+
+    private static final String PROTOCOL = "FTTSE";
+    private static final double BANDWIDTH_LIMIT = 100;
+    private static final double DELAY_LIMIT = 5;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+    // rules are removed with a DELETE request carrying a body, which the client
+    // warns about on every request
+    private static final Logger CLIENT_LOG = Logger.getLogger(JerseyInvocation.class.getName());
+
+    private final LoadConfig config;
+    private final int pairCount;
+    private final double rate;
+    private final double violationRatio;
+    private final double softRatio;
+    private final int softWindow;
+    private final double eventRatio;
+    private final int concurrency;
+    private final long warmup;
+    private final long duration;
+    private final EndpointStatistics rules = new EndpointStatistics("QoSRule");
+    private final EndpointStatistics logs = new EndpointStatistics("QoSLog");
+    private final EndpointStatistics events = new EndpointStatistics("QoSEvent");
+    private final LongAdder missed = new LongAdder();
+    private final LongAdder violations = new LongAdder();
+    private final List<Pair> pairs = new ArrayList<>();
+    private WebTarget monitor;
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args not used
+     * @throws Exception if the embedded server fails, or the report cannot be
+     * written
+     */
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(new LoadConfig()).run();
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param config the configuration
+     */
+    LoadGenerator(LoadConfig config) {
+        this.config = config;
+        pairCount = config.getInt("loadtest.pairs", 2000);
+        rate = config.getDouble("loadtest.rate", 1.0);
+        violationRatio = config.getDouble("loadtest.violation.ratio", 0.05);
+        softRatio = config.getDouble("loadtest.soft.ratio", 0.25);
+        softWindow = config.getInt("loadtest.soft.window", 10);
+        eventRatio = config.getDouble("loadtest.event.ratio", 0.001);
+        concurrency = config.getInt("loadtest.concurrency", 64);
+        warmup = TimeUnit.SECONDS.toNanos(config.getInt("loadtest.warmup", 10));
+        duration = TimeUnit.SECONDS.toNanos(config.getInt("loadtest.duration", 60));
+    }
+
+    /**
+     * Starts the embedded server if needed, registers the rules, runs the load
+     * and prints the report.
+     *
+     * @throws Exception if the embedded server fails, or the report cannot be
+     * written
+     */
+    void run() throws Exception {
+        // keep one connection per client thread alive
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+        String target = config.getString("loadtest.target", "");
+        EmbeddedServer server = null;
+        if (target.isEmpty()) {
+            int port = config.getInt("loadtest.port", 8090);
+            server = new EmbeddedServer(config.getString("loadtest.war", "target/qosmonitor.war"), port);
+            server.start();
+            target = "http://localhost:" + port + "/";
+        }
+
+        Client client = ClientBuilder.newClient();
+        client.property(ClientProperties.CONNECT_TIMEOUT, 5000);
+        client.property(ClientProperties.READ_TIMEOUT, 30000);
+        client.property(ClientProperties.SUPPRESS_HTTP_COMPLIANCE_VALIDATION, true);
+        CLIENT_LOG.setLevel(Level.SEVERE);
+        monitor = client.target(target).path("Monitor");
+
+        try {
+            for (int i = 0; i < pairCount; i++) {
+                pairs.add(new Pair(i, i < Math.round(pairCount * softRatio)));
+            }
+
+            System.out.println("Registering " + pairCount + " rules on " + target);
+            forEachPair(this::addRule);
+
+            System.out.println("Sending " + rate * pairCount + " logs/s for "
+                    + TimeUnit.NANOSECONDS.toSeconds(warmup + duration) + " s with " + concurrency + " clients");
+            runLoad();
+
+            if (config.getBoolean("loadtest.cleanup", true)) {
+                forEachPair(this::removeRule);
+            }
+
+            report();
+        } finally {
+            client.close();
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs an action for every pair, spread over the client threads.
+     *
+     * @param action the action
+     * @throws InterruptedException if interrupted while waiting for the
+     * threads
+     */
+    private void forEachPair(PairAction action) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < pairs.size()) {
+                    action.run(pairs.get(index));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Sends the samples of the pairs until the run ends. Each client thread
+     * serves its own share of the pairs, in the order their samples are due.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     * threads
+     */
+    private void runLoad() throws InterruptedException {
+        long period = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup;
+        long end = measureFrom + duration;
+
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            PriorityQueue<Pair> due = new PriorityQueue<>((a, b) -> Long.compare(a.nextDue, b.nextDue));
+            for (int p = i; p < pairs.size(); p += concurrency) {
+                Pair pair = pairs.get(p);
+                pair.nextDue = start + ThreadLocalRandom.current().nextLong(period);
+                due.add(pair);
+            }
+            Thread thread = new Thread(() -> {
+                Pair pair;
+                while ((pair = due.poll()) != null && pair.nextDue < end) {
+                    long wait = pair.nextDue - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    boolean measured = System.nanoTime() >= measureFrom;
+                    addLog(pair, measured);
+                    if (ThreadLocalRandom.current().nextDouble() < eventRatio) {
+                        sendEvent(pair, measured);
+                    }
+
+                    pair.nextDue += period;
+                    long behind = System.nanoTime() - pair.nextDue;
+                    if (behind > period) {
+                        // closed loop: skip the samples that are already late
+                        long skipped = behind / period;
+                        if (measured) {
+                            missed.add(skipped);
+                        }
+                        pair.nextDue += skipped * period;
+                    }
+                    due.add(pair);
+                }
+            }, "LoadGenerator-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Registers the rule of a pair.
+     *
+     * @param pair the pair
+     */
+    private void addRule(Pair pair) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("stream_id", String.valueOf(pair.id));
+        parameters.put("bandwidth", String.valueOf(BANDWIDTH_LIMIT));
+        parameters.put("delay", String.valueOf(DELAY_LIMIT));
+        if (pair.softRealTime) {
+            parameters.put("NLogs", String.valueOf(softWindow));
+        }
+        AddMonitorRule message = new AddMonitorRule();
+        message.setProtocol(PROTOCOL);
+        message.setProvider(pair.provider);
+        message.setConsumer(pair.consumer);
+        message.setParameters(parameters);
+        message.setSoftRealTime(pair.softRealTime);
+        send(rules, "QoSRule", HttpMethod.POST, Entity.json(message), true);
+    }
+
+    /**
+     * Removes the rule of a pair.
+     *
+     * @param pair the pair
+     */
+    private void removeRule(Pair pair) {
+        send(rules, "QoSRule", HttpMethod.DELETE, Entity.json(new RemoveMonitorRule(pair.provider, pair.consumer)),
+                true);
+    }
+
+    /**
+     * Sends a sample of a pair, breaking the SLA with the configured
+     * probability.
+     *
+     * @param pair the pair
+     * @param measured true if the request is part of the measured run
+     */
+    private void addLog(Pair pair, boolean measured) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean violation = random.nextDouble() < violationRatio;
+        double bandwidth = violation
+                ? BANDWIDTH_LIMIT * (1.05 + random.nextDouble() * 0.5)
+                : BANDWIDTH_LIMIT * (0.5 + random.nextDouble() * 0.45);
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("bandwidth", String.valueOf(bandwidth));
+        parameters.put("delay", String.valueOf(random.nextDouble() * DELAY_LIMIT * 0.9));
+        AddMonitorLog message = new AddMonitorLog(PROTOCOL, pair.provider, pair.consumer, parameters,
+                System.currentTimeMillis());
+        if (violation && measured) {
+            violations.increment();
+        }
+        send(logs, "QoSLog", HttpMethod.POST, Entity.json(message), measured);
+    }
+
+    /**
+     * Sends an FTT-SE event for the stream of a pair.
+     *
+     * @param pair the pair
+     * @param measured true if the request is part of the measured run
+     */
+    private void sendEvent(Pair pair, boolean measured) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("stream_id", String.valueOf(pair.id));
+        EventMessage message = new EventMessage(PROTOCOL, pair.provider, parameters, "Load test event");
+        send(events, "QoSEvent", HttpMethod.POST, Entity.json(message), measured);
+    }
+
+    /**
+     * Sends a request and waits for its response.
+     *
+     * @param statistics the statistics of the endpoint
+     * @param path the endpoint path
+     * @param method the HTTP method
+     * @param entity the request body
+     * @param measured true if the response time should be recorded
+     */
+    private void send(EndpointStatistics statistics, String path, String method, Entity<?> entity,
+            boolean measured) {
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            Response response = monitor.path(path).request(MediaType.APPLICATION_JSON).method(method, entity);
+            success = response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
+            response.close();
+        } catch (ProcessingException ex) {
+            success = false;
+        }
+        if (measured) {
+            statistics.record(System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * Prints the report, and writes it as JSON if a report file is configured.
+     *
+     * @throws IOException if the report file cannot be written
+     */
+    private void report() throws IOException {
+        double seconds = duration / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("pairs", pairCount);
+        report.put("concurrency", concurrency);
+        report.put("durationSeconds", seconds);
+        report.put("targetLogsPerSecond", pairCount * rate);
+        double achieved = (logs.getLatency().getCount() - logs.getErrors()) / seconds;
+        report.put("achievedLogsPerSecond", achieved);
+        report.put("missedSamples", missed.sum());
+        report.put("violatingSamples", violations.sum());
+
+        System.out.println();
+        System.out.printf("Target %.1f logs/s, achieved %.1f logs/s, %d samples missed%n",
+                pairCount * rate, achieved, missed.sum());
+        System.out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        for (EndpointStatistics statistics : Arrays.asList(rules, logs, events)) {
+            LatencyHistogram latency = statistics.getLatency();
+            long count = latency.getCount();
+            double throughput = statistics == rules ? Double.NaN : count / seconds;
+
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("endpoint", statistics.getName());
+            endpoint.put("requests", count);
+            endpoint.put("errors", statistics.getErrors());
+            if (statistics != rules) {
+                endpoint.put("requestsPerSecond", throughput);
+            }
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            StringBuilder line = new StringBuilder(String.format("%-10s %10d %8d %10s",
+                    statistics.getName(), count, statistics.getErrors(),
+                    Double.isNaN(throughput) ? "-" : String.format("%.1f", throughput)));
+            for (double percentile : PERCENTILES) {
+                double millis = latency.getPercentile(percentile) / 1e6;
+                percentiles.put(percentile == 100 ? "max"
+                        : "p" + (percentile == Math.rint(percentile) ? String.valueOf((long) percentile)
+                        : String.valueOf(percentile)), millis);
+                line.append(String.format(" %9.2f", millis));
+            }
+            endpoint.put("latencyMillis", percentiles);
+            endpoints.add(endpoint);
+            System.out.println(line);
+        }
+        report.put("endpoints", endpoints);
+
+        String file = config.getString("loadtest.report", "");
+        if (!file.isEmpty()) {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create()
+                        .toJson(report, writer);
+            }
+            System.out.println("Report written to " + file);
+        }
+    }
+
+    /**
+     * An action on a pair.
+     */
+    private interface PairAction {
+
+        void run(Pair pair);
+    }
+
+    /**
+     * A simulated FTT-SE stream between a provider and a consumer.
+     */
+    private static final class Pair {
+
+        private final int id;
+        private final boolean softRealTime;
+        private final ArrowheadSystem provider;
+        private final ArrowheadSystem consumer;
+        private long nextDue;
+
+        private Pair(int id, boolean softRealTime) {
+            this.id = id;
+            this.softRealTime = softRealTime;
+            this.provider = new ArrowheadSystem("loadtest", "provider" + id, "localhost", "0", "");
+            this.consumer = new ArrowheadSystem("loadtest", "consumer" + id, "localhost", "0", "");
+        }
+    }
+
+}
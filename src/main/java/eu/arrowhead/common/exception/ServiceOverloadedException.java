@@ -0,0 +1,20 @@
+package eu.arrowhead.common.exception;
+
+/**
+ * Thrown when the QoSMonitor cannot accept more work until its internal queues
+ * are drained.
+ *
+ * @author Renato Ayres
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 3198204723158790411L;
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,20 @@
+package eu.arrowhead.common.exception;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+@Provider
+public class ServiceOverloadedExceptionMapper implements ExceptionMapper<ServiceOverloadedException> {
+
+    @Override
+    public Response toResponse(ServiceOverloadedException ex) {
+        ErrorMessage errorMessage = new ErrorMessage(ex.getMessage(), 503, "No documentation yet.");
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(errorMessage).build();
+    }
+
+}
@@ -0,0 +1,19 @@
+package eu.arrowhead.common.exception;
+
+/**
+ * Thrown when an operation is not supported by the configured storage backend.
+ *
+ * @author Renato Ayres
+ */
+public class StorageNotSupportedException extends RuntimeException {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = -4806132297710853562L;
+
+    public StorageNotSupportedException(String message) {
+        super(message);
+    }
+
+}
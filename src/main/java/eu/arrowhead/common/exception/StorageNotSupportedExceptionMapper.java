@@ -0,0 +1,20 @@
+package eu.arrowhead.common.exception;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+@Provider
+public class StorageNotSupportedExceptionMapper implements ExceptionMapper<StorageNotSupportedException> {
+
+    @Override
+    public Response toResponse(StorageNotSupportedException ex) {
+        ErrorMessage errorMessage = new ErrorMessage(ex.getMessage(), 501, "No documentation yet.");
+        return Response.status(Response.Status.NOT_IMPLEMENTED).entity(errorMessage).build();
+    }
+
+}
@@ -0,0 +1,20 @@
+package eu.arrowhead.common.exception;
+
+/**
+ * Thrown when the QoSMonitor rejects a request because the client is sending
+ * work faster than it can be processed.
+ *
+ * @author Renato Ayres
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = -4172051866325519207L;
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,20 @@
+package eu.arrowhead.common.exception;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+@Provider
+public class TooManyRequestsExceptionMapper implements ExceptionMapper<TooManyRequestsException> {
+
+    @Override
+    public Response toResponse(TooManyRequestsException ex) {
+        ErrorMessage errorMessage = new ErrorMessage(ex.getMessage(), 429, "No documentation yet.");
+        return Response.status(429).entity(errorMessage).build();
+    }
+
+}
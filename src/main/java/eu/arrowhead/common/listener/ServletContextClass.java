@@ -1,8 +1,16 @@
 package eu.arrowhead.common.listener;
 
-import eu.arrowhead.core.qos.monitor.database.MongoDatabaseManager;
+import eu.arrowhead.core.qos.monitor.database.LogJournal;
+import eu.arrowhead.core.qos.monitor.database.LogWriteQueue;
+import eu.arrowhead.core.qos.monitor.database.MongoAsyncStore;
+import eu.arrowhead.core.qos.monitor.database.MonitorStoreFactory;
+import eu.arrowhead.core.qos.monitor.database.RollupEngine;
+import eu.arrowhead.core.qos.monitor.event.EventProducer;
 import eu.arrowhead.core.qos.monitor.event.EventProducerConfig;
+import eu.arrowhead.core.qos.monitor.event.LogWindowRegistry;
 import eu.arrowhead.core.qos.monitor.event.ProducerRegistry;
+import eu.arrowhead.core.qos.monitor.event.VerificationEngine;
+import eu.arrowhead.core.qos.monitor.protocol.ProtocolRegistry;
 import eu.arrowhead.core.qos.monitor.registry.Register;
 import java.io.IOException;
 import java.util.Calendar;
@@ -46,7 +54,25 @@ public class ServletContextClass implements ServletContextListener {
 //        }
 //        new ProducerRegistry().registerAsProducer();
 
-        MongoDatabaseManager.getInstance().startManager();
+        //Discover monitor protocols
+        ProtocolRegistry.getInstance();
+
+        MonitorStoreFactory.getInstance().startManager();
+
+        LogWindowRegistry.getInstance().rebuild();
+
+        VerificationEngine.getInstance().start();
+
+        //Replay and open the log journal
+        LogJournal.getInstance().start();
+
+        LogWriteQueue.getInstance().start();
+
+        MongoAsyncStore.getInstance().start();
+
+        EventProducer.getInstance().start();
+
+        RollupEngine.getInstance().start();
 
         LOG.info("Setup completed.");
 
@@ -56,8 +82,21 @@ public class ServletContextClass implements ServletContextListener {
     public void contextDestroyed(ServletContextEvent arg0) {
         System.out.println("[QoSMonitor] Destroying servlet.");
 
-        //Stop MongoDB
-        MongoDatabaseManager.getInstance().stopManager();
+        RollupEngine.getInstance().stop();
+
+        //Finish pending database calls and flush pending logs
+        MongoAsyncStore.getInstance().stop();
+        LogWriteQueue.getInstance().stop();
+        LogJournal.getInstance().stop();
+
+        //Finish pending SLA verifications
+        VerificationEngine.getInstance().stop();
+
+        //Publish pending events
+        EventProducer.getInstance().stop();
+
+        //Close the storage
+        MonitorStoreFactory.getInstance().stopManager();
 
         //Unregister from service registry
         register.unregisterAll();
@@ -0,0 +1,131 @@
+package eu.arrowhead.common.model.messages;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Message used to report the outcome of a single entry of a batch of monitor
+ * logs.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class AddMonitorLogResult {
+
+    private int index;
+    private boolean accepted;
+    private boolean verified;
+    private String errorMessage;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public AddMonitorLogResult() {
+    }
+
+    /**
+     * Creates a new instance with the given batch index, outcome and error
+     * message.
+     *
+     * @param index the position of the log in the received batch
+     * @param accepted true if the log was stored, false if not
+     * @param errorMessage the reason why the log was rejected. Null if the log
+     * was accepted
+     */
+    public AddMonitorLogResult(int index, boolean accepted, String errorMessage) {
+        this(index, accepted, accepted, errorMessage);
+    }
+
+    /**
+     * Creates a new instance with the given batch index, outcome,
+     * verification status and error message. An accepted log that was not
+     * verified keeps in the error message the reason why its verification
+     * was refused.
+     *
+     * @param index the position of the log in the received batch
+     * @param accepted true if the log was stored, false if not
+     * @param verified true if the log was submitted for SLA verification,
+     * false if not
+     * @param errorMessage the reason why the log was rejected or not verified.
+     * Null if the log was accepted and verified
+     */
+    public AddMonitorLogResult(int index, boolean accepted, boolean verified, String errorMessage) {
+        this.index = index;
+        this.accepted = accepted;
+        this.verified = verified;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Gets the position of the log in the received batch
+     *
+     * @return the position of the log in the received batch
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the position of the log in the received batch
+     *
+     * @param index the position of the log in the received batch
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Gets the outcome of the log
+     *
+     * @return true if the log was stored, false if not
+     */
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Sets the outcome of the log
+     *
+     * @param accepted true if the log was stored, false if not
+     */
+    public void setAccepted(boolean accepted) {
+        this.accepted = accepted;
+    }
+
+    /**
+     * Gets the verification status of the log. Journaled logs are submitted
+     * for verification once they are stored.
+     *
+     * @return true if the log was submitted for SLA verification, false if not
+     */
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * Sets the verification status of the log
+     *
+     * @param verified true if the log was submitted for SLA verification,
+     * false if not
+     */
+    public void setVerified(boolean verified) {
+        this.verified = verified;
+    }
+
+    /**
+     * Gets the reason why the log was rejected
+     *
+     * @return the reason why the log was rejected
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Sets the reason why the log was rejected
+     *
+     * @param errorMessage the reason why the log was rejected
+     */
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -17,6 +17,7 @@ public class AddMonitorRule {
     private ArrowheadSystem consumer;
     private Map<String, String> parameters;
     private boolean softRealTime;
+    private String durability;
 
     /**
      * Creates a new instance with no parameters initialized.
@@ -132,4 +133,25 @@ public class AddMonitorRule {
     public void setSoftRealTime(boolean softRealTime) {
         this.softRealTime = softRealTime;
     }
+
+    /**
+     * Gets the durability class of the monitor logs: critical, standard or
+     * besteffort.
+     *
+     * @return the durability class, or null to use the protocol default
+     */
+    public String getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets the durability class of the monitor logs: critical, standard or
+     * besteffort.
+     *
+     * @param durability the durability class, or null to use the protocol
+     * default
+     */
+    public void setDurability(String durability) {
+        this.durability = durability;
+    }
 }
@@ -0,0 +1,50 @@
+package eu.arrowhead.common.model.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Message used to list the available monitor protocols.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class ProtocolList {
+
+    private List<String> protocols;
+
+    /**
+     * Creates a new instance with an empty list of protocols.
+     */
+    public ProtocolList() {
+        this.protocols = new ArrayList<>();
+    }
+
+    /**
+     * Creates a new instance with the given protocol names.
+     *
+     * @param protocols the monitor protocol names
+     */
+    public ProtocolList(List<String> protocols) {
+        this.protocols = protocols;
+    }
+
+    /**
+     * Gets the monitor protocol names
+     *
+     * @return the monitor protocol names
+     */
+    public List<String> getProtocols() {
+        return protocols;
+    }
+
+    /**
+     * Sets the monitor protocol names
+     *
+     * @param protocols the monitor protocol names
+     */
+    public void setProtocols(List<String> protocols) {
+        this.protocols = protocols;
+    }
+}
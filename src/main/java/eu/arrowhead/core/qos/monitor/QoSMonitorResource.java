@@ -1,17 +1,35 @@
 package eu.arrowhead.core.qos.monitor;
 
 import eu.arrowhead.common.model.messages.AddMonitorLog;
+import eu.arrowhead.common.model.messages.AddMonitorLogResult;
 import eu.arrowhead.common.model.messages.AddMonitorRule;
 import eu.arrowhead.common.model.messages.EventMessage;
+import eu.arrowhead.common.model.messages.ProtocolList;
 import eu.arrowhead.common.model.messages.RemoveMonitorRule;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import eu.arrowhead.core.qos.monitor.database.DurabilityReport;
+import eu.arrowhead.core.qos.monitor.database.IndexReport;
+import eu.arrowhead.core.qos.monitor.database.LogAggregateList;
+import eu.arrowhead.core.qos.monitor.database.LogJournalStatistics;
+import eu.arrowhead.core.qos.monitor.database.LogWriteStatistics;
+import eu.arrowhead.core.qos.monitor.database.MigrationReport;
+import eu.arrowhead.core.qos.monitor.database.QoSStatistics;
+import eu.arrowhead.core.qos.monitor.database.RuleCacheStatistics;
+import eu.arrowhead.core.qos.monitor.event.EventPublishStatistics;
+import eu.arrowhead.core.qos.monitor.event.VerificationStatistics;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -26,7 +44,6 @@ import javax.ws.rs.core.Response;
 public class QoSMonitorResource {
 
     private final QoSMonitorService monitor = new QoSMonitorService();
-    private static final Logger LOG = Logger.getLogger(QoSMonitorResource.class.getName());
 
     /**
      * Method handling HTTP GET requests in /online path. The returned object
@@ -74,16 +91,7 @@ public class QoSMonitorResource {
     @POST
     @Path("/QoSRule")
     public Response addRule(AddMonitorRule message) {
-
-        try {
-            monitor.addRule(message);
-        } catch (InstantiationException | IllegalAccessException ex) {
-            LOG.log(Level.SEVERE, ex.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(ex.getMessage())
-                    .build();
-        }
-
+        monitor.addRule(message);
         return Response.ok("OK").build();
     }
 
@@ -105,43 +113,367 @@ public class QoSMonitorResource {
         return Response.ok("OK").build();
     }
 
+    /**
+     * Method handling HTTP GET request in /qosrule/cache path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to inspect the rule cache: number of cached rules, hits and misses.
+     *
+     * @return the rule cache metrics
+     */
+    @GET
+    @Path("/QoSRule/cache")
+    public RuleCacheStatistics getRuleCacheStatistics() {
+        return monitor.getRuleCacheStatistics();
+    }
+
     /**
      * Method handling HTTP POST request in /qoslog path. The return object will
      * be sent to the client as "application/json" media type.
      *
+     * The request is suspended while the log is stored, so that the request
+     * thread is released instead of waiting for MongoDB. The response is
+     * resumed once the log is acknowledged, or with the failure, which is then
+     * handled by the exception mappers.
+     *
      * @param message message with all the information regarding the monitor log
      * being removed
-     * @return Response status and information of the process of adding a
-     * monitor log
+     * @param response the suspended response, resumed with the status and
+     * information of the process of adding a monitor log
      */
     @POST
     @Path("/QoSLog")
-    public Response addLog(AddMonitorLog message) {
-        try {
-            monitor.addLog(message);
-        } catch (InstantiationException | IllegalAccessException ex) {
-            // FIXME
-            LOG.log(Level.WARNING, ex.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(ex.getMessage())
-                    .build();
-        }
-        // FIXME
-        return Response.ok("OK").build();
+    public void addLog(AddMonitorLog message, @Suspended AsyncResponse response) {
+        monitor.addLogAsync(message).whenComplete((result, ex) -> {
+            if (ex != null) {
+                response.resume(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                response.resume(Response.ok("OK").build());
+            }
+        });
+    }
+
+    /**
+     * Method handling HTTP POST request in /qoslog/batch path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to add several monitor logs in a single request. Logs of the same
+     * provider and consumer pair are stored together, and the outcome of each
+     * log is reported individually.
+     *
+     * @param messages messages with all the information regarding the monitor
+     * logs being added
+     * @return Response status and the outcome of each monitor log, in the same
+     * order as they were received
+     */
+    @POST
+    @Path("/QoSLog/batch")
+    public Response addLogs(List<AddMonitorLog> messages) {
+        List<AddMonitorLogResult> results = monitor.addLogs(messages);
+        return Response.ok(new GenericEntity<List<AddMonitorLogResult>>(results) {
+        }).build();
+    }
+
+    /**
+     * Method handling HTTP GET request in /qoslog/queue path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to inspect the asynchronous log write queue: queue depth, flush
+     * size and flush latency.
+     *
+     * @return the log write queue metrics
+     */
+    @GET
+    @Path("/QoSLog/queue")
+    public LogWriteStatistics getLogWriteStatistics() {
+        return monitor.getLogWriteStatistics();
+    }
+
+    /**
+     * Method handling HTTP GET request in /qoslog/journal path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to inspect the log journal: group commit size and latency, and
+     * number of logs shipped to MongoDB.
+     *
+     * @return the log journal metrics
+     */
+    @GET
+    @Path("/QoSLog/journal")
+    public LogJournalStatistics getLogJournalStatistics() {
+        return monitor.getLogJournalStatistics();
+    }
+
+    /**
+     * Method handling HTTP GET request in /qoslog/verification path. The
+     * return object will be sent to the client as "application/json" media
+     * type.
+     *
+     * Used to inspect the SLA verification engine: depth of each lane and
+     * number of dropped and rejected verifications.
+     *
+     * @return the verification engine metrics
+     */
+    @GET
+    @Path("/QoSLog/verification")
+    public VerificationStatistics getVerificationStatistics() {
+        return monitor.getVerificationStatistics();
+    }
+
+    /**
+     * Method handling HTTP GET request in /QoSLog path. The logs will be
+     * streamed to the client as "application/x-ndjson" media type, one JSON
+     * object per line.
+     *
+     * Used to read or export the stored logs of a pair, oldest first, without
+     * querying MongoDB directly. When the limit cuts a page short, the last
+     * line holds the cursor of the next page, e.g. {"cursor":"..."}.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive. Defaults to now
+     * @param fields comma separated names of the parameters to include.
+     * Defaults to all
+     * @param limit maximum number of logs of the page, 0 for no limit
+     * @param cursor the cursor of the page, returned by the previous page
+     * @return the streamed logs
+     */
+    @GET
+    @Path("/QoSLog")
+    @Produces("application/x-ndjson")
+    public Response getLogs(
+            @QueryParam("providerSystemGroup") String providerSystemGroup,
+            @QueryParam("providerSystemName") String providerSystemName,
+            @QueryParam("consumerSystemGroup") String consumerSystemGroup,
+            @QueryParam("consumerSystemName") String consumerSystemName,
+            @QueryParam("from") @DefaultValue("0") long from,
+            @QueryParam("to") Long to,
+            @QueryParam("fields") String fields,
+            @QueryParam("limit") @DefaultValue("1000") int limit,
+            @QueryParam("cursor") String cursor) {
+        return Response.ok(monitor.streamLogs(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName, from, to, fields, limit, cursor)).build();
+    }
+
+    /**
+     * Method handling HTTP DELETE request in /QoSLog path.
+     *
+     * Used to delete all the stored logs of a pair, of every rule version.
+     * The logs are deleted in the background.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return Response status 202, the purge was accepted
+     */
+    @DELETE
+    @Path("/QoSLog")
+    public Response purgeLogs(
+            @QueryParam("providerSystemGroup") String providerSystemGroup,
+            @QueryParam("providerSystemName") String providerSystemName,
+            @QueryParam("consumerSystemGroup") String consumerSystemGroup,
+            @QueryParam("consumerSystemName") String consumerSystemName) {
+        monitor.purgeLogs(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+        return Response.status(Response.Status.ACCEPTED).build();
+    }
+
+    /**
+     * Method handling HTTP GET request in /QoSStats path. The return object
+     * will be sent to the client as "application/json" media type.
+     *
+     * Used for capacity planning: minimum, maximum, mean, standard deviation
+     * and percentiles of the metrics of a pair over a time range, computed by
+     * MongoDB. Results are cached for a few seconds.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive. Defaults to now
+     * @param metrics comma separated metric names. Defaults to every metric
+     * of the protocol
+     * @param percentiles comma separated percentiles, between 0 and 100
+     * @return the statistics of each metric
+     */
+    @GET
+    @Path("/QoSStats")
+    public QoSStatistics getStatistics(
+            @QueryParam("providerSystemGroup") String providerSystemGroup,
+            @QueryParam("providerSystemName") String providerSystemName,
+            @QueryParam("consumerSystemGroup") String consumerSystemGroup,
+            @QueryParam("consumerSystemName") String consumerSystemName,
+            @QueryParam("from") @DefaultValue("0") long from,
+            @QueryParam("to") Long to,
+            @QueryParam("metrics") String metrics,
+            @QueryParam("percentiles") @DefaultValue("50,95,99") String percentiles) {
+        return monitor.getStatistics(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName, from, to, metrics, percentiles);
+    }
+
+    /**
+     * Method handling HTTP GET request in /metrics path. The return object will
+     * be sent to the client in the Prometheus text format.
+     *
+     * Used to scrape the latency histograms and failures of each stage of the
+     * monitor log lifecycle (unmarshal, rule lookup, persist, verify and
+     * publish), and the stored logs and SLA violations of each protocol.
+     *
+     * @return the metrics in the Prometheus text format
+     */
+    @GET
+    @Path("/metrics")
+    @Produces(QoSMetrics.CONTENT_TYPE)
+    public String getMetrics() {
+        return monitor.getMetrics();
+    }
+
+    /**
+     * Method handling HTTP GET request in /QoSLog/aggregates path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to read the count, minimum, maximum, mean and 95th percentile of
+     * each metric of a pair, in windows of the given resolution. The windows
+     * are served from the coarsest rollup tier that fits the resolution.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive. Defaults to now
+     * @param resolution the window length, in milliseconds
+     * @return the aggregates, oldest window first
+     */
+    @GET
+    @Path("/QoSLog/aggregates")
+    public LogAggregateList getAggregates(
+            @QueryParam("providerSystemGroup") String providerSystemGroup,
+            @QueryParam("providerSystemName") String providerSystemName,
+            @QueryParam("consumerSystemGroup") String consumerSystemGroup,
+            @QueryParam("consumerSystemName") String consumerSystemName,
+            @QueryParam("from") @DefaultValue("0") long from,
+            @QueryParam("to") Long to,
+            @QueryParam("resolution") @DefaultValue("60000") long resolution) {
+        return monitor.getAggregates(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName, from, to, resolution);
+    }
+
+    /**
+     * Method handling HTTP GET request in /QoSLog/durability path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to compare the log write latency of each durability class with its
+     * write concern.
+     *
+     * @return the durability class metrics
+     */
+    @GET
+    @Path("/QoSLog/durability")
+    public DurabilityReport getDurabilityReport() {
+        return monitor.getDurabilityReport();
+    }
+
+    /**
+     * Method handling HTTP GET request in /indexes path. The return object
+     * will be sent to the client as "application/json" media type.
+     *
+     * Used to list the expected indexes missing from the Rule collection and
+     * from the Log collections.
+     *
+     * @return the missing indexes
+     */
+    @GET
+    @Path("/indexes")
+    public IndexReport getIndexReport() {
+        return monitor.getIndexReport();
+    }
+
+    /**
+     * Method handling HTTP POST request in /migrate/parameters path. The
+     * return object will be sent to the client as "application/json" media
+     * type.
+     *
+     * Used to convert, in place, the monitor documents stored before metrics
+     * were written as numbers.
+     *
+     * @param batchSize the number of documents per bulk write
+     * @return the number of converted collections and documents
+     */
+    @POST
+    @Path("/migrate/parameters")
+    public MigrationReport migrateParameterTypes(@QueryParam("batchSize") @DefaultValue("1000") int batchSize) {
+        return monitor.migrateParameterTypes(batchSize);
+    }
+
+    /**
+     * Method handling HTTP POST request in /migrate/logs path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to start moving, in the background, the logs of the per-pair
+     * collections into the single log collection.
+     *
+     * @param batchSize the number of documents per insert
+     * @return the progress of the migration
+     */
+    @POST
+    @Path("/migrate/logs")
+    public MigrationReport migrateLogCollections(@QueryParam("batchSize") @DefaultValue("1000") int batchSize) {
+        return monitor.migrateLogCollections(batchSize);
+    }
+
+    /**
+     * Method handling HTTP GET request in /migrate/logs path. The return
+     * object will be sent to the client as "application/json" media type.
+     *
+     * Used to follow the migration into the single log collection.
+     *
+     * @return the progress of the migration
+     */
+    @GET
+    @Path("/migrate/logs")
+    public MigrationReport getLogMigrationReport() {
+        return monitor.getLogMigrationReport();
+    }
+
+    /**
+     * Method handling HTTP GET request in /protocols path. The return object
+     * will be sent to the client as "application/json" media type.
+     *
+     * Used to list the monitor protocols available in this QoSMonitor.
+     *
+     * @return the names of the available monitor protocols
+     */
+    @GET
+    @Path("/protocols")
+    public ProtocolList getProtocols() {
+        return new ProtocolList(monitor.getProtocols());
     }
 
     @POST
     @Path("/QoSEvent")
     public Response sendEvent(EventMessage error) {
-        try {
-            monitor.sendEvent(error);
-        } catch (InstantiationException | IllegalAccessException ex) {
-            // FIXME
-            LOG.log(Level.WARNING, ex.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(ex.getMessage())
-                    .build();
-        }
+        monitor.sendEvent(error);
         return Response.ok("OK").build();
     }
+
+    /**
+     * Method handling HTTP GET request in /qosevent/publisher path. The
+     * return object will be sent to the client as "application/json" media
+     * type.
+     *
+     * Used to inspect the EventHandler publisher: queue depth, publish
+     * outcomes and publish latency.
+     *
+     * @return the event publisher metrics
+     */
+    @GET
+    @Path("/QoSEvent/publisher")
+    public EventPublishStatistics getEventPublishStatistics() {
+        return monitor.getEventPublishStatistics();
+    }
 }
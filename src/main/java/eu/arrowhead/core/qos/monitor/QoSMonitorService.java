@@ -1,30 +1,75 @@
 package eu.arrowhead.core.qos.monitor;
 
+import com.google.gson.stream.JsonWriter;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
 import eu.arrowhead.common.exception.InvalidMonitorTypeException;
+import eu.arrowhead.common.exception.InvalidParameterException;
+import eu.arrowhead.common.exception.MissingParameterException;
 import eu.arrowhead.common.exception.MonitorRuleNotFoundException;
 import eu.arrowhead.common.exception.NoMonitorParametersException;
+import eu.arrowhead.common.exception.TooManyRequestsException;
+import eu.arrowhead.common.model.ArrowheadSystem;
 import eu.arrowhead.common.model.messages.AddMonitorLog;
+import eu.arrowhead.common.model.messages.AddMonitorLogResult;
 import eu.arrowhead.common.model.messages.AddMonitorRule;
 import eu.arrowhead.common.model.messages.EventMessage;
 import eu.arrowhead.common.model.messages.RemoveMonitorRule;
+import eu.arrowhead.core.qos.monitor.database.AsyncMonitorStore;
+import eu.arrowhead.core.qos.monitor.database.Durability;
+import eu.arrowhead.core.qos.monitor.database.DurabilityReport;
+import eu.arrowhead.core.qos.monitor.database.IndexReport;
+import eu.arrowhead.core.qos.monitor.database.LogAggregateList;
+import eu.arrowhead.core.qos.monitor.database.LogCursor;
+import eu.arrowhead.core.qos.monitor.database.LogJournal;
+import eu.arrowhead.core.qos.monitor.database.LogJournalStatistics;
+import eu.arrowhead.core.qos.monitor.database.LogWriteQueue;
+import eu.arrowhead.core.qos.monitor.database.LogWriteStatistics;
+import eu.arrowhead.core.qos.monitor.database.MigrationReport;
+import eu.arrowhead.core.qos.monitor.database.MongoAsyncStore;
 import eu.arrowhead.core.qos.monitor.database.MongoDatabaseManager;
 import eu.arrowhead.core.qos.monitor.database.MonitorLog;
 import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.database.MonitorStoreFactory;
+import eu.arrowhead.core.qos.monitor.database.QoSStatistics;
+import eu.arrowhead.core.qos.monitor.database.RollupEngine;
+import eu.arrowhead.core.qos.monitor.database.RuleCache;
+import eu.arrowhead.core.qos.monitor.database.RuleCacheStatistics;
+import eu.arrowhead.core.qos.monitor.event.EventProducer;
+import eu.arrowhead.core.qos.monitor.event.EventPublishStatistics;
+import eu.arrowhead.core.qos.monitor.event.LogWindowRegistry;
 import eu.arrowhead.core.qos.monitor.event.SLAVerification;
+import eu.arrowhead.core.qos.monitor.event.VerificationEngine;
+import eu.arrowhead.core.qos.monitor.event.VerificationStatistics;
 import eu.arrowhead.core.qos.monitor.event.model.Event;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
 import eu.arrowhead.core.qos.monitor.protocol.IProtocol;
+import eu.arrowhead.core.qos.monitor.protocol.ProtocolRegistry;
 import eu.arrowhead.core.qos.monitor.registry.Register;
 import eu.arrowhead.core.qos.monitor.registry.ServiceRegister;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.core.StreamingOutput;
 
 /**
  * This is the QoSMonitor Service class. It takes care of all the aspects of the
@@ -34,8 +79,6 @@ import java.util.logging.Logger;
  */
 public class QoSMonitorService {
 
-    private static final String MONITOR_TYPE_PACKAGE = "eu.arrowhead.core.qos.monitor.protocol.";
-    private static final ExecutorService EXEC = Executors.newCachedThreadPool();
     private static final Logger LOG = Logger.getLogger(QoSMonitorService.class.getName());
     public static boolean SHOW_GRAPHS = true;
 
@@ -80,74 +123,135 @@ public class QoSMonitorService {
      *
      * @param message message with the information needed for the rule to be
      * added
-     * @throws InstantiationException
-     * @throws IllegalAccessException
      */
-    public void addRule(AddMonitorRule message)
-            throws InstantiationException, IllegalAccessException {
+    public void addRule(AddMonitorRule message) {
 
         if (message.getParameters().isEmpty()) {
             throw new NoMonitorParametersException("No monitor parameters found!");
         }
 
-        IProtocol monitor = null;
-        try {
-            monitor = getMonitorClass(message.getProtocol());
-        } catch (ClassNotFoundException ex) {
-            String excMessage = "Type " + message.getProtocol() + " not found. Make "
-                    + "sure you have the right monitor type for your "
-                    + "situation and that it's available in this version "
-                    + "and/or not misspelled.";
-            LOG.log(Level.SEVERE, excMessage);
-            throw new InvalidMonitorTypeException(excMessage);
-        }
+        IProtocol monitor = resolveMonitor(message.getProtocol());
 
         MonitorRule rule = monitor.filterRuleMessage(message);
 
-        MongoDatabaseManager.getInstance().replaceRule(rule);
+        if (message.getDurability() != null) {
+            Durability durability = Durability.fromName(message.getDurability());
+            if (durability == null) {
+                throw new InvalidParameterException("Unknown durability class "
+                        + message.getDurability() + ". Use critical, standard or besteffort.");
+            }
+            rule.setDurability(durability);
+        }
+
+        MonitorStoreFactory.getInstance().replaceRule(rule);
+
+        LogWindowRegistry.getInstance().remove(RuleCache.getKey(rule));
 
     }
 
     /**
-     * Removes a monitor rule from the MongoDB.
+     * Removes a monitor rule from the MongoDB. The logs of the pair are kept
+     * until purged.
      *
      * @param message message with information needed for the rule to be removed
      */
     public void removeRule(RemoveMonitorRule message) {
-        MongoDatabaseManager.getInstance().deleteRule(message.getProvider(), message.getConsumer());
+        MonitorStoreFactory.getInstance().deleteRule(message.getProvider(), message.getConsumer());
+
+        LogWindowRegistry.getInstance().remove(getPairKey(message.getProvider(), message.getConsumer()));
     }
 
     /**
-     * Adds a new monitor log to MongoDB.
+     * Deletes, in the background, all the stored logs of a pair. Removing or
+     * replacing a rule keeps the logs of the pair.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     */
+    public void purgeLogs(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        if (providerSystemGroup == null || providerSystemName == null
+                || consumerSystemGroup == null || consumerSystemName == null) {
+            throw new MissingParameterException("Provider and consumer systems are required!");
+        }
+
+        MonitorStoreFactory.getInstance().purgeLogs(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName);
+
+        LogWindowRegistry.getInstance().remove(RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName));
+    }
+
+    /**
+     * Submits the SLA verification of a stored log. The log is already
+     * acknowledged, or about to be, so a refused verification is only logged;
+     * a log written on the request path was admitted before it was stored.
+     *
+     * @param verification the verification to run
+     */
+    private void verifyStored(SLAVerification verification) {
+        try {
+            VerificationEngine.getInstance().submit(verification);
+        } catch (TooManyRequestsException ex) {
+            LOG.log(Level.WARNING, ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds a new monitor log to MongoDB without blocking the calling thread.
+     * The rule is resolved and the log stored through the
+     * {@link MongoAsyncStore}, and the SLA verification runs after the log is
+     * stored. When the log is written on the request path, i.e. neither the
+     * {@link LogJournal} nor the {@link LogWriteQueue} is enabled, a full
+     * verification lane refuses the request before the log is stored.
      *
      * @param message message with the information needed for the log to be
      * added
-     * @throws InstantiationException
-     * @throws IllegalAccessException
+     * @return a stage completed once the log is acknowledged, or failed with
+     * a NoMonitorParametersException, a MonitorRuleNotFoundException, an
+     * InvalidMonitorTypeException, a TooManyRequestsException or the storage
+     * failure
      */
-    public void addLog(AddMonitorLog message) throws InstantiationException, IllegalAccessException {
+    public CompletionStage<Void> addLogAsync(AddMonitorLog message) {
 
         if (message.getParameters().isEmpty()) {
-            throw new NoMonitorParametersException("No monitor parameters found!");
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new NoMonitorParametersException("No monitor parameters found!"));
+            return failed;
         }
 
-        MonitorRule rule = MongoDatabaseManager.getInstance().findRule(message.getProvider(), message.getConsumer());
+        AsyncMonitorStore store = MongoAsyncStore.getInstance();
+
+        return store.findRule(message.getProvider(), message.getConsumer()).thenCompose((rule) -> {
+            SLAVerification verification = createVerification(message, rule);
+            if (!LogJournal.getInstance().isEnabled() && !LogWriteQueue.getInstance().isEnabled()) {
+                VerificationEngine.getInstance().admit(verification.getPairKey());
+            }
+            return store.insertLog(verification.getLog(), message.getProvider(), message.getConsumer(),
+                    () -> verifyStored(verification));
+        });
+    }
+
+    /**
+     * Checks a monitor log against the rule of its pair and creates the SLA
+     * verification of the filtered log.
+     *
+     * @param message message with the information needed for the log to be
+     * added
+     * @param rule the rule of the provider and consumer pair. May be null
+     * @return the SLA verification of the filtered log
+     * @throws MonitorRuleNotFoundException if there is no rule, or the rule
+     * has a different monitor protocol
+     */
+    private SLAVerification createVerification(AddMonitorLog message, MonitorRule rule) {
 
         if (rule == null) {
             throw new MonitorRuleNotFoundException("No rule created for the given services");
         }
 
-        IProtocol monitor = null;
-        try {
-            monitor = getMonitorClass(message.getProtocol());
-        } catch (ClassNotFoundException ex) {
-            String excMessage = "Type " + message.getProtocol() + " not found. Make "
-                    + "sure you have the right monitor type for your "
-                    + "situation and that it's available in this version "
-                    + "and/or not misspelled.";
-            LOG.log(Level.SEVERE, excMessage);
-            throw new InvalidMonitorTypeException(excMessage);
-        }
+        IProtocol monitor = resolveMonitor(message.getProtocol());
 
         if (!(message.getProtocol().equals(rule.getProtocol()))) {
             String excMessage = "Monitor type different from the existing rule for the given services."
@@ -156,46 +260,552 @@ public class QoSMonitorService {
             throw new MonitorRuleNotFoundException(excMessage);
         }
 
-        MonitorLog log = monitor.filterLogMessage(message);
+        return new SLAVerification(monitor, rule, monitor.filterLogMessage(message));
+    }
 
-        MongoDatabaseManager.getInstance().insertLog(log, message.getProvider(), message.getConsumer());
+    /**
+     * Adds a batch of monitor logs to MongoDB. Logs are grouped by their
+     * provider and consumer pair so that each rule is resolved only once and
+     * each pair collection receives a single bulk write. A failure in one log
+     * does not prevent the remaining logs from being stored.
+     *
+     * @param messages messages with the information needed for the logs to be
+     * added
+     * @return the outcome of each log, in the same order as the given messages
+     */
+    public List<AddMonitorLogResult> addLogs(List<AddMonitorLog> messages) {
 
-        LOG.log(Level.INFO, "Executing SLAVerification [SEPARATE THREAD]");
+        if (messages == null || messages.isEmpty()) {
+            throw new MissingParameterException("No monitor logs found in batch!");
+        }
 
-        SLAVerification verification = new SLAVerification(monitor, rule, log);
-        EXEC.execute(verification);
+        AddMonitorLogResult[] results = new AddMonitorLogResult[messages.size()];
+        Map<String, List<Integer>> pairs = new LinkedHashMap<>();
 
+        for (int i = 0; i < messages.size(); i++) {
+            AddMonitorLog message = messages.get(i);
+            if (message == null || message.getProvider() == null || message.getConsumer() == null) {
+                results[i] = new AddMonitorLogResult(i, false, "Missing provider or consumer in monitor log!");
+                continue;
+            }
+            pairs.computeIfAbsent(getPairKey(message.getProvider(), message.getConsumer()),
+                    (key) -> new ArrayList<>()).add(i);
+        }
+
+        for (List<Integer> indexes : pairs.values()) {
+            addPairLogs(messages, indexes, results);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Filters, stores and verifies the logs of a single provider and consumer
+     * pair, registering the outcome of each one in the given results.
+     *
+     * @param messages all the messages of the batch
+     * @param indexes positions of the messages belonging to the pair
+     * @param results outcome of each message of the batch
+     */
+    private void addPairLogs(List<AddMonitorLog> messages, List<Integer> indexes, AddMonitorLogResult[] results) {
+
+        AddMonitorLog first = messages.get(indexes.get(0));
+
+        MonitorRule rule = MonitorStoreFactory.getInstance().findRule(first.getProvider(), first.getConsumer());
+
+        if (rule == null) {
+            rejectAll(indexes, results, "No rule created for the given services");
+            return;
+        }
+
+        IProtocol monitor;
+        try {
+            monitor = resolveMonitor(rule.getProtocol());
+        } catch (InvalidMonitorTypeException ex) {
+            rejectAll(indexes, results, ex.getMessage());
+            return;
+        }
+
+        List<MonitorLog> logs = new ArrayList<>();
+        List<Integer> logIndexes = new ArrayList<>();
+
+        for (Integer index : indexes) {
+            AddMonitorLog message = messages.get(index);
+            try {
+                if (message.getParameters() == null || message.getParameters().isEmpty()) {
+                    throw new NoMonitorParametersException("No monitor parameters found!");
+                }
+                if (!rule.getProtocol().equals(message.getProtocol())) {
+                    throw new MonitorRuleNotFoundException("Monitor type different from the existing rule for the given services."
+                            + "\nYour type: " + message.getProtocol() + "Existing rule type: " + rule.getProtocol());
+                }
+                logs.add(monitor.filterLogMessage(message));
+                logIndexes.add(index);
+            } catch (RuntimeException ex) {
+                results[index] = new AddMonitorLogResult(index, false, ex.getMessage());
+            }
+        }
+
+        if (LogJournal.getInstance().isEnabled()) {
+            journalPairLogs(monitor, rule, first, logs, logIndexes, results);
+            return;
+        }
+
+        Set<Integer> failed = new HashSet<>();
+        try {
+            MonitorStoreFactory.getInstance().insertLogs(logs, first.getProvider(), first.getConsumer());
+        } catch (MongoBulkWriteException ex) {
+            for (BulkWriteError error : ex.getWriteErrors()) {
+                failed.add(error.getIndex());
+                int index = logIndexes.get(error.getIndex());
+                results[index] = new AddMonitorLogResult(index, false, error.getMessage());
+            }
+            if (ex.getWriteConcernError() != null) {
+                // the other logs were written, but not acknowledged by the write concern
+                LOG.log(Level.WARNING, ex.getWriteConcernError().getMessage());
+                for (int i = 0; i < logs.size(); i++) {
+                    if (failed.add(i)) {
+                        int index = logIndexes.get(i);
+                        results[index] = new AddMonitorLogResult(index, false,
+                                "Stored but not yet durable: " + ex.getWriteConcernError().getMessage());
+                    }
+                }
+            }
+        } catch (MongoException ex) {
+            LOG.log(Level.WARNING, ex.getMessage());
+            rejectAll(logIndexes, results, ex.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < logs.size(); i++) {
+            if (failed.contains(i)) {
+                continue;
+            }
+            int index = logIndexes.get(i);
+            try {
+                VerificationEngine.getInstance().submit(new SLAVerification(monitor, rule, logs.get(i)));
+                results[index] = new AddMonitorLogResult(index, true, null);
+            } catch (TooManyRequestsException ex) {
+                results[index] = new AddMonitorLogResult(index, true, false, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends the filtered logs of a pair to the {@link LogJournal}, waiting
+     * once for all of them to be durable. The logs after a failed append are
+     * rejected with its error. The logs already appended stay in the journal
+     * and are stored once it ships them, so a failed wait only reports them
+     * as not yet durable.
+     *
+     * @param monitor the pair protocol
+     * @param rule the pair rule
+     * @param first a message of the pair
+     * @param logs the filtered logs
+     * @param logIndexes positions of the filtered logs in the batch
+     * @param results outcome of each message of the batch
+     */
+    private void journalPairLogs(IProtocol monitor, MonitorRule rule, AddMonitorLog first,
+            List<MonitorLog> logs, List<Integer> logIndexes, AddMonitorLogResult[] results) {
+        long position = 0;
+        int written = 0;
+        try {
+            for (MonitorLog log : logs) {
+                SLAVerification verification = new SLAVerification(monitor, rule, log);
+                position = LogJournal.getInstance().write(log, first.getProvider(), first.getConsumer(),
+                        () -> verifyStored(verification));
+                written++;
+            }
+        } catch (RuntimeException ex) {
+            rejectAll(logIndexes.subList(written, logIndexes.size()), results, ex.getMessage());
+        }
+
+        if (written == 0) {
+            return;
+        }
+
+        List<Integer> journaled = logIndexes.subList(0, written);
+        try {
+            LogJournal.getInstance().awaitCommit(position);
+        } catch (RuntimeException ex) {
+            rejectAll(journaled, results, "Journaled but not yet durable: " + ex.getMessage());
+            return;
+        }
+
+        for (Integer index : journaled) {
+            results[index] = new AddMonitorLogResult(index, true, null);
+        }
+    }
+
+    /**
+     * Marks all the messages in the given positions as rejected.
+     *
+     * @param indexes positions of the rejected messages
+     * @param results outcome of each message of the batch
+     * @param reason the reason why the messages were rejected
+     */
+    private void rejectAll(List<Integer> indexes, AddMonitorLogResult[] results, String reason) {
+        for (Integer index : indexes) {
+            results[index] = new AddMonitorLogResult(index, false, reason);
+        }
+    }
+
+    /**
+     * Gets the key that identifies a provider and consumer pair.
+     *
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return the pair key
+     */
+    public static String getPairKey(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        return RuleCache.getKey(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+    }
+
+    /**
+     * Gets the current metrics of the asynchronous log write queue.
+     *
+     * @return the log write queue metrics
+     */
+    public LogWriteStatistics getLogWriteStatistics() {
+        return LogWriteQueue.getInstance().getStatistics();
+    }
+
+    /**
+     * Gets the current metrics of the log journal.
+     *
+     * @return the log journal metrics
+     */
+    public LogJournalStatistics getLogJournalStatistics() {
+        return LogJournal.getInstance().getStatistics();
+    }
+
+    /**
+     * Gets the current metrics of the SLA verification engine.
+     *
+     * @return the verification engine metrics
+     */
+    public VerificationStatistics getVerificationStatistics() {
+        return VerificationEngine.getInstance().getStatistics();
+    }
+
+    /**
+     * Gets the current metrics of the EventHandler publisher.
+     *
+     * @return the event publisher metrics
+     */
+    public EventPublishStatistics getEventPublishStatistics() {
+        return EventProducer.getInstance().getStatistics();
+    }
+
+    /**
+     * Gets the current metrics of the rule cache.
+     *
+     * @return the rule cache metrics
+     */
+    public RuleCacheStatistics getRuleCacheStatistics() {
+        return MonitorStoreFactory.getInstance().getRuleCacheStatistics();
+    }
+
+    /**
+     * Gets the aggregated logs of a pair within a time range, in windows of
+     * the given resolution.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive. If null, the current time
+     * @param resolution the window length, in milliseconds
+     * @return the aggregates, oldest window first
+     */
+    public LogAggregateList getAggregates(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName, long from, Long to, long resolution) {
+        if (resolution < 1) {
+            throw new InvalidParameterException("Resolution must be positive!");
+        }
+        long end = getRangeEnd(from, to);
+        MonitorStoreFactory.getMongoDB();
+
+        MonitorRule rule = findPairRule(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+
+        return RollupEngine.getInstance().getAggregates(rule, from, end, resolution);
+    }
+
+    /**
+     * Streams the stored logs of a pair within a time range as newline
+     * delimited JSON, one log per line, oldest first. Each line holds the log
+     * id, protocol, timestamp and rule version and the projected parameters,
+     * metrics of the protocol schema as numbers. If the limit cut the page
+     * short, the last line holds only the cursor of the next page.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive. If null, the current time
+     * @param fields comma separated names of the parameters to include. If
+     * null, all the parameters are included
+     * @param limit maximum number of logs of the page, or 0 for no limit
+     * @param cursor the cursor returned by the previous page. May be null
+     * @return the log stream
+     */
+    public StreamingOutput streamLogs(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName, long from, Long to,
+            String fields, int limit, String cursor) {
+        if (limit < 0) {
+            throw new InvalidParameterException("Limit must not be negative!");
+        }
+        long end = getRangeEnd(from, to);
+
+        LogCursor after;
+        try {
+            after = cursor == null || cursor.isEmpty() ? null : LogCursor.parse(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidParameterException(ex.getMessage());
+        }
+
+        Set<String> projection = null;
+        if (fields != null && !fields.trim().isEmpty()) {
+            projection = new HashSet<>();
+            for (String field : fields.split(",")) {
+                projection.add(field.trim());
+            }
+        }
+        Set<String> names = projection;
+
+        MongoDatabaseManager manager = MonitorStoreFactory.getMongoDB();
+
+        MonitorRule rule = findPairRule(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+
+        return (OutputStream output) -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            JsonWriter json = new JsonWriter(writer);
+            json.setLenient(true);
+
+            LogCursor next = manager.scanLogs(rule, from, end, after, limit, (log) -> {
+                try {
+                    writeLog(json, log, names);
+                    writer.write('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+
+            if (next != null) {
+                json.beginObject().name("cursor").value(next.toString()).endObject();
+                writer.write('\n');
+            }
+            writer.flush();
+        };
+    }
+
+    /**
+     * Gets the metrics of the monitor log lifecycle.
+     *
+     * @return the metrics in the Prometheus text format
+     */
+    public String getMetrics() {
+        return QoSMetrics.getInstance().scrape();
+    }
+
+    /**
+     * Computes descriptive statistics of the metrics of a pair within a time
+     * range.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive. If null, the current time
+     * @param metrics comma separated metric names. If null, every metric of
+     * the protocol
+     * @param percentiles comma separated percentiles, between 0 and 100
+     * @return the statistics of each metric
+     */
+    public QoSStatistics getStatistics(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName, long from, Long to,
+            String metrics, String percentiles) {
+        getRangeEnd(from, to);
+
+        MonitorRule rule = findPairRule(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+
+        List<String> names = new ArrayList<>();
+        if (metrics == null || metrics.trim().isEmpty()) {
+            names.addAll(resolveMonitor(rule.getProtocol()).getSchema().getNames());
+        } else {
+            for (String metric : metrics.split(",")) {
+                names.add(metric.trim());
+            }
+        }
+
+        String[] values = percentiles.split(",");
+        double[] ranks = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                ranks[i] = Double.parseDouble(values[i].trim());
+            } catch (NumberFormatException ex) {
+                throw new InvalidParameterException("Percentile " + values[i] + " is not a number!");
+            }
+            if (ranks[i] < 0 || ranks[i] > 100) {
+                throw new InvalidParameterException("Percentiles must be between 0 and 100!");
+            }
+        }
+
+        return MonitorStoreFactory.getMongoDB().getStatistics(rule, from, to, names, ranks);
+    }
+
+    /**
+     * Writes a log as a single JSON object.
+     *
+     * @param json the JSON writer
+     * @param log the log
+     * @param fields the names of the parameters to write, or null for all
+     * @throws IOException if the log could not be written
+     */
+    private static void writeLog(JsonWriter json, MonitorLog log, Set<String> fields) throws IOException {
+        json.beginObject();
+        json.name("id").value(log.getId().toHexString());
+        json.name("protocol").value(log.getProtocol());
+        json.name("timestamp").value(log.getTimestamp());
+        if (log.getRuleVersion() != null) {
+            json.name("ruleVersion").value(log.getRuleVersion());
+        }
+        for (Map.Entry<String, String> parameter : log.getParameters().entrySet()) {
+            if (fields != null && !fields.contains(parameter.getKey())) {
+                continue;
+            }
+            double metric = log.getSchema() != null && log.getSchema().indexOf(parameter.getKey()) >= 0
+                    ? log.getMetric(parameter.getKey()) : Double.NaN;
+            if (Double.isNaN(metric)) {
+                json.name(parameter.getKey()).value(parameter.getValue());
+            } else {
+                json.name(parameter.getKey()).value(metric);
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Gets the end of a requested time range.
+     *
+     * @param from the start of the time range
+     * @param to the end of the time range, or null for the current time
+     * @return the end of the time range
+     * @throws InvalidParameterException if the range ends before it starts
+     */
+    private static long getRangeEnd(long from, Long to) {
+        long end = to == null ? System.currentTimeMillis() : to;
+        if (end < from) {
+            throw new InvalidParameterException("Time range ends before it starts!");
+        }
+        return end;
+    }
+
+    /**
+     * Finds the rule of a provider and consumer pair given by its system
+     * groups and names.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the rule of the pair
+     * @throws MissingParameterException if any of the systems is missing
+     * @throws MonitorRuleNotFoundException if the pair has no rule
+     */
+    private static MonitorRule findPairRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        if (providerSystemGroup == null || providerSystemName == null
+                || consumerSystemGroup == null || consumerSystemName == null) {
+            throw new MissingParameterException("Provider and consumer systems are required!");
+        }
+
+        MonitorRule rule = MonitorStoreFactory.getInstance().findRule(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName);
+        if (rule == null) {
+            throw new MonitorRuleNotFoundException("No rule created for the given services");
+        }
+        return rule;
+    }
+
+    /**
+     * Gets the log write latency of each durability class.
+     *
+     * @return the durability class metrics
+     */
+    public DurabilityReport getDurabilityReport() {
+        return MonitorStoreFactory.getMongoDB().getDurabilityReport();
+    }
+
+    /**
+     * Lists the expected indexes missing from the monitor collections.
+     *
+     * @return the missing indexes
+     */
+    public IndexReport getIndexReport() {
+        return MonitorStoreFactory.getMongoDB().getIndexReport();
+    }
+
+    /**
+     * Converts the monitor documents stored with string parameters to the
+     * current codec version.
+     *
+     * @param batchSize the number of documents per bulk write
+     * @return the number of converted collections and documents
+     */
+    public MigrationReport migrateParameterTypes(int batchSize) {
+        if (batchSize < 1) {
+            throw new InvalidParameterException("Batch size must be positive!");
+        }
+        return MonitorStoreFactory.getMongoDB().migrateParameterTypes(batchSize);
+    }
+
+    /**
+     * Starts moving the logs of the per-pair collections into the single log
+     * collection.
+     *
+     * @param batchSize the number of documents per insert
+     * @return the progress of the migration
+     */
+    public MigrationReport migrateLogCollections(int batchSize) {
+        if (batchSize < 1) {
+            throw new InvalidParameterException("Batch size must be positive!");
+        }
+        if (!MonitorStoreFactory.getMongoDB().isSingleCollection()) {
+            throw new InvalidParameterException("Logs are not configured to be stored in a single collection!");
+        }
+        return MonitorStoreFactory.getMongoDB().startLogMigration(batchSize);
+    }
+
+    /**
+     * Gets the progress of the migration into the single log collection.
+     *
+     * @return the progress of the migration
+     */
+    public MigrationReport getLogMigrationReport() {
+        return MonitorStoreFactory.getMongoDB().getLogMigrationReport();
     }
 
     /**
      * Intermediates between message and monitor type.
      *
      * @param message EventMessage message
-     * @throws java.lang.InstantiationException
-     * @throws java.lang.IllegalAccessException
      */
-    public void sendEvent(EventMessage message) throws InstantiationException, IllegalAccessException {
+    public void sendEvent(EventMessage message) {
 
         if (message.getParameters().isEmpty()) {
             throw new NoMonitorParametersException("No parameters found in service error message!");
         }
 
-        IProtocol monitor = null;
-        try {
-            monitor = getMonitorClass(message.getProtocol());
-        } catch (ClassNotFoundException ex) {
-            String excMessage = "Type " + message.getProtocol() + " not found. Make "
-                    + "sure you have the right monitor type for your "
-                    + "situation and that it's available in this version "
-                    + "and/or not misspelled.";
-            LOG.log(Level.SEVERE, excMessage);
-            throw new InvalidMonitorTypeException(excMessage);
-        }
+        IProtocol monitor = resolveMonitor(message.getProtocol());
 
         Event event = monitor.createEvent(message);
 
-//        EventProducer producer = new EventProducer(event);
-//        producer.publishEvent();
+        EventProducer.getInstance().publish(event);
     }
 
     /**
@@ -253,24 +863,23 @@ public class QoSMonitorService {
     }
 
     /**
-     * Returns an initialized instance of class, finding it by it's name.
+     * Returns the shared IProtocol implementation for the given monitor type.
      *
-     * @param name name of the class to instantiate
+     * @param protocol the monitor type
      * @return a IProtocol implementation
-     * @throws ClassNotFoundException thrown when trying to initialize a class
-     * that cannot be found. This may be due to the type in the message being
-     * wrong or mistyped
-     * @throws InstantiationException
-     * @throws IllegalAccessException
+     * @throws InvalidMonitorTypeException thrown when the monitor type does
+     * not match any registered IProtocol implementation
      */
-    private IProtocol getMonitorClass(String name)
-            throws ClassNotFoundException, InstantiationException, IllegalAccessException {
-        Class<?> cl;
-
-        cl = Class.forName(MONITOR_TYPE_PACKAGE + name);
-
-        IProtocol monitor = (IProtocol) cl.newInstance();
+    private IProtocol resolveMonitor(String protocol) {
+        return ProtocolRegistry.getInstance().get(protocol);
+    }
 
-        return monitor;
+    /**
+     * Gets the names of all the registered monitor protocols.
+     *
+     * @return the names of the registered monitor protocols
+     */
+    public List<String> getProtocols() {
+        return new ArrayList<>(ProtocolRegistry.getInstance().getNames());
     }
 }
@@ -0,0 +1,74 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import eu.arrowhead.common.model.ArrowheadSystem;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking access to the monitor rules and logs. Every operation returns
+ * immediately with a stage that is completed once the database work is done,
+ * so that the calling thread is never parked on database I/O.
+ *
+ * Stages fail with the same exceptions the equivalent
+ * {@link MongoDatabaseManager} methods throw, and with a
+ * ServiceOverloadedException when the store cannot accept more work.
+ *
+ * @author Renato Ayres
+ */
+public interface AsyncMonitorStore {
+
+    /**
+     * Finds the rule of a provider and consumer pair.
+     *
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return a stage completed with the rule, or with null if the pair has no
+     * rule
+     */
+    public CompletionStage<MonitorRule> findRule(ArrowheadSystem provider, ArrowheadSystem consumer);
+
+    /**
+     * Inserts or replaces the rule of a provider and consumer pair.
+     *
+     * @param rule the rule
+     * @return a stage completed with true if the rule was stored
+     */
+    public CompletionStage<Boolean> replaceRule(MonitorRule rule);
+
+    /**
+     * Deletes the rule of a provider and consumer pair.
+     *
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return a stage completed with true if a rule was deleted
+     */
+    public CompletionStage<Boolean> deleteRule(ArrowheadSystem provider, ArrowheadSystem consumer);
+
+    /**
+     * Stores a log. The returned stage is completed once the log is
+     * acknowledged: stored in MongoDB, durable in the log journal when the
+     * journal is enabled, or accepted by the {@link LogWriteQueue} when the
+     * queue is enabled.
+     *
+     * @param log the log to store
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @param onStored action to execute after the log is stored in MongoDB. May
+     * be null
+     * @return a stage completed once the log is acknowledged
+     */
+    public CompletionStage<Void> insertLog(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer,
+            Runnable onStored);
+
+    /**
+     * Stores the logs of one provider and consumer pair with a single write.
+     *
+     * @param logs the logs to store
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return a stage completed once the logs are stored in MongoDB
+     */
+    public CompletionStage<Void> insertLogs(List<MonitorLog> logs, ArrowheadSystem provider,
+            ArrowheadSystem consumer);
+
+}
@@ -0,0 +1,57 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+/**
+ * Durability class of the logs of a pair, mapped to the MongoDB write concern
+ * used to store them. Rules are always stored with majority durability.
+ *
+ * @author Renato Ayres
+ */
+public enum Durability {
+
+    /**
+     * Logs acknowledged by a majority of the replica set.
+     */
+    CRITICAL("majority"),
+    /**
+     * Logs acknowledged by the primary.
+     */
+    STANDARD("acknowledged"),
+    /**
+     * Logs sent without waiting for an acknowledgement. Losing a log is
+     * acceptable.
+     */
+    BESTEFFORT("unacknowledged");
+
+    private final String defaultWriteConcern;
+
+    private Durability(String defaultWriteConcern) {
+        this.defaultWriteConcern = defaultWriteConcern;
+    }
+
+    /**
+     * Gets the name of the write concern used when none is configured.
+     *
+     * @return the write concern name
+     */
+    public String getDefaultWriteConcern() {
+        return defaultWriteConcern;
+    }
+
+    /**
+     * Gets the durability class with the given name, ignoring case.
+     *
+     * @param name the durability class name
+     * @return the durability class, or null if the name is null or unknown
+     */
+    public static Durability fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (Durability durability : values()) {
+            if (durability.name().equalsIgnoreCase(name.trim())) {
+                return durability;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write latency counters of the log writes of each durability class.
+ *
+ * @author Renato Ayres
+ */
+final class DurabilityMetrics {
+
+    private final Map<Durability, Counters> counters = new EnumMap<>(Durability.class);
+
+    /**
+     * Creates a new instance with zeroed counters for every durability class.
+     */
+    DurabilityMetrics() {
+        for (Durability durability : Durability.values()) {
+            counters.put(durability, new Counters());
+        }
+    }
+
+    /**
+     * Records a successful write.
+     *
+     * @param durability the durability class of the write
+     * @param logs the number of logs written
+     * @param nanos the write latency, in nanoseconds
+     */
+    void recordWrite(Durability durability, int logs, long nanos) {
+        Counters c = counters.get(durability);
+        c.writes.incrementAndGet();
+        c.logs.addAndGet(logs);
+        c.nanos.addAndGet(nanos);
+        c.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Records a failed write.
+     *
+     * @param durability the durability class of the write
+     */
+    void recordFailure(Durability durability) {
+        counters.get(durability).failures.incrementAndGet();
+    }
+
+    /**
+     * Gets a snapshot of the counters of a durability class.
+     *
+     * @param durability the durability class
+     * @param writeConcern the name of the write concern of the class
+     * @return the durability class statistics
+     */
+    DurabilityStatistics getStatistics(Durability durability, String writeConcern) {
+        Counters c = counters.get(durability);
+        long writes = c.writes.get();
+        DurabilityStatistics stats = new DurabilityStatistics();
+        stats.setDurability(durability.name().toLowerCase());
+        stats.setWriteConcern(writeConcern);
+        stats.setWrites(writes);
+        stats.setLogs(c.logs.get());
+        stats.setFailedWrites(c.failures.get());
+        stats.setAverageLatency(writes == 0 ? 0 : toMillis(c.nanos.get()) / writes);
+        stats.setMaxLatency(toMillis(c.maxNanos.get()));
+        return stats;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class Counters {
+
+        private final AtomicLong writes = new AtomicLong();
+        private final AtomicLong logs = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+}
@@ -0,0 +1,40 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Log write latency of every durability class.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class DurabilityReport {
+
+    private List<DurabilityStatistics> classes = new ArrayList<>();
+
+    /**
+     * Creates a new instance with no durability classes.
+     */
+    public DurabilityReport() {
+    }
+
+    /**
+     * Gets the statistics of each durability class.
+     *
+     * @return the durability class statistics
+     */
+    public List<DurabilityStatistics> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Sets the statistics of each durability class.
+     *
+     * @param classes the durability class statistics
+     */
+    public void setClasses(List<DurabilityStatistics> classes) {
+        this.classes = classes;
+    }
+}
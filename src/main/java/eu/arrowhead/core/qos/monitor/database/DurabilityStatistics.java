@@ -0,0 +1,152 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Snapshot of the log write latency of one durability class.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class DurabilityStatistics {
+
+    private String durability;
+    private String writeConcern;
+    private long writes;
+    private long logs;
+    private long failedWrites;
+    private double averageLatency;
+    private double maxLatency;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public DurabilityStatistics() {
+    }
+
+    /**
+     * Gets the durability class.
+     *
+     * @return the durability class
+     */
+    public String getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets the durability class.
+     *
+     * @param durability the durability class
+     */
+    public void setDurability(String durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Gets the write concern of the durability class.
+     *
+     * @return the write concern
+     */
+    public String getWriteConcern() {
+        return writeConcern;
+    }
+
+    /**
+     * Sets the write concern of the durability class.
+     *
+     * @param writeConcern the write concern
+     */
+    public void setWriteConcern(String writeConcern) {
+        this.writeConcern = writeConcern;
+    }
+
+    /**
+     * Gets the number of successful writes.
+     *
+     * @return the number of successful writes
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Sets the number of successful writes.
+     *
+     * @param writes the number of successful writes
+     */
+    public void setWrites(long writes) {
+        this.writes = writes;
+    }
+
+    /**
+     * Gets the number of logs stored by the successful writes.
+     *
+     * @return the number of stored logs
+     */
+    public long getLogs() {
+        return logs;
+    }
+
+    /**
+     * Sets the number of logs stored by the successful writes.
+     *
+     * @param logs the number of stored logs
+     */
+    public void setLogs(long logs) {
+        this.logs = logs;
+    }
+
+    /**
+     * Gets the number of failed writes.
+     *
+     * @return the number of failed writes
+     */
+    public long getFailedWrites() {
+        return failedWrites;
+    }
+
+    /**
+     * Sets the number of failed writes.
+     *
+     * @param failedWrites the number of failed writes
+     */
+    public void setFailedWrites(long failedWrites) {
+        this.failedWrites = failedWrites;
+    }
+
+    /**
+     * Gets the average latency of a write, in milliseconds.
+     *
+     * @return the average write latency
+     */
+    public double getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * Sets the average latency of a write, in milliseconds.
+     *
+     * @param averageLatency the average write latency
+     */
+    public void setAverageLatency(double averageLatency) {
+        this.averageLatency = averageLatency;
+    }
+
+    /**
+     * Gets the maximum latency of a write, in milliseconds.
+     *
+     * @return the maximum write latency
+     */
+    public double getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * Sets the maximum latency of a write, in milliseconds.
+     *
+     * @param maxLatency the maximum write latency
+     */
+    public void setMaxLatency(double maxLatency) {
+        this.maxLatency = maxLatency;
+    }
+}
@@ -0,0 +1,1013 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import eu.arrowhead.common.model.ArrowheadSystem;
+import eu.arrowhead.core.qos.monitor.database.codec.CodecUtil;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
+import eu.arrowhead.core.qos.monitor.metrics.Stage;
+import eu.arrowhead.core.qos.monitor.protocol.IProtocol;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.types.ObjectId;
+
+/**
+ * The FileMonitorStore.
+ *
+ * {@link MonitorStore} kept in local files, for nodes that cannot run MongoDB.
+ * Rules are held by a {@link RuleCache} and saved as a whole to a single file,
+ * replaced atomically on every change.
+ *
+ * The logs of each pair are appended to memory-mapped segment files in a
+ * directory of their own. A segment header names the protocol of its logs and
+ * the metrics of the protocol schema, and each log is a fixed size record with
+ * its timestamp, rule version, id and metric values as doubles. Parameters
+ * that are not metrics of the schema are not stored. A record is marked as
+ * written only after its content, so a record torn by a crash is ignored when
+ * the segment is reopened.
+ *
+ * A sparse index keeps the oldest and newest timestamp of each block of
+ * records, so range scans and reads of the most recent logs only decode the
+ * blocks they need, straight from the mapped segments. A full segment is
+ * sealed and a new one started; sealed segments are deleted once past the
+ * retention period or the maximum number of segments of a pair. The retention
+ * is applied when a segment is sealed and, periodically, to every pair
+ * directory, so that the logs of idle pairs expire too.
+ *
+ * The store is configured in the 'mongodb.properties' file.
+ *
+ * @author Renato Ayres
+ */
+public final class FileMonitorStore implements MonitorStore {
+
+    private static final String RULES = "rules.dat";
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+    private static final int MAGIC = 0x51534547;
+    private static final int RULES_FORMAT = 1;
+    private static final int FIXED = 1 + 8 + 8 + 12;
+    private static final byte WRITTEN = 1;
+    private static final Comparator<MonitorLog> NEWEST_FIRST
+            = (a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp());
+    private static final Comparator<MonitorLog> OLDEST_FIRST
+            = Comparator.comparing(MonitorLog::getTimestamp).thenComparing(MonitorLog::getId);
+
+    private static FileMonitorStore instance;
+    private final File directory;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final long retention;
+    private final int maxSegments;
+    private final long retentionInterval;
+    private final boolean sync;
+    private final RuleCache ruleCache = new RuleCache();
+    private final Map<String, Pair> pairs = new ConcurrentHashMap<>();
+    private ScheduledExecutorService retentionTimer;
+    private static final Logger LOG = Logger.getLogger(FileMonitorStore.class.getName());
+
+    /**
+     * Returns the Singleton instance of FileMonitorStore
+     *
+     * @return Singleton instance
+     */
+    public static synchronized FileMonitorStore getInstance() {
+        if (instance == null) {
+            Properties props = getProps();
+            instance = new FileMonitorStore(
+                    new File(props.getProperty("file.directory", "store")),
+                    Integer.valueOf(props.getProperty("file.segment.size", "8388608")),
+                    Integer.valueOf(props.getProperty("file.index.interval", "64")),
+                    Long.valueOf(props.getProperty("file.retention", "0")) * 1000,
+                    Integer.valueOf(props.getProperty("file.retention.segments", "0")),
+                    Long.valueOf(props.getProperty("file.retention.interval", "60")) * 1000,
+                    Boolean.valueOf(props.getProperty("file.sync", "false")));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new store in the given directory.
+     *
+     * @param directory the directory of the store
+     * @param segmentSize the size of each segment file, in bytes
+     * @param indexInterval the number of records of each index block
+     * @param retention the time, in milliseconds, sealed segments are kept
+     * after their newest log, or 0 to keep them forever
+     * @param maxSegments the maximum number of segments of a pair, or 0 for
+     * no limit
+     * @param retentionInterval the time, in milliseconds, between retention
+     * runs over all the pairs, or 0 to apply it only when a segment is sealed
+     * @param sync true to force the segments to disk on every write
+     */
+    FileMonitorStore(File directory, int segmentSize, int indexInterval, long retention, int maxSegments,
+            long retentionInterval, boolean sync) {
+        if (indexInterval < 1) {
+            throw new IllegalArgumentException("Index interval must be positive!");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+        this.retention = retention;
+        this.maxSegments = maxSegments;
+        this.retentionInterval = retentionInterval;
+        this.sync = sync;
+    }
+
+    /**
+     * Gets the properties file named 'mongodb.properties'.
+     *
+     * @return the Properties from properties file 'mongodb.properties'
+     */
+    private static Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = FileMonitorStore.class.getClassLoader().getResourceAsStream("mongodb.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'mongodb.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Creates the store directory if needed, loads the rules and schedules the
+     * retention runs. The segments of a pair are opened when its logs are first
+     * accessed.
+     */
+    @Override
+    public synchronized void startManager() {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory.getAbsolutePath());
+            }
+            ruleCache.load(loadRules());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to open the file storage in " + directory.getAbsolutePath(), ex);
+        }
+        if (retentionInterval > 0 && (retention > 0 || maxSegments > 0) && retentionTimer == null) {
+            retentionTimer = Executors.newSingleThreadScheduledExecutor((task) -> {
+                Thread thread = new Thread(task, "FileMonitorStore-retention");
+                thread.setDaemon(true);
+                return thread;
+            });
+            retentionTimer.scheduleWithFixedDelay(this::applyRetention, retentionInterval, retentionInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+        LOG.log(Level.INFO, "File storage started in {0}.", directory.getAbsolutePath());
+    }
+
+    /**
+     * Forces the open segments to disk and closes them.
+     */
+    @Override
+    public synchronized void stopManager() {
+        if (retentionTimer != null) {
+            retentionTimer.shutdown();
+            try {
+                retentionTimer.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            retentionTimer = null;
+        }
+        for (Pair pair : pairs.values()) {
+            synchronized (pair) {
+                pair.close();
+            }
+        }
+        pairs.clear();
+        LOG.log(Level.INFO, "File storage stopped.");
+    }
+
+    @Override
+    public MonitorRule findRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        return findRule(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+    }
+
+    @Override
+    public MonitorRule findRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        long start = System.nanoTime();
+        MonitorRule rule = ruleCache.get(RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName));
+        QoSMetrics.getInstance().record(Stage.RULE_LOOKUP, System.nanoTime() - start);
+        return rule;
+    }
+
+    @Override
+    public List<MonitorRule> findRulesByStreamId(String streamId) {
+        return ruleCache.getByStreamId(streamId);
+    }
+
+    @Override
+    public List<MonitorRule> getCachedRules() {
+        return ruleCache.getAll();
+    }
+
+    @Override
+    public RuleCacheStatistics getRuleCacheStatistics() {
+        return ruleCache.getStatistics();
+    }
+
+    @Override
+    public synchronized boolean replaceRule(MonitorRule rule) {
+        MonitorRule current = ruleCache.get(RuleCache.getKey(rule));
+
+        MonitorRule replacement = MongoDatabaseManager.copyRule(current == null ? rule.getId() : current.getId(), rule);
+        replacement.setVersion(current == null ? 1 : current.getVersion() + 1);
+
+        List<MonitorRule> rules = getOtherRules(RuleCache.getKey(rule));
+        rules.add(replacement);
+        saveRules(rules);
+
+        ruleCache.put(replacement);
+        rule.setVersion(replacement.getVersion());
+        return true;
+    }
+
+    @Override
+    public boolean deleteRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        return deleteRule(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+    }
+
+    @Override
+    public synchronized boolean deleteRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        String key = RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName);
+        List<MonitorRule> rules = getOtherRules(key);
+        if (rules.size() < ruleCache.getAll().size()) {
+            saveRules(rules);
+            ruleCache.remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Gets every rule except the rule of the given pair.
+     *
+     * @param key the pair key
+     * @return the rules of the other pairs
+     */
+    private List<MonitorRule> getOtherRules(String key) {
+        List<MonitorRule> rules = ruleCache.getAll();
+        rules.removeIf((rule) -> RuleCache.getKey(rule).equals(key));
+        return rules;
+    }
+
+    @Override
+    public Future<?> purgeLogs(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        File folder = getPairDirectory(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+        Pair pair = pairs.remove(folder.getName());
+        if (pair != null) {
+            synchronized (pair) {
+                pair.close();
+                pair.closed = true;
+            }
+        }
+        File[] files = folder.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            if (!file.delete()) {
+                LOG.log(Level.WARNING, "Failed to delete log segment {0}", file.getAbsolutePath());
+            }
+        }
+        if (folder.exists() && !folder.delete()) {
+            LOG.log(Level.WARNING, "Failed to delete log directory {0}", folder.getAbsolutePath());
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void insertLog(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer) {
+        insertLogs(Collections.singletonList(log), provider, consumer);
+    }
+
+    @Override
+    public void insertLogs(List<MonitorLog> logs, ArrowheadSystem provider, ArrowheadSystem consumer) {
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        MonitorRule rule = ruleCache.get(RuleCache.getKey(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName()));
+        Long version = rule == null || rule.getVersion() == 0 ? null : rule.getVersion();
+
+        long start = System.nanoTime();
+        try {
+            Pair pair = getPair(provider.getSystemGroup(), provider.getSystemName(),
+                    consumer.getSystemGroup(), consumer.getSystemName(), true);
+            synchronized (pair) {
+                for (MonitorLog log : logs) {
+                    log.setRuleVersion(version);
+                    pair.append(log);
+                }
+                if (sync) {
+                    pair.active.buffer.force();
+                }
+            }
+        } catch (IOException ex) {
+            QoSMetrics.getInstance().recordError(Stage.PERSIST);
+            throw new UncheckedIOException("Failed to store " + logs.size() + " logs", ex);
+        }
+        QoSMetrics.getInstance().record(Stage.PERSIST, System.nanoTime() - start);
+        QoSMetrics.getInstance().recordIngest(logs);
+    }
+
+    @Override
+    public MonitorLog[] getLastNLogs(MonitorRule rule) {
+        int NLogs = Integer.valueOf(rule.getParameters().get(IProtocol.NLOGS));
+
+        List<MonitorLog> last = getLastLogs(rule, NLogs);
+
+        if (last.size() < NLogs) {
+            return null;
+        }
+
+        return last.toArray(new MonitorLog[NLogs]);
+    }
+
+    /**
+     * Gets up to n of the most recent logs of the pair identified by the rule,
+     * newest first. Blocks are read from the newest one back, until the next
+     * block only holds logs older than the n most recent found.
+     *
+     * @param rule the rule
+     * @param n maximum number of logs to return
+     * @return the most recent logs. May hold less than n logs
+     */
+    @Override
+    public List<MonitorLog> getLastLogs(MonitorRule rule, int n) {
+        List<MonitorLog> result = new ArrayList<>();
+        Pair pair = openPair(rule);
+        if (pair == null || n < 1) {
+            return result;
+        }
+
+        synchronized (pair) {
+            for (Segment segment : pair.segments.descendingMap().values()) {
+                for (int block = segment.blocks() - 1; block >= 0; block--) {
+                    if (result.size() >= n && segment.blockMax[block] < result.get(n - 1).getTimestamp()) {
+                        continue;
+                    }
+                    int end = Math.min(segment.count, (block + 1) * indexInterval);
+                    for (int i = block * indexInterval; i < end; i++) {
+                        result.add(segment.read(i));
+                    }
+                    result.sort(NEWEST_FIRST);
+                    if (result.size() > n) {
+                        result.subList(n, result.size()).clear();
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the logs of the pair identified by the rule within a time range,
+     * oldest first. Only the blocks whose timestamps overlap the range are
+     * read.
+     *
+     * @param rule the rule
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive
+     * @return the logs within the time range
+     */
+    @Override
+    public List<MonitorLog> getLogs(MonitorRule rule, long from, long to) {
+        List<MonitorLog> result = new ArrayList<>();
+        Pair pair = openPair(rule);
+        if (pair == null) {
+            return result;
+        }
+
+        synchronized (pair) {
+            for (Segment segment : pair.segments.values()) {
+                if (segment.count == 0 || segment.max < from || segment.min > to) {
+                    continue;
+                }
+                for (int block = 0; block < segment.blocks(); block++) {
+                    if (segment.blockMax[block] < from || segment.blockMin[block] > to) {
+                        continue;
+                    }
+                    int end = Math.min(segment.count, (block + 1) * indexInterval);
+                    for (int i = block * indexInterval; i < end; i++) {
+                        long timestamp = segment.timestamp(i);
+                        if (timestamp >= from && timestamp <= to) {
+                            result.add(segment.read(i));
+                        }
+                    }
+                }
+            }
+        }
+
+        result.sort(OLDEST_FIRST);
+        return result;
+    }
+
+    /**
+     * Opens the logs of the pair of a rule, if it has any.
+     *
+     * @param rule the rule
+     * @return the pair logs, or null if the pair has no logs
+     */
+    private Pair openPair(MonitorRule rule) {
+        try {
+            return getPair(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                    rule.getConsumerSystemGroup(), rule.getConsumerSystemName(), false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open the logs of " + RuleCache.getName(rule), ex);
+        }
+    }
+
+    /**
+     * Gets the logs of a pair, opening its segments on first access.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param create true to create the pair directory if it does not exist
+     * @return the pair logs, or null if the pair has no directory and create
+     * is false
+     * @throws IOException if the segments could not be opened
+     */
+    private Pair getPair(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName, boolean create) throws IOException {
+        return getPair(getPairDirectory(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName), create);
+    }
+
+    /**
+     * Gets the logs of the pair kept in the given directory, opening its
+     * segments on first access. Pairs are keyed by their directory name.
+     *
+     * @param folder the pair directory
+     * @param create true to create the pair directory if it does not exist
+     * @return the pair logs, or null if the directory does not exist and
+     * create is false
+     * @throws IOException if the segments could not be opened
+     */
+    private Pair getPair(File folder, boolean create) throws IOException {
+        Pair pair = pairs.get(folder.getName());
+        if (pair != null) {
+            return pair;
+        }
+
+        if (!create && !folder.isDirectory()) {
+            return null;
+        }
+        if (!folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Cannot create directory " + folder.getAbsolutePath());
+        }
+
+        synchronized (pairs) {
+            pair = pairs.get(folder.getName());
+            if (pair == null) {
+                pair = new Pair(folder);
+                pair.open();
+                pairs.put(folder.getName(), pair);
+            }
+            return pair;
+        }
+    }
+
+    /**
+     * Applies the retention to every pair directory of the store, opening the
+     * pairs not accessed since the store started. Called periodically, so the
+     * sealed segments of pairs that no longer receive logs are deleted too.
+     */
+    void applyRetention() {
+        File[] folders = directory.listFiles(File::isDirectory);
+        for (File folder : folders == null ? new File[0] : folders) {
+            try {
+                Pair pair = getPair(folder, false);
+                if (pair != null) {
+                    synchronized (pair) {
+                        if (!pair.closed) {
+                            pair.applyRetention();
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOG.log(Level.WARNING, "Failed to apply the retention to " + folder.getAbsolutePath(), ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the directory holding the segments of a pair. Its name is the
+     * URL encoded provider and consumer systems, so any system name maps to a
+     * distinct and valid file name.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the pair directory
+     */
+    private File getPairDirectory(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        try {
+            return new File(directory, URLEncoder.encode(providerSystemGroup + "/" + providerSystemName
+                    + "/" + consumerSystemGroup + "/" + consumerSystemName, "UTF-8"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Reads the rules file.
+     *
+     * @return the stored rules
+     * @throws IOException if the file could not be read
+     */
+    private List<MonitorRule> loadRules() throws IOException {
+        List<MonitorRule> rules = new ArrayList<>();
+        File file = new File(directory, RULES);
+        if (!file.isFile()) {
+            return rules;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != RULES_FORMAT) {
+                throw new IOException("Unknown rules file format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] id = new byte[12];
+                in.readFully(id);
+                String protocol = in.readUTF();
+                String providerSystemGroup = in.readUTF();
+                String providerSystemName = in.readUTF();
+                String consumerSystemGroup = in.readUTF();
+                String consumerSystemName = in.readUTF();
+                boolean softRealTime = in.readBoolean();
+                Durability durability = Durability.fromName(in.readUTF());
+                long version = in.readLong();
+                int size = in.readInt();
+                Map<String, String> parameters = new HashMap<>();
+                for (int j = 0; j < size; j++) {
+                    parameters.put(in.readUTF(), in.readUTF());
+                }
+
+                MonitorRule rule = new MonitorRule(new ObjectId(id), protocol,
+                        providerSystemName, providerSystemGroup,
+                        consumerSystemName, consumerSystemGroup,
+                        parameters, softRealTime);
+                MetricSchema schema = CodecUtil.getSchema(protocol);
+                if (schema != null) {
+                    rule.setMetrics(schema, schema.parse(parameters));
+                }
+                rule.setDurability(durability);
+                rule.setVersion(version);
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Writes the rules file, replacing the previous one atomically.
+     *
+     * @param rules every rule to store
+     * @throws UncheckedIOException if the file could not be written
+     */
+    private void saveRules(Collection<MonitorRule> rules) {
+        File file = new File(directory, RULES);
+        File temporary = new File(directory, RULES + ".tmp");
+        try {
+            try (FileOutputStream stream = new FileOutputStream(temporary);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                out.writeInt(MAGIC);
+                out.writeInt(RULES_FORMAT);
+                out.writeInt(rules.size());
+                for (MonitorRule rule : rules) {
+                    out.write(rule.getId().toByteArray());
+                    out.writeUTF(rule.getProtocol());
+                    out.writeUTF(rule.getProviderSystemGroup());
+                    out.writeUTF(rule.getProviderSystemName());
+                    out.writeUTF(rule.getConsumerSystemGroup());
+                    out.writeUTF(rule.getConsumerSystemName());
+                    out.writeBoolean(rule.isSoftRealTime());
+                    out.writeUTF(rule.getDurability() == null ? "" : rule.getDurability().name());
+                    out.writeLong(rule.getVersion());
+                    out.writeInt(rule.getParameters().size());
+                    for (Map.Entry<String, String> parameter : rule.getParameters().entrySet()) {
+                        out.writeUTF(parameter.getKey());
+                        out.writeUTF(parameter.getValue());
+                    }
+                }
+                out.flush();
+                stream.getFD().sync();
+            }
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to store the rules in " + file.getAbsolutePath(), ex);
+        }
+    }
+
+    /**
+     * The segments of a pair, oldest first. Callers must hold the lock of the
+     * pair.
+     */
+    private final class Pair {
+
+        private final File folder;
+        private final TreeMap<Long, Segment> segments = new TreeMap<>();
+        private Segment active;
+        private boolean closed;
+
+        private Pair(File folder) {
+            this.folder = folder;
+        }
+
+        /**
+         * Opens the segments left in the pair directory and applies the
+         * retention.
+         *
+         * @throws IOException if a segment could not be opened
+         */
+        private void open() throws IOException {
+            File[] files = folder.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+            for (File file : files == null ? new File[0] : files) {
+                String id = file.getName().substring(PREFIX.length(), file.getName().length() - SUFFIX.length());
+                try {
+                    Segment segment = Segment.open(file, Long.parseLong(id), indexInterval);
+                    if (segment == null) {
+                        LOG.log(Level.WARNING, "Ignoring segment {0} with an unknown format", file.getAbsolutePath());
+                    } else {
+                        segments.put(segment.id, segment);
+                    }
+                } catch (NumberFormatException ex) {
+                    LOG.log(Level.WARNING, "Ignoring unknown file {0} in log directory", file.getAbsolutePath());
+                }
+            }
+            active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            applyRetention();
+        }
+
+        /**
+         * Appends a log to the active segment, starting a new segment when
+         * it is full or holds logs of another protocol.
+         *
+         * @param log the log
+         * @throws IOException if a new segment could not be created
+         */
+        private void append(MonitorLog log) throws IOException {
+            if (closed) {
+                throw new IOException("The logs of the pair were purged");
+            }
+            if (active == null || active.isFull() || !active.protocol.equals(log.getProtocol())) {
+                long id = active == null ? 0 : active.id + 1;
+                File file = new File(folder, String.format("%s%019d%s", PREFIX, id, SUFFIX));
+                active = Segment.create(file, id, segmentSize, indexInterval, log.getProtocol(),
+                        CodecUtil.getSchema(log.getProtocol()));
+                segments.put(id, active);
+                applyRetention();
+            }
+            active.append(log);
+        }
+
+        /**
+         * Deletes the sealed segments past the retention period or beyond the
+         * maximum number of segments. The active segment is always kept.
+         */
+        private void applyRetention() {
+            long expired = retention > 0 ? System.currentTimeMillis() - retention : Long.MIN_VALUE;
+            Iterator<Segment> iterator = segments.values().iterator();
+            while (iterator.hasNext()) {
+                Segment segment = iterator.next();
+                if (segment == active) {
+                    break;
+                }
+                boolean excess = maxSegments > 0 && segments.size() > maxSegments;
+                if (!excess && (segment.count == 0 || segment.max >= expired)) {
+                    break;
+                }
+                iterator.remove();
+                segment.close();
+                if (!segment.file.delete()) {
+                    LOG.log(Level.WARNING, "Failed to delete log segment {0}", segment.file.getAbsolutePath());
+                }
+            }
+        }
+
+        /**
+         * Forces the segments to disk and closes them.
+         */
+        private void close() {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            active = null;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file. Records start after the header and have a
+     * fixed size: a written marker, the timestamp, the rule version (0 for
+     * none), the log id and the metric values.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final String protocol;
+        private final MetricSchema schema;
+        private final int width;
+        private final int header;
+        private final int recordSize;
+        private final int capacity;
+        private final int indexInterval;
+        private long[] blockMin = new long[16];
+        private long[] blockMax = new long[16];
+        private int count;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        private Segment(long id, File file, MappedByteBuffer buffer, String protocol, MetricSchema schema,
+                int header, int indexInterval) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+            this.protocol = protocol;
+            this.schema = schema;
+            this.width = schema == null ? 0 : schema.size();
+            this.header = header;
+            this.recordSize = FIXED + 8 * width;
+            this.capacity = (buffer.capacity() - header) / recordSize;
+            this.indexInterval = indexInterval;
+        }
+
+        /**
+         * Creates a new segment file for logs of the given protocol.
+         *
+         * @param file the segment file
+         * @param id the segment id
+         * @param size the file size, in bytes
+         * @param indexInterval the number of records of each index block
+         * @param protocol the protocol of the logs
+         * @param schema the metric schema of the protocol. May be null
+         * @return the segment
+         * @throws IOException if the file could not be created, or is too
+         * small for a single record
+         */
+        private static Segment create(File file, long id, int size, int indexInterval, String protocol,
+                MetricSchema schema) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeInt(0);
+                out.writeUTF(protocol);
+                out.writeShort(schema == null ? 0 : schema.size());
+                for (int i = 0; schema != null && i < schema.size(); i++) {
+                    out.writeUTF(schema.getName(i));
+                }
+            }
+            byte[] data = bytes.toByteArray();
+            ByteBuffer.wrap(data).putInt(4, data.length);
+            if (data.length + FIXED + 8 * (schema == null ? 0 : schema.size()) > size) {
+                throw new IOException("Segment size is too small for a " + protocol + " log");
+            }
+
+            MappedByteBuffer buffer;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size);
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            ByteBuffer target = buffer.duplicate();
+            target.put(data);
+            buffer.force();
+            return new Segment(id, file, buffer, protocol, schema, data.length, indexInterval);
+        }
+
+        /**
+         * Opens an existing segment file, counting its written records and
+         * rebuilding its index.
+         *
+         * @param file the segment file
+         * @param id the segment id
+         * @param indexInterval the number of records of each index block
+         * @return the segment, or null if the file is not a segment
+         * @throws IOException if the file could not be read
+         */
+        private static Segment open(File file, long id, int indexInterval) throws IOException {
+            MappedByteBuffer buffer;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() < 8) {
+                    return null;
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            int header = buffer.getInt(4);
+            if (buffer.getInt(0) != MAGIC || header < 8 || header > buffer.capacity()) {
+                return null;
+            }
+
+            byte[] data = new byte[header - 8];
+            ByteBuffer source = buffer.duplicate();
+            source.position(8);
+            source.get(data);
+            String protocol;
+            String[] names;
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+                protocol = in.readUTF();
+                names = new String[in.readShort()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = in.readUTF();
+                }
+            }
+
+            MetricSchema schema = CodecUtil.getSchema(protocol);
+            if (names.length == 0) {
+                schema = null;
+            } else if (schema == null || !schema.getNames().equals(Arrays.asList(names))) {
+                schema = new MetricSchema(names);
+            }
+
+            Segment segment = new Segment(id, file, buffer, protocol, schema, header, indexInterval);
+            while (segment.count < segment.capacity && buffer.get(segment.offset(segment.count)) == WRITTEN) {
+                segment.index(segment.timestamp(segment.count));
+            }
+            return segment;
+        }
+
+        /**
+         * Checks if the segment has room for another record.
+         *
+         * @return true if the segment is full, false if not
+         */
+        private boolean isFull() {
+            return count == capacity;
+        }
+
+        /**
+         * Gets the number of index blocks.
+         *
+         * @return the number of blocks
+         */
+        private int blocks() {
+            return (count + indexInterval - 1) / indexInterval;
+        }
+
+        /**
+         * Writes a log as the next record. The written marker is set last.
+         *
+         * @param log the log
+         */
+        private void append(MonitorLog log) {
+            int offset = offset(count);
+            buffer.putLong(offset + 1, log.getTimestamp());
+            buffer.putLong(offset + 9, log.getRuleVersion() == null ? 0 : log.getRuleVersion());
+            ByteBuffer target = buffer.duplicate();
+            target.position(offset + 17);
+            target.put(log.getId().toByteArray());
+            if (width > 0) {
+                double[] values = log.getSchema() == schema ? log.getMetrics() : schema.parse(log.getParameters());
+                for (int i = 0; i < width; i++) {
+                    buffer.putDouble(offset + FIXED + 8 * i, values[i]);
+                }
+            }
+            buffer.put(offset, WRITTEN);
+            index(log.getTimestamp());
+        }
+
+        /**
+         * Counts the next record in the index.
+         *
+         * @param timestamp the timestamp of the record
+         */
+        private void index(long timestamp) {
+            int block = count / indexInterval;
+            if (block == blockMin.length) {
+                blockMin = Arrays.copyOf(blockMin, block * 2);
+                blockMax = Arrays.copyOf(blockMax, block * 2);
+            }
+            if (count % indexInterval == 0) {
+                blockMin[block] = timestamp;
+                blockMax[block] = timestamp;
+            } else {
+                blockMin[block] = Math.min(blockMin[block], timestamp);
+                blockMax[block] = Math.max(blockMax[block], timestamp);
+            }
+            min = Math.min(min, timestamp);
+            max = Math.max(max, timestamp);
+            count++;
+        }
+
+        /**
+         * Gets the timestamp of a record.
+         *
+         * @param record the record number
+         * @return the timestamp
+         */
+        private long timestamp(int record) {
+            return buffer.getLong(offset(record) + 1);
+        }
+
+        /**
+         * Decodes a record straight from the mapped file.
+         *
+         * @param record the record number
+         * @return the log
+         */
+        private MonitorLog read(int record) {
+            int offset = offset(record);
+            byte[] logId = new byte[12];
+            ByteBuffer source = buffer.duplicate();
+            source.position(offset + 17);
+            source.get(logId);
+
+            Map<String, String> parameters = new HashMap<>();
+            double[] values = null;
+            if (width > 0) {
+                values = new double[width];
+                for (int i = 0; i < width; i++) {
+                    values[i] = buffer.getDouble(offset + FIXED + 8 * i);
+                    if (!Double.isNaN(values[i])) {
+                        parameters.put(schema.getName(i), CodecUtil.format(values[i]));
+                    }
+                }
+            }
+
+            MonitorLog log = new MonitorLog(new ObjectId(logId), protocol, buffer.getLong(offset + 1), parameters);
+            if (values != null) {
+                log.setMetrics(schema, values);
+            }
+            long version = buffer.getLong(offset + 9);
+            log.setRuleVersion(version == 0 ? null : version);
+            return log;
+        }
+
+        /**
+         * Gets the file offset of a record.
+         *
+         * @param record the record number
+         * @return the offset
+         */
+        private int offset(int record) {
+            return header + record * recordSize;
+        }
+
+        /**
+         * Forces the segment to disk. The file itself was closed once mapped,
+         * the mapping is released when the buffer is collected.
+         */
+        private void close() {
+            buffer.force();
+        }
+    }
+
+}
@@ -0,0 +1,457 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import eu.arrowhead.common.model.ArrowheadSystem;
+import eu.arrowhead.core.qos.monitor.database.codec.CodecUtil;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
+import eu.arrowhead.core.qos.monitor.metrics.Stage;
+import eu.arrowhead.core.qos.monitor.protocol.IProtocol;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.types.ObjectId;
+
+/**
+ * The InMemoryMonitorStore.
+ *
+ * {@link MonitorStore} that keeps everything in memory, for tests, load runs
+ * and deployments that do not need the logs to survive a restart. Rules are
+ * held by a {@link RuleCache}. The logs of each pair are held by a ring buffer
+ * of primitive arrays, sorted by timestamp, that keeps the most recent logs
+ * up to a fixed capacity and overwrites the oldest ones.
+ *
+ * The capacity is configured in the 'mongodb.properties' file.
+ *
+ * @author Renato Ayres
+ */
+public final class InMemoryMonitorStore implements MonitorStore {
+
+    private static InMemoryMonitorStore instance;
+    private final int capacity;
+    private final RuleCache ruleCache = new RuleCache();
+    private final Map<String, LogRing> logs = new ConcurrentHashMap<>();
+    private static final Logger LOG = Logger.getLogger(InMemoryMonitorStore.class.getName());
+
+    /**
+     * Returns the Singleton instance of InMemoryMonitorStore
+     *
+     * @return Singleton instance
+     */
+    public static synchronized InMemoryMonitorStore getInstance() {
+        if (instance == null) {
+            instance = new InMemoryMonitorStore(Integer.valueOf(
+                    getProps().getProperty("memory.log.capacity", "10000")));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new empty store.
+     *
+     * @param capacity the maximum number of logs kept per pair
+     */
+    InMemoryMonitorStore(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Log capacity must be positive!");
+        }
+        this.capacity = capacity;
+        ruleCache.load(Collections.<MonitorRule>emptyList());
+    }
+
+    /**
+     * Gets the properties file named 'mongodb.properties'.
+     *
+     * @return the Properties from properties file 'mongodb.properties'
+     */
+    private static Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = InMemoryMonitorStore.class.getClassLoader().getResourceAsStream("mongodb.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'mongodb.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+    @Override
+    public void startManager() {
+        LOG.log(Level.INFO, "In-memory storage started, keeping {0} logs per pair.", capacity);
+    }
+
+    @Override
+    public void stopManager() {
+        ruleCache.load(Collections.<MonitorRule>emptyList());
+        logs.clear();
+    }
+
+    @Override
+    public MonitorRule findRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        return findRule(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+    }
+
+    @Override
+    public MonitorRule findRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        long start = System.nanoTime();
+        MonitorRule rule = ruleCache.get(RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName));
+        QoSMetrics.getInstance().record(Stage.RULE_LOOKUP, System.nanoTime() - start);
+        return rule;
+    }
+
+    @Override
+    public List<MonitorRule> findRulesByStreamId(String streamId) {
+        return ruleCache.getByStreamId(streamId);
+    }
+
+    @Override
+    public List<MonitorRule> getCachedRules() {
+        return ruleCache.getAll();
+    }
+
+    @Override
+    public RuleCacheStatistics getRuleCacheStatistics() {
+        return ruleCache.getStatistics();
+    }
+
+    @Override
+    public synchronized boolean replaceRule(MonitorRule rule) {
+        MonitorRule current = ruleCache.get(RuleCache.getKey(rule));
+
+        MonitorRule replacement = MongoDatabaseManager.copyRule(current == null ? rule.getId() : current.getId(), rule);
+        replacement.setVersion(current == null ? 1 : current.getVersion() + 1);
+
+        ruleCache.put(replacement);
+        rule.setVersion(replacement.getVersion());
+        return true;
+    }
+
+    @Override
+    public boolean deleteRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        return deleteRule(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+    }
+
+    @Override
+    public synchronized boolean deleteRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        ruleCache.remove(RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName));
+        return true;
+    }
+
+    @Override
+    public Future<?> purgeLogs(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        logs.remove(RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void insertLog(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer) {
+        insertLogs(Collections.singletonList(log), provider, consumer);
+    }
+
+    @Override
+    public void insertLogs(List<MonitorLog> list, ArrowheadSystem provider, ArrowheadSystem consumer) {
+        if (list.isEmpty()) {
+            return;
+        }
+
+        MonitorRule rule = ruleCache.get(RuleCache.getKey(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName()));
+        Long version = rule == null || rule.getVersion() == 0 ? null : rule.getVersion();
+
+        long start = System.nanoTime();
+        String key = RuleCache.getKey(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+        LogRing ring = logs.computeIfAbsent(key, (pair) -> new LogRing(capacity,
+                CodecUtil.getSchema(list.get(0).getProtocol()), list.get(0).getProtocol()));
+        synchronized (ring) {
+            for (MonitorLog log : list) {
+                log.setRuleVersion(version);
+                ring.add(log);
+            }
+        }
+        QoSMetrics.getInstance().record(Stage.PERSIST, System.nanoTime() - start);
+        QoSMetrics.getInstance().recordIngest(list);
+    }
+
+    @Override
+    public MonitorLog[] getLastNLogs(MonitorRule rule) {
+        int NLogs = Integer.valueOf(rule.getParameters().get(IProtocol.NLOGS));
+
+        List<MonitorLog> last = getLastLogs(rule, NLogs);
+
+        if (last.size() < NLogs) {
+            return null;
+        }
+
+        return last.toArray(new MonitorLog[NLogs]);
+    }
+
+    @Override
+    public List<MonitorLog> getLastLogs(MonitorRule rule, int n) {
+        LogRing ring = logs.get(RuleCache.getKey(rule));
+        if (ring == null) {
+            return new ArrayList<>();
+        }
+        synchronized (ring) {
+            int count = Math.min(n, ring.size());
+            List<MonitorLog> result = new ArrayList<>(count);
+            for (int i = ring.size() - 1; i >= ring.size() - count; i--) {
+                result.add(ring.get(i));
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public List<MonitorLog> getLogs(MonitorRule rule, long from, long to) {
+        LogRing ring = logs.get(RuleCache.getKey(rule));
+        if (ring == null) {
+            return new ArrayList<>();
+        }
+        synchronized (ring) {
+            List<MonitorLog> result = new ArrayList<>();
+            for (int i = ring.firstAtOrAfter(from); i < ring.size() && ring.timestamp(i) <= to; i++) {
+                result.add(ring.get(i));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The logs of a pair, oldest first, in parallel primitive arrays used as a
+     * ring buffer. Metrics of the schema of the pair are kept as doubles and
+     * rebuilt into parameters when read; other parameters, rarely present,
+     * are kept as they are. Positions are logical, 0 being the oldest log.
+     * Callers must hold the lock of the ring.
+     */
+    static final class LogRing {
+
+        private final int capacity;
+        private final MetricSchema schema;
+        private final int width;
+        private final String protocol;
+        private final long[] timestamps;
+        private final double[] metrics;
+        private final byte[] ids;
+        private final long[] versions;
+        private final String[] protocols;
+        private final Map<Integer, Map<String, String>> extras = new HashMap<>();
+        private int head;
+        private int size;
+
+        /**
+         * Creates a new empty ring.
+         *
+         * @param capacity the maximum number of logs
+         * @param schema the metric schema of the pair. May be null
+         * @param protocol the protocol of the pair
+         */
+        LogRing(int capacity, MetricSchema schema, String protocol) {
+            this.capacity = capacity;
+            this.schema = schema;
+            this.width = schema == null ? 0 : schema.size();
+            this.protocol = protocol;
+            timestamps = new long[capacity];
+            metrics = new double[capacity * width];
+            ids = new byte[capacity * 12];
+            versions = new long[capacity];
+            protocols = new String[capacity];
+        }
+
+        /**
+         * Adds a log at its timestamp position, overwriting the oldest log
+         * when full. Logs are expected in timestamp order, so a log rarely
+         * has to be moved past more than a few newer ones. A log older than
+         * every log of a full ring is dropped.
+         *
+         * @param log the log
+         */
+        void add(MonitorLog log) {
+            long timestamp = log.getTimestamp();
+            if (size == capacity) {
+                if (timestamp < timestamp(0)) {
+                    return;
+                }
+                extras.remove(head);
+                head = (head + 1) % capacity;
+                size--;
+            }
+
+            int position = size;
+            while (position > 0 && timestamp(position - 1) > timestamp) {
+                move(position - 1, position);
+                position--;
+            }
+            size++;
+            write(slot(position), log);
+        }
+
+        /**
+         * Gets the log at the given position, rebuilt from the arrays.
+         *
+         * @param position the logical position
+         * @return the log
+         */
+        MonitorLog get(int position) {
+            int slot = slot(position);
+
+            Map<String, String> parameters = new HashMap<>();
+            Map<String, String> other = extras.get(slot);
+            if (other != null) {
+                parameters.putAll(other);
+            }
+            double[] values = null;
+            if (schema != null) {
+                values = new double[width];
+                System.arraycopy(metrics, slot * width, values, 0, width);
+                for (int i = 0; i < width; i++) {
+                    if (!Double.isNaN(values[i])) {
+                        parameters.put(schema.getName(i), CodecUtil.format(values[i]));
+                    }
+                }
+            }
+
+            byte[] id = new byte[12];
+            System.arraycopy(ids, slot * 12, id, 0, 12);
+
+            MonitorLog log = new MonitorLog(new ObjectId(id),
+                    protocols[slot] == null ? protocol : protocols[slot], timestamps[slot], parameters);
+            if (values != null) {
+                log.setMetrics(schema, values);
+            }
+            log.setRuleVersion(versions[slot] == 0 ? null : versions[slot]);
+            return log;
+        }
+
+        /**
+         * Gets the timestamp of the log at the given position.
+         *
+         * @param position the logical position
+         * @return the timestamp
+         */
+        long timestamp(int position) {
+            return timestamps[slot(position)];
+        }
+
+        /**
+         * Finds the position of the oldest log not before the given time.
+         *
+         * @param timestamp the time
+         * @return the position, or the size of the ring if every log is older
+         */
+        int firstAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamp(middle) < timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Gets the number of logs held.
+         *
+         * @return the number of logs
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Gets the array slot of a logical position.
+         *
+         * @param position the logical position
+         * @return the slot
+         */
+        private int slot(int position) {
+            return (head + position) % capacity;
+        }
+
+        /**
+         * Writes a log into a slot.
+         *
+         * @param slot the slot
+         * @param log the log
+         */
+        private void write(int slot, MonitorLog log) {
+            timestamps[slot] = log.getTimestamp();
+            System.arraycopy(log.getId().toByteArray(), 0, ids, slot * 12, 12);
+            versions[slot] = log.getRuleVersion() == null ? 0 : log.getRuleVersion();
+            protocols[slot] = protocol == null || protocol.equals(log.getProtocol()) ? null : log.getProtocol();
+
+            Map<String, String> other = null;
+            if (schema != null) {
+                double[] values = log.getSchema() == schema ? log.getMetrics() : schema.parse(log.getParameters());
+                System.arraycopy(values, 0, metrics, slot * width, width);
+                for (Map.Entry<String, String> parameter : log.getParameters().entrySet()) {
+                    if (schema.indexOf(parameter.getKey()) < 0) {
+                        if (other == null) {
+                            other = new HashMap<>();
+                        }
+                        other.put(parameter.getKey(), parameter.getValue());
+                    }
+                }
+            } else if (!log.getParameters().isEmpty()) {
+                other = new HashMap<>(log.getParameters());
+            }
+
+            if (other == null) {
+                extras.remove(slot);
+            } else {
+                extras.put(slot, other);
+            }
+        }
+
+        /**
+         * Moves the log at one position to another.
+         *
+         * @param from the logical position of the log
+         * @param to the logical position to move it to
+         */
+        private void move(int from, int to) {
+            int source = slot(from);
+            int target = slot(to);
+            timestamps[target] = timestamps[source];
+            System.arraycopy(metrics, source * width, metrics, target * width, width);
+            System.arraycopy(ids, source * 12, ids, target * 12, 12);
+            versions[target] = versions[source];
+            protocols[target] = protocols[source];
+            Map<String, String> other = extras.remove(source);
+            if (other == null) {
+                extras.remove(target);
+            } else {
+                extras.put(target, other);
+            }
+        }
+    }
+
+}
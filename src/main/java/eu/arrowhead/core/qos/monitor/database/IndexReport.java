@@ -0,0 +1,59 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Expected indexes missing from the monitor collections.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class IndexReport {
+
+    private int logCollections;
+    private List<MissingIndex> missing = new ArrayList<>();
+
+    /**
+     * Creates a new instance with no missing indexes.
+     */
+    public IndexReport() {
+    }
+
+    /**
+     * Gets the number of Log collections checked.
+     *
+     * @return the number of Log collections checked
+     */
+    public int getLogCollections() {
+        return logCollections;
+    }
+
+    /**
+     * Sets the number of Log collections checked.
+     *
+     * @param logCollections the number of Log collections checked
+     */
+    public void setLogCollections(int logCollections) {
+        this.logCollections = logCollections;
+    }
+
+    /**
+     * Gets the missing indexes.
+     *
+     * @return the missing indexes
+     */
+    public List<MissingIndex> getMissing() {
+        return missing;
+    }
+
+    /**
+     * Sets the missing indexes.
+     *
+     * @param missing the missing indexes
+     */
+    public void setMissing(List<MissingIndex> missing) {
+        this.missing = missing;
+    }
+}
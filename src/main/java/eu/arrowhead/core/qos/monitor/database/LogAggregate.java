@@ -0,0 +1,97 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Summary of the logs of a pair within an aggregation window.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class LogAggregate {
+
+    private long start;
+    private long end;
+    private long count;
+    private List<MetricAggregate> metrics = new ArrayList<>();
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public LogAggregate() {
+    }
+
+    /**
+     * Gets the start of the window, inclusive.
+     *
+     * @return the window start timestamp
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Sets the start of the window, inclusive.
+     *
+     * @param start the window start timestamp
+     */
+    public void setStart(long start) {
+        this.start = start;
+    }
+
+    /**
+     * Gets the end of the window, exclusive.
+     *
+     * @return the window end timestamp
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Sets the end of the window, exclusive.
+     *
+     * @param end the window end timestamp
+     */
+    public void setEnd(long end) {
+        this.end = end;
+    }
+
+    /**
+     * Gets the number of logs in the window.
+     *
+     * @return the number of logs
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of logs in the window.
+     *
+     * @param count the number of logs
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * Gets the summary of each metric.
+     *
+     * @return the metric summaries
+     */
+    public List<MetricAggregate> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the summary of each metric.
+     *
+     * @param metrics the metric summaries
+     */
+    public void setMetrics(List<MetricAggregate> metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,79 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Aggregated logs of a pair, oldest window first.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class LogAggregateList {
+
+    private String source;
+    private long resolution;
+    private List<LogAggregate> aggregates = new ArrayList<>();
+
+    /**
+     * Creates a new instance with no aggregates.
+     */
+    public LogAggregateList() {
+    }
+
+    /**
+     * Gets the storage tier the aggregates were computed from: raw, minute,
+     * hour or day.
+     *
+     * @return the source tier
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Sets the storage tier the aggregates were computed from.
+     *
+     * @param source the source tier
+     */
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Gets the length of each window, in milliseconds.
+     *
+     * @return the window length
+     */
+    public long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Sets the length of each window, in milliseconds.
+     *
+     * @param resolution the window length
+     */
+    public void setResolution(long resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * Gets the aggregates, oldest window first.
+     *
+     * @return the aggregates
+     */
+    public List<LogAggregate> getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Sets the aggregates.
+     *
+     * @param aggregates the aggregates
+     */
+    public void setAggregates(List<LogAggregate> aggregates) {
+        this.aggregates = aggregates;
+    }
+}
@@ -0,0 +1,203 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+
+/**
+ * Copies, in the background, the logs of the per-pair Log collections into the
+ * single Log collection, tagging every document with the id of its pair. Each
+ * source collection is dropped once fully copied, so an interrupted migration
+ * can simply be started again: documents already copied are skipped as
+ * duplicates.
+ *
+ * Every Log collection of the database is migrated, including the ones whose
+ * pair rule was deleted. The pair id is taken from the documents, which carry
+ * it since it is stored in every log, or else from the rule of the pair. A
+ * collection holding only older documents of a deleted rule cannot be
+ * assigned to its pair, because its name does not separate the pair names,
+ * so it is left in place and reported in the log.
+ *
+ * @author Renato Ayres
+ */
+final class LogCollectionMigrator {
+
+    private final MongoDatabaseManager manager;
+    private final MongoDatabase database;
+    private final int batchSize;
+    private final AtomicInteger collections = new AtomicInteger();
+    private final AtomicLong documents = new AtomicLong();
+    private volatile boolean running;
+    private static final Logger LOG = Logger.getLogger(LogCollectionMigrator.class.getName());
+
+    /**
+     * Creates a new instance.
+     *
+     * @param manager the database manager, used to compute the pair ids
+     * @param database the monitor database
+     * @param batchSize the number of documents per insert
+     */
+    LogCollectionMigrator(MongoDatabaseManager manager, MongoDatabase database, int batchSize) {
+        this.manager = manager;
+        this.database = database;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts the migration on a daemon thread.
+     */
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::migrate, "LogCollectionMigrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the progress of the migration.
+     *
+     * @return the number of migrated collections and documents
+     */
+    MigrationReport getReport() {
+        MigrationReport report = new MigrationReport();
+        report.setCollections(collections.get());
+        report.setDocuments(documents.get());
+        report.setRunning(running);
+        return report;
+    }
+
+    private void migrate() {
+        try {
+            Map<String, String> rulePairIds = new HashMap<>();
+            for (Document rule : database.getCollection(MongoDBNames.RULES_TABLE).find()) {
+                String providerSystemGroup = rule.getString(MongoDBNames.PROVIDER_SYSTEM_GROUP);
+                String providerSystemName = rule.getString(MongoDBNames.PROVIDER_SYSTEM_NAME);
+                String consumerSystemGroup = rule.getString(MongoDBNames.CONSUMER_SYSTEM_GROUP);
+                String consumerSystemName = rule.getString(MongoDBNames.CONSUMER_SYSTEM_NAME);
+                rulePairIds.put(providerSystemGroup + providerSystemName + consumerSystemGroup + consumerSystemName,
+                        manager.getPairId(providerSystemGroup, providerSystemName,
+                                consumerSystemGroup, consumerSystemName));
+            }
+
+            List<String> names = new ArrayList<>();
+            for (String name : database.listCollectionNames()) {
+                if (!name.equals(MongoDBNames.LOGS_TABLE) && MongoDatabaseManager.isLogCollection(name)) {
+                    names.add(name);
+                }
+            }
+
+            for (String name : names) {
+                String pairId = getPairId(name, rulePairIds);
+                if (pairId == null) {
+                    LOG.log(Level.WARNING, "Logs of {0} not migrated: their pair is unknown.", name);
+                    continue;
+                }
+
+                long copied = migrate(name, pairId);
+                collections.incrementAndGet();
+                LOG.log(Level.INFO, "{0} logs of {1} migrated.", new Object[]{copied, name});
+            }
+        } catch (MongoException ex) {
+            LOG.log(Level.SEVERE, "Log collection migration failed: {0}", ex.getMessage());
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Gets the id of the pair of a per-pair Log collection, from one of its
+     * documents or else from the rule of the pair.
+     *
+     * @param name the collection name
+     * @param rulePairIds the pair id of each rule, by collection name
+     * @return the pair id, or null if the pair is unknown
+     */
+    private String getPairId(String name, Map<String, String> rulePairIds) {
+        Document tagged = database.getCollection(name).find(Filters.exists(MongoDBNames.PAIR_ID))
+                .projection(Projections.include(MongoDBNames.PAIR_ID)).first();
+        return tagged != null ? tagged.getString(MongoDBNames.PAIR_ID) : rulePairIds.get(name);
+    }
+
+    /**
+     * Copies one per-pair Log collection and drops it.
+     *
+     * @param name the source collection name
+     * @param pairId the id of the pair
+     * @return the number of copied documents
+     */
+    private long migrate(String name, String pairId) {
+        MongoCollection<Document> source = database.getCollection(name);
+        MongoCollection<Document> target = database.getCollection(MongoDBNames.LOGS_TABLE)
+                .withWriteConcern(WriteConcern.MAJORITY);
+
+        List<Document> batch = new ArrayList<>(batchSize);
+        long copied = 0;
+
+        MongoCursor<Document> logs = source.find().sort(Sorts.ascending(MongoDBNames.DOCUMENT_ID))
+                .batchSize(batchSize).iterator();
+        try {
+            while (logs.hasNext()) {
+                batch.add(logs.next().append(MongoDBNames.PAIR_ID, pairId));
+                if (batch.size() >= batchSize) {
+                    copied += insert(target, batch);
+                    batch.clear();
+                }
+            }
+        } finally {
+            logs.close();
+        }
+
+        if (!batch.isEmpty()) {
+            copied += insert(target, batch);
+        }
+
+        source.drop();
+
+        return copied;
+    }
+
+    /**
+     * Inserts a batch of documents, skipping the ones already copied by an
+     * earlier run.
+     *
+     * @param target the single Log collection
+     * @param batch the documents to insert
+     * @return the number of inserted documents
+     */
+    private long insert(MongoCollection<Document> target, List<Document> batch) {
+        int inserted = batch.size();
+        try {
+            target.insertMany(batch, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException ex) {
+            for (BulkWriteError error : ex.getWriteErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw ex;
+                }
+            }
+            inserted -= ex.getWriteErrors().size();
+        }
+        documents.addAndGet(inserted);
+        return inserted;
+    }
+}
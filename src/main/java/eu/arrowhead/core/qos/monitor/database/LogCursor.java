@@ -0,0 +1,85 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import org.bson.types.ObjectId;
+
+/**
+ * Position of a paginated log scan. Log documents are scanned by ascending
+ * timestamp and id; the cursor points at the first document not fully
+ * returned and at the offset of its first log not returned yet, which is
+ * always 0 for a single log document.
+ *
+ * The cursor is exchanged with clients as
+ * {@code <timestamp>.<document id>.<offset>}.
+ *
+ * @author Renato Ayres
+ */
+public final class LogCursor {
+
+    private final long timestamp;
+    private final ObjectId id;
+    private final int offset;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param timestamp the timestamp of the document to resume from
+     * @param id the id of the document to resume from
+     * @param offset the offset of the first log of the document not returned
+     */
+    public LogCursor(long timestamp, ObjectId id, int offset) {
+        this.timestamp = timestamp;
+        this.id = id;
+        this.offset = offset;
+    }
+
+    /**
+     * Parses a cursor returned by a previous scan.
+     *
+     * @param cursor the cursor text
+     * @return the cursor
+     * @throws IllegalArgumentException if the text is not a valid cursor
+     */
+    public static LogCursor parse(String cursor) {
+        String[] parts = cursor.split("\\.");
+        if (parts.length != 3 || !ObjectId.isValid(parts[1])) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        try {
+            return new LogCursor(Long.parseLong(parts[0]), new ObjectId(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor, ex);
+        }
+    }
+
+    /**
+     * Gets the timestamp of the document to resume from.
+     *
+     * @return the document timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the id of the document to resume from.
+     *
+     * @return the document id
+     */
+    public ObjectId getId() {
+        return id;
+    }
+
+    /**
+     * Gets the offset of the first log of the document not returned yet.
+     *
+     * @return the offset within the document
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + "." + id.toHexString() + "." + offset;
+    }
+}
@@ -0,0 +1,795 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import eu.arrowhead.common.exception.InvalidParameterException;
+import eu.arrowhead.common.exception.ServiceOverloadedException;
+import eu.arrowhead.common.model.ArrowheadSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.bson.types.ObjectId;
+
+/**
+ * The LogJournal.
+ *
+ * Write-ahead journal for monitor logs, kept in memory-mapped segment files on
+ * local disk. A log is acknowledged as soon as it is durable in the journal,
+ * so log ingestion does not depend on the latency or availability of MongoDB.
+ *
+ * Appending only copies the record into the active segment. A committer thread
+ * forces the segments to disk at a fixed interval, making every record
+ * appended since the previous commit durable at once (group commit), and wakes
+ * the threads waiting for them. A shipper thread reads the committed records
+ * in order and stores them in MongoDB with one bulk write per provider and
+ * consumer pair. Segments are deleted once all their records are shipped.
+ *
+ * Each log keeps its id in the journal, so a record shipped twice, e.g. after
+ * a crash between the bulk write and the deletion of its segment, is rejected
+ * by MongoDB as a duplicate and ignored, or, in the bucketed log layout,
+ * skipped as a sample already stored. Segments left by a previous run are
+ * replayed on {@link #start()}.
+ *
+ * The journal is configured in the 'mongodb.properties' file and is disabled
+ * by default.
+ *
+ * @author Renato Ayres
+ */
+public final class LogJournal {
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+    private static final int HEADER = 8;
+
+    private static LogJournal instance;
+    private final boolean enabled;
+    private final File directory;
+    private final int segmentSize;
+    private final long commitInterval;
+    private final int shipBatchSize;
+    private final MonitorStore store;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<Long, Runnable> callbacks = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> waiters = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private final Object commitLock = new Object();
+    private Segment active;
+    private long written;
+    private volatile long committed;
+    private volatile long shipped;
+    private volatile long commitFailures;
+    private volatile boolean running;
+    private Thread committer;
+    private Thread shipper;
+    private final AtomicLong appendedLogs = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+    private final AtomicLong shippedLogs = new AtomicLong();
+    private final AtomicLong failedLogs = new AtomicLong();
+    private static final Logger LOG = Logger.getLogger(LogJournal.class.getName());
+
+    /**
+     * Returns the Singleton instance of LogJournal
+     *
+     * @return Singleton instance
+     */
+    public static synchronized LogJournal getInstance() {
+        if (instance == null) {
+            instance = new LogJournal();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance configured from the 'mongodb.properties' file.
+     */
+    private LogJournal() {
+        Properties props = getProps();
+        enabled = Boolean.valueOf(props.getProperty("log.journal.enabled", "false"));
+        directory = new File(props.getProperty("log.journal.directory", "journal"));
+        segmentSize = Integer.valueOf(props.getProperty("log.journal.segment.size", "16777216"));
+        commitInterval = TimeUnit.MILLISECONDS.toNanos(
+                Long.valueOf(props.getProperty("log.journal.commit.interval", "2")));
+        shipBatchSize = Integer.valueOf(props.getProperty("log.journal.ship.batch.size", "500"));
+        store = null;
+    }
+
+    /**
+     * Creates a new enabled journal shipping to the given store.
+     *
+     * @param directory the directory of the segments
+     * @param segmentSize the size of each segment, in bytes
+     * @param commitInterval the time between commits, in milliseconds
+     * @param shipBatchSize the maximum number of records of each shipment
+     * @param store the store receiving the shipped logs
+     */
+    LogJournal(File directory, int segmentSize, long commitInterval, int shipBatchSize, MonitorStore store) {
+        this.enabled = true;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.commitInterval = TimeUnit.MILLISECONDS.toNanos(commitInterval);
+        this.shipBatchSize = shipBatchSize;
+        this.store = store;
+    }
+
+    /**
+     * Gets the properties file named 'mongodb.properties'.
+     *
+     * @return the Properties from properties file 'mongodb.properties'
+     */
+    private Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mongodb.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'mongodb.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Checks if logs should be written through this journal.
+     *
+     * @return true if the journal is enabled, false if not
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Opens the journal, replays the segments left by a previous run into
+     * MongoDB and starts the committer and shipper threads. Segments that
+     * cannot be replayed because MongoDB is unavailable are left to the
+     * shipper. Does nothing if the journal is disabled or already running.
+     *
+     * @throws IllegalStateException if the journal directory cannot be used
+     */
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        try {
+            long next = recover();
+            synchronized (appendLock) {
+                active = openSegment(next, true);
+                written = position(next, 0);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to open log journal in " + directory.getAbsolutePath(), ex);
+        }
+
+        replay();
+
+        running = true;
+        committer = new Thread(this::commitLoop, "LogJournal-committer");
+        shipper = new Thread(this::shipLoop, "LogJournal-shipper");
+        committer.setDaemon(true);
+        shipper.setDaemon(true);
+        committer.start();
+        shipper.start();
+        LOG.log(Level.INFO, "LogJournal started in {0}.", directory.getAbsolutePath());
+    }
+
+    /**
+     * Stops the journal, committing the appended records and shipping them if
+     * MongoDB is available. Unshipped segments are kept for the next start.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread thread : Arrays.asList(committer, shipper)) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        LOG.log(Level.INFO, "LogJournal stopped.");
+    }
+
+    /**
+     * Appends a log to the journal and waits until it is durable. The given
+     * callback is executed by the shipper thread once the log is stored in
+     * MongoDB.
+     *
+     * @param log the log to store
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @param onStored action to execute after the log is stored. May be null
+     * @throws ServiceOverloadedException if the journal is not running
+     */
+    public void append(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer, Runnable onStored) {
+        awaitCommit(write(log, provider, consumer, onStored));
+    }
+
+    /**
+     * Appends a log to the journal without waiting for it to be durable. Use
+     * {@link #awaitCommit(long)} with the returned position to wait for it.
+     *
+     * @param log the log to store
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @param onStored action to execute after the log is stored. May be null
+     * @return the journal position right after the log
+     * @throws InvalidParameterException if the log does not fit in a segment
+     * @throws ServiceOverloadedException if the journal is not running
+     */
+    public long write(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer, Runnable onStored) {
+        byte[] data = encode(log, provider, consumer);
+        if (data.length + HEADER > segmentSize) {
+            throw new InvalidParameterException("Monitor log is too large for the log journal!");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        synchronized (appendLock) {
+            if (!running) {
+                throw new ServiceOverloadedException("Log journal is not running. Try again later.");
+            }
+            int offset = offset(written);
+            if (offset + HEADER + data.length > active.size) {
+                try {
+                    active = openSegment(active.id + 1, true);
+                } catch (IOException ex) {
+                    throw new ServiceOverloadedException("Failed to open log journal segment: " + ex.getMessage());
+                }
+                written = position(active.id, 0);
+                offset = 0;
+            }
+            ByteBuffer buffer = active.buffer.duplicate();
+            buffer.position(offset);
+            buffer.putInt(data.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(data);
+            if (onStored != null) {
+                callbacks.put(written, onStored);
+            }
+            written += HEADER + data.length;
+            appendedLogs.incrementAndGet();
+            return written;
+        }
+    }
+
+    /**
+     * Waits until the journal is durable up to the given position.
+     *
+     * @param position a position returned by
+     * {@link #write(MonitorLog, ArrowheadSystem, ArrowheadSystem, Runnable)}
+     * @throws ServiceOverloadedException if the journal stops, a commit fails
+     * or the thread is interrupted before the position is durable
+     */
+    public void awaitCommit(long position) {
+        synchronized (commitLock) {
+            long failures = commitFailures;
+            while (committed < position) {
+                if (!running) {
+                    throw new ServiceOverloadedException("Log journal stopped before the log was committed.");
+                }
+                if (commitFailures != failures) {
+                    throw new ServiceOverloadedException("Log journal commit failed before the log was committed.");
+                }
+                try {
+                    commitLock.wait(100);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new ServiceOverloadedException("Interrupted while waiting for the log journal.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a future completed once the journal is durable up to the given
+     * position, without blocking the calling thread.
+     *
+     * @param position a position returned by
+     * {@link #write(MonitorLog, ArrowheadSystem, ArrowheadSystem, Runnable)}
+     * @return a future completed by the committer thread, or completed
+     * exceptionally with a ServiceOverloadedException if the journal stops or
+     * a commit fails before the position is durable
+     */
+    public CompletableFuture<Void> whenCommitted(long position) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (committed >= position) {
+            future.complete(null);
+            return future;
+        }
+        waiters.put(position, future);
+        // the committer may have passed the position before the future was added
+        if (committed >= position && waiters.remove(position) != null) {
+            future.complete(null);
+        } else if (!running && waiters.remove(position) != null) {
+            future.completeExceptionally(
+                    new ServiceOverloadedException("Log journal stopped before the log was committed."));
+        }
+        return future;
+    }
+
+    /**
+     * Committer loop. Forces the appended records to disk once every commit
+     * interval. A failed commit fails the threads waiting at that moment and
+     * is retried on the next interval.
+     */
+    private void commitLoop() {
+        while (running) {
+            LockSupport.parkNanos(commitInterval);
+            tryCommit();
+        }
+        tryCommit();
+        failWaiters("Log journal stopped before the log was committed.");
+    }
+
+    /**
+     * Commits the appended records, logging a failure and failing the threads
+     * waiting for a commit.
+     */
+    private void tryCommit() {
+        try {
+            commit();
+        } catch (RuntimeException ex) {
+            LOG.log(Level.SEVERE, "LogJournal committer failure", ex);
+            synchronized (commitLock) {
+                commitFailures++;
+                commitLock.notifyAll();
+            }
+            failWaiters("Log journal commit failed: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Completes exceptionally every thread waiting for a commit.
+     *
+     * @param reason the reason of the failure
+     */
+    private void failWaiters(String reason) {
+        Map.Entry<Long, CompletableFuture<Void>> waiter;
+        while ((waiter = waiters.pollFirstEntry()) != null) {
+            waiter.getValue().completeExceptionally(new ServiceOverloadedException(reason));
+        }
+    }
+
+    /**
+     * Forces to disk every segment holding records appended since the last
+     * commit, and wakes the threads waiting for them.
+     */
+    private void commit() {
+        long target;
+        synchronized (appendLock) {
+            target = written;
+        }
+        if (target <= committed) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        for (Segment segment : segments.subMap(segment(committed), true, segment(target), true).values()) {
+            segment.buffer.force();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        synchronized (commitLock) {
+            committed = target;
+            commitLock.notifyAll();
+        }
+        Map.Entry<Long, CompletableFuture<Void>> waiter;
+        while ((waiter = waiters.firstEntry()) != null && waiter.getKey() <= target) {
+            if (waiters.remove(waiter.getKey()) != null) {
+                waiter.getValue().complete(null);
+            }
+        }
+        commits.incrementAndGet();
+        commitNanos.addAndGet(elapsed);
+        maxCommitNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * Shipper loop. Ships the committed records until the journal is stopped
+     * and fully shipped, or stopped while MongoDB is unavailable.
+     */
+    private void shipLoop() {
+        while (running || shipped < committed) {
+            int count = ship();
+            if (count < 0 && !running) {
+                return;
+            }
+            if (count <= 0) {
+                LockSupport.parkNanos(count < 0 ? TimeUnit.SECONDS.toNanos(1) : commitInterval);
+            }
+        }
+    }
+
+    /**
+     * Ships the segments left by a previous run, stopping at the first
+     * failure.
+     */
+    private void replay() {
+        long replayed = 0;
+        while (shipped < committed) {
+            int count = ship();
+            if (count < 0) {
+                LOG.log(Level.WARNING, "Log journal replay interrupted. The shipper will retry.");
+                break;
+            }
+            replayed += count;
+        }
+        LOG.log(Level.INFO, "{0} logs replayed from the log journal.", replayed);
+    }
+
+    /**
+     * Stores the next batch of committed records in MongoDB, runs the
+     * callbacks of the stored ones and deletes the segments that were fully
+     * shipped. The callbacks of records that failed to be stored are dropped.
+     *
+     * @return the number of shipped records, or -1 if MongoDB failed and the
+     * batch must be retried
+     */
+    private int ship() {
+        long limit = committed;
+        long position = shipped;
+        List<Record> batch = new ArrayList<>();
+
+        while (batch.size() < shipBatchSize && position < limit) {
+            Segment segment = segments.get(segment(position));
+            Record record = segment == null ? null : read(segment, offset(position));
+            if (record == null) {
+                Long next = segments.higherKey(segment(position));
+                if (next == null) {
+                    break;
+                }
+                position = position(next, 0);
+                continue;
+            }
+            record.position = position;
+            batch.add(record);
+            position += HEADER + record.length;
+        }
+
+        Set<Long> failed = store(batch);
+        if (failed == null) {
+            return -1;
+        }
+
+        for (Record record : batch) {
+            Runnable onStored = callbacks.remove(record.position);
+            if (onStored != null && !failed.contains(record.position)) {
+                try {
+                    onStored.run();
+                } catch (RuntimeException ex) {
+                    LOG.log(Level.WARNING, "Log journal callback failure", ex);
+                }
+            }
+        }
+
+        shipped = position;
+        truncate();
+        return batch.size();
+    }
+
+    /**
+     * Stores a batch of records with one bulk write per provider and consumer
+     * pair. Records already stored by a previous attempt are ignored.
+     *
+     * @param batch the records to store
+     * @return the positions of the records that could not be stored, or null
+     * if the batch must be retried
+     */
+    private Set<Long> store(List<Record> batch) {
+        Map<String, List<Record>> pairs = new LinkedHashMap<>();
+        for (Record record : batch) {
+            pairs.computeIfAbsent(RuleCache.getKey(record.provider.getSystemGroup(), record.provider.getSystemName(),
+                    record.consumer.getSystemGroup(), record.consumer.getSystemName()),
+                    (key) -> new ArrayList<>()).add(record);
+        }
+
+        Set<Long> failed = new HashSet<>();
+        for (List<Record> pair : pairs.values()) {
+            List<MonitorLog> logs = new ArrayList<>(pair.size());
+            for (Record record : pair) {
+                logs.add(record.log);
+            }
+            Record first = pair.get(0);
+            try {
+                getStore().insertLogs(logs, first.provider, first.consumer);
+                shippedLogs.addAndGet(logs.size());
+            } catch (MongoBulkWriteException ex) {
+                int errors = 0;
+                for (BulkWriteError error : ex.getWriteErrors()) {
+                    if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                        errors++;
+                        failed.add(pair.get(error.getIndex()).position);
+                        LOG.log(Level.WARNING, "Failed to ship journaled log: {0}", error.getMessage());
+                    }
+                }
+                failedLogs.addAndGet(errors);
+                shippedLogs.addAndGet(logs.size() - errors);
+            } catch (MongoException ex) {
+                LOG.log(Level.WARNING, "Failed to ship {0} journaled logs: {1}", new Object[]{batch.size(), ex.getMessage()});
+                return null;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Gets the store receiving the shipped logs.
+     *
+     * @return the given store, or the configured storage backend
+     */
+    private MonitorStore getStore() {
+        return store == null ? MonitorStoreFactory.getInstance() : store;
+    }
+
+    /**
+     * Deletes the segments whose records were all shipped.
+     */
+    private void truncate() {
+        for (Segment segment : segments.headMap(segment(shipped), false).values()) {
+            segments.remove(segment.id);
+            segment.close();
+            if (!segment.file.delete()) {
+                LOG.log(Level.WARNING, "Failed to delete log journal segment {0}", segment.file.getName());
+            }
+        }
+    }
+
+    /**
+     * Opens the segments left by a previous run and positions the shipper at
+     * the first of them.
+     *
+     * @return the id of the first new segment
+     * @throws IOException if the directory or a segment cannot be opened
+     */
+    private long recover() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory.getAbsolutePath());
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        for (File file : files == null ? new File[0] : files) {
+            String id = file.getName().substring(PREFIX.length(), file.getName().length() - SUFFIX.length());
+            try {
+                openSegment(Long.parseLong(id), false);
+            } catch (NumberFormatException ex) {
+                LOG.log(Level.WARNING, "Ignoring unknown file {0} in log journal directory", file.getName());
+            }
+        }
+
+        long next = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        shipped = segments.isEmpty() ? position(next, 0) : position(segments.firstKey(), 0);
+        committed = position(next, 0);
+        return next;
+    }
+
+    /**
+     * Opens and maps a segment file.
+     *
+     * @param id the segment id
+     * @param create true to create a new segment with the configured size,
+     * false to open an existing one with its own size
+     * @return the segment
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    private Segment openSegment(long id, boolean create) throws IOException {
+        File file = new File(directory, String.format("%s%019d%s", PREFIX, id, SUFFIX));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        if (create) {
+            raf.setLength(segmentSize);
+        }
+        FileChannel channel = raf.getChannel();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        Segment segment = new Segment(id, file, raf, buffer);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Reads the record at the given offset of a segment.
+     *
+     * @param segment the segment
+     * @param offset the record offset
+     * @return the record, or null if the segment has no more valid records
+     */
+    private Record read(Segment segment, int offset) {
+        if (offset + HEADER > segment.size) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset);
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > segment.size - offset - HEADER) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        buffer.get(data);
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != checksum) {
+            LOG.log(Level.WARNING, "Torn record in log journal segment {0} at offset {1}",
+                    new Object[]{segment.file.getName(), offset});
+            return null;
+        }
+
+        try {
+            return decode(data);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Corrupt record in log journal segment {0} at offset {1}",
+                    new Object[]{segment.file.getName(), offset});
+            return null;
+        }
+    }
+
+    /**
+     * Serializes a log and its pair.
+     */
+    private static byte[] encode(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(provider.getSystemGroup());
+            out.writeUTF(provider.getSystemName());
+            out.writeUTF(consumer.getSystemGroup());
+            out.writeUTF(consumer.getSystemName());
+            out.write(log.getId().toByteArray());
+            out.writeUTF(log.getProtocol());
+            out.writeLong(log.getTimestamp());
+            out.writeInt(log.getParameters().size());
+            for (Map.Entry<String, String> parameter : log.getParameters().entrySet()) {
+                out.writeUTF(parameter.getKey());
+                out.writeUTF(parameter.getValue());
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a log and its pair.
+     */
+    private static Record decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            ArrowheadSystem provider = new ArrowheadSystem(in.readUTF(), in.readUTF(), null, null, null);
+            ArrowheadSystem consumer = new ArrowheadSystem(in.readUTF(), in.readUTF(), null, null, null);
+            byte[] id = new byte[12];
+            in.readFully(id);
+            String protocol = in.readUTF();
+            long timestamp = in.readLong();
+            int count = in.readInt();
+            Map<String, String> parameters = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                parameters.put(in.readUTF(), in.readUTF());
+            }
+            return new Record(new MonitorLog(new ObjectId(id), protocol, timestamp, parameters),
+                    provider, consumer, data.length);
+        }
+    }
+
+    /**
+     * Journal positions hold the segment id in the high 32 bits and the offset
+     * in the segment in the low 32 bits, so they grow across segments of any
+     * size.
+     */
+    private static long position(long segment, int offset) {
+        return (segment << 32) | offset;
+    }
+
+    private static long segment(long position) {
+        return position >>> 32;
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Gets a snapshot of the journal metrics.
+     *
+     * @return the journal metrics
+     */
+    public LogJournalStatistics getStatistics() {
+        long count = commits.get();
+        LogJournalStatistics stats = new LogJournalStatistics();
+        stats.setEnabled(enabled);
+        stats.setSegments(segments.size());
+        stats.setAppendedLogs(appendedLogs.get());
+        stats.setShippedLogs(shippedLogs.get());
+        stats.setFailedLogs(failedLogs.get());
+        stats.setCommits(count);
+        stats.setAverageCommitSize(count == 0 ? 0 : (double) appendedLogs.get() / count);
+        stats.setAverageCommitLatency(count == 0 ? 0 : commitNanos.get() / 1e6 / count);
+        stats.setMaxCommitLatency(maxCommitNanos.get() / 1e6);
+        return stats;
+    }
+
+    /**
+     * A memory-mapped journal segment.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private final int size;
+
+        private Segment(long id, File file, RandomAccessFile raf, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.raf = raf;
+            this.buffer = buffer;
+            this.size = buffer.capacity();
+        }
+
+        private void close() {
+            try {
+                raf.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A log read from the journal.
+     */
+    private static final class Record {
+
+        private final MonitorLog log;
+        private final ArrowheadSystem provider;
+        private final ArrowheadSystem consumer;
+        private final int length;
+        private long position;
+
+        private Record(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer, int length) {
+            this.log = log;
+            this.provider = provider;
+            this.consumer = consumer;
+            this.length = length;
+        }
+    }
+}
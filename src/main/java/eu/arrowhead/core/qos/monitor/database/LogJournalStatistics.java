@@ -0,0 +1,190 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Snapshot of the metrics of the {@link LogJournal}.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class LogJournalStatistics {
+
+    private boolean enabled;
+    private int segments;
+    private long appendedLogs;
+    private long shippedLogs;
+    private long failedLogs;
+    private long commits;
+    private double averageCommitSize;
+    private double averageCommitLatency;
+    private double maxCommitLatency;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public LogJournalStatistics() {
+    }
+
+    /**
+     * Checks if logs are written through the journal.
+     *
+     * @return true if logs are written through the journal
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets if logs are written through the journal.
+     *
+     * @param enabled true if logs are written through the journal
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the number of segments not yet fully shipped.
+     *
+     * @return the number of segments not yet fully shipped
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * Sets the number of segments not yet fully shipped.
+     *
+     * @param segments the number of segments not yet fully shipped
+     */
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Gets the number of logs appended to the journal.
+     *
+     * @return the number of logs appended to the journal
+     */
+    public long getAppendedLogs() {
+        return appendedLogs;
+    }
+
+    /**
+     * Sets the number of logs appended to the journal.
+     *
+     * @param appendedLogs the number of logs appended to the journal
+     */
+    public void setAppendedLogs(long appendedLogs) {
+        this.appendedLogs = appendedLogs;
+    }
+
+    /**
+     * Gets the number of journaled logs stored in MongoDB.
+     *
+     * @return the number of journaled logs stored in MongoDB
+     */
+    public long getShippedLogs() {
+        return shippedLogs;
+    }
+
+    /**
+     * Sets the number of journaled logs stored in MongoDB.
+     *
+     * @param shippedLogs the number of journaled logs stored in MongoDB
+     */
+    public void setShippedLogs(long shippedLogs) {
+        this.shippedLogs = shippedLogs;
+    }
+
+    /**
+     * Gets the number of journaled logs refused by MongoDB.
+     *
+     * @return the number of journaled logs refused by MongoDB
+     */
+    public long getFailedLogs() {
+        return failedLogs;
+    }
+
+    /**
+     * Sets the number of journaled logs refused by MongoDB.
+     *
+     * @param failedLogs the number of journaled logs refused by MongoDB
+     */
+    public void setFailedLogs(long failedLogs) {
+        this.failedLogs = failedLogs;
+    }
+
+    /**
+     * Gets the number of group commits.
+     *
+     * @return the number of group commits
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    /**
+     * Sets the number of group commits.
+     *
+     * @param commits the number of group commits
+     */
+    public void setCommits(long commits) {
+        this.commits = commits;
+    }
+
+    /**
+     * Gets the average number of logs made durable by a commit.
+     *
+     * @return the average number of logs made durable by a commit
+     */
+    public double getAverageCommitSize() {
+        return averageCommitSize;
+    }
+
+    /**
+     * Sets the average number of logs made durable by a commit.
+     *
+     * @param averageCommitSize the average number of logs made durable by a commit
+     */
+    public void setAverageCommitSize(double averageCommitSize) {
+        this.averageCommitSize = averageCommitSize;
+    }
+
+    /**
+     * Gets the average commit latency, in milliseconds.
+     *
+     * @return the average commit latency, in milliseconds
+     */
+    public double getAverageCommitLatency() {
+        return averageCommitLatency;
+    }
+
+    /**
+     * Sets the average commit latency, in milliseconds.
+     *
+     * @param averageCommitLatency the average commit latency, in milliseconds
+     */
+    public void setAverageCommitLatency(double averageCommitLatency) {
+        this.averageCommitLatency = averageCommitLatency;
+    }
+
+    /**
+     * Gets the maximum commit latency, in milliseconds.
+     *
+     * @return the maximum commit latency, in milliseconds
+     */
+    public double getMaxCommitLatency() {
+        return maxCommitLatency;
+    }
+
+    /**
+     * Sets the maximum commit latency, in milliseconds.
+     *
+     * @param maxCommitLatency the maximum commit latency, in milliseconds
+     */
+    public void setMaxCommitLatency(double maxCommitLatency) {
+        this.maxCommitLatency = maxCommitLatency;
+    }
+}
@@ -0,0 +1,356 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import eu.arrowhead.common.exception.ServiceOverloadedException;
+import eu.arrowhead.common.model.ArrowheadSystem;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The LogWriteQueue.
+ *
+ * Decouples the acceptance of a monitor log from its storage in MongoDB.
+ * Accepted logs are kept in a bounded queue that is drained by a small set of
+ * writer threads. Each writer coalesces the logs it takes from the queue by
+ * provider and consumer pair and flushes them with one bulk write per pair,
+ * either when the batch size is reached or when the flush interval expires.
+ *
+ * The queue is configured in the 'mongodb.properties' file and is disabled by
+ * default, in which case logs are written synchronously.
+ *
+ * @author Renato Ayres
+ */
+public final class LogWriteQueue {
+
+    private static LogWriteQueue instance;
+    private final boolean enabled;
+    private final int capacity;
+    private final int writers;
+    private final int batchSize;
+    private final long flushInterval;
+    private final BlockingQueue<PendingLog> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong batchedLogs = new AtomicLong();
+    private final AtomicLong flushedLogs = new AtomicLong();
+    private final AtomicLong failedLogs = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile int lastFlushSize;
+    private volatile long lastFlushNanos;
+    private static final Logger LOG = Logger.getLogger(LogWriteQueue.class.getName());
+
+    /**
+     * Returns the Singleton instance of LogWriteQueue
+     *
+     * @return Singleton instance
+     */
+    public static synchronized LogWriteQueue getInstance() {
+        if (instance == null) {
+            instance = new LogWriteQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance configured from the 'mongodb.properties' file.
+     */
+    private LogWriteQueue() {
+        Properties props = getProps();
+        enabled = Boolean.valueOf(props.getProperty("log.write.async", "false"));
+        capacity = Integer.valueOf(props.getProperty("log.write.queue.capacity", "10000"));
+        writers = Integer.valueOf(props.getProperty("log.write.writers", "2"));
+        batchSize = Integer.valueOf(props.getProperty("log.write.batch.size", "500"));
+        flushInterval = TimeUnit.MILLISECONDS.toNanos(
+                Long.valueOf(props.getProperty("log.write.flush.interval", "5")));
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Gets the properties file named 'mongodb.properties'.
+     *
+     * @return the Properties from properties file 'mongodb.properties'
+     */
+    private Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mongodb.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'mongodb.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Checks if logs should be written asynchronously through this queue.
+     *
+     * @return true if the queue is enabled, false if logs are written
+     * synchronously
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the writer threads. Does nothing if the queue is disabled or
+     * already running.
+     */
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(this::drain, "LogWriteQueue-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        LOG.log(Level.INFO, "LogWriteQueue started with {0} writers.", writers);
+    }
+
+    /**
+     * Stops the writer threads, flushing all the logs still in the queue.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+        LOG.log(Level.INFO, "LogWriteQueue stopped.");
+    }
+
+    /**
+     * Adds a log to the queue. The given callback is executed by a writer
+     * thread once the log is stored.
+     *
+     * @param log the log to store
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @param onStored action to execute after the log is stored. May be null
+     * @throws ServiceOverloadedException if the queue is full
+     */
+    public void enqueue(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer, Runnable onStored) {
+        enqueue(log, provider, consumer, onStored, null);
+    }
+
+    /**
+     * Adds a log to the queue. One of the given callbacks is executed by a
+     * writer thread once the log is stored or fails to be stored.
+     *
+     * @param log the log to store
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @param onStored action to execute after the log is stored. May be null
+     * @param onFailed action to execute if the log could not be stored. May be
+     * null
+     * @throws ServiceOverloadedException if the queue is full
+     */
+    public void enqueue(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer, Runnable onStored,
+            Consumer<RuntimeException> onFailed) {
+        if (!queue.offer(new PendingLog(log, provider, consumer, onStored, onFailed))) {
+            throw new ServiceOverloadedException("Monitor log queue is full. Try again later.");
+        }
+    }
+
+    /**
+     * Writer loop. Takes logs from the queue until the batch size is reached or
+     * the flush interval expires, and flushes them.
+     */
+    private void drain() {
+        List<PendingLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingLog first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushInterval;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !pollInto(batch, remaining)) {
+                        break;
+                    }
+                }
+                flush(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                LOG.log(Level.SEVERE, "LogWriteQueue writer failure", ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits up to the given time for a log and adds it to the batch.
+     *
+     * @param batch the batch being built
+     * @param timeout maximum time to wait, in nanoseconds
+     * @return true if a log was added, false if the time expired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean pollInto(List<PendingLog> batch, long timeout) throws InterruptedException {
+        PendingLog next = queue.poll(timeout, TimeUnit.NANOSECONDS);
+        if (next == null) {
+            return false;
+        }
+        batch.add(next);
+        return true;
+    }
+
+    /**
+     * Stores a batch of logs with one bulk write per provider and consumer
+     * pair, and executes the callbacks of the stored logs. The write errors of
+     * a bulk write fail only the logs they identify; the other logs of the
+     * pair are stored.
+     *
+     * @param batch the logs to store
+     */
+    private void flush(List<PendingLog> batch) {
+        Map<String, List<PendingLog>> pairs = new LinkedHashMap<>();
+        for (PendingLog pending : batch) {
+            pairs.computeIfAbsent(pending.getPairKey(), (key) -> new ArrayList<>()).add(pending);
+        }
+
+        long start = System.nanoTime();
+        int stored = 0;
+
+        for (List<PendingLog> pair : pairs.values()) {
+            List<MonitorLog> logs = new ArrayList<>(pair.size());
+            for (PendingLog pending : pair) {
+                logs.add(pending.log);
+            }
+            PendingLog first = pair.get(0);
+            Map<Integer, RuntimeException> failed = new HashMap<>();
+            try {
+                MonitorStoreFactory.getInstance().insertLogs(logs, first.provider, first.consumer);
+            } catch (MongoBulkWriteException ex) {
+                for (BulkWriteError error : ex.getWriteErrors()) {
+                    failed.put(error.getIndex(), new MongoException(error.getCode(), error.getMessage()));
+                }
+            } catch (RuntimeException ex) {
+                for (int i = 0; i < pair.size(); i++) {
+                    failed.put(i, ex);
+                }
+            }
+            if (!failed.isEmpty()) {
+                failedLogs.addAndGet(failed.size());
+                LOG.log(Level.WARNING, "Failed to store {0} of {1} logs: {2}", new Object[]{
+                    failed.size(), pair.size(), failed.values().iterator().next().getMessage()});
+            }
+            for (int i = 0; i < pair.size(); i++) {
+                PendingLog pending = pair.get(i);
+                RuntimeException error = failed.get(i);
+                if (error == null) {
+                    stored++;
+                    if (pending.onStored != null) {
+                        pending.onStored.run();
+                    }
+                } else if (pending.onFailed != null) {
+                    pending.onFailed.accept(error);
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        flushes.incrementAndGet();
+        batchedLogs.addAndGet(batch.size());
+        flushedLogs.addAndGet(stored);
+        flushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        lastFlushSize = batch.size();
+        lastFlushNanos = elapsed;
+    }
+
+    /**
+     * Gets a snapshot of the queue metrics.
+     *
+     * @return the queue metrics
+     */
+    public LogWriteStatistics getStatistics() {
+        LogWriteStatistics stats = new LogWriteStatistics();
+        long count = flushes.get();
+        stats.setEnabled(enabled);
+        stats.setQueueDepth(queue.size());
+        stats.setQueueCapacity(capacity);
+        stats.setFlushes(count);
+        stats.setFlushedLogs(flushedLogs.get());
+        stats.setFailedLogs(failedLogs.get());
+        stats.setLastFlushSize(lastFlushSize);
+        stats.setAverageFlushSize(count == 0 ? 0 : (double) batchedLogs.get() / count);
+        stats.setLastFlushLatency(toMillis(lastFlushNanos));
+        stats.setAverageFlushLatency(count == 0 ? 0 : toMillis(flushNanos.get()) / count);
+        stats.setMaxFlushLatency(toMillis(maxFlushNanos.get()));
+        return stats;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * A log waiting to be stored.
+     */
+    private static final class PendingLog {
+
+        private final MonitorLog log;
+        private final ArrowheadSystem provider;
+        private final ArrowheadSystem consumer;
+        private final Runnable onStored;
+        private final Consumer<RuntimeException> onFailed;
+
+        private PendingLog(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer, Runnable onStored,
+                Consumer<RuntimeException> onFailed) {
+            this.log = log;
+            this.provider = provider;
+            this.consumer = consumer;
+            this.onStored = onStored;
+            this.onFailed = onFailed;
+        }
+
+        private String getPairKey() {
+            return RuleCache.getKey(provider.getSystemGroup(), provider.getSystemName(),
+                    consumer.getSystemGroup(), consumer.getSystemName());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Snapshot of the metrics of the {@link LogWriteQueue}.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class LogWriteStatistics {
+
+    private boolean enabled;
+    private int queueDepth;
+    private int queueCapacity;
+    private long flushes;
+    private long flushedLogs;
+    private long failedLogs;
+    private int lastFlushSize;
+    private double averageFlushSize;
+    private double lastFlushLatency;
+    private double averageFlushLatency;
+    private double maxFlushLatency;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public LogWriteStatistics() {
+    }
+
+    /**
+     * Checks if logs are written asynchronously.
+     *
+     * @return true if logs are written asynchronously
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets if logs are written asynchronously.
+     *
+     * @param enabled true if logs are written asynchronously
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the number of logs waiting to be stored.
+     *
+     * @return the number of logs waiting to be stored
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Sets the number of logs waiting to be stored.
+     *
+     * @param queueDepth the number of logs waiting to be stored
+     */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Gets the maximum number of logs the queue holds.
+     *
+     * @return the maximum number of logs the queue holds
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of logs the queue holds.
+     *
+     * @param queueCapacity the maximum number of logs the queue holds
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Gets the number of flushes performed.
+     *
+     * @return the number of flushes performed
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Sets the number of flushes performed.
+     *
+     * @param flushes the number of flushes performed
+     */
+    public void setFlushes(long flushes) {
+        this.flushes = flushes;
+    }
+
+    /**
+     * Gets the number of logs taken from the queue and stored.
+     *
+     * @return the number of logs stored
+     */
+    public long getFlushedLogs() {
+        return flushedLogs;
+    }
+
+    /**
+     * Sets the number of logs taken from the queue and stored.
+     *
+     * @param flushedLogs the number of logs stored
+     */
+    public void setFlushedLogs(long flushedLogs) {
+        this.flushedLogs = flushedLogs;
+    }
+
+    /**
+     * Gets the number of logs that failed to be stored.
+     *
+     * @return the number of logs that failed to be stored
+     */
+    public long getFailedLogs() {
+        return failedLogs;
+    }
+
+    /**
+     * Sets the number of logs that failed to be stored.
+     *
+     * @param failedLogs the number of logs that failed to be stored
+     */
+    public void setFailedLogs(long failedLogs) {
+        this.failedLogs = failedLogs;
+    }
+
+    /**
+     * Gets the number of logs in the last flush.
+     *
+     * @return the number of logs in the last flush
+     */
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    /**
+     * Sets the number of logs in the last flush.
+     *
+     * @param lastFlushSize the number of logs in the last flush
+     */
+    public void setLastFlushSize(int lastFlushSize) {
+        this.lastFlushSize = lastFlushSize;
+    }
+
+    /**
+     * Gets the average number of logs per flush.
+     *
+     * @return the average number of logs per flush
+     */
+    public double getAverageFlushSize() {
+        return averageFlushSize;
+    }
+
+    /**
+     * Sets the average number of logs per flush.
+     *
+     * @param averageFlushSize the average number of logs per flush
+     */
+    public void setAverageFlushSize(double averageFlushSize) {
+        this.averageFlushSize = averageFlushSize;
+    }
+
+    /**
+     * Gets the duration of the last flush, in milliseconds.
+     *
+     * @return the duration of the last flush, in milliseconds
+     */
+    public double getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    /**
+     * Sets the duration of the last flush, in milliseconds.
+     *
+     * @param lastFlushLatency the duration of the last flush, in milliseconds
+     */
+    public void setLastFlushLatency(double lastFlushLatency) {
+        this.lastFlushLatency = lastFlushLatency;
+    }
+
+    /**
+     * Gets the average duration of a flush, in milliseconds.
+     *
+     * @return the average duration of a flush, in milliseconds
+     */
+    public double getAverageFlushLatency() {
+        return averageFlushLatency;
+    }
+
+    /**
+     * Sets the average duration of a flush, in milliseconds.
+     *
+     * @param averageFlushLatency the average duration of a flush, in milliseconds
+     */
+    public void setAverageFlushLatency(double averageFlushLatency) {
+        this.averageFlushLatency = averageFlushLatency;
+    }
+
+    /**
+     * Gets the longest duration of a flush, in milliseconds.
+     *
+     * @return the longest duration of a flush, in milliseconds
+     */
+    public double getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
+    /**
+     * Sets the longest duration of a flush, in milliseconds.
+     *
+     * @param maxFlushLatency the longest duration of a flush, in milliseconds
+     */
+    public void setMaxFlushLatency(double maxFlushLatency) {
+        this.maxFlushLatency = maxFlushLatency;
+    }
+}
@@ -0,0 +1,134 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Summary of the values of one metric within an aggregation window.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class MetricAggregate {
+
+    private String metric;
+    private long count;
+    private double min;
+    private double max;
+    private double mean;
+    private double p95;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public MetricAggregate() {
+    }
+
+    /**
+     * Gets the metric name.
+     *
+     * @return the metric name
+     */
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * Sets the metric name.
+     *
+     * @param metric the metric name
+     */
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Gets the number of values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of values.
+     *
+     * @param count the number of values
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * Gets the minimum value.
+     *
+     * @return the minimum value
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Sets the minimum value.
+     *
+     * @param min the minimum value
+     */
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    /**
+     * Gets the maximum value.
+     *
+     * @return the maximum value
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Sets the maximum value.
+     *
+     * @param max the maximum value
+     */
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    /**
+     * Gets the mean value.
+     *
+     * @return the mean value
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Sets the mean value.
+     *
+     * @param mean the mean value
+     */
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    /**
+     * Gets the 95th percentile. Exact for minute windows, estimated from the
+     * percentiles of the finer windows otherwise.
+     *
+     * @return the 95th percentile
+     */
+    public double getP95() {
+        return p95;
+    }
+
+    /**
+     * Sets the 95th percentile.
+     *
+     * @param p95 the 95th percentile
+     */
+    public void setP95(double p95) {
+        this.p95 = p95;
+    }
+}
@@ -0,0 +1,92 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ordered set of numeric metrics monitored by a protocol.
+ *
+ * A schema assigns each metric a fixed position, so the metric values of a
+ * {@link MonitorLog} or {@link MonitorRule} can be kept in a plain double
+ * array, parsed once when the message is received, instead of being parsed
+ * from strings every time they are read.
+ *
+ * @author Renato Ayres
+ */
+public final class MetricSchema {
+
+    private final String[] names;
+    private final Map<String, Integer> positions;
+
+    /**
+     * Creates a new schema with the given metric names, in order.
+     *
+     * @param names the metric names
+     */
+    public MetricSchema(String... names) {
+        this.names = names.clone();
+        this.positions = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            positions.put(names[i], i);
+        }
+    }
+
+    /**
+     * Gets the number of metrics in the schema.
+     *
+     * @return the number of metrics
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Gets the name of the metric at the given position.
+     *
+     * @param index the metric position
+     * @return the metric name
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Gets the metric names, in order.
+     *
+     * @return the metric names
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Gets the position of a metric.
+     *
+     * @param name the metric name
+     * @return the metric position, or -1 if the metric is not in the schema
+     */
+    public int indexOf(String name) {
+        Integer index = positions.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Parses the metrics of the schema from a map of parameters. Metrics
+     * missing from the map are set to NaN.
+     *
+     * @param parameters the parameters
+     * @return the metric values, in schema order
+     * @throws NumberFormatException if a metric value is not a number
+     */
+    public double[] parse(Map<String, String> parameters) {
+        double[] values = new double[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String value = parameters.get(names[i]);
+            values[i] = value == null ? Double.NaN : Double.parseDouble(value);
+        }
+        return values;
+    }
+}
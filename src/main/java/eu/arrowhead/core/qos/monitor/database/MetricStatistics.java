@@ -0,0 +1,154 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Descriptive statistics of the values of one metric of a pair.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class MetricStatistics {
+
+    private String metric;
+    private long count;
+    private double min;
+    private double max;
+    private double mean;
+    private double stddev;
+    private List<PercentileValue> percentiles = new ArrayList<>();
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public MetricStatistics() {
+    }
+
+    /**
+     * Gets the metric name.
+     *
+     * @return the metric name
+     */
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * Sets the metric name.
+     *
+     * @param metric the metric name
+     */
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Gets the number of values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of values.
+     *
+     * @param count the number of values
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * Gets the minimum value.
+     *
+     * @return the minimum value
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Sets the minimum value.
+     *
+     * @param min the minimum value
+     */
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    /**
+     * Gets the maximum value.
+     *
+     * @return the maximum value
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Sets the maximum value.
+     *
+     * @param max the maximum value
+     */
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    /**
+     * Gets the mean value.
+     *
+     * @return the mean value
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Sets the mean value.
+     *
+     * @param mean the mean value
+     */
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    /**
+     * Gets the population standard deviation.
+     *
+     * @return the standard deviation
+     */
+    public double getStddev() {
+        return stddev;
+    }
+
+    /**
+     * Sets the population standard deviation.
+     *
+     * @param stddev the standard deviation
+     */
+    public void setStddev(double stddev) {
+        this.stddev = stddev;
+    }
+
+    /**
+     * Gets the requested percentiles.
+     *
+     * @return the percentiles
+     */
+    public List<PercentileValue> getPercentiles() {
+        return percentiles;
+    }
+
+    /**
+     * Sets the requested percentiles.
+     *
+     * @param percentiles the percentiles
+     */
+    public void setPercentiles(List<PercentileValue> percentiles) {
+        this.percentiles = percentiles;
+    }
+}
@@ -0,0 +1,76 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Outcome of a migration of stored documents.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class MigrationReport {
+
+    private int collections;
+    private long documents;
+    private boolean running;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public MigrationReport() {
+    }
+
+    /**
+     * Gets the number of collections converted.
+     *
+     * @return the number of collections converted
+     */
+    public int getCollections() {
+        return collections;
+    }
+
+    /**
+     * Sets the number of collections converted.
+     *
+     * @param collections the number of collections converted
+     */
+    public void setCollections(int collections) {
+        this.collections = collections;
+    }
+
+    /**
+     * Gets the number of documents converted.
+     *
+     * @return the number of documents converted
+     */
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Sets the number of documents converted.
+     *
+     * @param documents the number of documents converted
+     */
+    public void setDocuments(long documents) {
+        this.documents = documents;
+    }
+
+    /**
+     * Checks if the migration is still running in the background.
+     *
+     * @return true if the migration is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Sets if the migration is still running in the background.
+     *
+     * @param running true if the migration is running
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+}
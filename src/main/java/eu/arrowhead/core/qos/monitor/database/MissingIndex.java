@@ -0,0 +1,86 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+/**
+ * An expected index missing from a collection.
+ *
+ * @author Renato Ayres
+ */
+public class MissingIndex {
+
+    private String collection;
+    private String keys;
+    private boolean unique;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public MissingIndex() {
+    }
+
+    /**
+     * Creates a new instance with the given parameters.
+     *
+     * @param collection the collection name
+     * @param keys the index keys, as JSON
+     * @param unique true if the index must be unique
+     */
+    public MissingIndex(String collection, String keys, boolean unique) {
+        this.collection = collection;
+        this.keys = keys;
+        this.unique = unique;
+    }
+
+    /**
+     * Gets the collection name.
+     *
+     * @return the collection name
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Sets the collection name.
+     *
+     * @param collection the collection name
+     */
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Gets the index keys, as JSON.
+     *
+     * @return the index keys
+     */
+    public String getKeys() {
+        return keys;
+    }
+
+    /**
+     * Sets the index keys, as JSON.
+     *
+     * @param keys the index keys
+     */
+    public void setKeys(String keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Checks if the index must be unique.
+     *
+     * @return true if the index must be unique
+     */
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * Sets if the index must be unique.
+     *
+     * @param unique true if the index must be unique
+     */
+    public void setUnique(boolean unique) {
+        this.unique = unique;
+    }
+}
@@ -0,0 +1,469 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWaitQueueFullException;
+import com.mongodb.ReadConcern;
+import com.mongodb.WriteConcern;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.WriteModel;
+import eu.arrowhead.common.exception.ServiceOverloadedException;
+import eu.arrowhead.common.model.ArrowheadSystem;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
+import eu.arrowhead.core.qos.monitor.metrics.Stage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+/**
+ * The MongoAsyncStore.
+ *
+ * {@link AsyncMonitorStore} over the MongoDB async driver. Rules found in the
+ * rule cache are returned without leaving the calling thread; every other
+ * database call is issued on the async driver and its stage is completed by
+ * the driver callback, so no thread waits for MongoDB. Logs are handed to the
+ * {@link LogJournal} or the {@link LogWriteQueue} when enabled, and their
+ * stages are completed by the journal committer or by the queue writers.
+ *
+ * The rule cache, log layout, durability classes and metrics are shared with
+ * the {@link MongoDatabaseManager}. Stores other than MongoDB are local and
+ * called directly. When too many database calls are in flight, new calls are
+ * rejected with a ServiceOverloadedException instead of piling up.
+ *
+ * The store is configured in the 'mongodb.properties' file.
+ *
+ * @author Renato Ayres
+ */
+public final class MongoAsyncStore implements AsyncMonitorStore {
+
+    private static MongoAsyncStore instance;
+    private final Properties props;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+    private MongoClient client;
+    private volatile MongoDatabase database;
+    private static final Logger LOG = Logger.getLogger(MongoAsyncStore.class.getName());
+
+    /**
+     * Returns the Singleton instance of MongoAsyncStore
+     *
+     * @return Singleton instance
+     */
+    public static synchronized MongoAsyncStore getInstance() {
+        if (instance == null) {
+            instance = new MongoAsyncStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance configured from the 'mongodb.properties' file.
+     */
+    private MongoAsyncStore() {
+        props = getProps();
+        maxPending = Integer.valueOf(props.getProperty("store.async.max.pending", "10000"));
+    }
+
+    /**
+     * Gets the properties file named 'mongodb.properties'.
+     *
+     * @return the Properties from properties file 'mongodb.properties'
+     */
+    private Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mongodb.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'mongodb.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Opens the async client. Does nothing if already running, or if the
+     * storage is not MongoDB.
+     */
+    public synchronized void start() {
+        if (client != null || !MonitorStoreFactory.isMongoDB()) {
+            return;
+        }
+        client = MongoClients.create(props.getProperty("connectionString"));
+        database = client.getDatabase(props.getProperty("database"));
+        LOG.log(Level.INFO, "MongoAsyncStore started.");
+    }
+
+    /**
+     * Closes the async client. Calls still in flight fail.
+     */
+    public synchronized void stop() {
+        if (client == null) {
+            return;
+        }
+        database = null;
+        client.close();
+        client = null;
+        LOG.log(Level.INFO, "MongoAsyncStore stopped.");
+    }
+
+    @Override
+    public CompletionStage<MonitorRule> findRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        if (!MonitorStoreFactory.isMongoDB()) {
+            return supplyNow(() -> MonitorStoreFactory.getInstance().findRule(provider, consumer));
+        }
+        long start = System.nanoTime();
+        return lookupRule(provider, consumer).whenComplete((rule, ex) -> {
+            if (ex == null) {
+                QoSMetrics.getInstance().record(Stage.RULE_LOOKUP, System.nanoTime() - start);
+            } else {
+                QoSMetrics.getInstance().recordError(Stage.RULE_LOOKUP);
+            }
+        });
+    }
+
+    /**
+     * Gets the rule of a pair from the rule cache or, on a miss, from the
+     * Rule collection, without recording a rule lookup.
+     *
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return a stage completed with the rule, or with null if the pair has no
+     * rule
+     */
+    private CompletableFuture<MonitorRule> lookupRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        MongoDatabaseManager manager = MongoDatabaseManager.getInstance();
+        MonitorRule cached = manager.findCachedRule(provider, consumer);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        Bson filter = manager.createRuleFilter(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+        long since = manager.getRuleCacheGeneration();
+        return this.<MonitorRule>call((future) -> getRuleCollection().find(filter).first(complete(future)))
+                .thenApply((rule) -> {
+                    if (rule != null) {
+                        manager.cacheRule(rule, since);
+                    }
+                    return rule;
+                });
+    }
+
+    @Override
+    public CompletionStage<Boolean> replaceRule(MonitorRule rule) {
+        if (!MonitorStoreFactory.isMongoDB()) {
+            return supplyNow(() -> MonitorStoreFactory.getInstance().replaceRule(rule));
+        }
+        return call((future) -> replaceRule(rule, 1, future));
+    }
+
+    /**
+     * Replaces a rule in place, keeping the id of the stored rule and
+     * incrementing its version, as {@link MongoDatabaseManager#replaceRule}
+     * does. A concurrent replacement of the same rule is retried.
+     *
+     * @param rule the rule. Its version is set to the stored version
+     * @param attempt the number of this attempt, from 1
+     * @param future the future completed with the outcome
+     */
+    private void replaceRule(MonitorRule rule, int attempt, CompletableFuture<Boolean> future) {
+        MongoDatabaseManager manager = MongoDatabaseManager.getInstance();
+        Bson filter = manager.createRuleFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName());
+
+        getRuleCollection().find(filter).first((current, findError) -> {
+            if (findError != null) {
+                future.completeExceptionally(findError);
+                return;
+            }
+
+            MonitorRule replacement = MongoDatabaseManager.createReplacement(rule, current);
+            getRuleCollection().replaceOne(manager.createReplacementFilter(rule, current), replacement,
+                    MongoDatabaseManager.createReplacementOptions(current), (result, ex) -> {
+                        try {
+                            if (manager.completeReplacement(rule, current, replacement, result, ex, attempt)) {
+                                future.complete(true);
+                            } else {
+                                replaceRule(rule, attempt + 1, future);
+                            }
+                        } catch (RuntimeException failure) {
+                            future.completeExceptionally(failure);
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public CompletionStage<Boolean> deleteRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        if (!MonitorStoreFactory.isMongoDB()) {
+            return supplyNow(() -> MonitorStoreFactory.getInstance().deleteRule(provider, consumer));
+        }
+        MongoDatabaseManager manager = MongoDatabaseManager.getInstance();
+        Bson filter = manager.createRuleFilter(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+        return this.<MonitorRule>call((future) -> getRuleCollection().findOneAndDelete(filter, complete(future)))
+                .thenApply((deleted) -> {
+                    manager.uncacheRule(RuleCache.getKey(provider.getSystemGroup(), provider.getSystemName(),
+                            consumer.getSystemGroup(), consumer.getSystemName()));
+                    return true;
+                });
+    }
+
+    @Override
+    public CompletionStage<Void> insertLog(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer,
+            Runnable onStored) {
+        if (LogJournal.getInstance().isEnabled()) {
+            try {
+                return LogJournal.getInstance().whenCommitted(
+                        LogJournal.getInstance().write(log, provider, consumer, onStored));
+            } catch (RuntimeException ex) {
+                return failed(ex);
+            }
+        }
+
+        if (LogWriteQueue.getInstance().isEnabled()) {
+            try {
+                LogWriteQueue.getInstance().enqueue(log, provider, consumer, onStored, (ex) ->
+                        LOG.log(Level.WARNING, "Queued log not stored: {0}", ex.getMessage()));
+            } catch (RuntimeException ex) {
+                return failed(ex);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> stored;
+        if (MonitorStoreFactory.isMongoDB()) {
+            stored = lookupRule(provider, consumer).thenCompose((rule) ->
+                    writeLogs(Collections.singletonList(log), rule, provider, consumer));
+        } else {
+            stored = supplyNow(() -> {
+                MonitorStoreFactory.getInstance().insertLog(log, provider, consumer);
+                return null;
+            });
+        }
+        return stored.thenRun(() -> {
+            if (onStored != null) {
+                onStored.run();
+            }
+        });
+    }
+
+    @Override
+    public CompletionStage<Void> insertLogs(List<MonitorLog> logs, ArrowheadSystem provider,
+            ArrowheadSystem consumer) {
+        if (logs.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!MonitorStoreFactory.isMongoDB()) {
+            return supplyNow(() -> {
+                MonitorStoreFactory.getInstance().insertLogs(logs, provider, consumer);
+                return null;
+            });
+        }
+        return lookupRule(provider, consumer).thenCompose((rule) -> writeLogs(logs, rule, provider, consumer));
+    }
+
+    /**
+     * Writes the logs of a pair to its Log collection, in the layout and with
+     * the write concern of the durability class the
+     * {@link MongoDatabaseManager} uses, recording the same metrics. Several
+     * logs are written unordered, so a failed log does not prevent the
+     * remaining ones from being stored.
+     *
+     * @param logs the logs to write
+     * @param rule the current rule of the pair, may be null
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return a stage completed once the logs are stored
+     */
+    private CompletableFuture<Void> writeLogs(List<MonitorLog> logs, MonitorRule rule,
+            ArrowheadSystem provider, ArrowheadSystem consumer) {
+        MongoDatabaseManager manager = MongoDatabaseManager.getInstance();
+        Durability durability = manager.getDurability(rule);
+        String name = manager.getLogCollectionName(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+        manager.ensureLogIndexesLater(name);
+        manager.tagLogs(logs, rule, provider, consumer);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> written = call((future) -> {
+            MongoCollection<MonitorLog> collection = getDatabase().getCollection(name, MonitorLog.class)
+                    .withCodecRegistry(manager.getLogCodecRegistry())
+                    .withWriteConcern(manager.getWriteConcern(durability))
+                    .withReadConcern(manager.getReadConcern(durability));
+            if (manager.isBucketed()) {
+                writeBuckets(collection.withDocumentClass(Document.class), logs, provider, consumer, future);
+            } else if (logs.size() == 1) {
+                collection.insertOne(logs.get(0), complete(future));
+            } else {
+                collection.insertMany(logs, new InsertManyOptions().ordered(false), complete(future));
+            }
+        });
+
+        return written.whenComplete((result, ex) -> {
+            if (ex != null) {
+                manager.recordPersistFailure(durability);
+            } else {
+                manager.recordPersist(durability, logs, start);
+            }
+        });
+    }
+
+    /**
+     * Adds logs to the buckets of their timestamps, skipping the logs that are
+     * already stored, as the {@link MongoDatabaseManager} does.
+     *
+     * @param collection the Log collection
+     * @param logs the logs to add
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @param future the future completed once the logs are stored
+     */
+    private void writeBuckets(MongoCollection<Document> collection, List<MonitorLog> logs,
+            ArrowheadSystem provider, ArrowheadSystem consumer, CompletableFuture<Void> future) {
+        MongoDatabaseManager manager = MongoDatabaseManager.getInstance();
+        collection.find(manager.getStoredSamplesFilter(logs, provider, consumer))
+                .projection(manager.getStoredSamplesProjection())
+                .into(new ArrayList<>(), (buckets, failure) -> {
+                    if (failure != null) {
+                        complete(future).onResult(null, failure);
+                        return;
+                    }
+                    List<List<Integer>> members = new ArrayList<>();
+                    List<WriteModel<Document>> updates = manager.createBucketUpdates(logs, buckets,
+                            provider, consumer, members);
+                    if (updates.isEmpty()) {
+                        future.complete(null);
+                        return;
+                    }
+                    collection.bulkWrite(updates, new BulkWriteOptions().ordered(false), (result, ex) ->
+                            complete(future).onResult(null, ex instanceof MongoBulkWriteException
+                                    ? manager.getLogErrors((MongoBulkWriteException) ex, members) : ex));
+                });
+    }
+
+    /**
+     * Gets the async database.
+     *
+     * @return the database
+     * @throws ServiceOverloadedException if the store is not running
+     */
+    private MongoDatabase getDatabase() {
+        MongoDatabase current = database;
+        if (current == null) {
+            throw new ServiceOverloadedException("Database access is not running. Try again later.");
+        }
+        return current;
+    }
+
+    /**
+     * Gets the Rule collection, with the write and read concerns the
+     * {@link MongoDatabaseManager} uses.
+     *
+     * @return the Rule collection
+     */
+    private MongoCollection<MonitorRule> getRuleCollection() {
+        return getDatabase().getCollection(MongoDBNames.RULES_TABLE, MonitorRule.class)
+                .withCodecRegistry(MongoDatabaseManager.getInstance().getRuleCodecRegistry())
+                .withWriteConcern(WriteConcern.MAJORITY)
+                .withReadConcern(ReadConcern.MAJORITY);
+    }
+
+    /**
+     * Issues a database call, counting it as in flight until its stage is
+     * completed.
+     *
+     * @param <T> the type of the result
+     * @param operation issues the call, completing the given future from the
+     * driver callback
+     * @return a stage completed with the result of the call, or failed with a
+     * ServiceOverloadedException if too many calls are in flight
+     */
+    private <T> CompletableFuture<T> call(Consumer<CompletableFuture<T>> operation) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            return failed(new ServiceOverloadedException("Too many pending database calls. Try again later."));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((result, ex) -> pending.decrementAndGet());
+        try {
+            operation.accept(future);
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Creates a driver callback completing a future. A full connection wait
+     * queue fails the future with a ServiceOverloadedException.
+     *
+     * @param <T> the type of the result
+     * @param future the future to complete
+     * @return the callback
+     */
+    private static <T> SingleResultCallback<T> complete(CompletableFuture<T> future) {
+        return (result, ex) -> {
+            if (ex instanceof MongoWaitQueueFullException) {
+                future.completeExceptionally(new ServiceOverloadedException("Too many pending database calls. Try again later."));
+            } else if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(result);
+            }
+        };
+    }
+
+    /**
+     * Runs a call on a local store, in the calling thread.
+     *
+     * @param <T> the type of the result
+     * @param call the store call
+     * @return a stage completed with the result of the call
+     */
+    private static <T> CompletableFuture<T> supplyNow(Supplier<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.get());
+        } catch (RuntimeException ex) {
+            return failed(ex);
+        }
+    }
+
+    /**
+     * Creates a stage failed with the given exception.
+     *
+     * @param <T> the type of the result
+     * @param ex the failure
+     * @return the failed stage
+     */
+    private static <T> CompletableFuture<T> failed(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+}
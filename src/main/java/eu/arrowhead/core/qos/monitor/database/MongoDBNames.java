@@ -58,8 +58,108 @@ public class MongoDBNames {
      */
     public static final String TIMESTAMP = "timestamp";
 
+    /**
+     * Codec version key
+     */
+    public static final String CODEC_VERSION = "codecVersion";
+
+    /**
+     * Stream id key
+     */
+    public static final String STREAM_ID = "stream_id";
+
     /**
      * Soft real time key
      */
     public static final String SOFTREALTIME = "softRealTime";
+
+    /**
+     * Bucket start key
+     */
+    public static final String BUCKET = "bucket";
+
+    /**
+     * Bucket oldest timestamp key
+     */
+    public static final String BUCKET_START = "start";
+
+    /**
+     * Bucket sample count key
+     */
+    public static final String SAMPLE_COUNT = "count";
+
+    /**
+     * Bucket samples key
+     */
+    public static final String SAMPLES = "samples";
+
+    /**
+     * Bucket metric minimum key
+     */
+    public static final String MIN = "min";
+
+    /**
+     * Bucket metric maximum key
+     */
+    public static final String MAX = "max";
+
+    /**
+     * Bucket metric sum key
+     */
+    public static final String SUM = "sum";
+
+    /**
+     * Single Log collection name
+     */
+    public static final String LOGS_TABLE = "logs";
+
+    /**
+     * Pair id key
+     */
+    public static final String PAIR_ID = "pairId";
+
+    /**
+     * Durability class key
+     */
+    public static final String DURABILITY = "durability";
+
+    /**
+     * Rollup state collection name
+     */
+    public static final String ROLLUP_STATE_TABLE = "rollup_state";
+
+    /**
+     * Rollup window end key
+     */
+    public static final String WINDOW_END = "end";
+
+    /**
+     * Rollup metric summaries key
+     */
+    public static final String METRICS = "metrics";
+
+    /**
+     * Rollup metric mean key
+     */
+    public static final String MEAN = "mean";
+
+    /**
+     * Rollup metric 95th percentile key
+     */
+    public static final String P95 = "p95";
+
+    /**
+     * Rollup state next window key
+     */
+    public static final String NEXT_WINDOW = "next";
+
+    /**
+     * Rule version key
+     */
+    public static final String RULE_VERSION = "version";
+
+    /**
+     * Log rule version key
+     */
+    public static final String LOG_RULE_VERSION = "ruleVersion";
 }
@@ -1,32 +1,74 @@
 package eu.arrowhead.core.qos.monitor.database;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
+import com.mongodb.MongoCommandException;
 import com.mongodb.MongoException;
 import com.mongodb.MongoWriteConcernException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.ReadConcern;
 import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import eu.arrowhead.common.exception.InvalidMonitorTypeException;
 import eu.arrowhead.common.model.ArrowheadSystem;
+import eu.arrowhead.core.qos.monitor.database.codec.CodecUtil;
+import eu.arrowhead.core.qos.monitor.database.codec.MonitorLogBucketCodec;
 import eu.arrowhead.core.qos.monitor.database.provider.MonitorLogCodecProvider;
 import eu.arrowhead.core.qos.monitor.database.provider.MonitorRuleCodecProvider;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
+import eu.arrowhead.core.qos.monitor.metrics.Stage;
 import eu.arrowhead.core.qos.monitor.protocol.IProtocol;
+import eu.arrowhead.core.qos.monitor.protocol.ProtocolRegistry;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.bson.BsonDocument;
+import org.bson.Document;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 /**
  * The MongoDatabaseManager.
@@ -36,7 +78,7 @@ import org.bson.conversions.Bson;
  * @author 1120681@isep.ipp.pt - Renato Ayres
  * @see <a href="https://api.mongodb.com/java/3.2/">MongoDB JAVA API</a>
  */
-public final class MongoDatabaseManager {
+public final class MongoDatabaseManager implements MonitorStore {
 
     private static MongoDatabaseManager instance;
     private MongoClient client;
@@ -45,6 +87,30 @@ public final class MongoDatabaseManager {
     private CodecRegistry logCodecRegistry;
     private CodecRegistry ruleCodecRegistry;
     private Properties props;
+    private final RuleCache ruleCache = new RuleCache();
+    private final Set<String> indexedCollections = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> pairIds = new ConcurrentHashMap<>();
+    private boolean singleCollection;
+    private boolean bucketed;
+    private long bucketSpan;
+    private int bucketSize;
+    private long rawRetention;
+    private LogCollectionMigrator logMigrator;
+    private final Map<Durability, WriteConcern> writeConcerns = new EnumMap<>(Durability.class);
+    private final DurabilityMetrics durabilityMetrics = new DurabilityMetrics();
+    private QueryCache<QoSStatistics> statisticsCache;
+    private final ExecutorService purger = Executors.newSingleThreadExecutor((task) -> {
+        Thread thread = new Thread(task, "LogPurger");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int INDEX_OPTIONS_CONFLICT = 85;
+    private static final Comparator<MonitorLog> NEWEST_FIRST
+            = (a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp());
+    private static final Comparator<MonitorLog> OLDEST_FIRST
+            = Comparator.comparing(MonitorLog::getTimestamp).thenComparing(MonitorLog::getId);
+    private static final int SCAN_BATCH_SIZE = 1000;
+    private static final int MAX_REPLACE_ATTEMPTS = 5;
     private static final Logger LOG = Logger.getLogger(MongoDatabaseManager.class.getName());
 
     /**
@@ -80,13 +146,246 @@ public final class MongoDatabaseManager {
             initDatabase();
         }
         initCodecRegistries();
+        initLogLayout();
+        initDurability();
     }
 
     /**
-     * Starts the MongoDatabaseManager
+     * Starts the MongoDatabaseManager, ensuring the indexes of the Rule
+     * collection and loading all the existing rules into the rule cache.
      */
+    @Override
     public void startManager() {
         initInstance();
+        instance.ensureRuleIndexes();
+        instance.shardLogCollection();
+        instance.loadRuleCache();
+    }
+
+    /**
+     * Ensures the indexes of the Rule collection: a unique index on the
+     * provider and consumer of each rule and an index on the stream id. A
+     * failure, e.g. duplicate rules preventing the unique index, is only
+     * logged and can be inspected with {@link #getIndexReport()}.
+     */
+    private void ensureRuleIndexes() {
+        try {
+            getRuleCollection().createIndex(getRulePairIndex(), new IndexOptions().unique(true));
+        } catch (MongoException ex) {
+            LOG.log(Level.WARNING, "Failed to create the rule pair index: {0}", ex.getMessage());
+        }
+        try {
+            getRuleCollection().createIndex(getStreamIdIndex());
+        } catch (MongoException ex) {
+            LOG.log(Level.WARNING, "Failed to create the rule stream id index: {0}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Ensures the indexes of a Log collection the first time it is used: a
+     * descending timestamp index, a timestamp and id index for paginated
+     * scans and, in the bucketed layout, a bucket index.
+     * When a raw log retention is configured, the timestamp index expires the
+     * logs older than the retention. A failed attempt is retried on the next
+     * use.
+     *
+     * @param name the collection name
+     * @param logs the Log collection
+     */
+    private void ensureLogIndexes(String name, MongoCollection<?> logs) {
+        if (!indexedCollections.add(name)) {
+            return;
+        }
+        try {
+            for (Document index : getLogIndexes(name)) {
+                if (rawRetention > 0 && index.size() == 1 && index.containsKey(MongoDBNames.TIMESTAMP)) {
+                    ensureTtlIndex(logs, name, index, rawRetention);
+                } else {
+                    logs.createIndex(index);
+                }
+            }
+        } catch (MongoException ex) {
+            indexedCollections.remove(name);
+            LOG.log(Level.WARNING, "Failed to create the indexes of {0}: {1}", new Object[]{name, ex.getMessage()});
+        }
+    }
+
+    /**
+     * Gets the keys of the unique index of the Rule collection on the
+     * provider and consumer of a rule.
+     *
+     * @return the index keys
+     */
+    private static Document getRulePairIndex() {
+        return new Document(MongoDBNames.PROVIDER_SYSTEM_GROUP, 1)
+                .append(MongoDBNames.PROVIDER_SYSTEM_NAME, 1)
+                .append(MongoDBNames.CONSUMER_SYSTEM_GROUP, 1)
+                .append(MongoDBNames.CONSUMER_SYSTEM_NAME, 1);
+    }
+
+    /**
+     * Gets the keys of the index of the Rule collection on the stream id.
+     *
+     * @return the index keys
+     */
+    private static Document getStreamIdIndex() {
+        return new Document(MongoDBNames.STREAM_ID, 1);
+    }
+
+    /**
+     * Gets the keys of the indexes a Log collection must have, which depend
+     * on whether it is the single Log collection, on the log layout and on the
+     * raw log retention.
+     *
+     * @param name the collection name
+     * @return the keys of each index
+     */
+    private List<Document> getLogIndexes(String name) {
+        List<Document> indexes = new ArrayList<>();
+        if (name.equals(MongoDBNames.LOGS_TABLE)) {
+            indexes.add(getShardKey());
+            if (bucketed) {
+                indexes.add(new Document(MongoDBNames.PAIR_ID, 1).append(MongoDBNames.BUCKET, 1));
+            }
+            if (rawRetention > 0) {
+                indexes.add(new Document(MongoDBNames.TIMESTAMP, 1));
+            }
+            indexes.add(new Document(MongoDBNames.PAIR_ID, 1).append(MongoDBNames.TIMESTAMP, 1)
+                    .append(MongoDBNames.DOCUMENT_ID, 1));
+            return indexes;
+        }
+        indexes.add(new Document(MongoDBNames.TIMESTAMP, -1));
+        if (bucketed) {
+            indexes.add(new Document(MongoDBNames.BUCKET, 1));
+        }
+        indexes.add(new Document(MongoDBNames.TIMESTAMP, 1).append(MongoDBNames.DOCUMENT_ID, 1));
+        return indexes;
+    }
+
+    /**
+     * Ensures a TTL index on a date field. If the index already exists with
+     * other options, e.g. without expiration or with another retention, its
+     * expiration is changed in place with collMod.
+     *
+     * @param collection the collection
+     * @param name the collection name
+     * @param keys the keys of the index, a single date field
+     * @param seconds the retention, in seconds
+     */
+    void ensureTtlIndex(MongoCollection<?> collection, String name, Document keys, long seconds) {
+        try {
+            collection.createIndex(keys, new IndexOptions().expireAfter(seconds, TimeUnit.SECONDS));
+        } catch (MongoCommandException ex) {
+            if (ex.getErrorCode() != INDEX_OPTIONS_CONFLICT) {
+                throw ex;
+            }
+            getDatabase().runCommand(new Document("collMod", name)
+                    .append("index", new Document("keyPattern", keys).append("expireAfterSeconds", seconds)));
+            LOG.log(Level.INFO, "Retention of {0} changed to {1}s.", new Object[]{name, seconds});
+        }
+    }
+
+    /**
+     * Gets the keys of the compound index of the single Log collection, also
+     * used as its shard key.
+     *
+     * @return the index keys
+     */
+    private static Document getShardKey() {
+        return new Document(MongoDBNames.PAIR_ID, 1).append(MongoDBNames.TIMESTAMP, 1);
+    }
+
+    /**
+     * Shards the single Log collection by its compound index, if configured.
+     * Requires a sharded cluster; any failure is only logged.
+     */
+    private void shardLogCollection() {
+        if (!singleCollection || !Boolean.valueOf(getProps().getProperty("log.collection.shard", "false"))) {
+            return;
+        }
+        String database = getDatabase().getName();
+        MongoDatabase admin = getClient().getDatabase("admin");
+        try {
+            admin.runCommand(new Document("enableSharding", database));
+        } catch (MongoException ex) {
+            LOG.log(Level.FINE, "enableSharding: {0}", ex.getMessage());
+        }
+        try {
+            admin.runCommand(new Document("shardCollection", database + "." + MongoDBNames.LOGS_TABLE)
+                    .append("key", getShardKey()));
+            LOG.log(Level.INFO, "Log collection sharded by {0}.", getShardKey().toJson());
+        } catch (MongoException ex) {
+            LOG.log(Level.WARNING, "Failed to shard the log collection: {0}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Lists the expected indexes missing from the Rule collection and from
+     * every Log collection. The rollup collections are not checked.
+     *
+     * @return the missing indexes
+     */
+    public IndexReport getIndexReport() {
+        IndexReport report = new IndexReport();
+
+        checkIndex(report, MongoDBNames.RULES_TABLE, getRulePairIndex(), true);
+        checkIndex(report, MongoDBNames.RULES_TABLE, getStreamIdIndex(), false);
+
+        for (String name : getDatabase().listCollectionNames()) {
+            if (!isLogCollection(name)) {
+                continue;
+            }
+            report.setLogCollections(report.getLogCollections() + 1);
+            for (Document index : getLogIndexes(name)) {
+                checkIndex(report, name, index, false);
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * Adds an index to the report if the collection does not have it.
+     *
+     * @param report the report
+     * @param name the collection name
+     * @param keys the index keys
+     * @param unique true if the index must be unique
+     */
+    private void checkIndex(IndexReport report, String name, Document keys, boolean unique) {
+        for (Document index : getDatabase().getCollection(name).listIndexes()) {
+            if (keys.equals(index.get("key")) && (!unique || Boolean.TRUE.equals(index.getBoolean("unique")))) {
+                return;
+            }
+        }
+        report.getMissing().add(new MissingIndex(name, keys.toJson(), unique));
+    }
+
+    /**
+     * Loads all the rules of the Rule collection into the rule cache. If
+     * MongoDB is not reachable the cache starts empty and is filled as rules
+     * are looked up.
+     */
+    private void loadRuleCache() {
+        try {
+            List<MonitorRule> all = new ArrayList<>();
+            long since = ruleCache.getGeneration();
+            getRuleCollection().find().into(all);
+            ruleCache.load(all, since);
+            LOG.log(Level.INFO, "{0} rules loaded into the rule cache.", all.size());
+        } catch (MongoException ex) {
+            LOG.log(Level.WARNING, "Failed to load the rule cache: {0}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets a snapshot of the rule cache metrics.
+     *
+     * @return the rule cache metrics
+     */
+    @Override
+    public RuleCacheStatistics getRuleCacheStatistics() {
+        return ruleCache.getStatistics();
     }
 
     /**
@@ -104,8 +403,15 @@ public final class MongoDatabaseManager {
      * @see
      * <a href="https://api.mongodb.com/java/3.2/com/mongodb/MongoClient.html">MongoClient</a>
      */
+    @Override
     public void stopManager() {
         if (client != null) {
+            purger.shutdown();
+            try {
+                purger.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
             rules = null;
             database = null;
             logCodecRegistry = null;
@@ -164,6 +470,46 @@ public final class MongoDatabaseManager {
         database = getClient().getDatabase(getProps().getProperty("database"));
     }
 
+    /**
+     * Initializes the storage layout of the logs. In the 'document' layout,
+     * the default, each log is stored as one document. In the 'bucket' layout,
+     * the logs of a pair are packed into one document per time bucket. Both
+     * layouts are always readable.
+     *
+     * Logs are stored in one collection per pair by default, or in a single
+     * 'logs' collection where each document carries the id of its pair.
+     *
+     * @see MonitorLogBucket
+     */
+    private void initLogLayout() {
+        singleCollection = "single".equalsIgnoreCase(getProps().getProperty("log.collection", "pair").trim());
+        bucketed = "bucket".equalsIgnoreCase(getProps().getProperty("log.layout", "document").trim());
+        bucketSpan = Long.valueOf(getProps().getProperty("log.bucket.span", "60000"));
+        bucketSize = Integer.valueOf(getProps().getProperty("log.bucket.size", "1000"));
+        rawRetention = Long.valueOf(getProps().getProperty("log.retention.raw", "0"));
+        statisticsCache = new QueryCache<>(Long.valueOf(getProps().getProperty("stats.cache.ttl", "5000")),
+                Integer.valueOf(getProps().getProperty("stats.cache.size", "1000")));
+    }
+
+    /**
+     * Initializes the write concern of each durability class, read from
+     * 'log.durability.&lt;class&gt;' with any write concern name known to the
+     * driver, e.g. majority, journaled, acknowledged, w2 or unacknowledged.
+     */
+    private void initDurability() {
+        for (Durability durability : Durability.values()) {
+            String name = getProps().getProperty("log.durability." + durability.name().toLowerCase(),
+                    durability.getDefaultWriteConcern()).trim();
+            WriteConcern concern = WriteConcern.valueOf(name);
+            if (concern == null) {
+                LOG.log(Level.WARNING, "Unknown write concern {0} for durability {1}, using {2}.",
+                        new Object[]{name, durability, durability.getDefaultWriteConcern()});
+                concern = WriteConcern.valueOf(durability.getDefaultWriteConcern());
+            }
+            writeConcerns.put(durability, concern);
+        }
+    }
+
     /**
      * Initializes the codec registries for the MonitorLog class and the
      * MonitorRule class.
@@ -213,7 +559,7 @@ public final class MongoDatabaseManager {
      *
      * @return the database access instance
      */
-    private MongoDatabase getDatabase() {
+    MongoDatabase getDatabase() {
         if (database == null) {
             initDatabase();
         }
@@ -225,7 +571,7 @@ public final class MongoDatabaseManager {
      *
      * @return the codec registry
      */
-    private CodecRegistry getLogCodecRegistry() {
+    CodecRegistry getLogCodecRegistry() {
         if (logCodecRegistry == null) {
             initLogCodecRegistry();
         }
@@ -237,7 +583,7 @@ public final class MongoDatabaseManager {
      *
      * @return the codec registry
      */
-    private CodecRegistry getRuleCodecRegistry() {
+    CodecRegistry getRuleCodecRegistry() {
         if (ruleCodecRegistry == null) {
             initRuleCodecRegistry();
         }
@@ -268,22 +614,211 @@ public final class MongoDatabaseManager {
      * @param providerSystemName the provider system name
      * @param consumerSystemGroup the consumer system group
      * @param consumerSystemName the consumer system name
+     * @param durability the durability class of the logs, selecting the write
+     * concern. Only critical logs are read with majority read concern, since
+     * logs of the other classes may not be majority-committed yet
      * @return the Log collection from MongoDatabase
      */
     private MongoCollection<MonitorLog> getLogCollection(
             String providerSystemGroup, String providerSystemName,
-            String consumerSystemGroup, String consumerSystemName) {
+            String consumerSystemGroup, String consumerSystemName, Durability durability) {
 
-        String name = providerSystemGroup + providerSystemName + consumerSystemGroup + consumerSystemName;
+        String name = getLogCollectionName(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName);
 
         MongoCollection< MonitorLog> logs = getDatabase().getCollection(name, MonitorLog.class)
                 .withCodecRegistry(getLogCodecRegistry())
-                .withWriteConcern(WriteConcern.MAJORITY)
-                .withReadConcern(ReadConcern.MAJORITY);
+                .withWriteConcern(getWriteConcern(durability))
+                .withReadConcern(getReadConcern(durability));
+
+        ensureLogIndexes(name, logs);
 
         return logs;
     }
 
+    /**
+     * Gets the name of the Log collection of a pair.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the collection name, the same for every pair in the single
+     * collection layout
+     */
+    String getLogCollectionName(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        return singleCollection ? MongoDBNames.LOGS_TABLE
+                : providerSystemGroup + providerSystemName + consumerSystemGroup + consumerSystemName;
+    }
+
+    /**
+     * Checks if a collection of the database holds logs, i.e. it is neither
+     * the Rule collection, a rollup collection nor a system collection.
+     *
+     * @param name the collection name
+     * @return true if the collection is a Log collection, false if not
+     */
+    static boolean isLogCollection(String name) {
+        if (name.equals(MongoDBNames.RULES_TABLE) || name.equals(MongoDBNames.ROLLUP_STATE_TABLE)
+                || name.startsWith("system.")) {
+            return false;
+        }
+        for (RollupTier tier : RollupTier.values()) {
+            if (name.equals(tier.getCollection())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ensures, on the background thread, the indexes of a Log collection
+     * written without going through {@link #getLogCollection}, so that the
+     * caller never waits for the index builds.
+     *
+     * @param name the collection name
+     */
+    void ensureLogIndexesLater(String name) {
+        if (indexedCollections.contains(name)) {
+            return;
+        }
+        try {
+            purger.execute(() -> ensureLogIndexes(name, getDatabase().getCollection(name)));
+        } catch (RejectedExecutionException ex) {
+            LOG.log(Level.FINE, "Indexes of {0} not ensured, the manager is stopping.", name);
+        }
+    }
+
+    /**
+     * Gets the write concern of a durability class.
+     *
+     * @param durability the durability class
+     * @return the write concern
+     */
+    WriteConcern getWriteConcern(Durability durability) {
+        return writeConcerns.get(durability);
+    }
+
+    /**
+     * Gets the read concern of a durability class. Only critical logs are
+     * read with majority read concern, since logs of the other classes may
+     * not be majority-committed yet.
+     *
+     * @param durability the durability class
+     * @return the read concern
+     */
+    ReadConcern getReadConcern(Durability durability) {
+        return durability == Durability.CRITICAL ? ReadConcern.MAJORITY : ReadConcern.DEFAULT;
+    }
+
+    /**
+     * Gets the compact id of a provider and consumer pair, stored in every
+     * document of the single Log collection. The id is the URL-safe Base64
+     * encoding of the first 12 bytes of the SHA-256 digest of the pair.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the pair id
+     */
+    public String getPairId(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        String pair = providerSystemGroup + '\u0000' + providerSystemName + '\u0000'
+                + consumerSystemGroup + '\u0000' + consumerSystemName;
+        return pairIds.computeIfAbsent(pair, (key) -> {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12));
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+
+    /**
+     * Gets the filter selecting the logs of a pair in its Log collection.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the pair filter. Empty if each pair has its own collection
+     */
+    private Bson getPairFilter(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        if (!singleCollection) {
+            return new Document();
+        }
+        return Filters.eq(MongoDBNames.PAIR_ID,
+                getPairId(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName));
+    }
+
+    /**
+     * Checks if all the logs are stored in the single Log collection.
+     *
+     * @return true if logs are stored in the single collection, false if each
+     * pair has its own collection
+     */
+    public boolean isSingleCollection() {
+        return singleCollection;
+    }
+
+    /**
+     * Gets a Log collection from the MongoDatabase instance, identified by the
+     * given parameters, for reading logs in any storage layout.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @param durability the durability class of the logs
+     * @return the Log collection from MongoDatabase
+     */
+    private MongoCollection<MonitorLogBucket> getBucketCollection(
+            String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName, Durability durability) {
+
+        return getLogCollection(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName, durability)
+                .withDocumentClass(MonitorLogBucket.class);
+    }
+
+    /**
+     * Gets the durability class of the logs of a rule: the class declared by
+     * the rule or, if none, the default class of its protocol.
+     *
+     * @param rule the monitor rule, may be null
+     * @return the durability class. Critical if the rule is unknown
+     */
+    Durability getDurability(MonitorRule rule) {
+        if (rule == null) {
+            return Durability.CRITICAL;
+        }
+        if (rule.getDurability() != null) {
+            return rule.getDurability();
+        }
+        try {
+            return ProtocolRegistry.getInstance().get(rule.getProtocol()).getDurability();
+        } catch (InvalidMonitorTypeException ex) {
+            return Durability.CRITICAL;
+        }
+    }
+
+    /**
+     * Gets the log write latency of each durability class.
+     *
+     * @return the durability class metrics
+     */
+    public DurabilityReport getDurabilityReport() {
+        DurabilityReport report = new DurabilityReport();
+        for (Durability durability : Durability.values()) {
+            report.getClasses().add(durabilityMetrics.getStatistics(durability,
+                    writeConcerns.get(durability).asDocument().toJson()));
+        }
+        return report;
+    }
+
     /**
      * Deletes a collection identified by the system name and system group from
      * the given parameters.
@@ -310,10 +845,18 @@ public final class MongoDatabaseManager {
     public boolean deleteCollection(String providerSystemGroup, String providerSystemName,
             String consumerSystemGroup, String consumerSystemName) {
 
-        MongoCollection<MonitorLog> logs = getLogCollection(providerSystemGroup, providerSystemName,
-                consumerSystemGroup, consumerSystemName);
+        if (singleCollection) {
+            getDatabase().getCollection(MongoDBNames.LOGS_TABLE).withWriteConcern(WriteConcern.MAJORITY)
+                    .deleteMany(getPairFilter(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName));
+            LOG.log(Level.INFO, "Logs of {0}{1}{2}{3} deleted.", new String[]{providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName});
+            return true;
+        }
 
-        logs.drop();
+        String name = providerSystemGroup + providerSystemName + consumerSystemGroup + consumerSystemName;
+
+        getDatabase().getCollection(name).drop();
+
+        indexedCollections.remove(name);
 
         LOG.log(Level.INFO, "{0}{1}{2}{3} droped.", new String[]{providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName});
 
@@ -342,11 +885,66 @@ public final class MongoDatabaseManager {
      * @return the wanted rule. If no rule matched the given parameters, then
      * null is returned
      */
+    @Override
     public MonitorRule findRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
         return findRule(provider.getSystemGroup(), provider.getSystemName(),
                 consumer.getSystemGroup(), consumer.getSystemName());
     }
 
+    /**
+     * Find a rule with the given provider, and consumer in the rule cache only,
+     * without querying MongoDB.
+     *
+     * @param provider the provider
+     * @param consumer the consumer
+     * @return the cached rule, or null if the rule is not cached
+     */
+    MonitorRule findCachedRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+        return ruleCache.get(RuleCache.getKey(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName()));
+    }
+
+    /**
+     * Adds a rule read without going through this manager to the rule cache,
+     * unless its pair was removed after the read started.
+     *
+     * @param rule the rule
+     * @param since the generation of the rule cache before the read
+     * @see #getRuleCacheGeneration()
+     */
+    void cacheRule(MonitorRule rule, long since) {
+        ruleCache.putLoaded(rule, since);
+    }
+
+    /**
+     * Gets the generation of the rule cache, to be taken before reading a
+     * rule without going through this manager.
+     *
+     * @return the generation
+     */
+    long getRuleCacheGeneration() {
+        return ruleCache.getGeneration();
+    }
+
+    /**
+     * Removes the rule of a pair from the rule cache.
+     *
+     * @param key the pair key
+     * @see RuleCache#getKey(String, String, String, String)
+     */
+    void uncacheRule(String key) {
+        ruleCache.remove(key);
+    }
+
+    /**
+     * Checks if logs are packed into time buckets.
+     *
+     * @return true in the bucketed layout, false if each log is a document
+     */
+    boolean isBucketed() {
+        return bucketed;
+    }
+
     /**
      * Finds a rule with the given parameters.
      *
@@ -374,7 +972,7 @@ public final class MongoDatabaseManager {
             );
         }
 
-        MongoCursor<MonitorRule> temps = getRuleCollection().find(Filters.exists("stream_id"), MonitorRule.class).iterator();
+        MongoCursor<MonitorRule> temps = getRuleCollection().find(filter, MonitorRule.class).iterator();
 
         while (temps.hasNext()) {
             monitorRules.add(temps.next());
@@ -383,9 +981,27 @@ public final class MongoDatabaseManager {
         return monitorRules;
     }
 
+    /**
+     * Finds the rules that use the given stream id. The rule cache index is
+     * used when the cache is complete, otherwise the Rule collection is
+     * queried through its stream id index.
+     *
+     * @param streamId the stream id
+     * @return the rules using the stream id. If no rule uses it, then an empty
+     * list is returned
+     */
+    @Override
+    public List<MonitorRule> findRulesByStreamId(String streamId) {
+        if (ruleCache.isComplete()) {
+            return ruleCache.getByStreamId(streamId);
+        }
+        return findRuleByParameters(new FilterParameter(MongoDBNames.STREAM_ID, streamId));
+    }
+
     /**
      * Find a rule with the given provider system definition, provider system
-     * group, consumer system definition, and consumer system group.
+     * group, consumer system definition, and consumer system group. The rule
+     * cache is checked first, and MongoDB is only queried on a cache miss.
      *
      * @param providerSystemGroup the provider system group
      * @param providerSystemName the provider system name
@@ -394,60 +1010,232 @@ public final class MongoDatabaseManager {
      * @return the wanted rule. If no rule matched the given parameters, then
      * null is returned
      */
+    @Override
     public MonitorRule findRule(String providerSystemGroup, String providerSystemName,
             String consumerSystemGroup, String consumerSystemName) {
 
-        Bson filter = createRuleFilter(providerSystemGroup, providerSystemName,
-                consumerSystemGroup, consumerSystemName);
+        long start = System.nanoTime();
 
-        MonitorRule rule = getRuleCollection().find(
-                filter,
-                MonitorRule.class).first();
+        MonitorRule rule;
+        try {
+            rule = lookupRule(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+        } catch (MongoException ex) {
+            QoSMetrics.getInstance().recordError(Stage.RULE_LOOKUP);
+            throw ex;
+        }
+
+        QoSMetrics.getInstance().record(Stage.RULE_LOOKUP, System.nanoTime() - start);
 
         return rule;
 
     }
 
     /**
-     * Checks if a rule exists in the MongoDatabase instance. The rule is
-     * identified by the system definition and system group information in the
-     * given parameters. Uses the Rule collection.
+     * Gets the rule of a pair from the rule cache or, on a miss, from the
+     * Rule collection, without recording a rule lookup. Used by the log
+     * inserts, whose rule lookup is part of the write.
      *
-     * @param provider the service provider
-     * @param consumer the service consumer
-     * @return true if the rule exists, false if not
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the rule, or null if the pair has no rule
      */
-    public boolean existsRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+    private MonitorRule lookupRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        MonitorRule rule = ruleCache.get(RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName));
+        if (rule == null) {
+            rule = loadRule(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+        }
+        return rule;
+    }
+
+    /**
+     * Queries MongoDB for the rule with the given provider system definition,
+     * provider system group, consumer system definition, and consumer system
+     * group, bypassing the rule cache. A rule found is added to the cache.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the wanted rule. If no rule matched the given parameters, then
+     * null is returned
+     */
+    MonitorRule loadRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
 
-        Bson filter = createRuleFilter(provider.getSystemGroup(),
-                provider.getSystemName(),
-                consumer.getSystemGroup(),
-                consumer.getSystemName());
+        Bson filter = createRuleFilter(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName);
 
+        long since = ruleCache.getGeneration();
         MonitorRule rule = getRuleCollection().find(
                 filter,
                 MonitorRule.class).first();
 
+        if (rule != null) {
+            ruleCache.putLoaded(rule, since);
+        }
+
+        return rule;
+    }
+
+    /**
+     * Checks if a rule exists in the MongoDatabase instance. The rule is
+     * identified by the system definition and system group information in the
+     * given parameters. Uses the Rule collection.
+     *
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return true if the rule exists, false if not
+     */
+    public boolean existsRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
+
+        MonitorRule rule = findRule(provider, consumer);
+
         return !(rule == null);
     }
 
     /**
      * Checks if a rule exists in the MongoDatabase instance and replaces it.
      * The rule is identified by the system definition and system group
-     * information from the given rule.If it doesn't exist, creates it. Uses the
+     * information from the given rule. If it doesn't exist, creates it. Uses the
      * Rule collection.
      *
-     * @param rule the rule
-     * @return Alwyas returns true. May suffer some changes in the future
+     * The stored rule is read and then replaced in place by a replaceOne
+     * guarded by its version, upserting when the pair has no rule. The
+     * replacement keeps the id of the stored rule and increments its version,
+     * so the pair always has a rule and its logs are kept. A concurrent
+     * replacement of the same rule makes the guard miss, and the read and
+     * replace are retried up to {@value #MAX_REPLACE_ATTEMPTS} times.
+     *
+     * @param rule the rule. Its version is set to the stored version
+     * @return true once the rule is stored
+     * @throws MongoException if the rule could not be stored, or if it was
+     * still being changed concurrently after the last attempt
      */
+    @Override
     public boolean replaceRule(MonitorRule rule) {
-
-        deleteRule(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+        Bson filter = createRuleFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
                 rule.getConsumerSystemGroup(), rule.getConsumerSystemName());
 
-        insertRule(rule);
+        for (int attempt = 1;; attempt++) {
+            MonitorRule current = getRuleCollection().find(filter).first();
+            MonitorRule replacement = createReplacement(rule, current);
+
+            UpdateResult result = null;
+            MongoException error = null;
+            try {
+                result = getRuleCollection().replaceOne(createReplacementFilter(rule, current), replacement,
+                        createReplacementOptions(current));
+            } catch (MongoException ex) {
+                error = ex;
+            }
+            if (completeReplacement(rule, current, replacement, result, error, attempt)) {
+                return true;
+            }
+        }
+    }
 
-        return true;
+    /**
+     * Creates the rule replacing the stored rule of a pair: a copy of the
+     * given rule with the id of the stored rule and the next version.
+     *
+     * @param rule the new rule
+     * @param current the stored rule, or null if the pair has no rule
+     * @return the replacement
+     */
+    static MonitorRule createReplacement(MonitorRule rule, MonitorRule current) {
+        MonitorRule replacement = copyRule(current == null ? rule.getId() : current.getId(), rule);
+        replacement.setVersion(current == null ? 1 : current.getVersion() + 1);
+        return replacement;
+    }
+
+    /**
+     * Creates the filter of a rule replacement. The first rule of a pair is
+     * upserted by the pair; a stored rule is matched by its id and version,
+     * so that the replacement matches nothing if the rule changed since it
+     * was read.
+     *
+     * @param rule the new rule
+     * @param current the stored rule, or null if the pair has no rule
+     * @return the filter
+     */
+    Bson createReplacementFilter(MonitorRule rule, MonitorRule current) {
+        if (current == null) {
+            return createRuleFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                    rule.getConsumerSystemGroup(), rule.getConsumerSystemName());
+        }
+        // version 0 matches rules stored before rules were versioned
+        return Filters.and(
+                Filters.eq(MongoDBNames.DOCUMENT_ID, current.getId()),
+                Filters.eq(MongoDBNames.RULE_VERSION, current.getVersion() == 0 ? null : current.getVersion()));
+    }
+
+    /**
+     * Creates the options of a rule replacement, upserting the first rule of
+     * a pair.
+     *
+     * @param current the stored rule, or null if the pair has no rule
+     * @return the options
+     */
+    static UpdateOptions createReplacementOptions(MonitorRule current) {
+        return new UpdateOptions().upsert(current == null);
+    }
+
+    /**
+     * Handles the outcome of a rule replacement attempt. A replaced rule gets
+     * the stored version and is cached. An attempt that lost the race with a
+     * concurrent replacement, i.e. matched nothing or hit the unique pair
+     * index, must be retried unless it was the last one.
+     *
+     * @param rule the new rule. Its version is set to the stored version
+     * @param current the stored rule the attempt was based on, may be null
+     * @param replacement the replacement written by the attempt
+     * @param result the result of the replacement, null if it failed
+     * @param error the failure of the replacement, null if it succeeded
+     * @param attempt the number of the attempt, from 1
+     * @return true if the rule was replaced, false if the attempt must be
+     * retried
+     * @throws MongoException if the replacement failed, or if the last
+     * attempt lost the race
+     */
+    boolean completeReplacement(MonitorRule rule, MonitorRule current, MonitorRule replacement,
+            UpdateResult result, Throwable error, int attempt) {
+        if (error == null && (current == null || result.getMatchedCount() == 1)) {
+            rule.setVersion(replacement.getVersion());
+            ruleCache.put(replacement);
+            return true;
+        }
+        if (error != null && !(error instanceof MongoWriteException
+                && ((MongoWriteException) error).getError().getCategory() == ErrorCategory.DUPLICATE_KEY)) {
+            throw error instanceof MongoException ? (MongoException) error
+                    : new MongoException("Failed to replace rule " + RuleCache.getName(rule), error);
+        }
+        if (attempt == MAX_REPLACE_ATTEMPTS) {
+            throw new MongoException("Rule " + RuleCache.getName(rule) + " changed concurrently, not replaced.");
+        }
+        return false;
+    }
+
+    /**
+     * Copies a rule with another id.
+     *
+     * @param id the id of the copy
+     * @param rule the rule to copy
+     * @return the copy
+     */
+    static MonitorRule copyRule(ObjectId id, MonitorRule rule) {
+        MonitorRule copy = new MonitorRule(id, rule.getProtocol(),
+                rule.getProviderSystemName(), rule.getProviderSystemGroup(),
+                rule.getConsumerSystemName(), rule.getConsumerSystemGroup(),
+                rule.getParameters(), rule.isSoftRealTime());
+        if (rule.getSchema() != null) {
+            copy.setMetrics(rule.getSchema(), rule.getMetrics());
+        }
+        copy.setDurability(rule.getDurability());
+        return copy;
     }
 
     /**
@@ -459,6 +1247,7 @@ public final class MongoDatabaseManager {
      * @param consumer the service consumer
      * @return Always returns true. May suffer some changes in the future
      */
+    @Override
     public boolean deleteRule(ArrowheadSystem provider, ArrowheadSystem consumer) {
         return deleteRule(provider.getSystemGroup(), provider.getSystemName(),
                 consumer.getSystemGroup(), consumer.getSystemName());
@@ -467,7 +1256,8 @@ public final class MongoDatabaseManager {
     /**
      * Checks if a rule exists in the MongoDatabase instance and deletes it. The
      * rule is identified by the system group and system name information in the
-     * given parameters. Uses the Rule MongoCollection.
+     * given parameters. Uses the Rule MongoCollection. The logs of the pair are
+     * kept until purged with {@link #purgeLogs(String, String, String, String)}.
      *
      * @param providerSystemGroup the provider system group
      * @param providerSystemName the provider system name
@@ -479,6 +1269,7 @@ public final class MongoDatabaseManager {
      * @see
      * <a href="https://api.mongodb.com/java/3.2/com/mongodb/client/MongoCollection.html">MongoCollection</a>
      */
+    @Override
     public boolean deleteRule(String providerSystemGroup, String providerSystemName,
             String consumerSystemGroup, String consumerSystemName) {
 
@@ -487,12 +1278,39 @@ public final class MongoDatabaseManager {
 
         getRuleCollection().findOneAndDelete(filter);
 
-        deleteCollection(providerSystemGroup, providerSystemName,
-                consumerSystemGroup, consumerSystemName);
+        // removed after the delete, so that no read started before it can cache the rule again
+        ruleCache.remove(RuleCache.getKey(providerSystemGroup, providerSystemName,
+                consumerSystemGroup, consumerSystemName));
 
         return true;
     }
 
+    /**
+     * Deletes, in the background, all the logs of a pair. The logs of every
+     * rule version are deleted, whether or not the pair still has a rule,
+     * followed by the aggregates and the rollup state of the pair.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the pending purge
+     */
+    @Override
+    public Future<?> purgeLogs(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        return purger.submit(() -> {
+            try {
+                deleteCollection(providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName);
+                RollupEngine.getInstance().purge(getPairId(providerSystemGroup, providerSystemName,
+                        consumerSystemGroup, consumerSystemName));
+            } catch (MongoException ex) {
+                LOG.log(Level.SEVERE, "Failed to purge the logs of {0}{1}{2}{3}: {4}", new Object[]{
+                    providerSystemGroup, providerSystemName, consumerSystemGroup, consumerSystemName, ex.getMessage()});
+            }
+        });
+    }
+
     /**
      * Inserts a new log into the MongoCollection defined by the given
      * parameters.
@@ -508,14 +1326,337 @@ public final class MongoDatabaseManager {
      * @see
      * <a href="https://api.mongodb.com/java/3.2/com/mongodb/client/MongoCollection.html">MongoCollection</a>
      */
+    @Override
     public void insertLog(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer)
             throws MongoWriteException, MongoWriteConcernException, MongoException {
 
+        MonitorRule rule = lookupRule(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+        Durability durability = getDurability(rule);
+
         MongoCollection<MonitorLog> logs = getLogCollection(
                 provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName(), durability);
+
+        tagLogs(Collections.singletonList(log), rule, provider, consumer);
+
+        long start = System.nanoTime();
+        try {
+            if (bucketed) {
+                insertBuckets(logs.withDocumentClass(Document.class), Collections.singletonList(log), provider, consumer);
+            } else {
+                logs.insertOne(log);
+            }
+        } catch (MongoException ex) {
+            recordPersistFailure(durability);
+            throw ex;
+        }
+        recordPersist(durability, Collections.singletonList(log), start);
+    }
+
+    /**
+     * Inserts several logs into the MongoCollection defined by the given
+     * parameters with a single bulk write. The write is unordered, so a failed
+     * log does not prevent the remaining ones from being stored.
+     *
+     * @param logs the logs to insert
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @throws MongoBulkWriteException if one or more logs failed to be stored.
+     * The write errors identify each failed log by its index in the given list
+     * @throws MongoException if the write failed due some other failure
+     * @see
+     * <a href="https://api.mongodb.com/java/3.2/com/mongodb/client/MongoCollection.html">MongoCollection</a>
+     */
+    @Override
+    public void insertLogs(List<MonitorLog> logs, ArrowheadSystem provider, ArrowheadSystem consumer)
+            throws MongoBulkWriteException, MongoException {
+
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        MonitorRule rule = lookupRule(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+        Durability durability = getDurability(rule);
+
+        MongoCollection<MonitorLog> collection = getLogCollection(
+                provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName(), durability);
+
+        tagLogs(logs, rule, provider, consumer);
+
+        long start = System.nanoTime();
+        try {
+            if (bucketed) {
+                insertBuckets(collection.withDocumentClass(Document.class), logs, provider, consumer);
+            } else {
+                collection.insertMany(logs, new InsertManyOptions().ordered(false));
+            }
+        } catch (MongoException ex) {
+            recordPersistFailure(durability);
+            throw ex;
+        }
+        recordPersist(durability, logs, start);
+    }
+
+    /**
+     * Records a successful log write in the metrics of its durability class,
+     * of the persist stage and of the ingested logs.
+     *
+     * @param durability the durability class of the write
+     * @param logs the written logs
+     * @param start the start of the write, in {@link System#nanoTime()}
+     */
+    void recordPersist(Durability durability, List<MonitorLog> logs, long start) {
+        long elapsed = System.nanoTime() - start;
+        durabilityMetrics.recordWrite(durability, logs.size(), elapsed);
+        QoSMetrics.getInstance().record(Stage.PERSIST, elapsed);
+        QoSMetrics.getInstance().recordIngest(logs);
+    }
+
+    /**
+     * Records a failed log write in the metrics of its durability class and
+     * of the persist stage.
+     *
+     * @param durability the durability class of the write
+     */
+    void recordPersistFailure(Durability durability) {
+        durabilityMetrics.recordFailure(durability);
+        QoSMetrics.getInstance().recordError(Stage.PERSIST);
+    }
+
+    /**
+     * Tags logs with the version of the current rule of their pair and with
+     * the pair id. Logs of the per-pair collections keep the pair id too, so
+     * that they can be migrated into the single Log collection even after the
+     * rule of their pair is deleted.
+     *
+     * @param logs the logs
+     * @param rule the current rule of the pair, may be null
+     * @param provider the service provider
+     * @param consumer the service consumer
+     */
+    void tagLogs(List<MonitorLog> logs, MonitorRule rule, ArrowheadSystem provider, ArrowheadSystem consumer) {
+        Long version = rule == null || rule.getVersion() == 0 ? null : rule.getVersion();
+        String pairId = getPairId(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName());
+        for (MonitorLog log : logs) {
+            log.setRuleVersion(version);
+            log.setPairId(pairId);
+        }
+    }
+
+    /**
+     * Adds logs to the buckets of their timestamps with one upsert per
+     * bucket, pushing the logs as samples and updating the bucket header.
+     * A bucket receives at most the configured number of samples; once full,
+     * the next upsert creates a new document for the same time bucket.
+     *
+     * Logs whose id is already a sample of a bucket of the pair are skipped,
+     * so writing the same logs again, e.g. when a batch is retried or the
+     * {@link LogJournal} is replayed, does not store them twice.
+     *
+     * @param collection the Log collection
+     * @param logs the logs to add
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @throws MongoBulkWriteException if one or more buckets failed to be
+     * stored. The write errors identify each log of a failed bucket by its
+     * index in the given list
+     * @throws MongoException if the write failed due some other failure
+     */
+    private void insertBuckets(MongoCollection<Document> collection, List<MonitorLog> logs,
+            ArrowheadSystem provider, ArrowheadSystem consumer) {
+        Iterable<Document> stored = collection.find(getStoredSamplesFilter(logs, provider, consumer))
+                .projection(getStoredSamplesProjection());
+        List<List<Integer>> members = new ArrayList<>();
+        List<WriteModel<Document>> updates = createBucketUpdates(logs, stored, provider, consumer, members);
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        try {
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException ex) {
+            throw getLogErrors(ex, members);
+        }
+    }
+
+    /**
+     * Creates the filter finding the buckets of the pair that already hold
+     * some of the given logs as samples.
+     *
+     * @param logs the logs to add
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return the filter
+     */
+    Bson getStoredSamplesFilter(List<MonitorLog> logs, ArrowheadSystem provider, ArrowheadSystem consumer) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        List<ObjectId> ids = new ArrayList<>(logs.size());
+        for (MonitorLog log : logs) {
+            long bucket = log.getTimestamp() - Math.floorMod(log.getTimestamp(), bucketSpan);
+            first = Math.min(first, bucket);
+            last = Math.max(last, bucket);
+            ids.add(log.getId());
+        }
+        return Filters.and(getPairFilter(provider.getSystemGroup(), provider.getSystemName(),
+                consumer.getSystemGroup(), consumer.getSystemName()),
+                Filters.gte(MongoDBNames.BUCKET, new Date(first)),
+                Filters.lte(MongoDBNames.BUCKET, new Date(last)),
+                Filters.in(MongoDBNames.SAMPLES + "." + MongoDBNames.DOCUMENT_ID, ids));
+    }
+
+    /**
+     * Gets the projection reading only the sample ids of a bucket.
+     *
+     * @return the projection
+     */
+    Bson getStoredSamplesProjection() {
+        return Projections.include(MongoDBNames.SAMPLES + "." + MongoDBNames.DOCUMENT_ID);
+    }
+
+    /**
+     * Gets the ids of the given logs that are already samples of the given
+     * buckets.
+     *
+     * @param logs the logs to add
+     * @param buckets the buckets found by the
+     * {@link #getStoredSamplesFilter(List, ArrowheadSystem, ArrowheadSystem)}
+     * filter
+     * @return the ids of the logs already stored
+     */
+    private static Set<ObjectId> getStoredSamples(List<MonitorLog> logs, Iterable<Document> buckets) {
+        Set<ObjectId> ids = new HashSet<>();
+        for (MonitorLog log : logs) {
+            ids.add(log.getId());
+        }
+        Set<ObjectId> stored = new HashSet<>();
+        for (Document bucket : buckets) {
+            List<?> samples = bucket.get(MongoDBNames.SAMPLES, List.class);
+            for (Object sample : samples == null ? Collections.emptyList() : samples) {
+                Object id = ((Document) sample).get(MongoDBNames.DOCUMENT_ID);
+                if (ids.contains(id)) {
+                    stored.add((ObjectId) id);
+                }
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Creates the upserts adding logs to the buckets of their timestamps, one
+     * per bucket with room for its logs, skipping the logs already stored.
+     *
+     * @param logs the logs to add
+     * @param found the buckets found by the
+     * {@link #getStoredSamplesFilter(List, ArrowheadSystem, ArrowheadSystem)}
+     * filter, whose samples are skipped
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @param members receives, for each upsert, the indexes of its logs in the
+     * given list
+     * @return the upserts
+     */
+    List<WriteModel<Document>> createBucketUpdates(List<MonitorLog> logs, Iterable<Document> found,
+            ArrowheadSystem provider, ArrowheadSystem consumer, List<List<Integer>> members) {
+        Set<ObjectId> stored = getStoredSamples(logs, found);
+        Bson pair = getPairFilter(provider.getSystemGroup(), provider.getSystemName(),
                 consumer.getSystemGroup(), consumer.getSystemName());
 
-        logs.insertOne(log);
+        Map<Long, List<Integer>> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < logs.size(); i++) {
+            MonitorLog log = logs.get(i);
+            if (stored.contains(log.getId())) {
+                continue;
+            }
+            long bucket = log.getTimestamp() - Math.floorMod(log.getTimestamp(), bucketSpan);
+            buckets.computeIfAbsent(bucket, (key) -> new ArrayList<>()).add(i);
+        }
+
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (Map.Entry<Long, List<Integer>> bucket : buckets.entrySet()) {
+            List<Integer> indexes = bucket.getValue();
+            for (int i = 0; i < indexes.size(); i += bucketSize) {
+                List<Integer> member = indexes.subList(i, Math.min(i + bucketSize, indexes.size()));
+                List<MonitorLog> samples = new ArrayList<>(member.size());
+                for (int index : member) {
+                    samples.add(logs.get(index));
+                }
+                updates.add(createBucketUpdate(pair, bucket.getKey(), samples));
+                members.add(member);
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * Expands the errors of a bucketed bulk write to the logs of each failed
+     * bucket, so the write errors identify the failed logs by their index in
+     * the written list, as they do for the document layout.
+     *
+     * @param ex the bulk write failure, whose errors index the upserts
+     * @param members the indexes of the logs of each upsert
+     * @return the bulk write failure whose errors index the logs
+     */
+    MongoBulkWriteException getLogErrors(MongoBulkWriteException ex, List<List<Integer>> members) {
+        List<BulkWriteError> errors = new ArrayList<>();
+        for (BulkWriteError error : ex.getWriteErrors()) {
+            for (int index : members.get(error.getIndex())) {
+                errors.add(new BulkWriteError(error.getCode(), "Bucket " + error.getIndex() + ": " + error.getMessage(),
+                        error.getDetails(), index));
+            }
+        }
+        return new MongoBulkWriteException(ex.getWriteResult(), errors, ex.getWriteConcernError(),
+                ex.getServerAddress());
+    }
+
+    /**
+     * Creates the upsert adding the given logs to a bucket with room for all
+     * of them.
+     *
+     * @param pair the pair filter, whose pair id is set on new buckets
+     * @param bucket the start of the time bucket
+     * @param logs the logs to add, all in the same time bucket
+     * @return the upsert
+     */
+    private UpdateOneModel<Document> createBucketUpdate(Bson pair, long bucket, List<MonitorLog> logs) {
+        MonitorLogBucket header = new MonitorLogBucket(null);
+        List<BsonDocument> samples = new ArrayList<>(logs.size());
+        for (MonitorLog log : logs) {
+            header.add(log);
+            samples.add(MonitorLogBucketCodec.toSample(log));
+        }
+
+        Document inc = new Document(MongoDBNames.SAMPLE_COUNT, logs.size());
+        Document min = new Document(MongoDBNames.BUCKET_START, new Date(header.getStart()));
+        Document max = new Document(MongoDBNames.TIMESTAMP, new Date(header.getEnd()));
+        for (String metric : header.getSum().keySet()) {
+            inc.append(MongoDBNames.SUM + "." + metric, header.getSum().get(metric));
+            min.append(MongoDBNames.MIN + "." + metric, header.getMin().get(metric));
+            max.append(MongoDBNames.MAX + "." + metric, header.getMax().get(metric));
+        }
+
+        Document insert = new Document(MongoDBNames.MONITOR_TYPE, logs.get(0).getProtocol())
+                .append(MongoDBNames.CODEC_VERSION, CodecUtil.VERSION);
+        if (!singleCollection && logs.get(0).getPairId() != null) {
+            // the pair filter sets it in the single Log collection
+            insert.append(MongoDBNames.PAIR_ID, logs.get(0).getPairId());
+        }
+
+        Document update = new Document("$push", new Document(MongoDBNames.SAMPLES, new Document("$each", samples)))
+                .append("$inc", inc)
+                .append("$min", min)
+                .append("$max", max)
+                .append("$setOnInsert", insert);
+
+        Bson filter = Filters.and(pair,
+                Filters.eq(MongoDBNames.BUCKET, new Date(bucket)),
+                Filters.lte(MongoDBNames.SAMPLE_COUNT, bucketSize - logs.size()));
+
+        return new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true));
     }
 
     /**
@@ -526,31 +1667,493 @@ public final class MongoDatabaseManager {
      * @see
      * <a href="https://api.mongodb.com/java/3.2/com/mongodb/client/MongoCollection.html">MongoCollection</a>
      */
+    @Override
     public MonitorLog[] getLastNLogs(MonitorRule rule) {
-        MongoCollection<MonitorLog> logs = getLogCollection(
+        int NLogs = Integer.valueOf(rule.getParameters().get(IProtocol.NLOGS));
+
+        List<MonitorLog> last = getLastLogs(rule, NLogs);
+
+        if (last.size() < NLogs) {
+            return null;
+        }
+
+        return last.toArray(new MonitorLog[NLogs]);
+    }
+
+    /**
+     * Gets up to n of the most recent logs of the pair identified by the rule,
+     * newest first. Logs are read from both storage layouts.
+     *
+     * @param rule rule to find the specified MongoCollection
+     * @param n maximum number of logs to return
+     * @return the most recent logs. May hold less than n logs
+     * @see
+     * <a href="https://api.mongodb.com/java/3.2/com/mongodb/client/MongoCollection.html">MongoCollection</a>
+     */
+    @Override
+    public List<MonitorLog> getLastLogs(MonitorRule rule, int n) {
+        MongoCollection<MonitorLogBucket> logs = getBucketCollection(
                 rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName(), getDurability(rule));
+
+        List<MonitorLog> result = new ArrayList<>();
+
+        Bson pair = getPairFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
                 rule.getConsumerSystemGroup(), rule.getConsumerSystemName());
 
-        int NLogs = Integer.valueOf(rule.getParameters().get(IProtocol.NLOGS));
+        MongoCursor<MonitorLogBucket> sorted = logs.find(pair).sort(Sorts.descending(MongoDBNames.TIMESTAMP))
+                .batchSize(Math.max(2, Math.min(n + 1, 1000))).iterator();
 
-        if (logs.count() < NLogs) {
-            return null;
+        try {
+            while (sorted.hasNext()) {
+                MonitorLogBucket bucket = sorted.next();
+                if (result.size() >= n && bucket.getEnd() < result.get(n - 1).getTimestamp()) {
+                    break;
+                }
+                result.addAll(bucket.getLogs());
+                result.sort(NEWEST_FIRST);
+                if (result.size() > n) {
+                    result.subList(n, result.size()).clear();
+                }
+            }
+        } finally {
+            sorted.close();
         }
 
-        MongoCursor<MonitorLog> sorted = logs.find().sort(Sorts.descending(MongoDBNames.TIMESTAMP)).limit(NLogs).iterator();
+        return result;
+    }
+
+    /**
+     * Gets the timestamp of the oldest log of the pair identified by the rule.
+     * In the bucketed layout, the oldest log of the bucket with the oldest
+     * newest log is returned.
+     *
+     * @param rule rule to find the specified MongoCollection
+     * @return the oldest timestamp, or null if the pair has no logs
+     */
+    public Long getFirstLogTimestamp(MonitorRule rule) {
+        MonitorLogBucket first = getBucketCollection(
+                rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName(), getDurability(rule))
+                .find(getPairFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                        rule.getConsumerSystemGroup(), rule.getConsumerSystemName()))
+                .sort(Sorts.ascending(MongoDBNames.TIMESTAMP)).first();
+        return first == null ? null : first.getStart();
+    }
 
-        MonitorLog[] result = new MonitorLog[NLogs];
+    /**
+     * Gets the logs of the pair identified by the rule within a time range,
+     * oldest first. Logs are read from both storage layouts.
+     *
+     * @param rule rule to find the specified MongoCollection
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive
+     * @return the logs within the time range
+     */
+    @Override
+    public List<MonitorLog> getLogs(MonitorRule rule, long from, long to) {
+        MongoCollection<MonitorLogBucket> logs = getBucketCollection(
+                rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName(), getDurability(rule));
 
-        for (int i = 0; i < NLogs; i++) {
-            if (!sorted.hasNext()) {
-                break;
+        // a bucket overlaps the range if its newest log is not before the
+        // range and its oldest log is not after it
+        Bson filter = Filters.and(
+                getPairFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                        rule.getConsumerSystemGroup(), rule.getConsumerSystemName()),
+                Filters.gte(MongoDBNames.TIMESTAMP, new Date(from)),
+                Filters.or(
+                        Filters.lte(MongoDBNames.BUCKET_START, new Date(to)),
+                        Filters.lte(MongoDBNames.TIMESTAMP, new Date(to))));
+
+        List<MonitorLog> result = new ArrayList<>();
+
+        for (MonitorLogBucket bucket : logs.find(filter)) {
+            for (MonitorLog log : bucket.getLogs()) {
+                if (log.getTimestamp() >= from && log.getTimestamp() <= to) {
+                    result.add(log);
+                }
             }
-            result[i] = sorted.next();
         }
 
+        result.sort(NEWEST_FIRST.reversed());
         return result;
     }
 
+    /**
+     * Scans the logs of the pair identified by the rule within a time range,
+     * passing each log to the given consumer as it is read, so that a scan of
+     * any size holds a single batch of documents in memory. Documents are read
+     * through the timestamp and id index, oldest first, and the logs of a
+     * bucket by ascending timestamp. Logs added to a bucket while it is being
+     * paginated may be skipped or repeated.
+     *
+     * @param rule rule to find the specified MongoCollection
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive
+     * @param after the cursor returned by the previous page, or null to start
+     * from the beginning of the range
+     * @param limit maximum number of logs to scan, or 0 for no limit
+     * @param consumer the consumer of the scanned logs
+     * @return the cursor of the next page, or null if no logs are left
+     */
+    public LogCursor scanLogs(MonitorRule rule, long from, long to, LogCursor after, int limit,
+            Consumer<MonitorLog> consumer) {
+        MongoCollection<MonitorLogBucket> logs = getBucketCollection(
+                rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName(), getDurability(rule));
+
+        Bson filter = Filters.and(
+                getPairFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                        rule.getConsumerSystemGroup(), rule.getConsumerSystemName()),
+                Filters.gte(MongoDBNames.TIMESTAMP, new Date(from)),
+                Filters.or(
+                        Filters.lte(MongoDBNames.BUCKET_START, new Date(to)),
+                        Filters.lte(MongoDBNames.TIMESTAMP, new Date(to))));
+
+        if (after != null) {
+            filter = Filters.and(filter, Filters.or(
+                    Filters.gt(MongoDBNames.TIMESTAMP, new Date(after.getTimestamp())),
+                    Filters.and(
+                            Filters.eq(MongoDBNames.TIMESTAMP, new Date(after.getTimestamp())),
+                            Filters.gte(MongoDBNames.DOCUMENT_ID, after.getId()))));
+        }
+
+        MongoCursor<MonitorLogBucket> documents = logs.find(filter)
+                .sort(Sorts.ascending(MongoDBNames.TIMESTAMP, MongoDBNames.DOCUMENT_ID))
+                .batchSize(limit > 0 ? Math.min(limit + 1, SCAN_BATCH_SIZE) : SCAN_BATCH_SIZE).iterator();
+
+        int scanned = 0;
+        try {
+            while (documents.hasNext()) {
+                MonitorLogBucket document = documents.next();
+                List<MonitorLog> samples = document.getLogs();
+                samples.sort(OLDEST_FIRST);
+
+                int offset = after != null && document.getId().equals(after.getId()) ? after.getOffset() : 0;
+                for (; offset < samples.size(); offset++) {
+                    MonitorLog log = samples.get(offset);
+                    if (log.getTimestamp() < from || log.getTimestamp() > to) {
+                        continue;
+                    }
+                    if (limit > 0 && scanned == limit) {
+                        return new LogCursor(document.getEnd(), document.getId(), offset);
+                    }
+                    consumer.accept(log);
+                    scanned++;
+                }
+            }
+        } finally {
+            documents.close();
+        }
+
+        return null;
+    }
+
+    /**
+     * Computes the count, minimum, maximum, mean, population standard
+     * deviation and the given percentiles of metrics of the pair identified
+     * by the rule within a time range, with aggregation pipelines run by
+     * MongoDB. Logs of both storage layouts are included. Results are cached
+     * for a short time, keyed by the query; a range without an end is cut at
+     * the start of the current cache period so that it can be cached.
+     *
+     * Metrics stored as strings, before codec version 2, are not numbers to
+     * the pipeline and must be migrated first.
+     *
+     * @param rule rule to find the specified MongoCollection
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive, or null for now
+     * @param metrics the metric names
+     * @param percentiles the percentiles, between 0 and 100
+     * @return the statistics of each metric
+     * @see #migrateParameterTypes(int)
+     */
+    public QoSStatistics getStatistics(MonitorRule rule, long from, Long to, List<String> metrics, double[] percentiles) {
+        long now = System.currentTimeMillis();
+        long end = to != null ? to : now - Math.floorMod(now, Math.max(1, statisticsCache.getTtl()));
+
+        String key = RuleCache.getKey(rule) + '|' + from + '|' + end + '|' + metrics + '|' + Arrays.toString(percentiles);
+
+        return statisticsCache.get(key, () -> computeStatistics(rule, from, end, metrics, percentiles));
+    }
+
+    private QoSStatistics computeStatistics(MonitorRule rule, long from, long to, List<String> metrics, double[] percentiles) {
+        MongoCollection<MonitorLogBucket> logs = getBucketCollection(
+                rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName(), getDurability(rule));
+
+        List<Bson> stages = getSampleStages(rule, from, to, metrics);
+
+        Document group = new Document(MongoDBNames.DOCUMENT_ID, null);
+        for (int i = 0; i < metrics.size(); i++) {
+            String field = "$" + metrics.get(i);
+            group.append("count" + i, new Document("$sum",
+                    new Document("$cond", Arrays.asList(new Document("$gt", Arrays.asList(field, null)), 1, 0))))
+                    .append("min" + i, new Document("$min", field))
+                    .append("max" + i, new Document("$max", field))
+                    .append("mean" + i, new Document("$avg", field))
+                    .append("stddev" + i, new Document("$stdDevPop", field));
+        }
+        List<Bson> pipeline = new ArrayList<>(stages);
+        pipeline.add(new Document("$group", group));
+
+        Document summary = logs.aggregate(pipeline, Document.class).allowDiskUse(true).first();
+
+        QoSStatistics statistics = new QoSStatistics();
+        statistics.setFrom(from);
+        statistics.setTo(to);
+
+        for (int i = 0; i < metrics.size(); i++) {
+            MetricStatistics metric = new MetricStatistics();
+            metric.setMetric(metrics.get(i));
+            statistics.getMetrics().add(metric);
+            if (summary == null || ((Number) summary.get("count" + i)).longValue() == 0) {
+                continue;
+            }
+            metric.setCount(((Number) summary.get("count" + i)).longValue());
+            metric.setMin(((Number) summary.get("min" + i)).doubleValue());
+            metric.setMax(((Number) summary.get("max" + i)).doubleValue());
+            metric.setMean(((Number) summary.get("mean" + i)).doubleValue());
+            metric.setStddev(((Number) summary.get("stddev" + i)).doubleValue());
+
+            if (percentiles.length > 0) {
+                addPercentiles(logs, stages, metric, percentiles);
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Adds the given percentiles of a metric, all read in one pass over its
+     * values sorted by MongoDB. The pass stops at the rank of the highest
+     * percentile, so its cost is a sort of the samples of the range plus the
+     * transfer of the values up to that rank. It runs once per metric and
+     * query, as the result is kept by the statistics cache.
+     *
+     * @param logs the Log collection
+     * @param stages the stages producing the samples of the range
+     * @param metric the metric statistics, with its count already set
+     * @param percentiles the percentiles, between 0 and 100
+     */
+    private void addPercentiles(MongoCollection<MonitorLogBucket> logs, List<Bson> stages,
+            MetricStatistics metric, double[] percentiles) {
+        long[] ranks = new long[percentiles.length];
+        long last = 0;
+        for (int j = 0; j < percentiles.length; j++) {
+            ranks[j] = Math.max(0, (long) Math.ceil(percentiles[j] / 100 * metric.getCount()) - 1);
+            last = Math.max(last, ranks[j]);
+        }
+
+        List<Bson> select = new ArrayList<>(stages);
+        select.add(Aggregates.match(Filters.ne(metric.getMetric(), null)));
+        select.add(Aggregates.sort(Sorts.ascending(metric.getMetric())));
+        select.add(Aggregates.limit((int) Math.min(last + 1, Integer.MAX_VALUE)));
+        select.add(Aggregates.project(Projections.fields(Projections.include(metric.getMetric()),
+                Projections.excludeId())));
+
+        Double[] values = new Double[percentiles.length];
+        MongoCursor<Document> sorted = logs.aggregate(select, Document.class).allowDiskUse(true)
+                .batchSize(1000).iterator();
+        try {
+            for (long position = 0; position <= last && sorted.hasNext(); position++) {
+                double value = ((Number) sorted.next().get(metric.getMetric())).doubleValue();
+                for (int j = 0; j < ranks.length; j++) {
+                    if (ranks[j] == position) {
+                        values[j] = value;
+                    }
+                }
+            }
+        } finally {
+            sorted.close();
+        }
+
+        for (int j = 0; j < percentiles.length; j++) {
+            if (values[j] != null) {
+                metric.getPercentiles().add(new PercentileValue(percentiles[j], values[j]));
+            }
+        }
+    }
+
+    /**
+     * Gets the pipeline stages producing one document per log of the pair
+     * within a time range, holding its timestamp and the given metrics. Bucket
+     * documents are unwound into their samples.
+     *
+     * @param rule the monitor rule
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive
+     * @param metrics the metric names
+     * @return the pipeline stages
+     */
+    private List<Bson> getSampleStages(MonitorRule rule, long from, long to, List<String> metrics) {
+        List<Bson> stages = new ArrayList<>();
+
+        stages.add(Aggregates.match(Filters.and(
+                getPairFilter(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                        rule.getConsumerSystemGroup(), rule.getConsumerSystemName()),
+                Filters.gte(MongoDBNames.TIMESTAMP, new Date(from)),
+                Filters.or(
+                        Filters.lte(MongoDBNames.BUCKET_START, new Date(to)),
+                        Filters.lte(MongoDBNames.TIMESTAMP, new Date(to))))));
+
+        stages.add(new Document("$unwind", new Document("path", "$" + MongoDBNames.SAMPLES)
+                .append("preserveNullAndEmptyArrays", true)));
+
+        Document project = new Document(MongoDBNames.TIMESTAMP, new Document("$ifNull", Arrays.asList(
+                "$" + MongoDBNames.SAMPLES + "." + MongoDBNames.TIMESTAMP, "$" + MongoDBNames.TIMESTAMP)));
+        for (String metric : metrics) {
+            project.append(metric, new Document("$ifNull", Arrays.asList(
+                    "$" + MongoDBNames.SAMPLES + "." + metric, "$" + metric)));
+        }
+        stages.add(new Document("$project", project));
+
+        stages.add(Aggregates.match(Filters.and(
+                Filters.gte(MongoDBNames.TIMESTAMP, new Date(from)),
+                Filters.lte(MongoDBNames.TIMESTAMP, new Date(to)))));
+
+        return stages;
+    }
+
+    /**
+     * Gets all the rules currently held by the rule cache.
+     *
+     * @return the cached rules
+     */
+    @Override
+    public List<MonitorRule> getCachedRules() {
+        return ruleCache.getAll();
+    }
+
+    /**
+     * Converts, in place, the documents written before codec version 2 so that
+     * the metrics of their protocol schema are stored as doubles instead of
+     * strings. The Rule collection and the Log collections are converted,
+     * using unordered bulk writes of the given size; the rollup collections
+     * are always written with numbers and are left alone. A document whose
+     * protocol has no schema, or with a metric that is not a number, is not
+     * marked with the codec version, so it is still found by a later run.
+     *
+     * @param batchSize the number of documents per bulk write
+     * @return the number of converted collections and documents
+     * @see CodecUtil
+     */
+    public MigrationReport migrateParameterTypes(int batchSize) {
+        MigrationReport report = new MigrationReport();
+
+        for (String name : getDatabase().listCollectionNames()) {
+            if (!name.equals(MongoDBNames.RULES_TABLE) && !isLogCollection(name)) {
+                continue;
+            }
+            long converted = migrateParameterTypes(name, batchSize);
+            if (converted > 0) {
+                report.setCollections(report.getCollections() + 1);
+                report.setDocuments(report.getDocuments() + converted);
+                LOG.log(Level.INFO, "{0} documents of {1} converted.", new Object[]{converted, name});
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * Converts the documents of a single collection written before codec
+     * version 2.
+     *
+     * @param name the collection name
+     * @param batchSize the number of documents per bulk write
+     * @return the number of converted documents
+     */
+    private long migrateParameterTypes(String name, int batchSize) {
+        MongoCollection<Document> collection = getDatabase().getCollection(name)
+                .withWriteConcern(WriteConcern.MAJORITY);
+
+        List<WriteModel<Document>> updates = new ArrayList<>(batchSize);
+        long converted = 0;
+
+        MongoCursor<Document> legacy = collection.find(Filters.exists(MongoDBNames.CODEC_VERSION, false))
+                .batchSize(batchSize).iterator();
+
+        try {
+            while (legacy.hasNext()) {
+                Document document = legacy.next();
+                MetricSchema schema = CodecUtil.getSchema(document.getString(MongoDBNames.MONITOR_TYPE));
+                if (schema == null) {
+                    LOG.log(Level.WARNING, "Document {0} of {1} has no metric schema, not converted.",
+                            new Object[]{document.get(MongoDBNames.DOCUMENT_ID), name});
+                    continue;
+                }
+
+                Document set = new Document();
+                boolean numbers = true;
+                for (String metric : schema.getNames()) {
+                    Object value = document.get(metric);
+                    if (value instanceof String) {
+                        try {
+                            set.append(metric, Double.parseDouble((String) value));
+                        } catch (NumberFormatException ex) {
+                            numbers = false;
+                            LOG.log(Level.WARNING, "Value of {0} in {1} is not a number.", new Object[]{metric, name});
+                        }
+                    }
+                }
+                if (numbers) {
+                    set.append(MongoDBNames.CODEC_VERSION, CodecUtil.VERSION);
+                } else if (set.isEmpty()) {
+                    continue;
+                }
+
+                updates.add(new UpdateOneModel<>(
+                        Filters.eq(MongoDBNames.DOCUMENT_ID, document.get(MongoDBNames.DOCUMENT_ID)),
+                        new Document("$set", set)));
+
+                if (updates.size() >= batchSize) {
+                    converted += collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                    updates.clear();
+                }
+            }
+        } finally {
+            legacy.close();
+        }
+
+        if (!updates.isEmpty()) {
+            converted += collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        }
+
+        return converted;
+    }
+
+    /**
+     * Starts, in the background, the migration of the logs stored in the
+     * per-pair Log collections into the single Log collection. Logs of a pair
+     * are not visible until its collection is migrated.
+     *
+     * @param batchSize the number of documents per insert
+     * @return the progress of the migration
+     * @throws IllegalStateException if the single Log collection is not
+     * configured
+     */
+    public synchronized MigrationReport startLogMigration(int batchSize) {
+        if (!singleCollection) {
+            throw new IllegalStateException("The single log collection is not configured.");
+        }
+        if (logMigrator == null || !logMigrator.getReport().isRunning()) {
+            logMigrator = new LogCollectionMigrator(this, getDatabase(), batchSize);
+            logMigrator.start();
+        }
+        return logMigrator.getReport();
+    }
+
+    /**
+     * Gets the progress of the last migration into the single Log collection.
+     *
+     * @return the progress of the migration, empty if none was started
+     */
+    public synchronized MigrationReport getLogMigrationReport() {
+        return logMigrator == null ? new MigrationReport() : logMigrator.getReport();
+    }
+
     //NOT NEEDED
 //    /**
 //     * Inserts a new document into a given collection with a given class type.
@@ -586,7 +2189,7 @@ public final class MongoDatabaseManager {
      * @see
      * <a href="https://api.mongodb.com/java/3.2/com/mongodb/client/model/Filters.html">Filters</a>
      */
-    private Bson createRuleFilter(String providerSystemGroup, String providerSystemName, String consumerSystemGroup, String consumerSystemName) {
+    Bson createRuleFilter(String providerSystemGroup, String providerSystemName, String consumerSystemGroup, String consumerSystemName) {
         return Filters.and(
                 Filters.and(
                         Filters.eq(MongoDBNames.PROVIDER_SYSTEM_GROUP, providerSystemGroup),
@@ -20,7 +20,11 @@ public class MonitorLog {
     private final ObjectId id;
     private String protocol;
     private Map<String, String> parameters;
+    private MetricSchema schema;
+    private double[] metrics;
     private Long timestamp;
+    private String pairId;
+    private Long ruleVersion;
 
     /**
      * Creates a new instance with a generated id.
@@ -118,6 +122,95 @@ public class MonitorLog {
      */
     public void setParameters(Map<String, String> parameters) {
         this.parameters = parameters;
+        this.schema = null;
+        this.metrics = null;
+    }
+
+    /**
+     * Gets the id of the provider and consumer pair, set only for logs stored
+     * in the single Log collection.
+     *
+     * @return the pair id, or null if not set
+     */
+    public String getPairId() {
+        return pairId;
+    }
+
+    /**
+     * Sets the id of the provider and consumer pair.
+     *
+     * @param pairId the pair id
+     */
+    public void setPairId(String pairId) {
+        this.pairId = pairId;
+    }
+
+    /**
+     * Gets the version of the rule of the pair when the log was stored.
+     *
+     * @return the rule version, or null for logs stored before rules were
+     * versioned
+     */
+    public Long getRuleVersion() {
+        return ruleVersion;
+    }
+
+    /**
+     * Sets the version of the rule of the pair when the log was stored.
+     *
+     * @param ruleVersion the rule version
+     */
+    public void setRuleVersion(Long ruleVersion) {
+        this.ruleVersion = ruleVersion;
+    }
+
+    /**
+     * Sets the logged metric values, already parsed from the monitor
+     * parameters.
+     *
+     * @param schema the metric schema of the monitor protocol
+     * @param metrics the metric values, in schema order
+     */
+    public void setMetrics(MetricSchema schema, double[] metrics) {
+        this.schema = schema;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the metric schema of the parsed metric values.
+     *
+     * @return the metric schema, or null if the metric values were not parsed
+     */
+    public MetricSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Gets the parsed logged metric values, in schema order.
+     *
+     * @return the metric values, or null if they were not parsed
+     */
+    public double[] getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the logged value of a metric. Values set with
+     * {@link #setMetrics(MetricSchema, double[])} are read directly; other
+     * metrics are parsed from the monitor parameters.
+     *
+     * @param name the metric name
+     * @return the metric value, or NaN if the metric is not present
+     */
+    public double getMetric(String name) {
+        if (schema != null) {
+            int index = schema.indexOf(name);
+            if (index >= 0) {
+                return metrics[index];
+            }
+        }
+        String value = parameters == null ? null : parameters.get(name);
+        return value == null ? Double.NaN : Double.parseDouble(value);
     }
 
     @Override
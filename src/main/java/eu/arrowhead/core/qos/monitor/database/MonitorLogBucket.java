@@ -0,0 +1,223 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import eu.arrowhead.core.qos.monitor.database.codec.CodecUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.bson.types.ObjectId;
+
+/**
+ * A representation of a bucket of MonitorLogs for MongoDB.
+ *
+ * In the bucketed storage layout, the logs of a provider and consumer pair
+ * are packed into one document per time bucket. Besides the logs, the
+ * document keeps the number of logs and the minimum, maximum and sum of each
+ * metric, updated as logs are added. A log stored in the per-sample layout is
+ * read as a bucket holding only that log.
+ *
+ * @author Renato Ayres
+ */
+public class MonitorLogBucket {
+
+    private final ObjectId id;
+    private String protocol;
+    private Long bucket;
+    private Long start;
+    private Long end;
+    private int count;
+    private final Map<String, Double> min = new HashMap<>();
+    private final Map<String, Double> max = new HashMap<>();
+    private final Map<String, Double> sum = new HashMap<>();
+    private final List<MonitorLog> logs = new ArrayList<>();
+
+    /**
+     * Creates a new empty bucket using the given id.
+     *
+     * @param id the id
+     */
+    public MonitorLogBucket(ObjectId id) {
+        this.id = id;
+    }
+
+    /**
+     * Creates a bucket holding a single log, as read from the per-sample
+     * layout.
+     *
+     * @param log the log
+     * @return the bucket
+     */
+    public static MonitorLogBucket of(MonitorLog log) {
+        MonitorLogBucket bucket = new MonitorLogBucket(log.getId());
+        bucket.setProtocol(log.getProtocol());
+        bucket.setBucket(log.getTimestamp());
+        bucket.add(log);
+        return bucket;
+    }
+
+    /**
+     * Adds a log to the bucket, updating the bucket header.
+     *
+     * @param log the log
+     */
+    public final void add(MonitorLog log) {
+        logs.add(log);
+        count++;
+        start = start == null ? log.getTimestamp() : Math.min(start, log.getTimestamp());
+        end = end == null ? log.getTimestamp() : Math.max(end, log.getTimestamp());
+        MetricSchema schema = log.getSchema() != null ? log.getSchema() : CodecUtil.getSchema(log.getProtocol());
+        if (schema == null) {
+            return;
+        }
+        for (String metric : schema.getNames()) {
+            double value = log.getMetric(metric);
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            min.merge(metric, value, Math::min);
+            max.merge(metric, value, Math::max);
+            sum.merge(metric, value, Double::sum);
+        }
+    }
+
+    /**
+     * Gets the bucket id.
+     *
+     * @return the bucket id
+     */
+    public ObjectId getId() {
+        return id;
+    }
+
+    /**
+     * Gets the monitor protocol of the logs.
+     *
+     * @return the monitor protocol
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Sets the monitor protocol of the logs.
+     *
+     * @param protocol the monitor protocol
+     */
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    /**
+     * Gets the start of the time bucket.
+     *
+     * @return the start of the time bucket
+     */
+    public Long getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Sets the start of the time bucket.
+     *
+     * @param bucket the start of the time bucket
+     */
+    public void setBucket(Long bucket) {
+        this.bucket = bucket;
+    }
+
+    /**
+     * Gets the timestamp of the oldest log.
+     *
+     * @return the timestamp of the oldest log
+     */
+    public Long getStart() {
+        return start;
+    }
+
+    /**
+     * Sets the timestamp of the oldest log.
+     *
+     * @param start the timestamp of the oldest log
+     */
+    public void setStart(Long start) {
+        this.start = start;
+    }
+
+    /**
+     * Gets the timestamp of the newest log.
+     *
+     * @return the timestamp of the newest log
+     */
+    public Long getEnd() {
+        return end;
+    }
+
+    /**
+     * Sets the timestamp of the newest log.
+     *
+     * @param end the timestamp of the newest log
+     */
+    public void setEnd(Long end) {
+        this.end = end;
+    }
+
+    /**
+     * Gets the number of logs in the bucket.
+     *
+     * @return the number of logs
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of logs in the bucket.
+     *
+     * @param count the number of logs
+     */
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    /**
+     * Gets the minimum value of each metric.
+     *
+     * @return the minimum value of each metric
+     */
+    public Map<String, Double> getMin() {
+        return min;
+    }
+
+    /**
+     * Gets the maximum value of each metric.
+     *
+     * @return the maximum value of each metric
+     */
+    public Map<String, Double> getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the sum of the values of each metric.
+     *
+     * @return the sum of the values of each metric
+     */
+    public Map<String, Double> getSum() {
+        return sum;
+    }
+
+    /**
+     * Gets the logs in the bucket, in insertion order.
+     *
+     * @return the logs
+     */
+    public List<MonitorLog> getLogs() {
+        return logs;
+    }
+
+    @Override
+    public String toString() {
+        return "MonitorLogBucket{" + "id=" + id + ", protocol=" + protocol + ", bucket=" + bucket
+                + ", count=" + count + '}';
+    }
+}
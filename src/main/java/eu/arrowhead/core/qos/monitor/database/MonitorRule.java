@@ -19,7 +19,11 @@ public class MonitorRule {
     private String consumerSystemName;
     private String consumerSystemGroup;
     private Map<String, String> parameters;
+    private MetricSchema schema;
+    private double[] metrics;
     private boolean softRealTime;
+    private Durability durability;
+    private long version;
 
     /**
      * Creates a new instance with a generated id.
@@ -195,6 +199,57 @@ public class MonitorRule {
      */
     public void setParameters(Map<String, String> parameters) {
         this.parameters = parameters;
+        this.schema = null;
+        this.metrics = null;
+    }
+
+    /**
+     * Sets the requested metric values, already parsed from the monitor
+     * parameters.
+     *
+     * @param schema the metric schema of the monitor protocol
+     * @param metrics the metric values, in schema order
+     */
+    public void setMetrics(MetricSchema schema, double[] metrics) {
+        this.schema = schema;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the metric schema of the parsed metric values.
+     *
+     * @return the metric schema, or null if the metric values were not parsed
+     */
+    public MetricSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Gets the parsed requested metric values, in schema order.
+     *
+     * @return the metric values, or null if they were not parsed
+     */
+    public double[] getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the requested value of a metric. Values set with
+     * {@link #setMetrics(MetricSchema, double[])} are read directly; other
+     * metrics are parsed from the monitor parameters.
+     *
+     * @param name the metric name
+     * @return the metric value, or NaN if the metric is not present
+     */
+    public double getMetric(String name) {
+        if (schema != null) {
+            int index = schema.indexOf(name);
+            if (index >= 0) {
+                return metrics[index];
+            }
+        }
+        String value = parameters == null ? null : parameters.get(name);
+        return value == null ? Double.NaN : Double.parseDouble(value);
     }
 
     /**
@@ -215,6 +270,45 @@ public class MonitorRule {
         this.softRealTime = softRealTime;
     }
 
+    /**
+     * Gets the durability class of the logs of this rule.
+     *
+     * @return the durability class, or null to use the protocol default
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets the durability class of the logs of this rule.
+     *
+     * @param durability the durability class, or null to use the protocol
+     * default
+     */
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Gets the version of this rule, incremented every time the rule of the
+     * pair is replaced.
+     *
+     * @return the rule version, or 0 if the rule was stored before rules were
+     * versioned or was not stored yet
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of this rule.
+     *
+     * @param version the rule version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(final Object obj) {
         if (this == obj) {
@@ -251,6 +345,10 @@ public class MonitorRule {
             return false;
         }
 
+        if (this.durability != rule.durability) {
+            return false;
+        }
+
         Set<String> names = this.parameters.keySet();
 
         for (String name : names) {
@@ -275,6 +373,7 @@ public class MonitorRule {
         hash = 37 * hash + Objects.hashCode(this.consumerSystemGroup);
         hash = 37 * hash + Objects.hashCode(this.parameters);
         hash = 37 * hash + (this.softRealTime ? 1 : 0);
+        hash = 37 * hash + Objects.hashCode(this.durability);
         return hash;
     }
 }
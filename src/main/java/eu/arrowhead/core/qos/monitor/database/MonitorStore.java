@@ -0,0 +1,159 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import eu.arrowhead.common.model.ArrowheadSystem;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * The rule and log operations of a QoSMonitor storage backend. The backend in
+ * use is selected in the 'mongodb.properties' file and obtained from
+ * {@link MonitorStoreFactory}.
+ *
+ * @author Renato Ayres
+ */
+public interface MonitorStore {
+
+    /**
+     * Opens the storage and loads what it needs in memory.
+     */
+    public void startManager();
+
+    /**
+     * Closes the storage.
+     */
+    public void stopManager();
+
+    /**
+     * Find a rule with the given provider, and consumer.
+     *
+     * @param provider the provider
+     * @param consumer the consumer
+     * @return the wanted rule. If no rule matched the given parameters, then
+     * null is returned
+     */
+    public MonitorRule findRule(ArrowheadSystem provider, ArrowheadSystem consumer);
+
+    /**
+     * Find a rule with the given provider system definition, provider system
+     * group, consumer system definition, and consumer system group.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the wanted rule. If no rule matched the given parameters, then
+     * null is returned
+     */
+    public MonitorRule findRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName);
+
+    /**
+     * Finds the rules that use the given stream id.
+     *
+     * @param streamId the stream id
+     * @return the rules using the stream id
+     */
+    public List<MonitorRule> findRulesByStreamId(String streamId);
+
+    /**
+     * Gets every rule held in memory.
+     *
+     * @return the rules
+     */
+    public List<MonitorRule> getCachedRules();
+
+    /**
+     * Gets a snapshot of the rule cache metrics.
+     *
+     * @return the rule cache metrics
+     */
+    public RuleCacheStatistics getRuleCacheStatistics();
+
+    /**
+     * Inserts or atomically replaces the rule of a pair, incrementing its
+     * version. The version of the given rule is set to the stored one.
+     *
+     * @param rule the rule
+     * @return true if the rule was stored
+     */
+    public boolean replaceRule(MonitorRule rule);
+
+    /**
+     * Deletes the rule of a pair. Its logs are kept.
+     *
+     * @param provider the service provider
+     * @param consumer the service consumer
+     * @return Always returns true
+     */
+    public boolean deleteRule(ArrowheadSystem provider, ArrowheadSystem consumer);
+
+    /**
+     * Deletes the rule of a pair. Its logs are kept.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return Always returns true
+     */
+    public boolean deleteRule(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName);
+
+    /**
+     * Deletes, in the background, every log of a pair.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return a future completed once the logs are deleted
+     */
+    public Future<?> purgeLogs(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName);
+
+    /**
+     * Stores a log of a pair.
+     *
+     * @param log the log
+     * @param provider the service provider
+     * @param consumer the service consumer
+     */
+    public void insertLog(MonitorLog log, ArrowheadSystem provider, ArrowheadSystem consumer);
+
+    /**
+     * Stores several logs of a pair.
+     *
+     * @param logs the logs
+     * @param provider the service provider
+     * @param consumer the service consumer
+     */
+    public void insertLogs(List<MonitorLog> logs, ArrowheadSystem provider, ArrowheadSystem consumer);
+
+    /**
+     * Gets the last NLogs logs of a soft real-time rule.
+     *
+     * @param rule the rule
+     * @return the logs, newest first, or null if there are fewer than NLogs
+     */
+    public MonitorLog[] getLastNLogs(MonitorRule rule);
+
+    /**
+     * Gets the last logs of the pair of a rule.
+     *
+     * @param rule the rule
+     * @param n the maximum number of logs
+     * @return up to n logs, newest first
+     */
+    public List<MonitorLog> getLastLogs(MonitorRule rule, int n);
+
+    /**
+     * Gets the logs of the pair of a rule in a time range.
+     *
+     * @param rule the rule
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, inclusive
+     * @return the logs, oldest first
+     */
+    public List<MonitorLog> getLogs(MonitorRule rule, long from, long to);
+
+}
@@ -0,0 +1,124 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import eu.arrowhead.common.exception.StorageNotSupportedException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The MonitorStoreFactory.
+ *
+ * Selects the {@link MonitorStore} given by the 'storage' property of the
+ * 'mongodb.properties' file: 'mongodb', the default, for the
+ * {@link MongoDatabaseManager}, 'memory' for the {@link InMemoryMonitorStore},
+ * or 'file' for the {@link FileMonitorStore}. A system property of the same name takes
+ * precedence, so that tests and load runs can use the memory storage without
+ * changing the file.
+ *
+ * @author Renato Ayres
+ */
+public final class MonitorStoreFactory {
+
+    /**
+     * Storage backed by MongoDB.
+     */
+    public static final String MONGODB = "mongodb";
+    /**
+     * Storage held in memory only.
+     */
+    public static final String MEMORY = "memory";
+    /**
+     * Storage kept in local files.
+     */
+    public static final String FILE = "file";
+
+    private static String storage;
+    private static final Logger LOG = Logger.getLogger(MonitorStoreFactory.class.getName());
+
+    private MonitorStoreFactory() {
+    }
+
+    /**
+     * Returns the Singleton instance of the configured storage backend.
+     *
+     * @return the configured storage backend
+     */
+    public static MonitorStore getInstance() {
+        switch (getStorage()) {
+            case MEMORY:
+                return InMemoryMonitorStore.getInstance();
+            case FILE:
+                return FileMonitorStore.getInstance();
+            default:
+                return MongoDatabaseManager.getInstance();
+        }
+    }
+
+    /**
+     * Gets the name of the configured storage backend.
+     *
+     * @return the storage name
+     */
+    public static synchronized String getStorage() {
+        if (storage == null) {
+            String name = System.getProperty("storage", getProps().getProperty("storage", MONGODB)).trim();
+            if (!name.equals(MONGODB) && !name.equals(MEMORY) && !name.equals(FILE)) {
+                LOG.log(Level.WARNING, "Unknown storage ''{0}'', using {1}.", new Object[]{name, MONGODB});
+                name = MONGODB;
+            }
+            storage = name;
+        }
+        return storage;
+    }
+
+    /**
+     * Checks if the configured storage backend is MongoDB.
+     *
+     * @return true if the logs are stored in MongoDB, false if not
+     */
+    public static boolean isMongoDB() {
+        return getStorage().equals(MONGODB);
+    }
+
+    /**
+     * Gets the MongoDatabaseManager, for the operations that only MongoDB
+     * supports.
+     *
+     * @return the MongoDatabaseManager
+     * @throws StorageNotSupportedException if the configured storage backend
+     * is not MongoDB
+     */
+    public static MongoDatabaseManager getMongoDB() {
+        if (!isMongoDB()) {
+            throw new StorageNotSupportedException("Not supported by the " + getStorage() + " storage!");
+        }
+        return MongoDatabaseManager.getInstance();
+    }
+
+    /**
+     * Gets the properties file named 'mongodb.properties'.
+     *
+     * @return the Properties from properties file 'mongodb.properties'
+     */
+    private static Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = MonitorStoreFactory.class.getClassLoader().getResourceAsStream("mongodb.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'mongodb.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+}
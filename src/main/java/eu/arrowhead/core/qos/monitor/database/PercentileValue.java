@@ -0,0 +1,68 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A percentile of the values of a metric.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class PercentileValue {
+
+    private double percentile;
+    private double value;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public PercentileValue() {
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @param value the metric value at the percentile
+     */
+    public PercentileValue(double percentile, double value) {
+        this.percentile = percentile;
+        this.value = value;
+    }
+
+    /**
+     * Gets the percentile, between 0 and 100.
+     *
+     * @return the percentile
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Sets the percentile, between 0 and 100.
+     *
+     * @param percentile the percentile
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    /**
+     * Gets the metric value at the percentile.
+     *
+     * @return the metric value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Sets the metric value at the percentile.
+     *
+     * @param value the metric value
+     */
+    public void setValue(double value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,78 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Descriptive statistics of the logged metrics of a pair within a time range.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class QoSStatistics {
+
+    private long from;
+    private long to;
+    private List<MetricStatistics> metrics = new ArrayList<>();
+
+    /**
+     * Creates a new instance with no metrics.
+     */
+    public QoSStatistics() {
+    }
+
+    /**
+     * Gets the start of the time range, inclusive.
+     *
+     * @return the range start timestamp
+     */
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * Sets the start of the time range, inclusive.
+     *
+     * @param from the range start timestamp
+     */
+    public void setFrom(long from) {
+        this.from = from;
+    }
+
+    /**
+     * Gets the end of the time range, inclusive.
+     *
+     * @return the range end timestamp
+     */
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * Sets the end of the time range, inclusive.
+     *
+     * @param to the range end timestamp
+     */
+    public void setTo(long to) {
+        this.to = to;
+    }
+
+    /**
+     * Gets the statistics of each metric.
+     *
+     * @return the metric statistics
+     */
+    public List<MetricStatistics> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the statistics of each metric.
+     *
+     * @param metrics the metric statistics
+     */
+    public void setMetrics(List<MetricStatistics> metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,81 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A small cache of query results that expire after a fixed time to live.
+ * Expired entries are evicted when the cache is full.
+ *
+ * @param <V> the type of the results
+ * @author Renato Ayres
+ */
+final class QueryCache<V> {
+
+    private final long ttl;
+    private final int capacity;
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param ttl the time to live of a result, in milliseconds. 0 disables
+     * the cache
+     * @param capacity the maximum number of results
+     */
+    QueryCache(long ttl, int capacity) {
+        this.ttl = ttl;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the time to live of a result.
+     *
+     * @return the time to live, in milliseconds
+     */
+    long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Gets the cached result of a query, running the query if the result is
+     * missing or expired.
+     *
+     * @param key the query key
+     * @param query the query
+     * @return the query result
+     */
+    V get(String key, Supplier<V> query) {
+        if (ttl <= 0) {
+            return query.get();
+        }
+        long now = System.currentTimeMillis();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expires > now) {
+            return entry.value;
+        }
+
+        V value = query.get();
+
+        if (entries.size() >= capacity) {
+            entries.values().removeIf((old) -> old.expires <= now);
+            if (entries.size() >= capacity) {
+                entries.clear();
+            }
+        }
+        entries.put(key, new Entry<>(value, now + ttl));
+        return value;
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expires;
+
+        private Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import eu.arrowhead.core.qos.monitor.database.codec.CodecUtil;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+
+/**
+ * Rolls the monitor logs up into minute, hour and day aggregates, keeping
+ * the count, minimum, maximum, mean and 95th percentile of every metric of
+ * the protocol schema. Together with the TTL indexes on the raw logs and on
+ * each aggregate tier, it bounds the storage of long-running deployments.
+ *
+ * A scheduled task rolls up the closed windows of every rule: minute windows
+ * from the raw logs, hour windows from the minute aggregates and day windows
+ * from the hour aggregates. The next window of each pair and tier is kept in
+ * the rollup state collection, so rollups resume after a restart.
+ *
+ * @author Renato Ayres
+ * @see RollupTier
+ */
+public final class RollupEngine {
+
+    private static RollupEngine instance;
+    private final boolean enabled;
+    private final long interval;
+    private final long delay;
+    private final int maxWindows;
+    private final Map<RollupTier, Long> retention = new EnumMap<>(RollupTier.class);
+    private ScheduledExecutorService scheduler;
+    private static final double PERCENTILE = 0.95;
+    private static final Logger LOG = Logger.getLogger(RollupEngine.class.getName());
+
+    /**
+     * Returns the Singleton instance of RollupEngine
+     *
+     * @return Singleton instance
+     */
+    public static synchronized RollupEngine getInstance() {
+        if (instance == null) {
+            instance = new RollupEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance configured from the 'mongodb.properties' file.
+     */
+    private RollupEngine() {
+        Properties props = getProps();
+        enabled = Boolean.valueOf(props.getProperty("log.rollup.enabled", "false"));
+        interval = Long.valueOf(props.getProperty("log.rollup.interval", "60000"));
+        delay = Long.valueOf(props.getProperty("log.rollup.delay", "5000"));
+        maxWindows = Integer.valueOf(props.getProperty("log.rollup.max.windows", "1440"));
+        for (RollupTier tier : RollupTier.values()) {
+            retention.put(tier, Long.valueOf(props.getProperty(
+                    "log.retention." + tier.name().toLowerCase(), "0")));
+        }
+    }
+
+    /**
+     * Gets the properties file named 'mongodb.properties'.
+     *
+     * @return the Properties from properties file 'mongodb.properties'
+     */
+    private Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mongodb.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'mongodb.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Checks if logs are rolled up.
+     *
+     * @return true if the rollups are enabled, false if not
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ensures the indexes of the aggregate collections and schedules the
+     * rollups. Does nothing if the rollups are disabled or already running.
+     * The rollups need the MongoDB storage and are not started with any other.
+     */
+    public synchronized void start() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        if (!MonitorStoreFactory.isMongoDB()) {
+            LOG.log(Level.WARNING, "RollupEngine not started, rollups need the MongoDB storage.");
+            return;
+        }
+        ensureIndexes();
+        scheduler = Executors.newSingleThreadScheduledExecutor((task) -> {
+            Thread thread = new Thread(task, "RollupEngine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rollup, interval, interval, TimeUnit.MILLISECONDS);
+        LOG.log(Level.INFO, "RollupEngine started, every {0} ms.", interval);
+    }
+
+    /**
+     * Stops the rollups, waiting for a running rollup to finish.
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        LOG.log(Level.INFO, "RollupEngine stopped.");
+    }
+
+    private void ensureIndexes() {
+        MongoDatabaseManager manager = MongoDatabaseManager.getInstance();
+        for (RollupTier tier : RollupTier.values()) {
+            MongoCollection<Document> collection = getCollection(tier);
+            try {
+                collection.createIndex(new Document(MongoDBNames.PAIR_ID, 1).append(MongoDBNames.BUCKET_START, 1));
+                if (retention.get(tier) > 0) {
+                    manager.ensureTtlIndex(collection, tier.getCollection(),
+                            new Document(MongoDBNames.WINDOW_END, 1), retention.get(tier));
+                }
+            } catch (MongoException ex) {
+                LOG.log(Level.WARNING, "Failed to create the indexes of {0}: {1}",
+                        new Object[]{tier.getCollection(), ex.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Rolls up the closed windows of every rule. Failures are logged and the
+     * windows retried on the next run.
+     */
+    private void rollup() {
+        long now = System.currentTimeMillis();
+        for (MonitorRule rule : MongoDatabaseManager.getInstance().getCachedRules()) {
+            try {
+                for (RollupTier tier : RollupTier.values()) {
+                    rollup(rule, tier, now);
+                }
+            } catch (MongoException ex) {
+                LOG.log(Level.WARNING, "Rollup of {0} failed: {1}", new Object[]{RuleCache.getName(rule), ex.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Rolls up the closed windows of a rule in one tier, at most the
+     * configured number of windows per run.
+     *
+     * @param rule the monitor rule
+     * @param tier the aggregate tier
+     * @param now the current time
+     */
+    private void rollup(MonitorRule rule, RollupTier tier, long now) {
+        MetricSchema schema = CodecUtil.getSchema(rule.getProtocol());
+        if (schema == null) {
+            return;
+        }
+        MongoDatabaseManager manager = MongoDatabaseManager.getInstance();
+        String pairId = getPairId(rule);
+        long span = tier.getSpan();
+
+        Long next = getNextWindow(pairId, tier);
+        if (next == null) {
+            Long first = tier.getFiner() == null ? manager.getFirstLogTimestamp(rule) : getFirstWindow(pairId, tier.getFiner());
+            if (first == null) {
+                return;
+            }
+            next = first - Math.floorMod(first, span);
+        }
+
+        // a window is closed once late logs are no longer expected or, for
+        // the coarser tiers, once the finer tier has rolled it up
+        Long limit = tier.getFiner() == null ? Long.valueOf(now - delay) : getNextWindow(pairId, tier.getFiner());
+        if (limit == null) {
+            return;
+        }
+
+        int windows = 0;
+        while (next + span <= limit && windows < maxWindows) {
+            LogAggregate aggregate = tier.getFiner() == null
+                    ? aggregate(manager.getLogs(rule, next, next + span - 1), schema, next, next + span)
+                    : merge(getAggregates(pairId, tier.getFiner(), next, next + span), next, next + span);
+            if (aggregate.getCount() > 0) {
+                getCollection(tier).replaceOne(Filters.eq(MongoDBNames.DOCUMENT_ID, pairId + ":" + next),
+                        toDocument(pairId, aggregate), new UpdateOptions().upsert(true));
+            }
+            next += span;
+            windows++;
+        }
+
+        if (windows > 0) {
+            getStateCollection().replaceOne(Filters.eq(MongoDBNames.DOCUMENT_ID, getStateId(pairId, tier)),
+                    new Document(MongoDBNames.NEXT_WINDOW, new Date(next)), new UpdateOptions().upsert(true));
+        }
+    }
+
+    /**
+     * Gets the aggregates of the pair identified by the rule within a time
+     * range, in windows of the given resolution aligned to the epoch. The
+     * windows are merged from the coarsest tier whose windows divide the
+     * resolution, or computed from the raw logs if no tier does or the
+     * rollups are disabled. Windows not rolled up yet are missing from the
+     * aggregate tiers.
+     *
+     * @param rule the monitor rule
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, inclusive
+     * @param resolution the window length, in milliseconds
+     * @return the aggregates, oldest window first
+     */
+    public LogAggregateList getAggregates(MonitorRule rule, long from, long to, long resolution) {
+        RollupTier source = null;
+        if (enabled) {
+            for (RollupTier tier : RollupTier.values()) {
+                if (resolution % tier.getSpan() == 0) {
+                    source = tier;
+                }
+            }
+        }
+
+        Map<Long, List<LogAggregate>> windows = new LinkedHashMap<>();
+        LogAggregateList list = new LogAggregateList();
+        list.setResolution(resolution);
+
+        if (source == null) {
+            list.setSource("raw");
+            MetricSchema schema = CodecUtil.getSchema(rule.getProtocol());
+            Map<Long, List<MonitorLog>> logs = new LinkedHashMap<>();
+            for (MonitorLog log : MongoDatabaseManager.getInstance().getLogs(rule, from, to)) {
+                long window = log.getTimestamp() - Math.floorMod(log.getTimestamp(), resolution);
+                logs.computeIfAbsent(window, (key) -> new ArrayList<>()).add(log);
+            }
+            for (Map.Entry<Long, List<MonitorLog>> window : logs.entrySet()) {
+                list.getAggregates().add(aggregate(window.getValue(), schema, window.getKey(), window.getKey() + resolution));
+            }
+            return list;
+        }
+
+        list.setSource(source.name().toLowerCase());
+        for (LogAggregate aggregate : getAggregates(getPairId(rule), source,
+                from - Math.floorMod(from, resolution), to + 1)) {
+            long window = aggregate.getStart() - Math.floorMod(aggregate.getStart(), resolution);
+            windows.computeIfAbsent(window, (key) -> new ArrayList<>()).add(aggregate);
+        }
+        for (Map.Entry<Long, List<LogAggregate>> window : windows.entrySet()) {
+            list.getAggregates().add(merge(window.getValue(), window.getKey(), window.getKey() + resolution));
+        }
+        return list;
+    }
+
+    /**
+     * Summarizes logs into one window, with the exact 95th percentile of each
+     * metric.
+     *
+     * @param logs the logs of the window
+     * @param schema the metric schema of the protocol, may be null
+     * @param start the window start, inclusive
+     * @param end the window end, exclusive
+     * @return the window aggregate
+     */
+    static LogAggregate aggregate(List<MonitorLog> logs, MetricSchema schema, long start, long end) {
+        LogAggregate aggregate = new LogAggregate();
+        aggregate.setStart(start);
+        aggregate.setEnd(end);
+        aggregate.setCount(logs.size());
+        if (schema == null) {
+            return aggregate;
+        }
+
+        for (String metric : schema.getNames()) {
+            double[] values = new double[logs.size()];
+            int count = 0;
+            double sum = 0;
+            for (MonitorLog log : logs) {
+                double value = log.getMetric(metric);
+                if (!Double.isNaN(value)) {
+                    values[count++] = value;
+                    sum += value;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(values, 0, count);
+
+            MetricAggregate summary = new MetricAggregate();
+            summary.setMetric(metric);
+            summary.setCount(count);
+            summary.setMin(values[0]);
+            summary.setMax(values[count - 1]);
+            summary.setMean(sum / count);
+            summary.setP95(values[(int) Math.ceil(PERCENTILE * count) - 1]);
+            aggregate.getMetrics().add(summary);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Merges finer aggregates into one window. Counts, extremes and means are
+     * exact; the 95th percentile is estimated as the percentile of the finer
+     * percentiles, weighted by their counts.
+     *
+     * @param parts the finer aggregates of the window
+     * @param start the window start, inclusive
+     * @param end the window end, exclusive
+     * @return the window aggregate
+     */
+    static LogAggregate merge(List<LogAggregate> parts, long start, long end) {
+        LogAggregate aggregate = new LogAggregate();
+        aggregate.setStart(start);
+        aggregate.setEnd(end);
+
+        Map<String, List<MetricAggregate>> metrics = new LinkedHashMap<>();
+        for (LogAggregate part : parts) {
+            aggregate.setCount(aggregate.getCount() + part.getCount());
+            for (MetricAggregate metric : part.getMetrics()) {
+                metrics.computeIfAbsent(metric.getMetric(), (key) -> new ArrayList<>()).add(metric);
+            }
+        }
+
+        for (Map.Entry<String, List<MetricAggregate>> metric : metrics.entrySet()) {
+            List<MetricAggregate> summaries = metric.getValue();
+            MetricAggregate merged = new MetricAggregate();
+            merged.setMetric(metric.getKey());
+            merged.setMin(Double.POSITIVE_INFINITY);
+            merged.setMax(Double.NEGATIVE_INFINITY);
+            double sum = 0;
+            for (MetricAggregate summary : summaries) {
+                merged.setCount(merged.getCount() + summary.getCount());
+                merged.setMin(Math.min(merged.getMin(), summary.getMin()));
+                merged.setMax(Math.max(merged.getMax(), summary.getMax()));
+                sum += summary.getMean() * summary.getCount();
+            }
+            merged.setMean(sum / merged.getCount());
+
+            summaries.sort((a, b) -> Double.compare(a.getP95(), b.getP95()));
+            long seen = 0;
+            for (MetricAggregate summary : summaries) {
+                seen += summary.getCount();
+                merged.setP95(summary.getP95());
+                if (seen >= PERCENTILE * merged.getCount()) {
+                    break;
+                }
+            }
+            aggregate.getMetrics().add(merged);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Deletes the aggregates of every tier and the rollup state of a pair,
+     * whether or not the rollups are enabled.
+     *
+     * @param pairId the pair id
+     * @throws MongoException if a deletion failed
+     */
+    public void purge(String pairId) {
+        List<String> states = new ArrayList<>();
+        for (RollupTier tier : RollupTier.values()) {
+            getCollection(tier).deleteMany(Filters.eq(MongoDBNames.PAIR_ID, pairId));
+            states.add(getStateId(pairId, tier));
+        }
+        getStateCollection().deleteMany(Filters.in(MongoDBNames.DOCUMENT_ID, states));
+    }
+
+    private List<LogAggregate> getAggregates(String pairId, RollupTier tier, long from, long to) {
+        List<LogAggregate> aggregates = new ArrayList<>();
+        for (Document document : getCollection(tier).find(Filters.and(
+                Filters.eq(MongoDBNames.PAIR_ID, pairId),
+                Filters.gte(MongoDBNames.BUCKET_START, new Date(from)),
+                Filters.lt(MongoDBNames.BUCKET_START, new Date(to))))
+                .sort(Sorts.ascending(MongoDBNames.BUCKET_START))) {
+            aggregates.add(fromDocument(document));
+        }
+        return aggregates;
+    }
+
+    private Long getFirstWindow(String pairId, RollupTier tier) {
+        Document first = getCollection(tier).find(Filters.eq(MongoDBNames.PAIR_ID, pairId))
+                .sort(Sorts.ascending(MongoDBNames.BUCKET_START)).first();
+        return first == null ? null : first.getDate(MongoDBNames.BUCKET_START).getTime();
+    }
+
+    private Long getNextWindow(String pairId, RollupTier tier) {
+        Document state = getStateCollection().find(Filters.eq(MongoDBNames.DOCUMENT_ID, getStateId(pairId, tier))).first();
+        return state == null ? null : state.getDate(MongoDBNames.NEXT_WINDOW).getTime();
+    }
+
+    private static String getStateId(String pairId, RollupTier tier) {
+        return pairId + ":" + tier.name().toLowerCase();
+    }
+
+    private static String getPairId(MonitorRule rule) {
+        return MongoDatabaseManager.getInstance().getPairId(
+                rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName());
+    }
+
+    private static MongoCollection<Document> getCollection(RollupTier tier) {
+        return MongoDatabaseManager.getInstance().getDatabase().getCollection(tier.getCollection());
+    }
+
+    private static MongoCollection<Document> getStateCollection() {
+        return MongoDatabaseManager.getInstance().getDatabase().getCollection(MongoDBNames.ROLLUP_STATE_TABLE);
+    }
+
+    private static Document toDocument(String pairId, LogAggregate aggregate) {
+        Document metrics = new Document();
+        for (MetricAggregate metric : aggregate.getMetrics()) {
+            metrics.append(metric.getMetric(), new Document(MongoDBNames.SAMPLE_COUNT, metric.getCount())
+                    .append(MongoDBNames.MIN, metric.getMin())
+                    .append(MongoDBNames.MAX, metric.getMax())
+                    .append(MongoDBNames.MEAN, metric.getMean())
+                    .append(MongoDBNames.P95, metric.getP95()));
+        }
+        return new Document(MongoDBNames.PAIR_ID, pairId)
+                .append(MongoDBNames.BUCKET_START, new Date(aggregate.getStart()))
+                .append(MongoDBNames.WINDOW_END, new Date(aggregate.getEnd()))
+                .append(MongoDBNames.SAMPLE_COUNT, aggregate.getCount())
+                .append(MongoDBNames.METRICS, metrics);
+    }
+
+    private static LogAggregate fromDocument(Document document) {
+        LogAggregate aggregate = new LogAggregate();
+        aggregate.setStart(document.getDate(MongoDBNames.BUCKET_START).getTime());
+        aggregate.setEnd(document.getDate(MongoDBNames.WINDOW_END).getTime());
+        aggregate.setCount(((Number) document.get(MongoDBNames.SAMPLE_COUNT)).longValue());
+        Document metrics = (Document) document.get(MongoDBNames.METRICS);
+        for (String name : metrics.keySet()) {
+            Document values = (Document) metrics.get(name);
+            MetricAggregate metric = new MetricAggregate();
+            metric.setMetric(name);
+            metric.setCount(((Number) values.get(MongoDBNames.SAMPLE_COUNT)).longValue());
+            metric.setMin(((Number) values.get(MongoDBNames.MIN)).doubleValue());
+            metric.setMax(((Number) values.get(MongoDBNames.MAX)).doubleValue());
+            metric.setMean(((Number) values.get(MongoDBNames.MEAN)).doubleValue());
+            metric.setP95(((Number) values.get(MongoDBNames.P95)).doubleValue());
+            aggregate.getMetrics().add(metric);
+        }
+        return aggregate;
+    }
+}
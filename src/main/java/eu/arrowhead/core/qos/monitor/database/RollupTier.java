@@ -0,0 +1,53 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregate tiers of the monitor logs, from the finest to the coarsest. Each
+ * tier is stored in its own collection and computed from the previous one,
+ * the minute tier from the raw logs.
+ *
+ * @author Renato Ayres
+ * @see RollupEngine
+ */
+public enum RollupTier {
+
+    MINUTE(TimeUnit.MINUTES.toMillis(1), "rollup_minute"),
+    HOUR(TimeUnit.HOURS.toMillis(1), "rollup_hour"),
+    DAY(TimeUnit.DAYS.toMillis(1), "rollup_day");
+
+    private final long span;
+    private final String collection;
+
+    private RollupTier(long span, String collection) {
+        this.span = span;
+        this.collection = collection;
+    }
+
+    /**
+     * Gets the length of a window of this tier.
+     *
+     * @return the window length, in milliseconds
+     */
+    public long getSpan() {
+        return span;
+    }
+
+    /**
+     * Gets the name of the collection of this tier.
+     *
+     * @return the collection name
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Gets the tier this tier is computed from.
+     *
+     * @return the finer tier, or null for the minute tier
+     */
+    public RollupTier getFiner() {
+        return ordinal() == 0 ? null : values()[ordinal() - 1];
+    }
+}
@@ -0,0 +1,280 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the Rule collection, keyed by the provider and consumer
+ * pair of each rule.
+ *
+ * The cache is owned by the {@link MongoDatabaseManager}, which loads it on
+ * startup and keeps it coherent whenever a rule is replaced or deleted. A
+ * secondary index maps each stream id to the pairs whose rules use it. The
+ * {@link InMemoryMonitorStore} uses a cache as its only copy of the rules.
+ *
+ * A rule never replaces a cached rule of a higher version, and a removed pair
+ * is remembered, so that a rule read from the store before the pair was
+ * removed, or before its rule was replaced, cannot bring the old rule back.
+ *
+ * @author Renato Ayres
+ */
+public class RuleCache {
+
+    private final Map<String, MonitorRule> rules = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> streams = new ConcurrentHashMap<>();
+    private final Map<String, Long> removals = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean complete;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Gets the key that identifies a provider and consumer pair. The names
+     * are separated by a NUL character, which no name contains, so different
+     * pairs never share a key.
+     *
+     * @param providerSystemGroup the provider system group
+     * @param providerSystemName the provider system name
+     * @param consumerSystemGroup the consumer system group
+     * @param consumerSystemName the consumer system name
+     * @return the pair key
+     */
+    public static String getKey(String providerSystemGroup, String providerSystemName,
+            String consumerSystemGroup, String consumerSystemName) {
+        return providerSystemGroup + '\u0000' + providerSystemName + '\u0000'
+                + consumerSystemGroup + '\u0000' + consumerSystemName;
+    }
+
+    /**
+     * Gets the key that identifies the provider and consumer pair of a rule.
+     *
+     * @param rule the rule
+     * @return the pair key
+     */
+    public static String getKey(MonitorRule rule) {
+        return getKey(rule.getProviderSystemGroup(), rule.getProviderSystemName(),
+                rule.getConsumerSystemGroup(), rule.getConsumerSystemName());
+    }
+
+    /**
+     * Gets a readable name of the provider and consumer pair of a rule, for
+     * messages.
+     *
+     * @param rule the rule
+     * @return the pair name
+     */
+    public static String getName(MonitorRule rule) {
+        return rule.getProviderSystemGroup() + "/" + rule.getProviderSystemName() + " -> "
+                + rule.getConsumerSystemGroup() + "/" + rule.getConsumerSystemName();
+    }
+
+    /**
+     * Gets the cached rule of a pair, counting the lookup as a hit or a miss.
+     *
+     * @param key the pair key
+     * @return the cached rule. If the pair has no cached rule, then null is
+     * returned
+     */
+    public MonitorRule get(String key) {
+        MonitorRule rule = rules.get(key);
+        if (rule == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return rule;
+    }
+
+    /**
+     * Gets the cached rules that use the given stream id.
+     *
+     * @param streamId the stream id
+     * @return the rules using the stream id. If no rule uses it, then an empty
+     * list is returned
+     */
+    public List<MonitorRule> getByStreamId(String streamId) {
+        Set<String> keys = streams.get(streamId);
+        if (keys == null) {
+            return new ArrayList<>();
+        }
+        List<MonitorRule> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            MonitorRule rule = rules.get(key);
+            if (rule != null) {
+                result.add(rule);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets all the cached rules.
+     *
+     * @return the cached rules
+     */
+    public List<MonitorRule> getAll() {
+        return new ArrayList<>(rules.values());
+    }
+
+    /**
+     * Checks if the cache holds every rule of the Rule collection. Only then
+     * can a lookup that finds nothing in the cache be trusted.
+     *
+     * @return true if the cache was fully loaded, false if not
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Gets the current generation of the cache, which changes whenever a
+     * pair is removed. A rule read from the store is cached with the
+     * generation taken before the read.
+     *
+     * @return the generation
+     * @see #putLoaded(MonitorRule, long)
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Adds or replaces the cached rule of its pair, unless the cached rule
+     * has a higher version.
+     *
+     * @param rule the rule
+     */
+    public synchronized void put(MonitorRule rule) {
+        String key = getKey(rule);
+        MonitorRule old = rules.get(key);
+        if (old != null && old.getVersion() > rule.getVersion()) {
+            return;
+        }
+        rules.put(key, rule);
+        if (old != null) {
+            unindex(key, old);
+        }
+        index(key, rule);
+    }
+
+    /**
+     * Caches a rule read from the store, unless its pair was removed after
+     * the read started.
+     *
+     * @param rule the rule
+     * @param since the generation of the cache before the read
+     */
+    public synchronized void putLoaded(MonitorRule rule, long since) {
+        if (isRemovedAfter(getKey(rule), since)) {
+            return;
+        }
+        put(rule);
+    }
+
+    /**
+     * Removes the cached rule of a pair, and remembers the removal so that a
+     * read started before it cannot cache the rule again.
+     *
+     * @param key the pair key
+     */
+    public synchronized void remove(String key) {
+        removals.put(key, generation.incrementAndGet());
+        MonitorRule old = rules.remove(key);
+        if (old != null) {
+            unindex(key, old);
+        }
+    }
+
+    /**
+     * Replaces the whole content of the cache with the given rules.
+     *
+     * @param all the rules to cache
+     */
+    public void load(Collection<MonitorRule> all) {
+        load(all, getGeneration());
+    }
+
+    /**
+     * Replaces the whole content of the cache with the given rules read from
+     * the store, leaving out the pairs removed after the read started.
+     *
+     * @param all the rules to cache
+     * @param since the generation of the cache before the read
+     */
+    public synchronized void load(Collection<MonitorRule> all, long since) {
+        rules.clear();
+        streams.clear();
+        for (MonitorRule rule : all) {
+            putLoaded(rule, since);
+        }
+        complete = true;
+    }
+
+    /**
+     * Checks if a pair was removed after the given generation.
+     *
+     * @param key the pair key
+     * @param since the generation
+     * @return true if the pair was removed after the generation
+     */
+    private boolean isRemovedAfter(String key, long since) {
+        Long removed = removals.get(key);
+        return removed != null && removed > since;
+    }
+
+    /**
+     * Adds the pair of a rule to the stream id index.
+     *
+     * @param key the pair key
+     * @param rule the rule
+     */
+    private void index(String key, MonitorRule rule) {
+        String streamId = rule.getParameters().get(MongoDBNames.STREAM_ID);
+        if (streamId != null) {
+            streams.computeIfAbsent(streamId, (id) -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    /**
+     * Removes the pair of a rule from the stream id index.
+     *
+     * @param key the pair key
+     * @param rule the rule
+     */
+    private void unindex(String key, MonitorRule rule) {
+        String streamId = rule.getParameters().get(MongoDBNames.STREAM_ID);
+        if (streamId == null) {
+            return;
+        }
+        Set<String> keys = streams.get(streamId);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                streams.remove(streamId, keys);
+            }
+        }
+    }
+
+    /**
+     * Gets a snapshot of the cache metrics.
+     *
+     * @return the cache metrics
+     */
+    public RuleCacheStatistics getStatistics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long lookups = hitCount + missCount;
+
+        RuleCacheStatistics stats = new RuleCacheStatistics();
+        stats.setSize(rules.size());
+        stats.setHits(hitCount);
+        stats.setMisses(missCount);
+        stats.setHitRatio(lookups == 0 ? 0 : (double) hitCount / lookups);
+        return stats;
+    }
+}
@@ -0,0 +1,95 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Snapshot of the metrics of the {@link RuleCache}.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class RuleCacheStatistics {
+
+    private int size;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public RuleCacheStatistics() {
+    }
+
+    /**
+     * Gets the number of cached rules.
+     *
+     * @return the number of cached rules
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Sets the number of cached rules.
+     *
+     * @param size the number of cached rules
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Gets the number of lookups answered by the cache.
+     *
+     * @return the number of lookups answered by the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Sets the number of lookups answered by the cache.
+     *
+     * @param hits the number of lookups answered by the cache
+     */
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * Gets the number of lookups not answered by the cache.
+     *
+     * @return the number of lookups not answered by the cache
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Sets the number of lookups not answered by the cache.
+     *
+     * @param misses the number of lookups not answered by the cache
+     */
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    /**
+     * Gets the fraction of lookups answered by the cache.
+     *
+     * @return the fraction of lookups answered by the cache
+     */
+    public double getHitRatio() {
+        return hitRatio;
+    }
+
+    /**
+     * Sets the fraction of lookups answered by the cache.
+     *
+     * @param hitRatio the fraction of lookups answered by the cache
+     */
+    public void setHitRatio(double hitRatio) {
+        this.hitRatio = hitRatio;
+    }
+}
@@ -0,0 +1,149 @@
+package eu.arrowhead.core.qos.monitor.database.codec;
+
+import eu.arrowhead.common.exception.InvalidMonitorTypeException;
+import eu.arrowhead.core.qos.monitor.database.MetricSchema;
+import eu.arrowhead.core.qos.monitor.database.MongoDBNames;
+import eu.arrowhead.core.qos.monitor.protocol.ProtocolRegistry;
+import java.util.Arrays;
+import java.util.Map;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+
+/**
+ * Encoding and decoding of monitor parameters shared by the
+ * {@link MonitorLogCodec} and the {@link MonitorRuleCodec}.
+ *
+ * Since codec version 2, metrics of the protocol schema are stored as BSON
+ * doubles and every other parameter as a string. The pair id stored in the
+ * documents is not a parameter and is skipped when reading. Documents written
+ * by earlier versions, with all the parameters stored as strings, are still
+ * decoded.
+ *
+ * @author 1120681@isep.ipp.pt - Renato Ayres
+ */
+public final class CodecUtil {
+
+    /**
+     * Current codec version, written in every encoded document.
+     */
+    public static final int VERSION = 2;
+
+    private CodecUtil() {
+    }
+
+    /**
+     * Gets the metric schema of a monitor protocol.
+     *
+     * @param protocol the monitor protocol
+     * @return the metric schema, or null if the protocol is unknown
+     */
+    public static MetricSchema getSchema(String protocol) {
+        try {
+            return ProtocolRegistry.getInstance().get(protocol).getSchema();
+        } catch (InvalidMonitorTypeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the monitor parameters. Metrics of the schema are written as
+     * doubles, taken from the parsed metric values when available.
+     *
+     * @param writer the BSON writer
+     * @param parameters the monitor parameters
+     * @param schema the metric schema. May be null
+     * @param metrics the parsed metric values, in schema order. May be null
+     */
+    public static void writeParameters(BsonWriter writer, Map<String, String> parameters,
+            MetricSchema schema, double[] metrics) {
+
+        writer.writeInt32(MongoDBNames.CODEC_VERSION, VERSION);
+
+        for (Map.Entry<String, String> param : parameters.entrySet()) {
+            int index = schema == null ? -1 : schema.indexOf(param.getKey());
+            if (index < 0) {
+                writer.writeString(param.getKey(), param.getValue());
+            } else if (metrics != null) {
+                writer.writeDouble(param.getKey(), metrics[index]);
+            } else {
+                writer.writeDouble(param.getKey(), Double.parseDouble(param.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Reads the monitor parameters until the end of the document. Numeric
+     * values are kept both in the parameters map and, for metrics of the
+     * schema, in the returned array.
+     *
+     * @param reader the BSON reader
+     * @param parameters the map receiving the monitor parameters
+     * @param schema the metric schema. May be null
+     * @return the metric values in schema order, NaN for the missing ones, or
+     * null if there is no schema
+     */
+    public static double[] readParameters(BsonReader reader, Map<String, String> parameters, MetricSchema schema) {
+        double[] metrics = null;
+        if (schema != null) {
+            metrics = new double[schema.size()];
+            Arrays.fill(metrics, Double.NaN);
+        }
+
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String fieldName = reader.readName();
+            BsonType type = reader.getCurrentBsonType();
+
+            if (fieldName.equals(MongoDBNames.CODEC_VERSION) || fieldName.equals(MongoDBNames.PAIR_ID)) {
+                reader.skipValue();
+                continue;
+            }
+
+            int index = schema == null ? -1 : schema.indexOf(fieldName);
+            double value;
+
+            switch (type) {
+                case DOUBLE:
+                    value = reader.readDouble();
+                    break;
+                case INT32:
+                    value = reader.readInt32();
+                    break;
+                case INT64:
+                    value = reader.readInt64();
+                    break;
+                case STRING:
+                    String text = reader.readString();
+                    parameters.put(fieldName, text);
+                    if (index >= 0) {
+                        metrics[index] = Double.parseDouble(text);
+                    }
+                    continue;
+                default:
+                    reader.skipValue();
+                    continue;
+            }
+
+            parameters.put(fieldName, format(value));
+            if (index >= 0) {
+                metrics[index] = value;
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Formats a numeric value as a parameter string, without a fractional part
+     * for whole numbers.
+     *
+     * @param value the value
+     * @return the formatted value
+     */
+    public static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
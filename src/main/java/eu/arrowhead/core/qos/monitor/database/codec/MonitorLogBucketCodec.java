@@ -0,0 +1,164 @@
+package eu.arrowhead.core.qos.monitor.database.codec;
+
+import eu.arrowhead.core.qos.monitor.database.MetricSchema;
+import eu.arrowhead.core.qos.monitor.database.MongoDBNames;
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorLogBucket;
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonReader;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * A Codec for {@link MonitorLogBucket} that reads both log storage layouts
+ * from a MongoDB collection.
+ *
+ * A bucket document holds its logs as samples in an array, next to a header
+ * with the number of samples and the minimum, maximum and sum of each metric.
+ * Since the header is built by update operators, its fields are read by name,
+ * in any order. A document without samples is a log in the per-sample layout
+ * and is decoded with the {@link MonitorLogCodec} into a bucket of one.
+ *
+ * @author 1120681@isep.ipp.pt - Renato Ayres
+ * @see MonitorLogBucket
+ */
+public class MonitorLogBucketCodec implements Codec<MonitorLogBucket> {
+
+    private final BsonDocumentCodec documentCodec = new BsonDocumentCodec();
+    private final MonitorLogCodec logCodec = new MonitorLogCodec();
+
+    @Override
+    public void encode(BsonWriter writer, MonitorLogBucket bucket, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+
+        writer.writeObjectId(MongoDBNames.DOCUMENT_ID, bucket.getId());
+        writer.writeString(MongoDBNames.MONITOR_TYPE, bucket.getProtocol());
+        writer.writeInt32(MongoDBNames.CODEC_VERSION, CodecUtil.VERSION);
+        writer.writeDateTime(MongoDBNames.BUCKET, bucket.getBucket());
+        writer.writeDateTime(MongoDBNames.BUCKET_START, bucket.getStart());
+        writer.writeDateTime(MongoDBNames.TIMESTAMP, bucket.getEnd());
+        writer.writeInt32(MongoDBNames.SAMPLE_COUNT, bucket.getCount());
+        writeMetrics(writer, MongoDBNames.MIN, bucket.getMin());
+        writeMetrics(writer, MongoDBNames.MAX, bucket.getMax());
+        writeMetrics(writer, MongoDBNames.SUM, bucket.getSum());
+
+        writer.writeStartArray(MongoDBNames.SAMPLES);
+        for (MonitorLog log : bucket.getLogs()) {
+            documentCodec.encode(writer, toSample(log), encoderContext);
+        }
+        writer.writeEndArray();
+
+        writer.writeEndDocument();
+    }
+
+    private static void writeMetrics(BsonWriter writer, String name, Map<String, Double> values) {
+        writer.writeStartDocument(name);
+        for (Map.Entry<String, Double> value : values.entrySet()) {
+            writer.writeDouble(value.getKey(), value.getValue());
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<MonitorLogBucket> getEncoderClass() {
+        return MonitorLogBucket.class;
+    }
+
+    @Override
+    public MonitorLogBucket decode(BsonReader reader, DecoderContext decoderContext) {
+        BsonDocument document = documentCodec.decode(reader, decoderContext);
+
+        if (!document.containsKey(MongoDBNames.SAMPLES)) {
+            return MonitorLogBucket.of(logCodec.decode(new BsonDocumentReader(document), decoderContext));
+        }
+
+        MonitorLogBucket bucket = new MonitorLogBucket(document.getObjectId(MongoDBNames.DOCUMENT_ID).getValue());
+        bucket.setProtocol(document.getString(MongoDBNames.MONITOR_TYPE).getValue());
+        bucket.setBucket(document.getDateTime(MongoDBNames.BUCKET).getValue());
+        bucket.setStart(document.getDateTime(MongoDBNames.BUCKET_START).getValue());
+        bucket.setEnd(document.getDateTime(MongoDBNames.TIMESTAMP).getValue());
+        bucket.setCount(document.getNumber(MongoDBNames.SAMPLE_COUNT).intValue());
+        readMetrics(document, MongoDBNames.MIN, bucket.getMin());
+        readMetrics(document, MongoDBNames.MAX, bucket.getMax());
+        readMetrics(document, MongoDBNames.SUM, bucket.getSum());
+
+        MetricSchema schema = CodecUtil.getSchema(bucket.getProtocol());
+        for (BsonValue sample : document.getArray(MongoDBNames.SAMPLES, new BsonArray())) {
+            bucket.getLogs().add(fromSample(sample.asDocument(), bucket.getProtocol(), schema));
+        }
+
+        return bucket;
+    }
+
+    private static void readMetrics(BsonDocument document, String name, Map<String, Double> values) {
+        if (!document.containsKey(name)) {
+            return;
+        }
+        for (Map.Entry<String, BsonValue> value : document.getDocument(name).entrySet()) {
+            if (value.getValue().isNumber()) {
+                values.put(value.getKey(), value.getValue().asNumber().doubleValue());
+            }
+        }
+    }
+
+    /**
+     * Encodes a log as a bucket sample: its id, timestamp and parameters. The
+     * protocol and codec version are kept once, in the bucket header.
+     *
+     * @param log the log
+     * @return the sample document
+     */
+    public static BsonDocument toSample(MonitorLog log) {
+        BsonDocument sample = new BsonDocument();
+        BsonDocumentWriter writer = new BsonDocumentWriter(sample);
+
+        writer.writeStartDocument();
+        writer.writeObjectId(MongoDBNames.DOCUMENT_ID, log.getId());
+        writer.writeDateTime(MongoDBNames.TIMESTAMP, log.getTimestamp());
+        if (log.getRuleVersion() != null) {
+            writer.writeInt64(MongoDBNames.LOG_RULE_VERSION, log.getRuleVersion());
+        }
+        MetricSchema schema = log.getSchema() != null ? log.getSchema() : CodecUtil.getSchema(log.getProtocol());
+        CodecUtil.writeParameters(writer, log.getParameters(), schema, log.getSchema() != null ? log.getMetrics() : null);
+        writer.writeEndDocument();
+
+        sample.remove(MongoDBNames.CODEC_VERSION);
+        return sample;
+    }
+
+    /**
+     * Decodes a bucket sample.
+     *
+     * @param sample the sample document
+     * @param protocol the monitor protocol of the bucket
+     * @param schema the metric schema of the protocol. May be null
+     * @return the log
+     */
+    private static MonitorLog fromSample(BsonDocument sample, String protocol, MetricSchema schema) {
+        BsonDocumentReader reader = new BsonDocumentReader(sample);
+
+        reader.readStartDocument();
+        MonitorLog log = new MonitorLog(reader.readObjectId(MongoDBNames.DOCUMENT_ID), protocol,
+                reader.readDateTime(MongoDBNames.TIMESTAMP), new HashMap<>());
+        double[] metrics = CodecUtil.readParameters(reader, log.getParameters(), schema);
+        reader.readEndDocument();
+
+        String ruleVersion = log.getParameters().remove(MongoDBNames.LOG_RULE_VERSION);
+        if (metrics != null) {
+            log.setMetrics(schema, metrics);
+        }
+        if (ruleVersion != null) {
+            log.setRuleVersion(Long.valueOf(ruleVersion));
+        }
+        return log;
+    }
+}
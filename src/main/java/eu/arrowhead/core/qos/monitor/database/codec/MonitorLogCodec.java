@@ -5,14 +5,13 @@
  */
 package eu.arrowhead.core.qos.monitor.database.codec;
 
+import eu.arrowhead.core.qos.monitor.database.MetricSchema;
 import eu.arrowhead.core.qos.monitor.database.MongoDBNames;
 import eu.arrowhead.core.qos.monitor.database.MonitorLog;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import org.bson.BsonObjectId;
 import org.bson.BsonReader;
-import org.bson.BsonType;
 import org.bson.BsonValue;
 import org.bson.BsonWriter;
 import org.bson.codecs.CollectibleCodec;
@@ -54,12 +53,18 @@ public class MonitorLogCodec implements CollectibleCodec<MonitorLog> {
 
         writer.writeDateTime(MongoDBNames.TIMESTAMP, log.getTimestamp());
 
-        Set<Map.Entry<String, String>> params = log.getParameters().entrySet();
+        if (log.getPairId() != null) {
+            writer.writeString(MongoDBNames.PAIR_ID, log.getPairId());
+        }
 
-        for (Map.Entry<String, String> param : params) {
-            writer.writeString(param.getKey(), param.getValue());
+        if (log.getRuleVersion() != null) {
+            writer.writeInt64(MongoDBNames.LOG_RULE_VERSION, log.getRuleVersion());
         }
 
+        MetricSchema schema = log.getSchema() != null ? log.getSchema() : CodecUtil.getSchema(log.getProtocol());
+
+        CodecUtil.writeParameters(writer, log.getParameters(), schema, log.getSchema() != null ? log.getMetrics() : null);
+
         writer.writeEndDocument();
     }
 
@@ -80,15 +85,23 @@ public class MonitorLogCodec implements CollectibleCodec<MonitorLog> {
 
         Map<String, String> parameters = new HashMap<>();
 
-        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
-            String fieldName = reader.readName();
-            String value = reader.readString();
-            parameters.put(fieldName, value);
-        }
+        MetricSchema schema = CodecUtil.getSchema(type);
+
+        double[] metrics = CodecUtil.readParameters(reader, parameters, schema);
 
         reader.readEndDocument();
 
-        return new MonitorLog(id, type, timestamp, parameters);
+        String ruleVersion = parameters.remove(MongoDBNames.LOG_RULE_VERSION);
+
+        MonitorLog log = new MonitorLog(id, type, timestamp, parameters);
+        if (metrics != null) {
+            log.setMetrics(schema, metrics);
+        }
+        if (ruleVersion != null) {
+            log.setRuleVersion(Long.valueOf(ruleVersion));
+        }
+
+        return log;
     }
 
 }
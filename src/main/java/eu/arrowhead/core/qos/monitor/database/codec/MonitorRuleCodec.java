@@ -5,15 +5,14 @@
  */
 package eu.arrowhead.core.qos.monitor.database.codec;
 
+import eu.arrowhead.core.qos.monitor.database.Durability;
+import eu.arrowhead.core.qos.monitor.database.MetricSchema;
 import eu.arrowhead.core.qos.monitor.database.MongoDBNames;
 import eu.arrowhead.core.qos.monitor.database.MonitorRule;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 import org.bson.BsonObjectId;
 import org.bson.BsonReader;
-import org.bson.BsonType;
 import org.bson.BsonValue;
 import org.bson.BsonWriter;
 import org.bson.codecs.CollectibleCodec;
@@ -61,12 +60,18 @@ public class MonitorRuleCodec implements CollectibleCodec<MonitorRule> {
 
         writer.writeBoolean(MongoDBNames.SOFTREALTIME, rule.isSoftRealTime());
 
-        Set<Entry<String, String>> params = rule.getParameters().entrySet();
+        if (rule.getDurability() != null) {
+            writer.writeString(MongoDBNames.DURABILITY, rule.getDurability().name().toLowerCase());
+        }
 
-        for (Entry<String, String> param : params) {
-            writer.writeString(param.getKey(), param.getValue());
+        if (rule.getVersion() > 0) {
+            writer.writeInt64(MongoDBNames.RULE_VERSION, rule.getVersion());
         }
 
+        MetricSchema schema = rule.getSchema() != null ? rule.getSchema() : CodecUtil.getSchema(rule.getProtocol());
+
+        CodecUtil.writeParameters(writer, rule.getParameters(), schema, rule.getSchema() != null ? rule.getMetrics() : null);
+
         writer.writeEndDocument();
     }
 
@@ -93,17 +98,28 @@ public class MonitorRuleCodec implements CollectibleCodec<MonitorRule> {
 
         Map<String, String> parameters = new HashMap<>();
 
-        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
-            String fieldName = reader.readName();
-            String value = reader.readString();
-            parameters.put(fieldName, value);
-        }
+        MetricSchema schema = CodecUtil.getSchema(type);
+
+        double[] metrics = CodecUtil.readParameters(reader, parameters, schema);
 
         reader.readEndDocument();
 
-        return new MonitorRule(id, type,
+        Durability durability = Durability.fromName(parameters.remove(MongoDBNames.DURABILITY));
+
+        String version = parameters.remove(MongoDBNames.RULE_VERSION);
+
+        MonitorRule rule = new MonitorRule(id, type,
                 providerSystemName, providerSystemGroup,
                 consumerSystemName, consumerSystemGroup,
                 parameters, softRealTime);
+        if (metrics != null) {
+            rule.setMetrics(schema, metrics);
+        }
+        rule.setDurability(durability);
+        if (version != null) {
+            rule.setVersion(Long.parseLong(version));
+        }
+
+        return rule;
     }
 }
@@ -6,13 +6,16 @@
 package eu.arrowhead.core.qos.monitor.database.provider;
 
 import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorLogBucket;
+import eu.arrowhead.core.qos.monitor.database.codec.MonitorLogBucketCodec;
 import eu.arrowhead.core.qos.monitor.database.codec.MonitorLogCodec;
 import org.bson.codecs.Codec;
 import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistry;
 
 /**
- * A provider of {@code MonitorLogCodec} instances.
+ * A provider of {@code MonitorLogCodec} and {@code MonitorLogBucketCodec}
+ * instances.
  *
  * @author 1120681@isep.ipp.pt - Renato Ayres
  */
@@ -23,6 +26,9 @@ public class MonitorLogCodecProvider implements CodecProvider {
         if (clazz.equals(MonitorLog.class)) {
             return (Codec<T>) new MonitorLogCodec();
         }
+        if (clazz.equals(MonitorLogBucket.class)) {
+            return (Codec<T>) new MonitorLogBucketCodec();
+        }
         return null;
     }
 
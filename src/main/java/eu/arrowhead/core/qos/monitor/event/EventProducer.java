@@ -6,6 +6,19 @@
 package eu.arrowhead.core.qos.monitor.event;
 
 import eu.arrowhead.core.qos.monitor.event.model.Event;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
+import eu.arrowhead.core.qos.monitor.metrics.Stage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ws.rs.client.Client;
@@ -14,58 +27,121 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import org.glassfish.jersey.client.ClientProperties;
 
 /**
+ * Publishes events to the EventHandler.
+ *
+ * All the requests to the EventHandler share one long-lived {@link Client},
+ * so connections are kept alive between events instead of being opened for
+ * each one. Events are published asynchronously: {@link #publish(Event)} only
+ * adds them to a bounded queue, drained by a configurable number of publisher
+ * threads. Each publisher takes up to a batch of events at a time and sends
+ * them back to back over its connection.
+ *
+ * The publisher is configured in the 'eventhandler.properties' file.
  *
  * @author Renato Ayres
  */
-public class EventProducer {
+public final class EventProducer {
 
-    private final Client client;
-    private final WebTarget target;
-    private final Event event;
+    private static EventProducer instance;
+    private static Client client;
     private static String producer;
+    private final int capacity;
+    private final int concurrency;
+    private final int batchSize;
+    private final BlockingQueue<Event> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile WebTarget target;
+    private volatile boolean running;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong publishNanos = new AtomicLong();
+    private final AtomicLong maxPublishNanos = new AtomicLong();
+    private volatile long lastPublishNanos;
     private static final Logger LOG = Logger.getLogger(EventProducer.class.getName());
 
-    public EventProducer(Event event) {
-        client = ClientBuilder.newClient();
-        target = client.target(EventProducerConfig.getServiceURI());
-        this.event = event;
-    }
-
-//    /**
-//     * Gets the properties file named 'monitor.properties'.
-//     *
-//     * @return the Properties from properties file 'monitor.properties'
-//     */
-//    private synchronized Properties getProps() {
-//        Properties props = null;
-//        try {
-//            props = new Properties();
-//            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("monitor.properties");
-//            if (inputStream != null) {
-//                props.load(inputStream);
-//                inputStream.close();
-//            } else {
-//                throw new FileNotFoundException("Properties file 'eventhandler.properties' not found in the classpath");
-//            }
-//        } catch (FileNotFoundException ex) {
-//            LOG.log(Level.SEVERE, ex.getMessage());
-//        } catch (IOException ex) {
-//            LOG.log(Level.SEVERE, ex.getMessage());
-//        }
-//        return props;
-//    }
-    public Client getClient() {
-        return client;
+    /**
+     * Returns the Singleton instance of EventProducer
+     *
+     * @return Singleton instance
+     */
+    public static synchronized EventProducer getInstance() {
+        if (instance == null) {
+            Properties props = getProps();
+            instance = new EventProducer(
+                    Integer.valueOf(props.getProperty("eventhandler.publish.queue.capacity", "1000")),
+                    Integer.valueOf(props.getProperty("eventhandler.publish.concurrency", "2")),
+                    Integer.valueOf(props.getProperty("eventhandler.publish.batch.size", "50")));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new publisher.
+     *
+     * @param capacity maximum number of events waiting to be published
+     * @param concurrency number of publisher threads
+     * @param batchSize maximum number of events taken at once by a publisher
+     */
+    EventProducer(int capacity, int concurrency, int batchSize) {
+        this.capacity = capacity;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
     }
 
-    public WebTarget getTarget() {
-        return target;
+    /**
+     * Gets the properties file named 'eventhandler.properties'.
+     *
+     * @return the Properties from properties file 'eventhandler.properties'
+     */
+    private static Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = EventProducer.class.getClassLoader().getResourceAsStream("eventhandler.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'eventhandler.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
     }
 
-    public Event getEvent() {
-        return event;
+    /**
+     * Gets the client shared by all the requests to the EventHandler and the
+     * Orchestrator. The client is created on first use.
+     *
+     * @return the shared client
+     */
+    public static synchronized Client getClient() {
+        if (client == null) {
+            Properties props = getProps();
+            client = ClientBuilder.newClient();
+            client.property(ClientProperties.CONNECT_TIMEOUT,
+                    Integer.valueOf(props.getProperty("eventhandler.connect.timeout", "2000")));
+            client.property(ClientProperties.READ_TIMEOUT,
+                    Integer.valueOf(props.getProperty("eventhandler.read.timeout", "5000")));
+        }
+        return client;
+    }
+
+    /**
+     * Closes the shared client.
+     */
+    private static synchronized void closeClient() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
     }
 
     public static String getProducer() {
@@ -76,21 +152,169 @@ public class EventProducer {
         EventProducer.producer = producer;
     }
 
-    public int publishEvent() {
-        LOG.log(Level.INFO, "Sending event to EventHandler. Service URI: {0}\nPublish URI: {1}", new Object[]{target.getUri(), EventProducerConfig.getServicePublishEventPath()});
+    /**
+     * Starts the publisher threads, targeting the EventHandler found by
+     * {@link EventProducerConfig}. Does nothing if the EventHandler was not
+     * found or the publisher is already running.
+     */
+    public void start() {
+        if (EventProducerConfig.getServiceURI() == null) {
+            LOG.log(Level.WARNING, "EventHandler not configured. Events will not be published.");
+            return;
+        }
+        start(EventProducerConfig.getServiceURI(), EventProducerConfig.getServicePublishEventPath());
+    }
 
-        Response response = getTarget()
-                .path(EventProducerConfig.getServicePublishEventPath())
-                .path(getProducer())
-                .request(MediaType.APPLICATION_JSON)
-                .post(Entity.json(event));
+    /**
+     * Starts the publisher threads, targeting the given EventHandler.
+     *
+     * @param serviceURI the EventHandler service URI
+     * @param publishPath the EventHandler publish path
+     */
+    synchronized void start(URI serviceURI, String publishPath) {
+        if (running) {
+            return;
+        }
+        target = getClient().target(serviceURI).path(publishPath).path(String.valueOf(getProducer()));
+        running = true;
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(this::drain, "EventProducer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        LOG.log(Level.INFO, "EventProducer publishing to {0} with {1} threads.", new Object[]{target.getUri(), concurrency});
+    }
 
-        int statusCode = response.getStatus();
+    /**
+     * Stops the publisher threads, publishing all the events still in the
+     * queue, and closes the shared client.
+     */
+    public synchronized void stop() {
+        if (running) {
+            running = false;
+            for (Thread thread : threads) {
+                try {
+                    thread.join(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            threads.clear();
+            LOG.log(Level.INFO, "EventProducer stopped.");
+        }
+        closeClient();
+    }
 
-        client.close();
+    /**
+     * Checks if events are being published.
+     *
+     * @return true if the publisher threads are running, false if not
+     */
+    public boolean isRunning() {
+        return running;
+    }
 
-        LOG.log(Level.INFO, "Response status received from EventHandler: {0}", statusCode);
+    /**
+     * Adds an event to the publishing queue.
+     *
+     * @param event the event to publish
+     * @return true if the event was queued, false if the publisher is not
+     * running or the queue is full
+     */
+    public boolean publish(Event event) {
+        if (!running) {
+            return false;
+        }
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+            LOG.log(Level.WARNING, "Event queue is full. Event dropped.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Publisher loop. Takes up to a batch of events from the queue and sends
+     * them one after the other.
+     */
+    private void drain() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Event first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (Event event : batch) {
+                    send(event);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                LOG.log(Level.SEVERE, "EventProducer publisher failure", ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends one event to the EventHandler, recording its latency and outcome.
+     *
+     * @param event the event to send
+     */
+    private void send(Event event) {
+        long start = System.nanoTime();
+        try {
+            Response response = target.request(MediaType.APPLICATION_JSON).post(Entity.json(event));
+            int statusCode = response.getStatus();
+            response.close();
+            if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+                published.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                QoSMetrics.getInstance().recordError(Stage.PUBLISH);
+                LOG.log(Level.WARNING, "Response status received from EventHandler: {0}", statusCode);
+            }
+        } catch (RuntimeException ex) {
+            // a failed request, or any failure serializing the event
+            failed.incrementAndGet();
+            QoSMetrics.getInstance().recordError(Stage.PUBLISH);
+            LOG.log(Level.WARNING, "Failed to publish event: {0}", ex.getMessage());
+        }
+        long elapsed = System.nanoTime() - start;
+        QoSMetrics.getInstance().record(Stage.PUBLISH, elapsed);
+        publishNanos.addAndGet(elapsed);
+        maxPublishNanos.accumulateAndGet(elapsed, Math::max);
+        lastPublishNanos = elapsed;
+    }
+
+    /**
+     * Gets a snapshot of the publisher metrics.
+     *
+     * @return the publisher metrics
+     */
+    public EventPublishStatistics getStatistics() {
+        long count = published.get() + failed.get();
+        EventPublishStatistics stats = new EventPublishStatistics();
+        stats.setRunning(running);
+        stats.setConcurrency(concurrency);
+        stats.setQueueDepth(queue.size());
+        stats.setQueueCapacity(capacity);
+        stats.setPublished(published.get());
+        stats.setFailed(failed.get());
+        stats.setDropped(dropped.get());
+        stats.setLastPublishLatency(toMillis(lastPublishNanos));
+        stats.setAveragePublishLatency(count == 0 ? 0 : toMillis(publishNanos.get()) / count);
+        stats.setMaxPublishLatency(toMillis(maxPublishNanos.get()));
+        return stats;
+    }
 
-        return statusCode;
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
     }
 }
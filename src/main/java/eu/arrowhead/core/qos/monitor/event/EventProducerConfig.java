@@ -22,8 +22,6 @@ import java.util.ArrayList;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
@@ -99,8 +97,7 @@ public class EventProducerConfig {
     }
 
     private void initConfig() throws Exception {
-        Client client = ClientBuilder.newClient();
-        WebTarget target = client.target(getProps().getProperty("orchestrator.orchestration.uri"));
+        WebTarget target = EventProducer.getClient().target(getProps().getProperty("orchestrator.orchestration.uri"));
 
         ArrowheadService requestedService = getRequestedService();
         ArrowheadSystem requesterSystem = getRequesterSystem();
@@ -115,15 +112,12 @@ public class EventProducerConfig {
 
         if (response.getStatusInfo().getStatusCode() != Response.Status.OK.getStatusCode()) {
             String msg = response.getStatusInfo().getReasonPhrase();
-            client.close();
             LOG.log(Level.WARNING, "Unable to find Event Handler. Core functionality not available");
             throw new Exception(msg);
         }
 
         OrchestrationForm orchForm = response.readEntity(OrchestrationResponse.class).getResponse().get(0);
 
-        client.close();
-
         try {
 //            setServiceURI(new URI("http://" + orchForm.getProvider().getIPAddress() + "+" + orchForm.getProvider().getPort() + "/eventhandler"));
             setServiceURI(new URI("http",
@@ -0,0 +1,209 @@
+package eu.arrowhead.core.qos.monitor.event;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Snapshot of the metrics of the {@link EventProducer}.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class EventPublishStatistics {
+
+    private boolean running;
+    private int concurrency;
+    private int queueDepth;
+    private int queueCapacity;
+    private long published;
+    private long failed;
+    private long dropped;
+    private double lastPublishLatency;
+    private double averagePublishLatency;
+    private double maxPublishLatency;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public EventPublishStatistics() {
+    }
+
+    /**
+     * Checks if events are being published.
+     *
+     * @return true if events are being published
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Sets if events are being published.
+     *
+     * @param running true if events are being published
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * Gets the number of publisher threads.
+     *
+     * @return the number of publisher threads
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the number of publisher threads.
+     *
+     * @param concurrency the number of publisher threads
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Gets the number of events waiting to be published.
+     *
+     * @return the number of events waiting to be published
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Sets the number of events waiting to be published.
+     *
+     * @param queueDepth the number of events waiting to be published
+     */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Gets the maximum number of events waiting to be published.
+     *
+     * @return the maximum number of events waiting to be published
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of events waiting to be published.
+     *
+     * @param queueCapacity the maximum number of events waiting to be published
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Gets the number of events accepted by the EventHandler.
+     *
+     * @return the number of events accepted by the EventHandler
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * Sets the number of events accepted by the EventHandler.
+     *
+     * @param published the number of events accepted by the EventHandler
+     */
+    public void setPublished(long published) {
+        this.published = published;
+    }
+
+    /**
+     * Gets the number of events refused by the EventHandler or not delivered.
+     *
+     * @return the number of events refused by the EventHandler or not delivered
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Sets the number of events refused by the EventHandler or not delivered.
+     *
+     * @param failed the number of events refused by the EventHandler or not delivered
+     */
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * Gets the number of events discarded because the queue was full.
+     *
+     * @return the number of events discarded because the queue was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Sets the number of events discarded because the queue was full.
+     *
+     * @param dropped the number of events discarded because the queue was full
+     */
+    public void setDropped(long dropped) {
+        this.dropped = dropped;
+    }
+
+    /**
+     * Gets the latency of the last publish, in milliseconds.
+     *
+     * @return the latency of the last publish, in milliseconds
+     */
+    public double getLastPublishLatency() {
+        return lastPublishLatency;
+    }
+
+    /**
+     * Sets the latency of the last publish, in milliseconds.
+     *
+     * @param lastPublishLatency the latency of the last publish, in milliseconds
+     */
+    public void setLastPublishLatency(double lastPublishLatency) {
+        this.lastPublishLatency = lastPublishLatency;
+    }
+
+    /**
+     * Gets the average publish latency, in milliseconds.
+     *
+     * @return the average publish latency, in milliseconds
+     */
+    public double getAveragePublishLatency() {
+        return averagePublishLatency;
+    }
+
+    /**
+     * Sets the average publish latency, in milliseconds.
+     *
+     * @param averagePublishLatency the average publish latency, in milliseconds
+     */
+    public void setAveragePublishLatency(double averagePublishLatency) {
+        this.averagePublishLatency = averagePublishLatency;
+    }
+
+    /**
+     * Gets the maximum publish latency, in milliseconds.
+     *
+     * @return the maximum publish latency, in milliseconds
+     */
+    public double getMaxPublishLatency() {
+        return maxPublishLatency;
+    }
+
+    /**
+     * Sets the maximum publish latency, in milliseconds.
+     *
+     * @param maxPublishLatency the maximum publish latency, in milliseconds
+     */
+    public void setMaxPublishLatency(double maxPublishLatency) {
+        this.maxPublishLatency = maxPublishLatency;
+    }
+}
@@ -0,0 +1,154 @@
+package eu.arrowhead.core.qos.monitor.event;
+
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sliding window over the last N monitor logs of a provider and consumer
+ * pair, used for soft real time SLA verification.
+ *
+ * The values of each metric are parsed once, when the log is added, and kept
+ * in a ring buffer together with their running sum and the number of logs
+ * holding them, so the mean of the window is available in constant time.
+ * Missing metrics are kept as NaN and left out of the mean. To stop floating
+ * point drift from growing, the sums are recomputed from the buffer once every
+ * full turn of the ring.
+ *
+ * @author Renato Ayres
+ */
+public class LogWindow {
+
+    private final int size;
+    private final Map<String, Integer> metrics = new HashMap<>();
+    private final double[][] values;
+    private final double[] sums;
+    private final int[] counts;
+    private int next;
+    private int count;
+    private int evictions;
+
+    /**
+     * Creates a new empty window.
+     *
+     * @param size the number of logs kept in the window
+     * @param metrics names of the metrics tracked by the window
+     */
+    public LogWindow(int size, Collection<String> metrics) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.size = size;
+        for (String metric : metrics) {
+            this.metrics.put(metric, this.metrics.size());
+        }
+        this.values = new double[this.metrics.size()][size];
+        this.sums = new double[this.metrics.size()];
+        this.counts = new int[this.metrics.size()];
+    }
+
+    /**
+     * Adds a log to the window, evicting the oldest one if the window is full.
+     * A metric missing from the log is not counted in its mean.
+     *
+     * @param log the log to add
+     */
+    public synchronized void add(MonitorLog log) {
+        boolean evicting = count == size;
+
+        for (Map.Entry<String, Integer> metric : metrics.entrySet()) {
+            int i = metric.getValue();
+            double value = log.getMetric(metric.getKey());
+            if (evicting && !Double.isNaN(values[i][next])) {
+                sums[i] -= values[i][next];
+                counts[i]--;
+            }
+            values[i][next] = value;
+            if (!Double.isNaN(value)) {
+                sums[i] += value;
+                counts[i]++;
+            }
+        }
+
+        next = (next + 1) % size;
+
+        if (!evicting) {
+            count++;
+        } else if (++evictions == size) {
+            evictions = 0;
+            resum();
+        }
+    }
+
+    /**
+     * Recomputes the running sums from the values in the buffer.
+     */
+    private void resum() {
+        for (int i = 0; i < sums.length; i++) {
+            double sum = 0.0;
+            int present = 0;
+            for (int j = 0; j < count; j++) {
+                if (!Double.isNaN(values[i][j])) {
+                    sum += values[i][j];
+                    present++;
+                }
+            }
+            sums[i] = sum;
+            counts[i] = present;
+        }
+    }
+
+    /**
+     * Gets the number of logs kept in the window.
+     *
+     * @return the window size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of logs currently in the window.
+     *
+     * @return the number of logs in the window
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Checks if the window holds as many logs as its size.
+     *
+     * @return true if the window is full, false if not
+     */
+    public synchronized boolean isFull() {
+        return count == size;
+    }
+
+    /**
+     * Checks if the window tracks the given metric.
+     *
+     * @param metric the metric name
+     * @return true if the metric is tracked, false if not
+     */
+    public boolean hasMetric(String metric) {
+        return metrics.containsKey(metric);
+    }
+
+    /**
+     * Gets the mean value of a metric over the logs in the window that hold
+     * it.
+     *
+     * @param metric the metric name
+     * @return the mean value of the metric. If the metric is not tracked or no
+     * log in the window holds it, then NaN is returned
+     */
+    public synchronized double getMean(String metric) {
+        Integer i = metrics.get(metric);
+        if (i == null || counts[i] == 0) {
+            return Double.NaN;
+        }
+        return sums[i] / counts[i];
+    }
+}
@@ -0,0 +1,160 @@
+package eu.arrowhead.core.qos.monitor.event;
+
+import com.mongodb.MongoException;
+import eu.arrowhead.core.qos.monitor.database.MongoDBNames;
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.database.MonitorStoreFactory;
+import eu.arrowhead.core.qos.monitor.database.RuleCache;
+import eu.arrowhead.core.qos.monitor.protocol.IProtocol;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the {@link LogWindow} of every soft real time provider and consumer
+ * pair.
+ *
+ * Windows are rebuilt from MongoDB on startup and created on demand for pairs
+ * without one, seeded with the most recent logs stored for the pair.
+ *
+ * @author Renato Ayres
+ */
+public final class LogWindowRegistry {
+
+    private static LogWindowRegistry instance;
+    private final Map<String, LogWindow> windows = new ConcurrentHashMap<>();
+    private static final Logger LOG = Logger.getLogger(LogWindowRegistry.class.getName());
+
+    /**
+     * Returns the Singleton instance of LogWindowRegistry
+     *
+     * @return Singleton instance
+     */
+    public static synchronized LogWindowRegistry getInstance() {
+        if (instance == null) {
+            instance = new LogWindowRegistry();
+        }
+        return instance;
+    }
+
+    private LogWindowRegistry() {
+    }
+
+    /**
+     * Rebuilds the window of every cached soft real time rule from the logs
+     * stored in MongoDB.
+     */
+    public void rebuild() {
+        int rebuilt = 0;
+        for (MonitorRule rule : MonitorStoreFactory.getInstance().getCachedRules()) {
+            if (!rule.isSoftRealTime()) {
+                continue;
+            }
+            try {
+                windows.put(RuleCache.getKey(rule), load(rule, getWindowSize(rule), null));
+                rebuilt++;
+            } catch (MongoException ex) {
+                LOG.log(Level.WARNING, "Failed to rebuild log window: {0}", ex.getMessage());
+            }
+        }
+        LOG.log(Level.INFO, "{0} log windows rebuilt.", rebuilt);
+    }
+
+    /**
+     * Adds a log to the window of the pair identified by the rule. If the pair
+     * has no window, or its size no longer matches the rule, a new one is
+     * loaded from MongoDB.
+     *
+     * @param rule the soft real time rule of the pair
+     * @param log the new log
+     * @return the updated window
+     */
+    public LogWindow record(MonitorRule rule, MonitorLog log) {
+        String key = RuleCache.getKey(rule);
+        int size = getWindowSize(rule);
+
+        LogWindow window = windows.get(key);
+
+        if (window == null || window.getSize() != size) {
+            synchronized (this) {
+                window = windows.get(key);
+                if (window == null || window.getSize() != size) {
+                    window = load(rule, size, log);
+                    windows.put(key, window);
+                    return window;
+                }
+            }
+        }
+
+        window.add(log);
+        return window;
+    }
+
+    /**
+     * Discards the window of a pair, e.g. when its rule is replaced or
+     * removed.
+     *
+     * @param key the pair key
+     */
+    public void remove(String key) {
+        windows.remove(key);
+    }
+
+    /**
+     * Creates a window seeded with the most recent logs of the pair. The given
+     * log is added unless it was already stored and loaded with the others.
+     *
+     * @param rule the soft real time rule of the pair
+     * @param size the window size
+     * @param log the new log. May be null
+     * @return the new window
+     */
+    private LogWindow load(MonitorRule rule, int size, MonitorLog log) {
+        LogWindow window = new LogWindow(size, getMetrics(rule));
+
+        List<MonitorLog> last = MonitorStoreFactory.getInstance().getLastLogs(rule, size);
+
+        boolean loaded = false;
+        for (int i = last.size() - 1; i >= 0; i--) {
+            MonitorLog stored = last.get(i);
+            window.add(stored);
+            loaded |= log != null && stored.getId().equals(log.getId());
+        }
+
+        if (log != null && !loaded) {
+            window.add(log);
+        }
+
+        return window;
+    }
+
+    /**
+     * Gets the window size defined by a soft real time rule.
+     *
+     * @param rule the rule
+     * @return the window size
+     */
+    static int getWindowSize(MonitorRule rule) {
+        return Integer.valueOf(rule.getParameters().get(IProtocol.NLOGS));
+    }
+
+    /**
+     * Gets the names of the metrics monitored by a rule.
+     *
+     * @param rule the rule
+     * @return the metric names
+     */
+    private static List<String> getMetrics(MonitorRule rule) {
+        List<String> metrics = new ArrayList<>();
+        for (String name : rule.getParameters().keySet()) {
+            if (!name.equals(IProtocol.NLOGS) && !name.equals(MongoDBNames.STREAM_ID)) {
+                metrics.add(name);
+            }
+        }
+        return metrics;
+    }
+}
@@ -12,8 +12,6 @@ import java.io.InputStream;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
@@ -65,8 +63,7 @@ public class ProducerRegistry {
     }
 
     public int registerAsProducer() {
-        Client client = ClientBuilder.newClient();
-        WebTarget target = client.target(EventProducerConfig.getServiceURI());
+        WebTarget target = EventProducer.getClient().target(EventProducerConfig.getServiceURI());
 
         Response response;
         response = target
@@ -80,7 +77,7 @@ public class ProducerRegistry {
 
         int statusCode = response.getStatus();
 
-        client.close();
+        response.close();
 
         LOG.log(Level.INFO, "Response status received from EventHandler: {0}", statusCode);
 
@@ -6,9 +6,11 @@
 package eu.arrowhead.core.qos.monitor.event;
 
 import eu.arrowhead.core.qos.monitor.QoSMonitorService;
-import eu.arrowhead.core.qos.monitor.database.MongoDatabaseManager;
 import eu.arrowhead.core.qos.monitor.database.MonitorLog;
 import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.database.RuleCache;
+import eu.arrowhead.core.qos.monitor.event.model.Event;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
 import eu.arrowhead.core.qos.monitor.protocol.IProtocol;
 import eu.arrowhead.core.qos.monitor.protocol.presentation.model.PresentationEvent;
 import java.util.logging.Level;
@@ -31,28 +33,77 @@ public class SLAVerification implements Runnable {
         this.log = log;
     }
 
+    /**
+     * Gets the key of the provider and consumer pair being verified.
+     *
+     * @return the pair key
+     */
+    public String getPairKey() {
+        return RuleCache.getKey(rule);
+    }
+
+    /**
+     * Gets the rule the log is verified against.
+     *
+     * @return the rule
+     */
+    public MonitorRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Gets the log being verified.
+     *
+     * @return the log
+     */
+    public MonitorLog getLog() {
+        return log;
+    }
+
+    /**
+     * Checks if the rule verifies a window of logs, which must receive every
+     * log of the pair even when its verification is dropped.
+     *
+     * @return true if the rule is soft real time, false if not
+     */
+    public boolean isWindowed() {
+        return rule.isSoftRealTime();
+    }
+
+    /**
+     * Adds the log to the window of its pair, without verifying it.
+     *
+     * @return the updated window, or null if the rule is not soft real time
+     */
+    public LogWindow recordWindow() {
+        if (!rule.isSoftRealTime()) {
+            return null;
+        }
+        return LogWindowRegistry.getInstance().record(rule, log);
+    }
+
     @Override
     public void run() {
         SLAVerificationResponse SLAresponse;
         if (rule.isSoftRealTime()) {
-            MonitorLog[] logs = MongoDatabaseManager.getInstance().getLastNLogs(rule);
-            if (logs == null) {
+            LogWindow window = recordWindow();
+            if (!window.isFull()) {
                 return;
             }
-            SLAresponse = monitor.verifyQoS(rule, logs);
+            SLAresponse = monitor.verifyQoS(rule, window);
         } else {
             SLAresponse = monitor.verifyQoS(rule, log);
         }
 
         if (SLAresponse.isSLABroken()) {
-//            EventProducer eventProducer = new EventProducer(EventUtil.createEvent(SLAresponse.getParameters()));
-//            eventProducer.publishEvent();
+            QoSMetrics.getInstance().recordViolation(rule.getProtocol());
+            Event event = EventUtil.createEvent(SLAresponse.getParameters());
+            EventProducer.getInstance().publish(event);
 
             String queueKey = rule.getProviderSystemGroup() + rule.getProviderSystemName() + rule.getConsumerSystemGroup() + rule.getConsumerSystemName();
-//            monitor.addEventToPresentationQueue(queueKey, eventProducer.getEvent());
             //FIXME used when not using event handler. testing
             if (QoSMonitorService.SHOW_GRAPHS) {
-                monitor.addEventToPresentationQueue(queueKey, new PresentationEvent(EventUtil.createEvent(SLAresponse.getParameters())));
+                monitor.addEventToPresentationQueue(queueKey, new PresentationEvent(event));
             }
 
             //Only for test purposes
@@ -0,0 +1,557 @@
+package eu.arrowhead.core.qos.monitor.event;
+
+import eu.arrowhead.common.exception.TooManyRequestsException;
+import eu.arrowhead.core.qos.monitor.metrics.QoSMetrics;
+import eu.arrowhead.core.qos.monitor.metrics.Stage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The VerificationEngine.
+ *
+ * Runs the {@link SLAVerification} tasks on a fixed set of lanes, each one a
+ * single thread draining its own bounded queue. The lane of a task is chosen
+ * by the provider and consumer pair key, so the logs of a pair are always
+ * verified one at a time and in the order they were submitted, while
+ * different pairs are verified in parallel.
+ *
+ * What happens when a lane is full is defined by the {@link OverflowPolicy}.
+ * Only the verification and the event publishing of a task are ever dropped
+ * or refused: its log is still added to the window of a soft real time pair,
+ * in order, so that an overload never corrupts the windows of the pairs
+ * sharing the lane. The engine is configured in the 'monitor.properties' file.
+ *
+ * @author Renato Ayres
+ */
+public final class VerificationEngine {
+
+    /**
+     * Action taken when a task is submitted to a full lane.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discards the verification of the oldest task waiting in the lane.
+         */
+        DROP_OLDEST,
+        /**
+         * Waits until the lane has room for the task.
+         */
+        BLOCK,
+        /**
+         * Refuses the verification of the task with a
+         * {@link TooManyRequestsException}.
+         */
+        REJECT
+    }
+
+    private static VerificationEngine instance;
+    private final int laneCapacity;
+    private final OverflowPolicy policy;
+    private final List<Lane> lanes = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private static final Logger LOG = Logger.getLogger(VerificationEngine.class.getName());
+
+    /**
+     * Returns the Singleton instance of VerificationEngine
+     *
+     * @return Singleton instance
+     */
+    public static synchronized VerificationEngine getInstance() {
+        if (instance == null) {
+            instance = new VerificationEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance configured from the 'monitor.properties' file.
+     */
+    private VerificationEngine() {
+        this(getProps());
+    }
+
+    /**
+     * Creates a new instance configured from the given properties.
+     *
+     * @param props the properties
+     */
+    private VerificationEngine(Properties props) {
+        this(Integer.valueOf(props.getProperty("verification.lanes", "4")),
+                Integer.valueOf(props.getProperty("verification.lane.capacity", "1000")),
+                OverflowPolicy.valueOf(props.getProperty("verification.overflow", "REJECT").trim().toUpperCase()));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param count the number of lanes
+     * @param laneCapacity the maximum number of tasks waiting in each lane
+     * @param policy the action taken when a lane is full
+     */
+    VerificationEngine(int count, int laneCapacity, OverflowPolicy policy) {
+        this.laneCapacity = laneCapacity;
+        this.policy = policy;
+        for (int i = 0; i < count; i++) {
+            lanes.add(new Lane(laneCapacity));
+        }
+    }
+
+    /**
+     * Gets the properties file named 'monitor.properties'.
+     *
+     * @return the Properties from properties file 'monitor.properties'
+     */
+    private static Properties getProps() {
+        Properties props = new Properties();
+        try {
+            InputStream inputStream = VerificationEngine.class.getClassLoader().getResourceAsStream("monitor.properties");
+            if (inputStream != null) {
+                props.load(inputStream);
+                inputStream.close();
+            } else {
+                throw new FileNotFoundException("Properties file 'monitor.properties' not found in the classpath");
+            }
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Starts the lane threads. Does nothing if the engine is already running.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < lanes.size(); i++) {
+            Lane lane = lanes.get(i);
+            Thread thread = new Thread(() -> drain(lane), "SLAVerification-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        LOG.log(Level.INFO, "VerificationEngine started with {0} lanes.", lanes.size());
+    }
+
+    /**
+     * Stops the lane threads, running all the tasks still in the lanes.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+        LOG.log(Level.INFO, "VerificationEngine stopped.");
+    }
+
+    /**
+     * Submits a verification to the lane of its provider and consumer pair.
+     * A verification that is refused still has its log added to the window
+     * of its pair.
+     *
+     * @param verification the verification to run
+     * @throws TooManyRequestsException if the lane is full and the overflow
+     * policy is REJECT, or if interrupted while waiting with policy BLOCK
+     */
+    public void submit(SLAVerification verification) {
+        Lane lane = getLane(verification.getPairKey());
+
+        switch (policy) {
+            case BLOCK:
+                try {
+                    lane.put(verification);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    lane.skip(verification);
+                    rejected.incrementAndGet();
+                    throw new TooManyRequestsException("Interrupted while waiting for the SLA verification queue.");
+                }
+                break;
+            case REJECT:
+                if (!lane.offerOrSkip(verification)) {
+                    rejected.incrementAndGet();
+                    throw new TooManyRequestsException("SLA verification queue is full. Try again later.");
+                }
+                break;
+            default:
+                if (lane.dropOldest(verification)) {
+                    dropped.incrementAndGet();
+                }
+        }
+        submitted.incrementAndGet();
+    }
+
+    /**
+     * Checks, before the log of a verification is stored, that the lane of
+     * its pair has room for the verification, so that a request can be
+     * refused while nothing was stored yet. Does nothing unless the overflow
+     * policy is REJECT.
+     *
+     * @param pairKey the provider and consumer pair key
+     * @throws TooManyRequestsException if the policy is REJECT and the lane
+     * is full
+     */
+    public void admit(String pairKey) {
+        if (policy == OverflowPolicy.REJECT && getLane(pairKey).isFull()) {
+            rejected.incrementAndGet();
+            throw new TooManyRequestsException("SLA verification queue is full. Try again later.");
+        }
+    }
+
+    /**
+     * Gets the lane of a provider and consumer pair.
+     *
+     * @param key the pair key
+     * @return the lane
+     */
+    private Lane getLane(String key) {
+        return lanes.get((key.hashCode() & Integer.MAX_VALUE) % lanes.size());
+    }
+
+    /**
+     * Lane loop. Runs the tasks of the lane one at a time, in order.
+     *
+     * @param lane the lane
+     */
+    private void drain(Lane lane) {
+        while (running || !lane.isEmpty()) {
+            Runnable task;
+            try {
+                task = lane.poll(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task == null) {
+                continue;
+            }
+            if (!(task instanceof SLAVerification)) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    LOG.log(Level.SEVERE, "Log window update failure", ex);
+                }
+                continue;
+            }
+            SLAVerification verification = (SLAVerification) task;
+            long start = System.nanoTime();
+            try {
+                verification.run();
+                completed.incrementAndGet();
+                QoSMetrics.getInstance().record(Stage.VERIFY, System.nanoTime() - start);
+            } catch (RuntimeException ex) {
+                failed.incrementAndGet();
+                QoSMetrics.getInstance().recordError(Stage.VERIFY);
+                LOG.log(Level.SEVERE, "SLA verification failure", ex);
+            }
+        }
+    }
+
+    /**
+     * Gets a snapshot of the engine metrics.
+     *
+     * @return the engine metrics
+     */
+    public VerificationStatistics getStatistics() {
+        List<Integer> depths = new ArrayList<>(lanes.size());
+        int total = 0;
+        int max = 0;
+        int windowUpdates = 0;
+        for (Lane lane : lanes) {
+            int depth = lane.size();
+            depths.add(depth);
+            total += depth;
+            max = Math.max(max, depth);
+            windowUpdates += lane.getWindowUpdates();
+        }
+
+        VerificationStatistics stats = new VerificationStatistics();
+        stats.setOverflowPolicy(policy.name());
+        stats.setLanes(lanes.size());
+        stats.setLaneCapacity(laneCapacity);
+        stats.setQueueDepth(total);
+        stats.setMaxLaneDepth(max);
+        stats.setLaneDepths(depths);
+        stats.setWindowUpdates(windowUpdates);
+        stats.setSubmitted(submitted.get());
+        stats.setCompleted(completed.get());
+        stats.setFailed(failed.get());
+        stats.setDropped(dropped.get());
+        stats.setRejected(rejected.get());
+        return stats;
+    }
+
+    /**
+     * A lane: a queue of verifications, bounded by the number of waiting
+     * verifications, that also holds the window updates of the verifications
+     * dropped or refused while it was full. A window update takes the place
+     * of its verification in the queue, so every window receives its logs in
+     * submission order.
+     *
+     * Window updates of a pair with no verification of the pair between them
+     * are merged into one entry, which keeps at most a window worth of logs:
+     * older logs would be pushed out of the window by the newer ones anyway.
+     * A lane therefore holds at most one window update entry per pair more
+     * than its verifications, each of a bounded size.
+     */
+    private static final class Lane {
+
+        private final int capacity;
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private final Map<String, Entry> open = new HashMap<>();
+        private int verifications;
+        private int updates;
+
+        private Lane(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Adds a verification if the lane has room for it, otherwise only its
+         * window update.
+         *
+         * @param verification the verification
+         * @return true if added, false if only its window update was added
+         */
+        private synchronized boolean offerOrSkip(SLAVerification verification) {
+            if (verifications >= capacity) {
+                skip(verification);
+                return false;
+            }
+            add(verification);
+            return true;
+        }
+
+        /**
+         * Adds a verification, waiting until the lane has room for it.
+         *
+         * @param verification the verification
+         * @throws InterruptedException if interrupted while waiting
+         */
+        private synchronized void put(SLAVerification verification) throws InterruptedException {
+            while (verifications >= capacity) {
+                wait();
+            }
+            add(verification);
+        }
+
+        /**
+         * Adds a verification. If the lane is full, the oldest waiting
+         * verification is dropped and only its window update is kept, merged
+         * into the window update of the same pair right before it, if any.
+         *
+         * @param verification the verification
+         * @return true if the oldest verification was dropped
+         */
+        private synchronized boolean dropOldest(SLAVerification verification) {
+            boolean dropped = false;
+            if (verifications >= capacity) {
+                Map<String, Entry> previous = new HashMap<>();
+                Iterator<Entry> iterator = entries.iterator();
+                while (!dropped && iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (!entry.isVerify()) {
+                        previous.put(entry.pairKey, entry);
+                        continue;
+                    }
+                    verifications--;
+                    dropped = true;
+                    if (!entry.verification.isWindowed()) {
+                        iterator.remove();
+                        continue;
+                    }
+                    Entry before = previous.get(entry.pairKey);
+                    if (before != null) {
+                        iterator.remove();
+                        merge(before, entry.verification);
+                    } else {
+                        entry.toWindowUpdate();
+                        updates++;
+                    }
+                }
+            }
+            add(verification);
+            return dropped;
+        }
+
+        /**
+         * Adds only the window update of a verification, merged into the
+         * window update of its pair if no verification of the pair was added
+         * since.
+         *
+         * @param verification the verification
+         */
+        private synchronized void skip(SLAVerification verification) {
+            if (!verification.isWindowed()) {
+                return;
+            }
+            Entry entry = open.get(verification.getPairKey());
+            if (entry != null) {
+                merge(entry, verification);
+                return;
+            }
+            entry = new Entry(verification);
+            entry.toWindowUpdate();
+            entries.addLast(entry);
+            open.put(entry.pairKey, entry);
+            updates++;
+            notifyAll();
+        }
+
+        private void add(SLAVerification verification) {
+            Entry entry = new Entry(verification);
+            entries.addLast(entry);
+            open.remove(entry.pairKey);
+            verifications++;
+            notifyAll();
+        }
+
+        /**
+         * Adds the log of a verification to a window update entry, keeping
+         * only the logs that fit in the window of the pair.
+         *
+         * @param entry the window update entry
+         * @param verification the verification whose log is added
+         */
+        private void merge(Entry entry, SLAVerification verification) {
+            entry.updates.addLast(verification);
+            updates++;
+            int size = Math.max(1, LogWindowRegistry.getWindowSize(verification.getRule()));
+            while (entry.updates.size() > size) {
+                entry.updates.pollFirst();
+                updates--;
+            }
+        }
+
+        /**
+         * Takes the oldest task of the lane.
+         *
+         * @param timeout the maximum time to wait, in milliseconds
+         * @return the verification, the window updates, or null if the lane
+         * stayed empty
+         * @throws InterruptedException if interrupted while waiting
+         */
+        private synchronized Runnable poll(long timeout) throws InterruptedException {
+            if (entries.isEmpty()) {
+                wait(timeout);
+            }
+            Entry entry = entries.pollFirst();
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.isVerify()) {
+                open.remove(entry.pairKey, entry);
+                updates -= entry.updates.size();
+                List<SLAVerification> pending = new ArrayList<>(entry.updates);
+                return () -> {
+                    for (SLAVerification update : pending) {
+                        update.recordWindow();
+                    }
+                };
+            }
+            verifications--;
+            notifyAll();
+            return entry.verification;
+        }
+
+        /**
+         * Checks if the lane has no room for another verification.
+         *
+         * @return true if the lane is full
+         */
+        private synchronized boolean isFull() {
+            return verifications >= capacity;
+        }
+
+        /**
+         * Checks if the lane has nothing to run.
+         *
+         * @return true if the lane is empty
+         */
+        private synchronized boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        /**
+         * Gets the number of verifications waiting in the lane.
+         *
+         * @return the lane depth
+         */
+        private synchronized int size() {
+            return verifications;
+        }
+
+        /**
+         * Gets the number of logs waiting in the lane to be added to their
+         * window without being verified.
+         *
+         * @return the number of pending window updates
+         */
+        private synchronized int getWindowUpdates() {
+            return updates;
+        }
+    }
+
+    /**
+     * A task of a lane: a verification, or only the window updates of one or
+     * more verifications of the same pair.
+     */
+    private static final class Entry {
+
+        private final SLAVerification verification;
+        private final String pairKey;
+        private ArrayDeque<SLAVerification> updates;
+
+        private Entry(SLAVerification verification) {
+            this.verification = verification;
+            this.pairKey = verification.getPairKey();
+        }
+
+        /**
+         * Checks if the entry is a verification.
+         *
+         * @return true if a verification, false if only window updates
+         */
+        private boolean isVerify() {
+            return updates == null;
+        }
+
+        /**
+         * Turns the verification into its window update.
+         */
+        private void toWindowUpdate() {
+            updates = new ArrayDeque<>();
+            updates.add(verification);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package eu.arrowhead.core.qos.monitor.event;
+
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Snapshot of the metrics of the {@link VerificationEngine}.
+ *
+ * @author Renato Ayres
+ */
+@XmlRootElement
+public class VerificationStatistics {
+
+    private String overflowPolicy;
+    private int lanes;
+    private int laneCapacity;
+    private int queueDepth;
+    private int maxLaneDepth;
+    private List<Integer> laneDepths;
+    private int windowUpdates;
+    private long submitted;
+    private long completed;
+    private long failed;
+    private long dropped;
+    private long rejected;
+
+    /**
+     * Creates a new instance with no parameters initialized.
+     */
+    public VerificationStatistics() {
+    }
+
+    /**
+     * Gets the policy applied when a lane is full.
+     *
+     * @return the policy applied when a lane is full
+     */
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets the policy applied when a lane is full.
+     *
+     * @param overflowPolicy the policy applied when a lane is full
+     */
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Gets the number of lanes.
+     *
+     * @return the number of lanes
+     */
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Sets the number of lanes.
+     *
+     * @param lanes the number of lanes
+     */
+    public void setLanes(int lanes) {
+        this.lanes = lanes;
+    }
+
+    /**
+     * Gets the maximum number of tasks waiting in each lane.
+     *
+     * @return the maximum number of tasks waiting in each lane
+     */
+    public int getLaneCapacity() {
+        return laneCapacity;
+    }
+
+    /**
+     * Sets the maximum number of tasks waiting in each lane.
+     *
+     * @param laneCapacity the maximum number of tasks waiting in each lane
+     */
+    public void setLaneCapacity(int laneCapacity) {
+        this.laneCapacity = laneCapacity;
+    }
+
+    /**
+     * Gets the number of tasks waiting in all the lanes.
+     *
+     * @return the number of tasks waiting in all the lanes
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Sets the number of tasks waiting in all the lanes.
+     *
+     * @param queueDepth the number of tasks waiting in all the lanes
+     */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Gets the number of tasks waiting in the fullest lane.
+     *
+     * @return the number of tasks waiting in the fullest lane
+     */
+    public int getMaxLaneDepth() {
+        return maxLaneDepth;
+    }
+
+    /**
+     * Sets the number of tasks waiting in the fullest lane.
+     *
+     * @param maxLaneDepth the number of tasks waiting in the fullest lane
+     */
+    public void setMaxLaneDepth(int maxLaneDepth) {
+        this.maxLaneDepth = maxLaneDepth;
+    }
+
+    /**
+     * Gets the number of tasks waiting in each lane.
+     *
+     * @return the number of tasks waiting in each lane
+     */
+    public List<Integer> getLaneDepths() {
+        return laneDepths;
+    }
+
+    /**
+     * Sets the number of tasks waiting in each lane.
+     *
+     * @param laneDepths the number of tasks waiting in each lane
+     */
+    public void setLaneDepths(List<Integer> laneDepths) {
+        this.laneDepths = laneDepths;
+    }
+
+    /**
+     * Gets the number of logs waiting to be added to their window without
+     * being verified.
+     *
+     * @return the number of pending window updates
+     */
+    public int getWindowUpdates() {
+        return windowUpdates;
+    }
+
+    /**
+     * Sets the number of logs waiting to be added to their window without
+     * being verified.
+     *
+     * @param windowUpdates the number of pending window updates
+     */
+    public void setWindowUpdates(int windowUpdates) {
+        this.windowUpdates = windowUpdates;
+    }
+
+    /**
+     * Gets the number of tasks accepted by the engine.
+     *
+     * @return the number of tasks accepted by the engine
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Sets the number of tasks accepted by the engine.
+     *
+     * @param submitted the number of tasks accepted by the engine
+     */
+    public void setSubmitted(long submitted) {
+        this.submitted = submitted;
+    }
+
+    /**
+     * Gets the number of tasks run to completion.
+     *
+     * @return the number of tasks run to completion
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Sets the number of tasks run to completion.
+     *
+     * @param completed the number of tasks run to completion
+     */
+    public void setCompleted(long completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * Gets the number of tasks that threw an exception.
+     *
+     * @return the number of tasks that threw an exception
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Sets the number of tasks that threw an exception.
+     *
+     * @param failed the number of tasks that threw an exception
+     */
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * Gets the number of tasks discarded to make room for newer ones.
+     *
+     * @return the number of tasks discarded to make room for newer ones
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Sets the number of tasks discarded to make room for newer ones.
+     *
+     * @param dropped the number of tasks discarded to make room for newer ones
+     */
+    public void setDropped(long dropped) {
+        this.dropped = dropped;
+    }
+
+    /**
+     * Gets the number of tasks refused because their lane was full.
+     *
+     * @return the number of tasks refused because their lane was full
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Sets the number of tasks refused because their lane was full.
+     *
+     * @param rejected the number of tasks refused because their lane was full
+     */
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,149 @@
+package eu.arrowhead.core.qos.monitor.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets, in the style of
+ * HdrHistogram. Every power of two is split into 16 linear sub-buckets, so any
+ * recorded value is known with a relative error below 6.25%, from one
+ * nanosecond up to several hours, using a fixed array of counters.
+ *
+ * Recording is a single atomic increment, so the histogram can be updated
+ * from the hot path of every request.
+ *
+ * @author Renato Ayres
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_SHIFT = 40;
+    private static final int BUCKETS = SUB_BUCKETS * (MAX_SHIFT + 2);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency, in nanoseconds. Negative values are recorded as
+     * zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+    }
+
+    /**
+     * Gets the total of the recorded latencies.
+     *
+     * @return the sum, in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of recorded latencies not greater than each of the given
+     * bounds. A bucket is counted at the first bound not lower than its
+     * highest value.
+     *
+     * @param bounds the bounds, in nanoseconds, in ascending order
+     * @return the cumulative counts, one per bound, followed by the total
+     * count
+     */
+    public long[] getCumulativeCounts(long[] bounds) {
+        long[] cumulative = new long[bounds.length + 1];
+        int bound = 0;
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long highest = highestValueOf(i);
+            while (bound < bounds.length && highest > bounds[bound]) {
+                cumulative[bound++] = count;
+            }
+            count += counts.get(i);
+        }
+        while (bound < bounds.length) {
+            cumulative[bound++] = count;
+        }
+        cumulative[bounds.length] = count;
+        return cumulative;
+    }
+
+    /**
+     * Gets the latency below which the given percentage of the recorded
+     * latencies fall.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the highest value of the bucket holding the percentile, in
+     * nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += snapshot[i];
+            if (count >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    /**
+     * Gets the bucket of a value.
+     *
+     * @param value the value, not negative
+     * @return the bucket index
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        return SUB_BUCKETS * (shift + 1) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Gets the highest value held by a bucket.
+     *
+     * @param index the bucket index
+     * @return the highest value
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+}
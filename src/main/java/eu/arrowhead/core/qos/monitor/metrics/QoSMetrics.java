@@ -0,0 +1,193 @@
+package eu.arrowhead.core.qos.monitor.metrics;
+
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The QoSMetrics.
+ *
+ * Process-wide counters and latency histograms of the log lifecycle: the
+ * latency and failures of every {@link Stage}, the stored logs and the SLA
+ * violations of every monitor protocol. Updates are lock-free and cheap enough
+ * for the hot path. The metrics are exported in the Prometheus text format.
+ *
+ * @author Renato Ayres
+ */
+public final class QoSMetrics {
+
+    /**
+     * The Prometheus text format content type.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    private static final String PREFIX = "qosmonitor_";
+    private static final double[] BOUNDS = {0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005,
+        0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUND_NANOS[i] = (long) (BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private static QoSMetrics instance;
+    private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> errors = new EnumMap<>(Stage.class);
+    private final Map<String, LongAdder> ingested = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> violations = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the Singleton instance of QoSMetrics
+     *
+     * @return Singleton instance
+     */
+    public static synchronized QoSMetrics getInstance() {
+        if (instance == null) {
+            instance = new QoSMetrics();
+        }
+        return instance;
+    }
+
+    private QoSMetrics() {
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new LatencyHistogram());
+            errors.put(stage, new LongAdder());
+        }
+    }
+
+    /**
+     * Records the latency of a stage.
+     *
+     * @param stage the stage
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        latencies.get(stage).record(nanos);
+    }
+
+    /**
+     * Records a failure of a stage.
+     *
+     * @param stage the stage
+     */
+    public void recordError(Stage stage) {
+        errors.get(stage).increment();
+    }
+
+    /**
+     * Counts stored logs by their monitor protocol.
+     *
+     * @param logs the stored logs
+     */
+    public void recordIngest(List<MonitorLog> logs) {
+        for (MonitorLog log : logs) {
+            count(ingested, log.getProtocol());
+        }
+    }
+
+    /**
+     * Counts a broken SLA.
+     *
+     * @param protocol the monitor protocol of the verified log
+     */
+    public void recordViolation(String protocol) {
+        count(violations, protocol);
+    }
+
+    /**
+     * Gets the latency histogram of a stage.
+     *
+     * @param stage the stage
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    /**
+     * Exports all the metrics in the Prometheus text format.
+     *
+     * @return the metrics
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        String name = PREFIX + "stage_duration_seconds";
+        header(out, name, "histogram", "Latency of each stage of the monitor log lifecycle.");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = latencies.get(stage);
+            long sum = histogram.getSum();
+            long[] cumulative = histogram.getCumulativeCounts(BOUND_NANOS);
+            for (int i = 0; i < BOUNDS.length; i++) {
+                out.append(name).append("_bucket{stage=\"").append(stage.getLabel())
+                        .append("\",le=\"").append(BOUNDS[i]).append("\"} ").append(cumulative[i]).append('\n');
+            }
+            out.append(name).append("_bucket{stage=\"").append(stage.getLabel())
+                    .append("\",le=\"+Inf\"} ").append(cumulative[BOUNDS.length]).append('\n');
+            out.append(name).append("_sum{stage=\"").append(stage.getLabel()).append("\"} ")
+                    .append(sum / 1e9).append('\n');
+            out.append(name).append("_count{stage=\"").append(stage.getLabel()).append("\"} ")
+                    .append(cumulative[BOUNDS.length]).append('\n');
+        }
+
+        name = PREFIX + "stage_errors_total";
+        header(out, name, "counter", "Failures of each stage of the monitor log lifecycle.");
+        for (Stage stage : Stage.values()) {
+            out.append(name).append("{stage=\"").append(stage.getLabel()).append("\"} ")
+                    .append(errors.get(stage).sum()).append('\n');
+        }
+
+        counters(out, PREFIX + "logs_ingested_total", "Monitor logs stored, by monitor protocol.", ingested);
+        counters(out, PREFIX + "sla_violations_total", "SLA verifications that found the SLA broken, by monitor protocol.",
+                violations);
+
+        return out.toString();
+    }
+
+    /**
+     * Increments the counter of a protocol.
+     *
+     * @param counters the counters by protocol
+     * @param protocol the monitor protocol
+     */
+    private static void count(Map<String, LongAdder> counters, String protocol) {
+        counters.computeIfAbsent(protocol == null ? "" : protocol, (key) -> new LongAdder()).increment();
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric.
+     */
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes a counter labelled by monitor protocol, in protocol order.
+     */
+    private static void counters(StringBuilder out, String name, String help, Map<String, LongAdder> counters) {
+        header(out, name, "counter", help);
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            out.append(name).append("{protocol=\"").append(escape(counter.getKey())).append("\"} ")
+                    .append(counter.getValue().sum()).append('\n');
+        }
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value the label value
+     * @return the escaped value
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
@@ -0,0 +1,47 @@
+package eu.arrowhead.core.qos.monitor.metrics;
+
+/**
+ * The stages of the lifecycle of a monitor log, from the request body to the
+ * event publication.
+ *
+ * @author Renato Ayres
+ */
+public enum Stage {
+
+    /**
+     * Reading of a request body into its message object.
+     */
+    UNMARSHAL("unmarshal"),
+    /**
+     * Lookup of the rule of a provider and consumer pair.
+     */
+    RULE_LOOKUP("rule_lookup"),
+    /**
+     * Write of one or more logs to MongoDB.
+     */
+    PERSIST("persist"),
+    /**
+     * SLA verification of a stored log.
+     */
+    VERIFY("verify"),
+    /**
+     * Publication of an event to the EventHandler.
+     */
+    PUBLISH("publish");
+
+    private final String label;
+
+    private Stage(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the name of the stage in the exported metrics.
+     *
+     * @return the stage label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+}
@@ -0,0 +1,31 @@
+package eu.arrowhead.core.qos.monitor.metrics;
+
+import java.io.IOException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+
+/**
+ * Records the time spent reading each request body into its message object as
+ * the {@link Stage#UNMARSHAL} stage.
+ *
+ * @author Renato Ayres
+ */
+@Provider
+public class UnmarshalTimer implements ReaderInterceptor {
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException {
+        long start = System.nanoTime();
+        try {
+            Object entity = context.proceed();
+            QoSMetrics.getInstance().record(Stage.UNMARSHAL, System.nanoTime() - start);
+            return entity;
+        } catch (IOException | RuntimeException ex) {
+            QoSMetrics.getInstance().recordError(Stage.UNMARSHAL);
+            throw ex;
+        }
+    }
+
+}
@@ -8,11 +8,13 @@ import eu.arrowhead.common.model.messages.AddMonitorLog;
 import eu.arrowhead.common.model.messages.AddMonitorRule;
 import eu.arrowhead.common.model.messages.EventMessage;
 import eu.arrowhead.core.qos.monitor.QoSMonitorService;
-import eu.arrowhead.core.qos.monitor.database.FilterParameter;
-import eu.arrowhead.core.qos.monitor.database.MongoDatabaseManager;
+import eu.arrowhead.core.qos.monitor.database.Durability;
+import eu.arrowhead.core.qos.monitor.database.MetricSchema;
 import eu.arrowhead.core.qos.monitor.database.MonitorLog;
 import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.database.MonitorStoreFactory;
 import eu.arrowhead.core.qos.monitor.event.EventUtil;
+import eu.arrowhead.core.qos.monitor.event.LogWindow;
 import eu.arrowhead.core.qos.monitor.event.SLAVerificationParameter;
 import eu.arrowhead.core.qos.monitor.event.SLAVerificationResponse;
 import eu.arrowhead.core.qos.monitor.event.model.Event;
@@ -30,6 +32,7 @@ public class FTTSE implements IProtocol {
 
     public static final Logger LOG = Logger.getLogger(FTTSE.class.getName());
     private static final Map<String, PresentationData> DATA = new ConcurrentHashMap();
+    private static final MetricSchema SCHEMA = new MetricSchema(Monitor.BANDWIDTH.name, Monitor.DELAY.name);
 //    private static final Map<String, PresentationData> DATA = new HashMap();
 
     private enum Monitor {
@@ -61,12 +64,29 @@ public class FTTSE implements IProtocol {
         return DATA;
     }
 
+    @Override
+    public MetricSchema getSchema() {
+        return SCHEMA;
+    }
+
+    /**
+     * FTT-SE samples are frequent and a lost sample is acceptable, so they do
+     * not wait for replication.
+     *
+     * @return {@link Durability#STANDARD}
+     */
+    @Override
+    public Durability getDurability() {
+        return Durability.STANDARD;
+    }
+
     @Override
     public MonitorRule filterRuleMessage(AddMonitorRule message) {
         ArrowheadSystem provider = message.getProvider();
         ArrowheadSystem consumer = message.getConsumer();
 
-        Map<String, String> parameters = filterParameters(message.getParameters());
+        Map<String, String> parameters = new HashMap<>();
+        double[] metrics = filterParameters(message.getParameters(), parameters);
 
         if (parameters.isEmpty()) {
             throw new NoMonitorParametersException("No monitor parameters were found!");
@@ -105,10 +125,13 @@ public class FTTSE implements IProtocol {
             }
         }
 
-        return new MonitorRule(message.getProtocol(),
+        MonitorRule rule = new MonitorRule(message.getProtocol(),
                 provider.getSystemName(), provider.getSystemGroup(),
                 consumer.getSystemName(), consumer.getSystemGroup(),
                 parameters, message.isSoftRealTime());
+        rule.setMetrics(SCHEMA, metrics);
+
+        return rule;
     }
 
     @Override
@@ -117,13 +140,15 @@ public class FTTSE implements IProtocol {
         log.setProtocol(message.getProtocol());
         log.setTimestamp(message.getTimestamp());
 
-        Map<String, String> parameters = filterParameters(message.getParameters());
+        Map<String, String> parameters = new HashMap<>();
+        double[] metrics = filterParameters(message.getParameters(), parameters);
 
         if (parameters.isEmpty()) {
             throw new NoMonitorParametersException("No monitor parameters were found!");
         }
 
         log.setParameters(parameters);
+        log.setMetrics(SCHEMA, metrics);
 
         if (QoSMonitorService.SHOW_GRAPHS) {
             String queueKey = (message.getProvider().getSystemGroup() + message.getProvider().getSystemName() + message.getConsumer().getSystemGroup() + message.getConsumer().getSystemName());
@@ -156,7 +181,7 @@ public class FTTSE implements IProtocol {
             throw new MissingParameterException("Missing " + stream + " in FTTSE event!");
         }
 
-        List<MonitorRule> rules = MongoDatabaseManager.getInstance().findRuleByParameters(new FilterParameter(Key.STREAMID.name, stream));
+        List<MonitorRule> rules = MonitorStoreFactory.getInstance().findRulesByStreamId(stream);
 
         if (QoSMonitorService.SHOW_GRAPHS) {
             rules.stream().map((rule) -> (rule.getProviderSystemGroup() + rule.getProviderSystemName() + rule.getConsumerSystemGroup() + rule.getConsumerSystemName())).forEach((queueKey) -> {
@@ -185,54 +210,78 @@ public class FTTSE implements IProtocol {
         }
 
         if (nLogs > 1) {
-            return doSoftRealTime(rule.getParameters(), Arrays.asList(logs));
+            return doSoftRealTime(rule, Arrays.asList(logs));
         }
 
-        return doRealTime(rule.getParameters(), logs[0].getParameters());
+        return doRealTime(rule, logs[0]);
     }
 
-    private Map<String, String> filterParameters(Map<String, String> params) {
-        Map<String, String> parameters = new HashMap<>();
+    @Override
+    public SLAVerificationResponse verifyQoS(MonitorRule rule, LogWindow window) {
+        SLAVerificationResponse response = new SLAVerificationResponse();
 
         Monitor[] keys = Monitor.values();
 
         for (Monitor key : keys) {
-            String name = key.name;
+            double requestedValue = rule.getMetric(key.name);
+            if (Double.isNaN(requestedValue) || !window.hasMetric(key.name)) {
+                continue;
+            }
+            double mean = window.getMean(key.name);
+
+            if (mean > requestedValue) {
+                response.addParameter(new SLAVerificationParameter(key.name, requestedValue, mean));
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Copies the monitor parameters of the schema into the given map, parsing
+     * each value once.
+     *
+     * @param params the received parameters
+     * @param parameters the map receiving the monitor parameters
+     * @return the metric values in schema order, NaN for the missing ones
+     */
+    private double[] filterParameters(Map<String, String> params, Map<String, String> parameters) {
+        double[] metrics = new double[SCHEMA.size()];
+
+        for (int i = 0; i < SCHEMA.size(); i++) {
+            String name = SCHEMA.getName(i);
             String param = params.get(name);
-            if (param != null) {
-                try {
-                    Double.valueOf(param);
-                    parameters.put(name, param);
-                } catch (NumberFormatException ex) {
-                    throw new InvalidParameterException("Value of parameter "
-                            + name + " is not parsable. Please make sure "
-                            + "that no invalid characters are present");
-                }
+            if (param == null) {
+                metrics[i] = Double.NaN;
+                continue;
+            }
+            try {
+                metrics[i] = Double.parseDouble(param);
+                parameters.put(name, param);
+            } catch (NumberFormatException ex) {
+                throw new InvalidParameterException("Value of parameter "
+                        + name + " is not parsable. Please make sure "
+                        + "that no invalid characters are present");
             }
         }
-        return parameters;
+        return metrics;
     }
 
-    private SLAVerificationResponse doRealTime(Map<String, String> rule, Map<String, String> log) {
+    private SLAVerificationResponse doRealTime(MonitorRule rule, MonitorLog log) {
         SLAVerificationResponse response = new SLAVerificationResponse();
 
-        System.out.println("On the SLAVerificationResponse " + log);
-
         Monitor[] keys = Monitor.values();
 
         for (Monitor key : keys) {
-            //FIXME check if value is in the map. test
-            String tempRequested = rule.get(key.name);
-            if (tempRequested == null) {
+            double requestedValue = rule.getMetric(key.name);
+            if (Double.isNaN(requestedValue)) {
                 continue;
             }
-            Double requestedValue = Double.valueOf(tempRequested);
 
-            String tempLogged = log.get(key.name);
-            if (tempLogged == null) {
+            double loggedValue = log.getMetric(key.name);
+            if (Double.isNaN(loggedValue)) {
                 continue;
             }
-            Double loggedValue = Double.valueOf(tempLogged);
 
             switch (key) {
                 case BANDWIDTH:
@@ -253,17 +302,16 @@ public class FTTSE implements IProtocol {
         return response;
     }
 
-    private SLAVerificationResponse doSoftRealTime(Map<String, String> rule, List<MonitorLog> logs) {
+    private SLAVerificationResponse doSoftRealTime(MonitorRule rule, List<MonitorLog> logs) {
         SLAVerificationResponse response = new SLAVerificationResponse();
 
-        Double bandwidthMean = 0.0;
-        Double delayMean = 0.0;
-        Double nLogs = Double.valueOf(logs.size());
+        double bandwidthMean = 0.0;
+        double delayMean = 0.0;
+        double nLogs = logs.size();
 
         for (MonitorLog log : logs) {
-            Map<String, String> temp = log.getParameters();
-            bandwidthMean += Double.valueOf(temp.get(Monitor.BANDWIDTH.name));
-            delayMean += Double.valueOf(temp.get(Monitor.DELAY.name));
+            bandwidthMean += log.getMetric(Monitor.BANDWIDTH.name);
+            delayMean += log.getMetric(Monitor.DELAY.name);
         }
 
         bandwidthMean /= nLogs;
@@ -272,7 +320,7 @@ public class FTTSE implements IProtocol {
         Monitor[] keys = Monitor.values();
 
         for (Monitor key : keys) {
-            Double requestedValue = Double.valueOf(rule.get(key.name));
+            double requestedValue = rule.getMetric(key.name);
             switch (key) {
                 case BANDWIDTH:
                     if (bandwidthMean > requestedValue) {
@@ -3,8 +3,11 @@ package eu.arrowhead.core.qos.monitor.protocol;
 import eu.arrowhead.common.model.messages.AddMonitorLog;
 import eu.arrowhead.common.model.messages.AddMonitorRule;
 import eu.arrowhead.common.model.messages.EventMessage;
+import eu.arrowhead.core.qos.monitor.database.Durability;
+import eu.arrowhead.core.qos.monitor.database.MetricSchema;
 import eu.arrowhead.core.qos.monitor.database.MonitorLog;
 import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.event.LogWindow;
 import eu.arrowhead.core.qos.monitor.event.SLAVerificationResponse;
 import eu.arrowhead.core.qos.monitor.event.model.Event;
 import eu.arrowhead.core.qos.monitor.protocol.presentation.model.PresentationEvent;
@@ -13,6 +16,21 @@ public interface IProtocol {
 
     public final String NLOGS = "NLogs";
 
+    /**
+     * Gets the numeric metrics monitored by this protocol.
+     *
+     * @return the metric schema of the protocol
+     */
+    public MetricSchema getSchema();
+
+    /**
+     * Gets the durability class of the logs of this protocol, used by the
+     * rules that do not declare their own.
+     *
+     * @return the default durability class of the protocol
+     */
+    public Durability getDurability();
+
     /**
      * Filters a AddMonitorRule message into a MonitorRule.
      *
@@ -56,4 +74,14 @@ public interface IProtocol {
      */
     public SLAVerificationResponse verifyQoS(MonitorRule rule, MonitorLog... logs);
 
+    /**
+     * Verifies if the SLA is being respected regarding the existing soft real
+     * time rule and the window of the most recent monitor logs.
+     *
+     * @param rule the monitor rule
+     * @param window the window of the most recent monitor logs
+     * @return
+     */
+    public SLAVerificationResponse verifyQoS(MonitorRule rule, LogWindow window);
+
 }
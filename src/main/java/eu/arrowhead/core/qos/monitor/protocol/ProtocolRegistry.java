@@ -0,0 +1,101 @@
+package eu.arrowhead.core.qos.monitor.protocol;
+
+import eu.arrowhead.common.exception.InvalidMonitorTypeException;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of the available {@link IProtocol} implementations.
+ *
+ * Implementations are discovered once, through {@link ServiceLoader}, from the
+ * 'META-INF/services/eu.arrowhead.core.qos.monitor.protocol.IProtocol' files in
+ * the classpath, and may also be registered explicitly. Each protocol is known
+ * by the simple name of its class, e.g. "FTTSE", and a single instance is
+ * shared by all requests, so implementations must be thread-safe.
+ *
+ * @author Renato Ayres
+ */
+public final class ProtocolRegistry {
+
+    private static ProtocolRegistry instance;
+    private final Map<String, IProtocol> protocols = new ConcurrentHashMap<>();
+    private static final Logger LOG = Logger.getLogger(ProtocolRegistry.class.getName());
+
+    /**
+     * Returns the Singleton instance of ProtocolRegistry
+     *
+     * @return Singleton instance
+     */
+    public static synchronized ProtocolRegistry getInstance() {
+        if (instance == null) {
+            instance = new ProtocolRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance with all the protocols found by the
+     * ServiceLoader.
+     */
+    private ProtocolRegistry() {
+        for (IProtocol protocol : ServiceLoader.load(IProtocol.class, getClass().getClassLoader())) {
+            register(protocol);
+        }
+        LOG.log(Level.INFO, "Monitor protocols available: {0}", getNames());
+    }
+
+    /**
+     * Registers a protocol under the simple name of its class, replacing any
+     * protocol previously registered with the same name.
+     *
+     * @param protocol the protocol to register
+     */
+    public void register(IProtocol protocol) {
+        register(protocol.getClass().getSimpleName(), protocol);
+    }
+
+    /**
+     * Registers a protocol under the given name, replacing any protocol
+     * previously registered with the same name.
+     *
+     * @param name the protocol name used in monitor messages
+     * @param protocol the protocol to register
+     */
+    public void register(String name, IProtocol protocol) {
+        protocols.put(name, protocol);
+    }
+
+    /**
+     * Gets the protocol registered with the given name.
+     *
+     * @param name the protocol name
+     * @return the shared protocol instance
+     * @throws InvalidMonitorTypeException if no protocol is registered with
+     * the given name
+     */
+    public IProtocol get(String name) {
+        IProtocol protocol = name == null ? null : protocols.get(name);
+        if (protocol == null) {
+            LOG.log(Level.FINE, "Unknown monitor type {0}", name);
+            throw new InvalidMonitorTypeException("Type " + name + " not found. Make "
+                    + "sure you have the right monitor type for your "
+                    + "situation and that it's available in this version "
+                    + "and/or not misspelled.");
+        }
+        return protocol;
+    }
+
+    /**
+     * Gets the names of all the registered protocols, sorted.
+     *
+     * @return the registered protocol names
+     */
+    public Set<String> getNames() {
+        return new TreeSet<>(protocols.keySet());
+    }
+}
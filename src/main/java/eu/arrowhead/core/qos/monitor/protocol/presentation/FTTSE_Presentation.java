@@ -197,12 +197,10 @@ public class FTTSE_Presentation extends Presentation {
             MonitorLog log = data.getLogs().remove();
 
             for (NodeKey key : keys) {
-                //FIXME check if value is in the map. test
-                String temp = log.getParameters().get(key.name);
-                if (temp == null) {
+                double value = log.getMetric(key.name);
+                if (Double.isNaN(value)) {
                     continue;
                 }
-                Double value = Double.valueOf(temp);
                 SceneNode node = nodes.get(key);
                 if (node == null) {
                     node = new SceneNode(key.name, key.unit);
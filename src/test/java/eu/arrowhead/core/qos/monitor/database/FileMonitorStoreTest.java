@@ -0,0 +1,128 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.io.File;
+import java.util.List;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.CONSUMER;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.PROVIDER;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.createLog;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.createRule;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class FileMonitorStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that rules and logs written across several segments are read back
+     * after the store is reopened.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        System.out.println("reopen");
+
+        //ARRANGE
+        File directory = folder.newFolder();
+        FileMonitorStore store = new FileMonitorStore(directory, 1024, 4, 0, 0, 0, false);
+        store.startManager();
+        MonitorRule rule = createRule();
+        store.replaceRule(rule);
+        for (long timestamp = 1; timestamp <= 100; timestamp++) {
+            store.insertLog(createLog(timestamp), PROVIDER, CONSUMER);
+        }
+        store.insertLog(createLog(50), PROVIDER, CONSUMER);
+        store.stopManager();
+
+        //ACT
+        FileMonitorStore reopened = new FileMonitorStore(directory, 1024, 4, 0, 0, 0, false);
+        reopened.startManager();
+        MonitorRule stored = reopened.findRule(PROVIDER, CONSUMER);
+        List<MonitorLog> last = reopened.getLastLogs(stored, 3);
+        List<MonitorLog> range = reopened.getLogs(stored, 49, 51);
+        reopened.stopManager();
+
+        //ASSERT
+        assertEquals(rule.getId(), stored.getId());
+        assertEquals(1, stored.getVersion());
+        assertEquals(3, last.size());
+        assertEquals(100, (long) last.get(0).getTimestamp());
+        assertEquals(98, (long) last.get(2).getTimestamp());
+        assertEquals("100", last.get(0).getParameters().get("bandwidth"));
+        assertEquals(1L, (long) last.get(0).getRuleVersion());
+        assertEquals(4, range.size());
+        assertEquals(49, (long) range.get(0).getTimestamp());
+        assertEquals(50, (long) range.get(1).getTimestamp());
+        assertEquals(50, (long) range.get(2).getTimestamp());
+        assertEquals(51, (long) range.get(3).getTimestamp());
+    }
+
+    /**
+     * Tests that the oldest segments are deleted beyond the maximum number of
+     * segments of a pair.
+     */
+    @Test
+    public void testRetention() throws Exception {
+        System.out.println("retention");
+
+        //ARRANGE
+        FileMonitorStore store = new FileMonitorStore(folder.newFolder(), 1024, 4, 0, 2, 0, false);
+        store.startManager();
+        MonitorRule rule = createRule();
+        store.replaceRule(rule);
+
+        //ACT
+        for (long timestamp = 1; timestamp <= 100; timestamp++) {
+            store.insertLog(createLog(timestamp), PROVIDER, CONSUMER);
+        }
+        List<MonitorLog> all = store.getLogs(rule, 0, Long.MAX_VALUE);
+        store.stopManager();
+
+        //ASSERT
+        assertEquals(100, (long) all.get(all.size() - 1).getTimestamp());
+        assertEquals(101 - all.size(), (long) all.get(0).getTimestamp());
+        assertTrue(all.size() < 100);
+    }
+
+    /**
+     * Tests that the retention run deletes the expired segments of a pair that
+     * receives no more logs.
+     */
+    @Test
+    public void testRetentionIdlePair() throws Exception {
+        System.out.println("retentionIdlePair");
+
+        //ARRANGE
+        File directory = folder.newFolder();
+        FileMonitorStore store = new FileMonitorStore(directory, 1024, 4, 0, 0, 0, false);
+        store.startManager();
+        MonitorRule rule = createRule();
+        store.replaceRule(rule);
+        for (long timestamp = 1; timestamp <= 100; timestamp++) {
+            store.insertLog(createLog(timestamp), PROVIDER, CONSUMER);
+        }
+        store.stopManager();
+        FileMonitorStore expiring = new FileMonitorStore(directory, 1024, 4, 1000, 0, 0, false);
+        expiring.startManager();
+
+        //ACT
+        expiring.applyRetention();
+        File[] pairs = directory.listFiles(File::isDirectory);
+        List<MonitorLog> all = expiring.getLogs(rule, 0, Long.MAX_VALUE);
+        expiring.stopManager();
+
+        //ASSERT
+        assertEquals(1, pairs.length);
+        assertEquals(1, pairs[0].listFiles().length);
+        assertEquals(100, (long) all.get(all.size() - 1).getTimestamp());
+        assertTrue(all.size() < 100);
+    }
+
+}
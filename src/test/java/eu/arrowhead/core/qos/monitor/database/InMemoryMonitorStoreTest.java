@@ -0,0 +1,79 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.List;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.CONSUMER;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.PROVIDER;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.createLog;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.createRule;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class InMemoryMonitorStoreTest {
+
+    /**
+     * Tests that the most recent logs are kept in timestamp order, whatever
+     * their arrival order, and rebuilt with their parameters.
+     */
+    @Test
+    public void testLogs() {
+        System.out.println("logs");
+
+        //ARRANGE
+        InMemoryMonitorStore store = new InMemoryMonitorStore(4);
+        MonitorRule rule = createRule();
+        store.replaceRule(rule);
+        long[] timestamps = {10, 20, 40, 30, 50, 5};
+
+        //ACT
+        for (long timestamp : timestamps) {
+            store.insertLog(createLog(timestamp), PROVIDER, CONSUMER);
+        }
+        List<MonitorLog> last = store.getLastLogs(rule, 10);
+        List<MonitorLog> range = store.getLogs(rule, 25, 45);
+
+        //ASSERT
+        assertEquals(4, last.size());
+        assertEquals(50, (long) last.get(0).getTimestamp());
+        assertEquals(40, (long) last.get(1).getTimestamp());
+        assertEquals(30, (long) last.get(2).getTimestamp());
+        assertEquals(20, (long) last.get(3).getTimestamp());
+        assertEquals("50", last.get(0).getParameters().get("bandwidth"));
+        assertEquals(50, last.get(0).getMetric("bandwidth"), 0);
+        assertEquals("x", last.get(0).getParameters().get("note"));
+        assertEquals(1L, (long) last.get(0).getRuleVersion());
+        assertEquals(2, range.size());
+        assertEquals(30, (long) range.get(0).getTimestamp());
+        assertEquals(40, (long) range.get(1).getTimestamp());
+    }
+
+    /**
+     * Tests that replacing a rule keeps its id and increments its version.
+     */
+    @Test
+    public void testReplaceRule() {
+        System.out.println("replaceRule");
+
+        //ARRANGE
+        InMemoryMonitorStore store = new InMemoryMonitorStore(4);
+        MonitorRule first = createRule();
+        MonitorRule second = createRule();
+
+        //ACT
+        store.replaceRule(first);
+        store.replaceRule(second);
+        MonitorRule stored = store.findRule(PROVIDER, CONSUMER);
+        store.deleteRule(PROVIDER, CONSUMER);
+
+        //ASSERT
+        assertEquals(2, second.getVersion());
+        assertEquals(first.getId(), stored.getId());
+        assertEquals(2, stored.getVersion());
+        assertNull(store.findRule(PROVIDER, CONSUMER));
+    }
+
+}
@@ -0,0 +1,163 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.bson.BsonDocument;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.CONSUMER;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.PROVIDER;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.createLog;
+import static eu.arrowhead.core.qos.monitor.database.StoreTestUtil.createRule;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class LogJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the logs committed by a journal that could not ship them are
+     * replayed, in order, by the next journal opened on the same directory,
+     * and that a torn record at the end of a segment is ignored.
+     */
+    @Test
+    public void testCrashReplay() throws Exception {
+        System.out.println("crashReplay");
+
+        //ARRANGE
+        File directory = folder.newFolder();
+        MonitorStore unavailable = (MonitorStore) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MonitorStore.class}, (proxy, method, args) -> {
+                    throw new MongoException("MongoDB is down");
+                });
+        LogJournal crashed = new LogJournal(directory, 4096, 1, 100, unavailable);
+        crashed.start();
+        long position = 0;
+        for (long timestamp = 1; timestamp <= 50; timestamp++) {
+            position = crashed.write(createLog(timestamp), PROVIDER, CONSUMER, null);
+        }
+        crashed.awaitCommit(position);
+        tearLastRecord(directory);
+
+        InMemoryMonitorStore store = new InMemoryMonitorStore(100);
+        MonitorRule rule = createRule();
+        store.replaceRule(rule);
+        LogJournal recovered = new LogJournal(directory, 4096, 1, 100, store);
+
+        //ACT
+        try {
+            recovered.start();
+        } finally {
+            recovered.stop();
+            crashed.stop();
+        }
+        List<MonitorLog> replayed = store.getLogs(rule, 0, Long.MAX_VALUE);
+
+        //ASSERT
+        assertEquals(50, replayed.size());
+        for (int i = 0; i < replayed.size(); i++) {
+            assertEquals(i + 1, (long) replayed.get(i).getTimestamp());
+        }
+        assertEquals(50, recovered.getStatistics().getShippedLogs());
+    }
+
+    /**
+     * Tests that the callback of a journaled log that failed to be stored
+     * with a non duplicate error is not run.
+     */
+    @Test
+    public void testFailedLogCallback() throws Exception {
+        System.out.println("failedLogCallback");
+
+        //ARRANGE
+        MonitorStore failing = (MonitorStore) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MonitorStore.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("insertLogs")) {
+                        return null;
+                    }
+                    // the shipper may split the logs in several batches
+                    List<MonitorLog> logs = (List<MonitorLog>) args[0];
+                    for (int i = 0; i < logs.size(); i++) {
+                        if (logs.get(i).getTimestamp() == 2) {
+                            throw new MongoBulkWriteException(
+                                    BulkWriteResult.acknowledged(logs.size() - 1, 0, 0, 0, null),
+                                    Arrays.asList(new BulkWriteError(121, "Document failed validation",
+                                            new BsonDocument(), i)),
+                                    null, new ServerAddress());
+                        }
+                    }
+                    return null;
+                });
+        LogJournal journal = new LogJournal(folder.newFolder(), 4096, 1, 100, failing);
+        List<Long> stored = Collections.synchronizedList(new ArrayList<>());
+        journal.start();
+
+        //ACT
+        long position = 0;
+        try {
+            for (long timestamp = 1; timestamp <= 3; timestamp++) {
+                long current = timestamp;
+                position = journal.write(createLog(timestamp), PROVIDER, CONSUMER, () -> stored.add(current));
+            }
+            journal.awaitCommit(position);
+        } finally {
+            journal.stop();
+        }
+
+        //ASSERT
+        assertEquals(Arrays.asList(1L, 3L), stored);
+        assertEquals(1, journal.getStatistics().getFailedLogs());
+    }
+
+    /**
+     * Writes the header of a record whose content never made it to disk right
+     * after the last record of the newest segment.
+     *
+     * @param directory the journal directory
+     */
+    private static void tearLastRecord(File directory) throws Exception {
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        File newest = null;
+        for (File file : files) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                if (raf.readInt() > 0) {
+                    newest = file;
+                }
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(newest, "rw")) {
+            long offset = 0;
+            int length;
+            while (offset + 8 <= raf.length() && (length = readLength(raf, offset)) > 0) {
+                offset += 8 + length;
+            }
+            raf.seek(offset);
+            raf.writeInt(64);
+            raf.writeInt(0x12345678);
+            raf.write(new byte[16]);
+        }
+    }
+
+    private static int readLength(RandomAccessFile raf, long offset) throws Exception {
+        raf.seek(offset);
+        return raf.readInt();
+    }
+
+}
@@ -0,0 +1,88 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class RollupEngineTest {
+
+    private static final MetricSchema SCHEMA = new MetricSchema("bandwidth", "delay");
+
+    /**
+     * Tests the summary of the logs of a minute window.
+     */
+    @Test
+    public void testAggregate() {
+        System.out.println("aggregate");
+
+        //ARRANGE
+        List<MonitorLog> logs = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put("bandwidth", String.valueOf(i));
+            logs.add(new MonitorLog("FTTSE", 60000L + i, parameters));
+        }
+
+        //ACT
+        LogAggregate result = RollupEngine.aggregate(logs, SCHEMA, 60000, 120000);
+
+        //ASSERT
+        assertEquals(100, result.getCount());
+        assertEquals(1, result.getMetrics().size());
+        MetricAggregate bandwidth = result.getMetrics().get(0);
+        assertEquals("bandwidth", bandwidth.getMetric());
+        assertEquals(100, bandwidth.getCount());
+        assertEquals(1, bandwidth.getMin(), 0);
+        assertEquals(100, bandwidth.getMax(), 0);
+        assertEquals(50.5, bandwidth.getMean(), 1e-9);
+        assertEquals(95, bandwidth.getP95(), 0);
+    }
+
+    /**
+     * Tests that finer windows merge into exact counts, extremes and means.
+     */
+    @Test
+    public void testMerge() {
+        System.out.println("merge");
+
+        //ARRANGE
+        LogAggregate first = window(0, 30, 1, 10, 4, 9);
+        LogAggregate second = window(60000, 10, 2, 20, 12, 19);
+
+        //ACT
+        LogAggregate result = RollupEngine.merge(Arrays.asList(first, second), 0, 3600000);
+
+        //ASSERT
+        assertEquals(40, result.getCount());
+        MetricAggregate merged = result.getMetrics().get(0);
+        assertEquals(40, merged.getCount());
+        assertEquals(1, merged.getMin(), 0);
+        assertEquals(20, merged.getMax(), 0);
+        assertEquals(6, merged.getMean(), 1e-9);
+        assertEquals(19, merged.getP95(), 0);
+    }
+
+    private static LogAggregate window(long start, long count, double min, double max, double mean, double p95) {
+        MetricAggregate metric = new MetricAggregate();
+        metric.setMetric("delay");
+        metric.setCount(count);
+        metric.setMin(min);
+        metric.setMax(max);
+        metric.setMean(mean);
+        metric.setP95(p95);
+        LogAggregate aggregate = new LogAggregate();
+        aggregate.setStart(start);
+        aggregate.setEnd(start + 60000);
+        aggregate.setCount(count);
+        aggregate.getMetrics().add(metric);
+        return aggregate;
+    }
+}
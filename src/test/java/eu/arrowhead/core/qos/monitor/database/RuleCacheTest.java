@@ -0,0 +1,78 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import java.util.HashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class RuleCacheTest {
+
+    /**
+     * Tests that pairs whose names only differ in where they are split do not
+     * share a key, nor each other's rule.
+     */
+    @Test
+    public void testKey() {
+        System.out.println("key");
+
+        //ARRANGE
+        RuleCache cache = new RuleCache();
+        MonitorRule rule = new MonitorRule("FTTSE", "c", "ab", "d", "c", new HashMap<>(), false);
+        cache.put(rule);
+
+        //ACT
+        String other = RuleCache.getKey("a", "bc", "c", "d");
+
+        //ASSERT
+        assertNotEquals(RuleCache.getKey(rule), other);
+        assertNull(cache.get(other));
+    }
+
+    /**
+     * Tests that a rule never replaces a cached rule of a higher version.
+     */
+    @Test
+    public void testStaleVersion() {
+        System.out.println("staleVersion");
+
+        //ARRANGE
+        RuleCache cache = new RuleCache();
+        MonitorRule older = new MonitorRule("FTTSE", "provider", "group", "consumer", "group", new HashMap<>(), false);
+        older.setVersion(1);
+        MonitorRule newer = MongoDatabaseManager.copyRule(older.getId(), older);
+        newer.setVersion(2);
+        cache.put(newer);
+
+        //ACT
+        cache.put(older);
+
+        //ASSERT
+        assertEquals(2, cache.get(RuleCache.getKey(older)).getVersion());
+    }
+
+    /**
+     * Tests that a rule read before its pair was removed is not cached again.
+     */
+    @Test
+    public void testRemovedDuringLoad() {
+        System.out.println("removedDuringLoad");
+
+        //ARRANGE
+        RuleCache cache = new RuleCache();
+        MonitorRule rule = new MonitorRule("FTTSE", "provider", "group", "consumer", "group", new HashMap<>(), false);
+        long since = cache.getGeneration();
+        cache.remove(RuleCache.getKey(rule));
+
+        //ACT
+        cache.putLoaded(rule, since);
+
+        //ASSERT
+        assertNull(cache.get(RuleCache.getKey(rule)));
+    }
+
+}
@@ -0,0 +1,46 @@
+package eu.arrowhead.core.qos.monitor.database;
+
+import eu.arrowhead.common.model.ArrowheadSystem;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pair, rule and log factories shared by the storage tests.
+ *
+ * @author Renato Ayres
+ */
+final class StoreTestUtil {
+
+    static final ArrowheadSystem PROVIDER = new ArrowheadSystem("group", "provider", "localhost", "8080", null);
+    static final ArrowheadSystem CONSUMER = new ArrowheadSystem("group", "consumer", "localhost", "8081", null);
+
+    private StoreTestUtil() {
+    }
+
+    /**
+     * Creates a FTTSE rule for the test pair.
+     *
+     * @return the rule
+     */
+    static MonitorRule createRule() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("bandwidth", "10");
+        return new MonitorRule("FTTSE", PROVIDER.getSystemName(), PROVIDER.getSystemGroup(),
+                CONSUMER.getSystemName(), CONSUMER.getSystemGroup(), parameters, false);
+    }
+
+    /**
+     * Creates a FTTSE log whose bandwidth is its timestamp, with a parameter
+     * that is not a metric.
+     *
+     * @param timestamp the log timestamp
+     * @return the log
+     */
+    static MonitorLog createLog(long timestamp) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("bandwidth", String.valueOf(timestamp));
+        parameters.put("note", "x");
+        return new MonitorLog("FTTSE", timestamp, parameters);
+    }
+
+}
@@ -0,0 +1,93 @@
+package eu.arrowhead.core.qos.monitor.database.codec;
+
+import eu.arrowhead.core.qos.monitor.database.MongoDBNames;
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorLogBucket;
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonDouble;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class MonitorLogBucketCodecTest {
+
+    private final MonitorLogBucketCodec codec = new MonitorLogBucketCodec();
+
+    /**
+     * Tests that a bucket keeps its header and its samples.
+     */
+    @Test
+    public void testEncodeDecode() {
+        System.out.println("encodeDecode");
+
+        //ARRANGE
+        MonitorLogBucket bucket = new MonitorLogBucket(new ObjectId());
+        bucket.setProtocol("FTTSE");
+        bucket.setBucket(60000L);
+        bucket.add(createLog(60100L, "250", "0.5"));
+        bucket.add(createLog(60200L, "150", "1.5"));
+
+        //ACT
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), bucket, EncoderContext.builder().build());
+        MonitorLogBucket result = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+
+        //ASSERT
+        assertFalse(document.getArray(MongoDBNames.SAMPLES).get(0).asDocument().containsKey(MongoDBNames.CODEC_VERSION));
+        assertEquals(2, result.getCount());
+        assertEquals(60100L, (long) result.getStart());
+        assertEquals(60200L, (long) result.getEnd());
+        assertEquals(150.0, result.getMin().get("bandwidth"), 0.0);
+        assertEquals(250.0, result.getMax().get("bandwidth"), 0.0);
+        assertEquals(2.0, result.getSum().get("delay"), 0.0);
+        assertEquals(2, result.getLogs().size());
+        assertEquals(1.5, result.getLogs().get(1).getMetric("delay"), 0.0);
+        assertEquals(bucket.getLogs().get(1).getId(), result.getLogs().get(1).getId());
+    }
+
+    /**
+     * Tests that a document in the per-sample layout is read as a bucket of
+     * one.
+     */
+    @Test
+    public void testDecodeSingleLog() {
+        System.out.println("decodeSingleLog");
+
+        //ARRANGE
+        BsonDocument document = new BsonDocument(MongoDBNames.DOCUMENT_ID, new BsonObjectId(new ObjectId()))
+                .append(MongoDBNames.MONITOR_TYPE, new BsonString("FTTSE"))
+                .append(MongoDBNames.TIMESTAMP, new BsonDateTime(1475079675L))
+                .append("bandwidth", new BsonDouble(120))
+                .append("delay", new BsonString("60"));
+
+        //ACT
+        MonitorLogBucket result = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+
+        //ASSERT
+        assertEquals(1, result.getCount());
+        assertEquals(1475079675L, (long) result.getEnd());
+        assertEquals(120.0, result.getLogs().get(0).getMetric("bandwidth"), 0.0);
+        assertEquals(60.0, result.getMax().get("delay"), 0.0);
+    }
+
+    private static MonitorLog createLog(long timestamp, String bandwidth, String delay) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("bandwidth", bandwidth);
+        parameters.put("delay", delay);
+        return new MonitorLog("FTTSE", timestamp, parameters);
+    }
+}
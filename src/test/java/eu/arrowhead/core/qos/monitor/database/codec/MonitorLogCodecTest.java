@@ -0,0 +1,76 @@
+package eu.arrowhead.core.qos.monitor.database.codec;
+
+import eu.arrowhead.core.qos.monitor.database.MongoDBNames;
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonType;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class MonitorLogCodecTest {
+
+    private final MonitorLogCodec codec = new MonitorLogCodec();
+
+    /**
+     * Tests that schema metrics are stored as doubles and read back.
+     */
+    @Test
+    public void testEncodeDecode() {
+        System.out.println("encodeDecode");
+
+        //ARRANGE
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("bandwidth", "250");
+        parameters.put("delay", "0.5");
+        MonitorLog log = new MonitorLog("FTTSE", 1475079675L, parameters);
+
+        //ACT
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), log, EncoderContext.builder().build());
+        MonitorLog result = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+
+        //ASSERT
+        assertEquals(BsonType.DOUBLE, document.get("bandwidth").getBsonType());
+        assertEquals(250.0, result.getMetric("bandwidth"), 0.0);
+        assertEquals(0.5, result.getMetric("delay"), 0.0);
+        assertEquals("250", result.getParameters().get("bandwidth"));
+    }
+
+    /**
+     * Tests that documents with parameters stored as strings are still
+     * decoded.
+     */
+    @Test
+    public void testDecodeLegacyDocument() {
+        System.out.println("decodeLegacyDocument");
+
+        //ARRANGE
+        BsonDocument document = new BsonDocument(MongoDBNames.DOCUMENT_ID, new BsonObjectId(new ObjectId()))
+                .append(MongoDBNames.MONITOR_TYPE, new BsonString("FTTSE"))
+                .append(MongoDBNames.TIMESTAMP, new BsonDateTime(1475079675L))
+                .append("bandwidth", new BsonString("120"))
+                .append("delay", new BsonString("60"));
+
+        //ACT
+        MonitorLog result = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+
+        //ASSERT
+        assertEquals(120.0, result.getMetric("bandwidth"), 0.0);
+        assertEquals(60.0, result.getMetric("delay"), 0.0);
+        assertEquals("120", result.getParameters().get("bandwidth"));
+    }
+}
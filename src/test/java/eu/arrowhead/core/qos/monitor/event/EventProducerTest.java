@@ -0,0 +1,98 @@
+package eu.arrowhead.core.qos.monitor.event;
+
+import com.sun.net.httpserver.HttpServer;
+import eu.arrowhead.core.qos.monitor.event.model.Event;
+import eu.arrowhead.core.qos.monitor.event.model.Metadata;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class EventProducerTest {
+
+    private static final int EVENTS = 20;
+    private HttpServer server;
+    private final AtomicInteger received = new AtomicInteger();
+    private final CountDownLatch latch = new CountDownLatch(EVENTS);
+
+    /**
+     * Starts a stub EventHandler that accepts every published event.
+     *
+     * @throws IOException if the stub cannot be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/eventhandler/publish", (exchange) -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                while (body.read() != -1) {
+                }
+            }
+            received.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            latch.countDown();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Tests that queued events are all delivered to the EventHandler and
+     * accounted for in the publisher metrics.
+     *
+     * @throws InterruptedException if interrupted while waiting for the stub
+     */
+    @Test
+    public void testPublish() throws InterruptedException {
+        System.out.println("publish");
+
+        //ARRANGE
+        EventProducer.setProducer("qosmonitorsystem");
+        EventProducer producer = new EventProducer(100, 2, 5);
+        producer.start(URI.create("http://localhost:" + server.getAddress().getPort() + "/eventhandler"), "publish");
+
+        //ACT
+        for (int i = 0; i < EVENTS; i++) {
+            assertTrue(producer.publish(createEvent(i)));
+        }
+        boolean delivered = latch.await(10, TimeUnit.SECONDS);
+        producer.stop();
+
+        //ASSERT
+        assertTrue(delivered);
+        EventPublishStatistics stats = producer.getStatistics();
+        assertEquals(EVENTS, received.get());
+        assertEquals(EVENTS, stats.getPublished());
+        assertEquals(0, stats.getFailed());
+        assertEquals(0, stats.getDropped());
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    private static Event createEvent(int i) {
+        Event event = new Event();
+        Metadata meta = new Metadata();
+        meta.setSeverity(1);
+        event.setDescription(meta);
+        event.setFrom(EventProducer.getProducer());
+        event.setType("event");
+        event.setPayload("violation " + i);
+        return event;
+    }
+}
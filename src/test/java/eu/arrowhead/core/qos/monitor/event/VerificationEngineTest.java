@@ -0,0 +1,219 @@
+package eu.arrowhead.core.qos.monitor.event;
+
+import eu.arrowhead.common.exception.TooManyRequestsException;
+import eu.arrowhead.core.qos.monitor.database.MonitorLog;
+import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.event.VerificationEngine.OverflowPolicy;
+import eu.arrowhead.core.qos.monitor.protocol.IProtocol;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class VerificationEngineTest {
+
+    private static final MonitorRule RULE = createRule(10);
+
+    private final List<Long> recorded = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> verified = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Tests that the oldest verifications of a full lane are dropped, while
+     * their logs are still added to the window before the newer ones.
+     */
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        System.out.println("dropOldest");
+
+        //ARRANGE
+        VerificationEngine engine = new VerificationEngine(1, 2, OverflowPolicy.DROP_OLDEST);
+
+        //ACT
+        for (long timestamp = 1; timestamp <= 5; timestamp++) {
+            engine.submit(new RecordingVerification(timestamp));
+        }
+        VerificationStatistics queued = engine.getStatistics();
+        engine.start();
+        engine.stop();
+
+        //ASSERT
+        assertEquals(3, queued.getDropped());
+        assertEquals(2, queued.getQueueDepth());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), recorded);
+        assertEquals(Arrays.asList(4L, 5L), verified);
+    }
+
+    /**
+     * Tests that verifications submitted to a full lane are refused, while
+     * their logs are still added to the window in order.
+     */
+    @Test
+    public void testReject() throws InterruptedException {
+        System.out.println("reject");
+
+        //ARRANGE
+        VerificationEngine engine = new VerificationEngine(1, 2, OverflowPolicy.REJECT);
+
+        //ACT
+        int refused = 0;
+        for (long timestamp = 1; timestamp <= 5; timestamp++) {
+            try {
+                engine.submit(new RecordingVerification(timestamp));
+            } catch (TooManyRequestsException ex) {
+                refused++;
+            }
+        }
+        VerificationStatistics queued = engine.getStatistics();
+        engine.start();
+        engine.stop();
+
+        //ASSERT
+        assertEquals(3, refused);
+        assertEquals(3, queued.getRejected());
+        assertEquals(Arrays.asList(1L, 2L), verified);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), recorded);
+    }
+
+    /**
+     * Tests that the window updates of refused verifications of a pair are
+     * merged, keeping only the logs that fit in its window.
+     */
+    @Test
+    public void testMergeWindowUpdates() throws InterruptedException {
+        System.out.println("mergeWindowUpdates");
+
+        //ARRANGE
+        VerificationEngine engine = new VerificationEngine(1, 1, OverflowPolicy.REJECT);
+        MonitorRule rule = createRule(2);
+
+        //ACT
+        for (long timestamp = 1; timestamp <= 5; timestamp++) {
+            try {
+                engine.submit(new RecordingVerification(rule, timestamp));
+            } catch (TooManyRequestsException ex) {
+                // only the window update is kept
+            }
+        }
+        VerificationStatistics queued = engine.getStatistics();
+        engine.start();
+        engine.stop();
+
+        //ASSERT
+        assertEquals(1, queued.getQueueDepth());
+        assertEquals(2, queued.getWindowUpdates());
+        assertEquals(Arrays.asList(1L), verified);
+        assertEquals(Arrays.asList(1L, 4L, 5L), recorded);
+        assertEquals(0, engine.getStatistics().getWindowUpdates());
+    }
+
+    /**
+     * Tests that a request is refused before its log is stored once the lane
+     * of its pair is full.
+     */
+    @Test
+    public void testAdmit() {
+        System.out.println("admit");
+
+        //ARRANGE
+        VerificationEngine engine = new VerificationEngine(1, 1, OverflowPolicy.REJECT);
+        RecordingVerification first = new RecordingVerification(1);
+        engine.admit(first.getPairKey());
+        engine.submit(first);
+
+        //ACT
+        boolean refused = false;
+        try {
+            engine.admit(first.getPairKey());
+        } catch (TooManyRequestsException ex) {
+            refused = true;
+        }
+
+        //ASSERT
+        assertTrue(refused);
+        assertEquals(1, engine.getStatistics().getRejected());
+        assertTrue(recorded.isEmpty());
+    }
+
+    /**
+     * Tests that a verification waits for room in a full lane.
+     */
+    @Test
+    public void testBlock() throws InterruptedException {
+        System.out.println("block");
+
+        //ARRANGE
+        VerificationEngine engine = new VerificationEngine(1, 1, OverflowPolicy.BLOCK);
+        engine.submit(new RecordingVerification(1));
+        Thread submitter = new Thread(() -> engine.submit(new RecordingVerification(2)));
+
+        //ACT
+        submitter.start();
+        submitter.join(200);
+        boolean waited = submitter.isAlive();
+        engine.start();
+        submitter.join(5000);
+        engine.stop();
+
+        //ASSERT
+        assertTrue(waited);
+        assertEquals(Arrays.asList(1L, 2L), verified);
+        assertEquals(Arrays.asList(1L, 2L), recorded);
+    }
+
+    /**
+     * Creates a soft real time rule.
+     *
+     * @param size the window size
+     * @return the rule
+     */
+    private static MonitorRule createRule(int size) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(IProtocol.NLOGS, String.valueOf(size));
+        return new MonitorRule("FTTSE", "provider", "group", "consumer", "group", parameters, true);
+    }
+
+    /**
+     * A soft real time verification that records its window updates and
+     * verifications instead of running them.
+     */
+    private final class RecordingVerification extends SLAVerification {
+
+        private final long timestamp;
+
+        private RecordingVerification(long timestamp) {
+            this(RULE, timestamp);
+        }
+
+        private RecordingVerification(MonitorRule rule, long timestamp) {
+            super(null, rule, new MonitorLog("FTTSE", timestamp, new HashMap<>()));
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public boolean isWindowed() {
+            return true;
+        }
+
+        @Override
+        public LogWindow recordWindow() {
+            recorded.add(timestamp);
+            return null;
+        }
+
+        @Override
+        public void run() {
+            recordWindow();
+            verified.add(timestamp);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package eu.arrowhead.core.qos.monitor.metrics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Renato Ayres
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that every value falls in a bucket holding it, within the
+     * histogram precision.
+     */
+    @Test
+    public void testBuckets() {
+        System.out.println("buckets");
+
+        for (long value = 0; value < 1_000_000; value = value * 2 + 7) {
+            //ACT
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestValueOf(index);
+
+            //ASSERT
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 16);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.highestValueOf(index - 1) < value);
+            }
+        }
+    }
+
+    /**
+     * Tests the cumulative counts and the percentiles of the recorded
+     * latencies.
+     */
+    @Test
+    public void testCumulativeCounts() {
+        System.out.println("cumulativeCounts");
+
+        //ARRANGE
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        //ACT
+        long[] result = histogram.getCumulativeCounts(new long[]{0, 10_500, 1_000_000});
+
+        //ASSERT
+        assertArrayEquals(new long[]{0, 10, 100, 100}, result);
+        assertEquals(100, histogram.getCount());
+        assertEquals(5_050_000, histogram.getSum());
+        long p95 = histogram.getPercentile(95);
+        assertTrue(p95 >= 95_000 && p95 <= 95_000 * 17 / 16);
+    }
+
+}
@@ -15,11 +15,13 @@ import eu.arrowhead.common.model.messages.EventMessage;
 import eu.arrowhead.core.qos.monitor.QoSMonitorService;
 import eu.arrowhead.core.qos.monitor.database.MonitorLog;
 import eu.arrowhead.core.qos.monitor.database.MonitorRule;
+import eu.arrowhead.core.qos.monitor.event.LogWindow;
 import eu.arrowhead.core.qos.monitor.event.SLAVerificationParameter;
 import eu.arrowhead.core.qos.monitor.event.SLAVerificationResponse;
 import eu.arrowhead.core.qos.monitor.event.model.Event;
 import eu.arrowhead.core.qos.monitor.event.model.Metadata;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -328,6 +330,68 @@ public class FTTSETest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of verifyQoS method with a window of logs, not meeting QoS
+     * requirements.
+     */
+    @Test
+    public void testVerifyQoSNotMetSoftRealTimeWindow() {
+        System.out.println("verifyQoSNotMetSoftRealTimeWindow");
+
+        //ARRANGE
+        MonitorRule rule = createMonitorRule("1", "200", "40");
+        rule.setSoftRealTime(true);
+        rule.getParameters().put("NLogs", "20");
+
+        LogWindow window = new LogWindow(20, Arrays.asList("bandwidth", "delay"));
+        for (MonitorLog log : create20Logs()) {
+            window.add(log);
+        }
+
+        SLAVerificationResponse expResult = new SLAVerificationResponse();
+        List<SLAVerificationParameter> verificationParameters = new ArrayList();
+        verificationParameters.add(new SLAVerificationParameter("bandwidth", 200.0, 310.9));
+        verificationParameters.add(new SLAVerificationParameter("delay", 40.0, 47.85));
+        expResult.setParameters(verificationParameters);
+
+        //ACT
+        SLAVerificationResponse result = instance.verifyQoS(rule, window);
+
+        //ASSERT
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of verifyQoS method with a window of logs, some missing a metric.
+     * The missing values do not lower the mean of the metric.
+     */
+    @Test
+    public void testVerifyQoSNotMetSoftRealTimeWindowMissingMetric() {
+        System.out.println("verifyQoSNotMetSoftRealTimeWindowMissingMetric");
+
+        //ARRANGE
+        MonitorRule rule = createMonitorRule("1", "200", "40");
+        rule.setSoftRealTime(true);
+        rule.getParameters().put("NLogs", "4");
+
+        LogWindow window = new LogWindow(4, Arrays.asList("bandwidth", "delay"));
+        window.add(createMonitorLog("100", "50"));
+        window.add(createMonitorLog("100", null));
+        window.add(createMonitorLog("100", null));
+        window.add(createMonitorLog("100", "60"));
+
+        SLAVerificationResponse expResult = new SLAVerificationResponse();
+        List<SLAVerificationParameter> verificationParameters = new ArrayList();
+        verificationParameters.add(new SLAVerificationParameter("delay", 40.0, 55.0));
+        expResult.setParameters(verificationParameters);
+
+        //ACT
+        SLAVerificationResponse result = instance.verifyQoS(rule, window);
+
+        //ASSERT
+        assertEquals(expResult, result);
+    }
+
     private MonitorLog[] create20Logs() {
         return new MonitorLog[]{
             createMonitorLog("112", "58"),